@@ -0,0 +1,39 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.os.Build;
+import android.os.Trace;
+
+// Tracer backed by android.os.Trace. Async sections need API 29; on older devices they are
+// dropped and only the synchronous sections are emitted.
+public class AndroidTracer implements Tracer {
+    // android.os.Trace rejects section names longer than 127 characters.
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(truncate(name));
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(truncate(name), cookie);
+        }
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(truncate(name), cookie);
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() <= MAX_SECTION_NAME_LENGTH ? name : name.substring(0, MAX_SECTION_NAME_LENGTH);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// One token per session, handed to every stage that works on it: payload build, channel invoke,
+// upload, response parse and result delivery. Stages check it between steps, and anything that
+// blocks (a socket write or read) registers an onCancel action that aborts it, so cancelling
+// stops in-flight work at once instead of letting it finish into a cleared processor.
+public final class CancellationToken {
+    private static final String TAG = "CancellationToken";
+
+    private final String name;
+    private final List<Runnable> actions = new ArrayList<>();
+    private volatile boolean cancelled = false;
+
+    public CancellationToken(String name) {
+        this.name = name;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException(name + " was cancelled");
+        }
+    }
+
+    // Runs action on cancel, or right away if the token is already cancelled. The returned
+    // Runnable unregisters it once the guarded work has finished.
+    public Runnable onCancel(Runnable action) {
+        synchronized (actions) {
+            if (!cancelled) {
+                actions.add(action);
+                return () -> {
+                    synchronized (actions) {
+                        actions.remove(action);
+                    }
+                };
+            }
+        }
+        action.run();
+        return () -> {
+        };
+    }
+
+    // Wraps the Result of an invokeMethod so Dart's answer is dropped if the session was
+    // cancelled while the call was in flight.
+    public MethodChannel.Result guard(MethodChannel.Result delegate) {
+        return new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                if (!isCancelled()) {
+                    delegate.success(result);
+                }
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                if (!isCancelled()) {
+                    delegate.error(errorCode, errorMessage, errorDetails);
+                }
+            }
+
+            @Override
+            public void notImplemented() {
+                if (!isCancelled()) {
+                    delegate.notImplemented();
+                }
+            }
+        };
+    }
+
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (actions) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(actions);
+            actions.clear();
+        }
+        Log.d(TAG, "Cancelling " + name + ", aborting " + toRun.size() + " in-flight operation(s)");
+        for (Runnable action : toRun) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error aborting work for " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + (cancelled ? " (cancelled)" : "");
+    }
+}
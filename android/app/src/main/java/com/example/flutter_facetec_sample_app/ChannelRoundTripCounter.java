@@ -0,0 +1,53 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Counts platform channel traffic for the current session: round trips initiated by Dart,
+// operations carried inside "batch" calls, and invokeMethod calls made by the native side. Reset
+// when a session starts and logged when the FaceTec SDK is completely done, so the number of hops
+// per session can be compared before and after protocol changes.
+public class ChannelRoundTripCounter {
+    private static final String TAG = "ChannelRoundTrips";
+
+    private int inboundRoundTrips = 0;
+    private int batchedOperations = 0;
+    private int outboundRoundTrips = 0;
+    private final Map<String, Integer> inboundByMethod = new HashMap<>();
+
+    public synchronized void reset() {
+        inboundRoundTrips = 0;
+        batchedOperations = 0;
+        outboundRoundTrips = 0;
+        inboundByMethod.clear();
+    }
+
+    public synchronized void recordInbound(String method) {
+        inboundRoundTrips++;
+        Integer count = inboundByMethod.get(method);
+        inboundByMethod.put(method, count == null ? 1 : count + 1);
+    }
+
+    public synchronized void recordBatchedOperation() {
+        batchedOperations++;
+    }
+
+    public synchronized void recordOutbound() {
+        outboundRoundTrips++;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("inboundRoundTrips", inboundRoundTrips);
+        snapshot.put("batchedOperations", batchedOperations);
+        snapshot.put("outboundRoundTrips", outboundRoundTrips);
+        snapshot.put("inboundByMethod", new HashMap<>(inboundByMethod));
+        return snapshot;
+    }
+
+    public void logSession(String flow) {
+        Log.d(TAG, flow + " session channel traffic: " + snapshot());
+    }
+}
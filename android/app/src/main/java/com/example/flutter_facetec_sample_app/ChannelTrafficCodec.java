@@ -0,0 +1,57 @@
+package com.example.flutter_facetec_sample_app;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// StandardMessageCodec for channel traffic logs. With redaction on, long strings (scans, audit
+// trails, result blobs, tokens) are written as their length only and replayed as filler of the
+// same length, so payload sizes survive while the biometric data never reaches the log. Short
+// strings such as method names, statuses and keys are kept so batches still replay.
+final class ChannelTrafficCodec extends StandardMessageCodec {
+    static final int REDACT_MIN_LENGTH = 64;
+    private static final byte REDACTED_STRING = (byte) 128;
+
+    private final boolean redact;
+
+    ChannelTrafficCodec(boolean redact) {
+        this.redact = redact;
+    }
+
+    @Override
+    protected void writeValue(ByteArrayOutputStream stream, Object value) {
+        if (redact && value instanceof String && ((String) value).length() >= REDACT_MIN_LENGTH) {
+            stream.write(REDACTED_STRING);
+            writeSize(stream, ((String) value).length());
+        } else {
+            super.writeValue(stream, value);
+        }
+    }
+
+    @Override
+    protected Object readValueOfType(byte type, ByteBuffer buffer) {
+        if (type == REDACTED_STRING) {
+            char[] filler = new char[readSize(buffer)];
+            Arrays.fill(filler, 'A');
+            return new String(filler);
+        }
+        return super.readValueOfType(type, buffer);
+    }
+
+    byte[] encode(Object value) {
+        ByteBuffer buffer = encodeMessage(value);
+        if (buffer == null) {
+            return new byte[0];
+        }
+        buffer.rewind();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    Object decode(byte[] bytes) {
+        return bytes.length == 0 ? null : decodeMessage(ByteBuffer.wrap(bytes));
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+import com.facetec.sdk.FaceTecIDScanResult;
+import com.facetec.sdk.FaceTecSessionResult;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Records every processor channel call, reply and FaceTec SDK callback into a compact binary log
+// that ChannelTrafficReplayer, in the unit tests, feeds back through the processors on the JVM.
+// Like Tracing this is a process-wide switch; while no recording is active every hook is a single
+// volatile read.
+//
+// Log layout: the magic "FTCR", a version byte and a flags byte, then one record per event:
+//   kind (byte), nanos since the previous record (varint), thread id (varint),
+//   channel and method (string table refs), payload length (varint) and ChannelTrafficCodec bytes.
+// A string table ref is a varint id; the first use of an id is followed by the UTF-8 string.
+public final class ChannelTrafficRecorder {
+    private static final String TAG = "ChannelTrafficRecorder";
+
+    static final byte[] MAGIC = {'F', 'T', 'C', 'R'};
+    static final int VERSION = 1;
+    static final int FLAG_REDACTED = 1;
+
+    static final int KIND_INBOUND_CALL = 1;
+    static final int KIND_INBOUND_REPLY = 2;
+    static final int KIND_OUTBOUND_CALL = 3;
+    static final int KIND_OUTBOUND_REPLY = 4;
+    static final int KIND_SDK_CALLBACK = 5;
+
+    public static final String CHANNEL_SDK = "sdk";
+    public static final String CHANNEL_LIVENESS = "livenesscheck";
+    public static final String CHANNEL_PHOTO_ID_MATCH = "photo_id_match";
+
+    private static volatile ChannelTrafficRecorder active;
+
+    private final DataOutputStream out;
+    private final ChannelTrafficCodec codec;
+    private final Map<String, Integer> stringTable = new HashMap<>();
+    private long lastNanos;
+    private int records = 0;
+
+    private ChannelTrafficRecorder(OutputStream outputStream, boolean redact) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        codec = new ChannelTrafficCodec(redact);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(redact ? FLAG_REDACTED : 0);
+        lastNanos = System.nanoTime();
+    }
+
+    // Starts recording into outputStream, replacing (and closing) any active recording.
+    public static synchronized void start(OutputStream outputStream, boolean redactPayloads) throws IOException {
+        stop();
+        active = new ChannelTrafficRecorder(outputStream, redactPayloads);
+        Log.d(TAG, "Recording channel traffic, redacted: " + redactPayloads);
+    }
+
+    // Stops the active recording and returns the number of records written.
+    public static synchronized int stop() {
+        ChannelTrafficRecorder recorder = active;
+        active = null;
+        if (recorder == null) {
+            return 0;
+        }
+        recorder.close();
+        Log.d(TAG, "Stopped recording channel traffic, records: " + recorder.records);
+        return recorder.records;
+    }
+
+    public static boolean isRecording() {
+        return active != null;
+    }
+
+    // Records a call arriving from Dart and returns a Result that also records the reply.
+    public static MethodChannel.Result inbound(String channel, MethodCall call, MethodChannel.Result result) {
+        ChannelTrafficRecorder recorder = active;
+        if (recorder == null) {
+            return result;
+        }
+        recorder.record(KIND_INBOUND_CALL, channel, call.method, call.arguments);
+        return recordingResult(KIND_INBOUND_REPLY, channel, call.method, result);
+    }
+
+    // Records an invokeMethod about to be made to Dart and returns a Result that records Dart's reply.
+    public static MethodChannel.Result outbound(String channel, String method, Object arguments, MethodChannel.Result result) {
+        ChannelTrafficRecorder recorder = active;
+        if (recorder == null) {
+            return result;
+        }
+        recorder.record(KIND_OUTBOUND_CALL, channel, method, arguments);
+        return recordingResult(KIND_OUTBOUND_REPLY, channel, method, result);
+    }
+
+    // Records an SDK callback. The SDK result objects cannot be serialized, so callers pass a
+    // summary map of the fields the processors act on.
+    public static void sdkCallback(String channel, String callback, Map<String, Object> summary) {
+        ChannelTrafficRecorder recorder = active;
+        if (recorder != null) {
+            recorder.record(KIND_SDK_CALLBACK, channel, callback, summary);
+        }
+    }
+
+    public static void sdkCallback(String channel, String callback) {
+        sdkCallback(channel, callback, new HashMap<String, Object>());
+    }
+
+    public static void sdkCallback(String channel, String callback, FaceTecSessionResult sessionResult) {
+        if (active == null) {
+            return;
+        }
+        Map<String, Object> summary = new HashMap<>();
+        if (sessionResult != null) {
+            summary.put("status", String.valueOf(sessionResult.getStatus()));
+            summary.put("sessionId", sessionResult.getSessionId());
+            summary.put("faceScanBase64", sessionResult.getFaceScanBase64());
+        }
+        sdkCallback(channel, callback, summary);
+    }
+
+    public static void sdkCallback(String channel, String callback, FaceTecIDScanResult idScanResult) {
+        if (active == null) {
+            return;
+        }
+        Map<String, Object> summary = new HashMap<>();
+        if (idScanResult != null) {
+            summary.put("status", String.valueOf(idScanResult.getStatus()));
+            summary.put("sessionId", idScanResult.getSessionId());
+            summary.put("idScanBase64", idScanResult.getIDScanBase64());
+        }
+        sdkCallback(channel, callback, summary);
+    }
+
+    private static MethodChannel.Result recordingResult(int kind, String channel, String method, MethodChannel.Result delegate) {
+        return new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                recordReply(kind, channel, method, successOutcome(result));
+                if (delegate != null) {
+                    delegate.success(result);
+                }
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                recordReply(kind, channel, method, errorOutcome(errorCode, errorMessage));
+                if (delegate != null) {
+                    delegate.error(errorCode, errorMessage, errorDetails);
+                }
+            }
+
+            @Override
+            public void notImplemented() {
+                recordReply(kind, channel, method, notImplementedOutcome());
+                if (delegate != null) {
+                    delegate.notImplemented();
+                }
+            }
+        };
+    }
+
+    // How a reply is stored in the log; the replayer hands these back through deliver().
+    static Map<String, Object> successOutcome(Object result) {
+        Map<String, Object> outcome = new HashMap<>();
+        outcome.put("outcome", "success");
+        outcome.put("result", result);
+        return outcome;
+    }
+
+    static Map<String, Object> errorOutcome(String errorCode, String errorMessage) {
+        Map<String, Object> outcome = new HashMap<>();
+        outcome.put("outcome", "error");
+        outcome.put("errorCode", errorCode);
+        outcome.put("errorMessage", errorMessage);
+        return outcome;
+    }
+
+    static Map<String, Object> notImplementedOutcome() {
+        Map<String, Object> outcome = new HashMap<>();
+        outcome.put("outcome", "notImplemented");
+        return outcome;
+    }
+
+    private static void recordReply(int kind, String channel, String method, Map<String, Object> outcome) {
+        ChannelTrafficRecorder recorder = active;
+        if (recorder != null) {
+            recorder.record(kind, channel, method, outcome);
+        }
+    }
+
+    private void record(int kind, String channel, String method, Object payload) {
+        // Encoding happens outside the lock; only the write is serialized.
+        byte[] payloadBytes;
+        try {
+            payloadBytes = codec.encode(payload);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not encode payload of " + method + ": " + e.getMessage());
+            payloadBytes = new byte[0];
+        }
+        long threadId = Thread.currentThread().getId();
+        synchronized (this) {
+            long now = System.nanoTime();
+            try {
+                out.writeByte(kind);
+                writeVarLong(Math.max(0, now - lastNanos));
+                writeVarLong(threadId);
+                writeString(channel);
+                writeString(method);
+                writeVarLong(payloadBytes.length);
+                out.write(payloadBytes);
+                lastNanos = now;
+                records++;
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing channel traffic record: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        String key = value != null ? value : "";
+        Integer id = stringTable.get(key);
+        if (id != null) {
+            writeVarLong(id);
+            return;
+        }
+        id = stringTable.size();
+        stringTable.put(key, id);
+        writeVarLong(id);
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing channel traffic log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.flutter_facetec_sample_app;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JVM Tracer that records spans in memory and writes them in the Chrome trace event JSON format,
+// which chrome://tracing and Perfetto both load. It depends on nothing from android.*, so unit and
+// load tests can install it through Tracing.setTracer() and capture the same spans off-device.
+public class ChromeTraceTracer implements Tracer {
+    private static final class Event {
+        final String name;
+        final char phase;
+        final long timestampMicros;
+        final long threadId;
+        final int cookie;
+
+        Event(String name, char phase, long timestampMicros, long threadId, int cookie) {
+            this.name = name;
+            this.phase = phase;
+            this.timestampMicros = timestampMicros;
+            this.threadId = threadId;
+            this.cookie = cookie;
+        }
+    }
+
+    private final List<Event> events = new ArrayList<>();
+    private final long originNanos = System.nanoTime();
+
+    @Override
+    public void beginSection(String name) {
+        record(name, 'B', 0);
+    }
+
+    @Override
+    public void endSection() {
+        record(null, 'E', 0);
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        record(name, 'b', cookie);
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        record(name, 'e', cookie);
+    }
+
+    public synchronized int eventCount() {
+        return events.size();
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+
+    public synchronized void writeTo(Writer writer) throws IOException {
+        writer.write("{\"traceEvents\":[");
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write("{\"ph\":\"");
+            writer.write(event.phase);
+            writer.write("\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(event.threadId));
+            writer.write(",\"ts\":");
+            writer.write(Long.toString(event.timestampMicros));
+            if (event.name != null) {
+                writer.write(",\"name\":");
+                writeJSONString(writer, event.name);
+            }
+            if (event.phase == 'b' || event.phase == 'e') {
+                writer.write(",\"cat\":\"facetec\",\"id\":");
+                writer.write(Integer.toString(event.cookie));
+            }
+            writer.write('}');
+        }
+        writer.write("],\"displayTimeUnit\":\"ms\"}");
+        writer.flush();
+    }
+
+    private synchronized void record(String name, char phase, int cookie) {
+        long timestampMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - originNanos);
+        events.add(new Event(name, phase, timestampMicros, Thread.currentThread().getId(), cookie));
+    }
+
+    private static void writeJSONString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                    break;
+            }
+        }
+        writer.write('"');
+    }
+}
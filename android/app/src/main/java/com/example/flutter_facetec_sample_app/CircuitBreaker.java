@@ -0,0 +1,151 @@
+package com.example.flutter_facetec_sample_app;
+
+import java.util.concurrent.TimeUnit;
+
+// Count-based circuit breaker for a single server endpoint. The breaker opens when, over the last
+// windowSize recorded calls, the failure rate or the slow-call rate reaches its threshold. After
+// openDurationMs it moves to half-open and lets one probe session through; the probe's outcome
+// either closes the circuit again or re-opens it for another openDurationMs.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final float failureRateThreshold;
+    private final float slowCallRateThreshold;
+    private final long slowCallDurationMs;
+    private final long openDurationMs;
+
+    // Ring buffer of recent outcomes: bit 0 = failed, bit 1 = slow.
+    private final byte[] outcomes;
+    private int outcomeCount = 0;
+    private int nextOutcome = 0;
+    private State state = State.CLOSED;
+    private long openedAtMs = 0;
+    private long probeStartedAtMs = -1;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, float failureRateThreshold,
+                          float slowCallRateThreshold, long slowCallDurationMs, long openDurationMs) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMs = slowCallDurationMs;
+        this.openDurationMs = openDurationMs;
+        this.outcomes = new byte[windowSize];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        updateStateLocked(now());
+        return state;
+    }
+
+    // Returns true when a new call may go to the endpoint. In half-open state only one probe is
+    // admitted at a time; a probe that never reports back stops blocking after openDurationMs.
+    public synchronized boolean tryAcquirePermission() {
+        long now = now();
+        if (!isCallPermittedLocked(now)) {
+            return false;
+        }
+        if (state == State.HALF_OPEN) {
+            probeStartedAtMs = now;
+        }
+        return true;
+    }
+
+    // Like tryAcquirePermission() without taking the half-open probe slot.
+    public synchronized boolean isCallPermitted() {
+        return isCallPermittedLocked(now());
+    }
+
+    // Hands back a half-open probe slot whose call was never made, or ended without an outcome
+    // that says anything about the endpoint, so the next call can probe right away.
+    public synchronized void releasePermission() {
+        updateStateLocked(now());
+        if (state == State.HALF_OPEN) {
+            probeStartedAtMs = -1;
+        }
+    }
+
+    public synchronized void onSuccess(long durationMs) {
+        record(false, durationMs);
+    }
+
+    public synchronized void onError(long durationMs) {
+        record(true, durationMs);
+    }
+
+    public synchronized void reset() {
+        transitionLocked(State.CLOSED, now());
+    }
+
+    private void record(boolean failed, long durationMs) {
+        long now = now();
+        updateStateLocked(now);
+        boolean slow = durationMs >= slowCallDurationMs;
+        if (state == State.HALF_OPEN) {
+            transitionLocked(failed || slow ? State.OPEN : State.CLOSED, now);
+            return;
+        }
+        if (state == State.OPEN) {
+            // Late result from a call admitted before the circuit opened.
+            return;
+        }
+        outcomes[nextOutcome] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+        nextOutcome = (nextOutcome + 1) % windowSize;
+        outcomeCount = Math.min(outcomeCount + 1, windowSize);
+        if (outcomeCount < minimumCalls) {
+            return;
+        }
+        int failures = 0;
+        int slowCalls = 0;
+        for (int i = 0; i < outcomeCount; i++) {
+            failures += outcomes[i] & 1;
+            slowCalls += (outcomes[i] >> 1) & 1;
+        }
+        if ((float) failures / outcomeCount >= failureRateThreshold
+                || (float) slowCalls / outcomeCount >= slowCallRateThreshold) {
+            transitionLocked(State.OPEN, now);
+        }
+    }
+
+    private boolean isCallPermittedLocked(long now) {
+        updateStateLocked(now);
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return probeStartedAtMs < 0 || now - probeStartedAtMs >= openDurationMs;
+            default:
+                return false;
+        }
+    }
+
+    private void updateStateLocked(long now) {
+        if (state == State.OPEN && now - openedAtMs >= openDurationMs) {
+            transitionLocked(State.HALF_OPEN, now);
+        }
+    }
+
+    private void transitionLocked(State newState, long now) {
+        state = newState;
+        probeStartedAtMs = -1;
+        if (newState == State.OPEN) {
+            openedAtMs = now;
+        }
+        if (newState != State.HALF_OPEN) {
+            outcomeCount = 0;
+            nextOutcome = 0;
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Sorts the device into LOW, MID or HIGH from its core count, memory class, low-RAM flag and a
+// deflate micro-benchmark, and derives the native tuning from that class:
+//                      LOW        MID        HIGH
+//   scheduler workers  2          2          3
+//   token pool         1          2          3
+//   upload buffer      8 KiB      16 KiB     64 KiB
+//   compression        off        level 1    level 1
+//   upload timeouts    15 / 90 s  10 / 60 s  10 / 60 s
+//   audit trails       low only   full       full
+// Compression stays at level 1 even on fast devices since level 6 saves only about 1% more on
+// encrypted scans; on slow devices the deflate CPU is taken from the camera instead. The benchmark
+// takes tens of milliseconds, so it runs off the main thread once per system build and is cached;
+// until it has run the class comes from the static signals alone. Dart can force a class with the
+// "deviceClass" initialize argument, and explicit initialize arguments always beat the profile.
+public final class DeviceProfile {
+    private static final String TAG = "DeviceProfile";
+    private static final String PREFERENCES_NAME = "facetec_device_profile";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_DEFLATE_KB_PER_MS = "deflateKbPerMs";
+    private static final int BENCHMARK_BYTES = 256 * 1024;
+    // Throughput of BEST_SPEED deflate over base64 text, in KB per ms (roughly MB/s).
+    private static final long LOW_DEFLATE_KB_PER_MS = 20;
+    private static final long HIGH_DEFLATE_KB_PER_MS = 80;
+
+    public enum DeviceClass { LOW, MID, HIGH }
+
+    public final DeviceClass deviceClass;
+    public final boolean overridden;
+    public final int cores;
+    public final int memoryClassMb;
+    public final boolean lowRamDevice;
+    // -1 until the micro-benchmark has run on this system build.
+    public final long deflateKbPerMs;
+
+    public final int schedulerWorkers;
+    public final int sessionTokenPoolSize;
+    public final int uploadBufferBytes;
+    // 0 disables upload compression.
+    public final int compressionLevel;
+    public final int uploadConnectTimeoutMs;
+    public final int uploadReadTimeoutMs;
+    public final boolean lowQualityAuditTrailsOnly;
+
+    private DeviceProfile(DeviceClass deviceClass, boolean overridden, int cores, int memoryClassMb,
+                          boolean lowRamDevice, long deflateKbPerMs) {
+        this.deviceClass = deviceClass;
+        this.overridden = overridden;
+        this.cores = cores;
+        this.memoryClassMb = memoryClassMb;
+        this.lowRamDevice = lowRamDevice;
+        this.deflateKbPerMs = deflateKbPerMs;
+        switch (deviceClass) {
+            case LOW:
+                schedulerWorkers = 2;
+                sessionTokenPoolSize = 1;
+                uploadBufferBytes = 8 * 1024;
+                compressionLevel = 0;
+                uploadConnectTimeoutMs = 15000;
+                uploadReadTimeoutMs = 90000;
+                lowQualityAuditTrailsOnly = true;
+                break;
+            case HIGH:
+                schedulerWorkers = 3;
+                sessionTokenPoolSize = 3;
+                uploadBufferBytes = 64 * 1024;
+                compressionLevel = Deflater.BEST_SPEED;
+                uploadConnectTimeoutMs = 10000;
+                uploadReadTimeoutMs = 60000;
+                lowQualityAuditTrailsOnly = false;
+                break;
+            default:
+                schedulerWorkers = 2;
+                sessionTokenPoolSize = 2;
+                uploadBufferBytes = 16 * 1024;
+                compressionLevel = Deflater.BEST_SPEED;
+                uploadConnectTimeoutMs = 10000;
+                uploadReadTimeoutMs = 60000;
+                lowQualityAuditTrailsOnly = false;
+                break;
+        }
+    }
+
+    // Classifies from the cached benchmark, if any; deviceClassOverride ("low", "mid", "high") wins.
+    public static DeviceProfile load(Context context, String deviceClassOverride) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 0;
+        boolean lowRamDevice = activityManager != null && activityManager.isLowRamDevice();
+        long deflateKbPerMs = -1;
+        SharedPreferences preferences = preferences(context);
+        if (Build.FINGERPRINT.equals(preferences.getString(KEY_FINGERPRINT, null))) {
+            deflateKbPerMs = preferences.getLong(KEY_DEFLATE_KB_PER_MS, -1);
+        }
+        DeviceProfile profile = new DeviceProfile(classify(cores, memoryClassMb, lowRamDevice, deflateKbPerMs),
+                false, cores, memoryClassMb, lowRamDevice, deflateKbPerMs);
+        profile = profile.withOverride(deviceClassOverride);
+        Log.d(TAG, "Device profile: " + profile.metrics());
+        return profile;
+    }
+
+    public static DeviceClass classify(int cores, int memoryClassMb, boolean lowRamDevice, long deflateKbPerMs) {
+        boolean benchmarked = deflateKbPerMs >= 0;
+        if (lowRamDevice || cores < 4 || memoryClassMb < 192
+                || (benchmarked && deflateKbPerMs < LOW_DEFLATE_KB_PER_MS)) {
+            return DeviceClass.LOW;
+        }
+        if (cores >= 8 && memoryClassMb >= 256 && (!benchmarked || deflateKbPerMs >= HIGH_DEFLATE_KB_PER_MS)) {
+            return DeviceClass.HIGH;
+        }
+        return DeviceClass.MID;
+    }
+
+    // The same measurements under a forced class; null or an unknown name clears the override.
+    public DeviceProfile withOverride(String deviceClassOverride) {
+        DeviceClass forced = parseClass(deviceClassOverride);
+        if (forced == null) {
+            return overridden
+                    ? new DeviceProfile(classify(cores, memoryClassMb, lowRamDevice, deflateKbPerMs), false,
+                    cores, memoryClassMb, lowRamDevice, deflateKbPerMs)
+                    : this;
+        }
+        if (overridden && forced == deviceClass) {
+            return this;
+        }
+        return new DeviceProfile(forced, true, cores, memoryClassMb, lowRamDevice, deflateKbPerMs);
+    }
+
+    public boolean isBenchmarked() {
+        return deflateKbPerMs >= 0;
+    }
+
+    // Times BEST_SPEED deflate over base64-like text, the shape of our upload bodies, and caches
+    // the throughput for this system build. The new class takes effect from the next load().
+    public static void runBenchmark(Context context) {
+        byte[] alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+        byte[] input = new byte[BENCHMARK_BYTES];
+        Random random = new Random(42);
+        for (int i = 0; i < input.length; i++) {
+            input[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        try {
+            // One warm-up pass so the measured one is not dominated by class loading.
+            deflate(input);
+            long startNanos = System.nanoTime();
+            deflate(input);
+            long elapsedMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            long deflateKbPerMs = (BENCHMARK_BYTES / 1024) * 1000L / elapsedMicros;
+            preferences(context).edit()
+                    .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                    .putLong(KEY_DEFLATE_KB_PER_MS, deflateKbPerMs)
+                    .apply();
+            Log.d(TAG, "Deflate benchmark: " + deflateKbPerMs + " KB/ms");
+        } catch (Exception e) {
+            Log.e(TAG, "Error running device benchmark: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("deviceClass", deviceClass.name().toLowerCase(Locale.US));
+        metrics.put("overridden", overridden);
+        metrics.put("cores", cores);
+        metrics.put("memoryClassMb", memoryClassMb);
+        metrics.put("lowRamDevice", lowRamDevice);
+        metrics.put("deflateKbPerMs", deflateKbPerMs);
+        metrics.put("schedulerWorkers", schedulerWorkers);
+        metrics.put("sessionTokenPoolSize", sessionTokenPoolSize);
+        metrics.put("uploadBufferBytes", uploadBufferBytes);
+        metrics.put("compressionLevel", compressionLevel);
+        metrics.put("uploadConnectTimeoutMs", uploadConnectTimeoutMs);
+        metrics.put("uploadReadTimeoutMs", uploadReadTimeoutMs);
+        metrics.put("auditTrails", lowQualityAuditTrailsOnly ? "lowQualityOnly" : "full");
+        return metrics;
+    }
+
+    private static DeviceClass parseClass(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return DeviceClass.valueOf(name.toUpperCase(Locale.US));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Unknown deviceClass override: " + name);
+            return null;
+        }
+    }
+
+    private static void deflate(byte[] input) throws Exception {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(new ByteArrayOutputStream(input.length), deflater, 16 * 1024)) {
+            out.write(input);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Guards the FaceTec server endpoints used by the processors. Each endpoint gets its own
+// CircuitBreaker and all sessions share one TokenBucketRateLimiter for the API quota. Sessions are
+// checked before the camera opens, so a degraded backend fails fast instead of after a full capture.
+//
+// The uploads themselves are made by the Dart processors, so outcomes are observed natively: an
+// upload starts when processSession/processIDScan is handed to Flutter and ends when a result blob
+// or a cancel comes back over the processor channel. Only upload and server errors count as
+// failures; an upload cancelled by the user, the host, the SDK or by Dart before its request was
+// sent is dropped unrecorded. When an
+// EndpointRouter is attached, the same outcomes feed its per-endpoint upload averages.
+public class EndpointGuard {
+    private static final String TAG = "EndpointGuard";
+    public static final String LIVENESS_ENDPOINT = "/liveness-3d";
+    public static final String PHOTO_ID_MATCH_ENDPOINT = "/photo-id-match";
+
+    public static final String ERROR_CIRCUIT_OPEN = "CIRCUIT_OPEN";
+    public static final String ERROR_RATE_LIMITED = "RATE_LIMITED";
+    public static final String DART_CANCEL_UPLOAD_ERROR = "uploadError";
+
+    private static final int WINDOW_SIZE = 10;
+    private static final int MINIMUM_CALLS = 4;
+    private static final float FAILURE_RATE_THRESHOLD = 0.5f;
+    private static final float SLOW_CALL_RATE_THRESHOLD = 0.8f;
+    private static final long SLOW_CALL_DURATION_MS = TimeUnit.SECONDS.toMillis(15);
+    private static final long OPEN_DURATION_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final int SESSION_BURST = 5;
+    private static final int SESSIONS_PER_MINUTE = 20;
+
+    // Handle for one upload in flight; exactly one of succeeded(), failed() or cancelled() takes
+    // effect.
+    public static final class Call {
+        private final CircuitBreaker circuitBreaker;
+        private final EndpointRouter router;
+        private final String baseURL;
+        private final long startNanos = System.nanoTime();
+        private boolean finished = false;
+
+        private Call(CircuitBreaker circuitBreaker, EndpointRouter router, String baseURL) {
+            this.circuitBreaker = circuitBreaker;
+            this.router = router;
+            this.baseURL = baseURL;
+        }
+
+        public String getEndpoint() {
+            return circuitBreaker.getName();
+        }
+
+        public long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        public synchronized void succeeded() {
+            if (!finished) {
+                finished = true;
+                long elapsedMs = elapsedMs();
+                circuitBreaker.onSuccess(elapsedMs);
+                if (router != null && baseURL != null) {
+                    router.recordUpload(baseURL, elapsedMs, true);
+                }
+            }
+        }
+
+        public synchronized void failed() {
+            if (!finished) {
+                finished = true;
+                long elapsedMs = elapsedMs();
+                circuitBreaker.onError(elapsedMs);
+                if (router != null && baseURL != null) {
+                    router.recordUpload(baseURL, elapsedMs, false);
+                }
+            }
+        }
+
+        // The upload was abandoned, so its duration and outcome say nothing about the endpoint.
+        public synchronized void cancelled() {
+            finished = true;
+        }
+    }
+
+    private final Map<String, CircuitBreaker> circuitBreakers = new HashMap<>();
+    private final TokenBucketRateLimiter rateLimiter;
+    private final long openDurationMs;
+    private volatile EndpointRouter router;
+
+    public EndpointGuard() {
+        this(new TokenBucketRateLimiter(SESSION_BURST, SESSIONS_PER_MINUTE));
+    }
+
+    public EndpointGuard(TokenBucketRateLimiter rateLimiter) {
+        this(rateLimiter, OPEN_DURATION_MS);
+    }
+
+    EndpointGuard(TokenBucketRateLimiter rateLimiter, long openDurationMs) {
+        this.rateLimiter = rateLimiter;
+        this.openDurationMs = openDurationMs;
+    }
+
+    public EndpointRouter getRouter() {
+        return router;
+    }
+
+    public void setRouter(EndpointRouter router) {
+        this.router = router;
+    }
+
+    // Server base URL for this session, or null when routing is not configured and the Dart side
+    // should fall back to FaceTecConfig.baseURL.
+    public String routeForSession(String sessionId) {
+        EndpointRouter currentRouter = router;
+        return currentRouter != null ? currentRouter.routeForSession(sessionId) : null;
+    }
+
+    public synchronized CircuitBreaker circuitBreaker(String endpoint) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker(endpoint, WINDOW_SIZE, MINIMUM_CALLS, FAILURE_RATE_THRESHOLD,
+                    SLOW_CALL_RATE_THRESHOLD, SLOW_CALL_DURATION_MS, openDurationMs);
+            circuitBreakers.put(endpoint, circuitBreaker);
+        }
+        return circuitBreaker;
+    }
+
+    // Returns null when a session touching the given endpoints may start, otherwise the error code
+    // to report back to Flutter (ERROR_CIRCUIT_OPEN or ERROR_RATE_LIMITED). The half-open probe
+    // slots are only taken once the rate limit has admitted the session, so a rejected session
+    // never holds one; an admitted session that ends before uploading hands them back through
+    // releaseSessionStart().
+    public synchronized String checkSessionStart(String... endpoints) {
+        for (String endpoint : endpoints) {
+            if (!circuitBreaker(endpoint).isCallPermitted()) {
+                Log.e(TAG, "Circuit open for " + endpoint + ", rejecting session");
+                return ERROR_CIRCUIT_OPEN;
+            }
+        }
+        if (!rateLimiter.tryAcquire()) {
+            Log.e(TAG, "Session rate limit reached, rejecting session");
+            return ERROR_RATE_LIMITED;
+        }
+        for (int i = 0; i < endpoints.length; i++) {
+            if (!circuitBreaker(endpoints[i]).tryAcquirePermission()) {
+                // A call outcome opened the circuit since the check above.
+                for (int j = 0; j < i; j++) {
+                    circuitBreaker(endpoints[j]).releasePermission();
+                }
+                Log.e(TAG, "Circuit open for " + endpoints[i] + ", rejecting session");
+                return ERROR_CIRCUIT_OPEN;
+            }
+        }
+        return null;
+    }
+
+    // Called once a session admitted by checkSessionStart() has ended. Endpoints whose upload
+    // recorded an outcome have left half-open already; for the others, the probe slot is free
+    // again instead of blocking the next session until it times out.
+    public void releaseSessionStart(String... endpoints) {
+        for (String endpoint : endpoints) {
+            circuitBreaker(endpoint).releasePermission();
+        }
+    }
+
+    // Whether a session cancelled for this TelemetryJournal reason failed because of its upload.
+    public static boolean isUploadFailure(short cancelReason) {
+        return cancelReason == TelemetryJournal.CANCEL_UPLOAD_ERROR
+                || cancelReason == TelemetryJournal.CANCEL_SERVER_REJECTED;
+    }
+
+    // The TelemetryJournal reason for a cancel sent by the Dart processors. Dart also cancels
+    // before uploading, e.g. when the audit trail is missing, so only a cancel it marks with
+    // {"reason": "uploadError"} after a failed request counts against the endpoint.
+    public static short dartCancelReason(Object reason) {
+        return DART_CANCEL_UPLOAD_ERROR.equals(reason)
+                ? TelemetryJournal.CANCEL_UPLOAD_ERROR : TelemetryJournal.CANCEL_REQUESTED_BY_DART;
+    }
+
+    // baseURL is where the upload goes, as returned by routeForSession(); null when not routed.
+    public Call beginCall(String endpoint, String baseURL) {
+        return new Call(circuitBreaker(endpoint), router, baseURL);
+    }
+
+    public static String errorMessage(String errorCode) {
+        if (ERROR_RATE_LIMITED.equals(errorCode)) {
+            return "Too many sessions started, please try again shortly";
+        }
+        return "The verification service is unavailable, please try again later";
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Picks which regional FaceTec server a session talks to. Endpoints are scored on periodic HEAD
+// probes only: an EWMA of the probe round trip plus a penalty scaled by the probe error rate. Upload
+// durations depend on the body size and the server's processing time rather than on the link, so
+// they are kept apart, as upload latency and error averages reported by metrics(). A session is
+// pinned to the endpoint chosen for its first upload so the face and ID steps reach the same
+// server, which holds the session's state.
+public class EndpointRouter {
+    private static final String TAG = "EndpointRouter";
+    private static final double EWMA_ALPHA = 0.3;
+    // An endpoint failing every probe scores as if its probes took this much longer. Added rather
+    // than multiplied, so a nearby endpoint that went down still loses to a distant healthy one.
+    private static final double ERROR_PENALTY_MS = 5000.0;
+    // RTT assumed for endpoints without probes, so unprobed endpoints are still picked up.
+    private static final double UNKNOWN_RTT_MS = 1000.0;
+    private static final int MAX_PINNED_SESSIONS = 64;
+    private static final long PROBE_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    public interface Prober {
+        // Returns the round trip in milliseconds or throws when the endpoint is unreachable.
+        long probe(String baseURL) throws Exception;
+    }
+
+    private static final class Ewma {
+        double value = -1;
+
+        void add(double sample) {
+            value = value < 0 ? sample : EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * value;
+        }
+
+        double valueOr(double fallback) {
+            return value < 0 ? fallback : value;
+        }
+    }
+
+    private static final class EndpointStats {
+        final Ewma probeRttMs = new Ewma();
+        final Ewma probeErrorRate = new Ewma();
+        final Ewma uploadLatencyMs = new Ewma();
+        final Ewma uploadErrorRate = new Ewma();
+        long probes = 0;
+        long uploads = 0;
+
+        // rttMs is ignored for a failed probe.
+        void recordProbe(long rttMs, boolean success) {
+            probes++;
+            if (success) {
+                probeRttMs.add(rttMs);
+            }
+            probeErrorRate.add(success ? 0 : 1);
+        }
+
+        void recordUpload(long durationMs, boolean success) {
+            uploads++;
+            uploadLatencyMs.add(durationMs);
+            uploadErrorRate.add(success ? 0 : 1);
+        }
+
+        double score() {
+            return probeRttMs.valueOr(UNKNOWN_RTT_MS) + ERROR_PENALTY_MS * probeErrorRate.valueOr(0);
+        }
+    }
+
+    private final List<String> endpoints;
+    private final long probeIntervalMs;
+    private final Map<String, EndpointStats> stats = new HashMap<>();
+    private final Map<String, String> pinnedSessions = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_PINNED_SESSIONS;
+        }
+    };
+    private ScheduledExecutorService probeExecutor;
+    private volatile boolean probingSuspended = false;
+
+    public EndpointRouter(List<String> endpoints) {
+        this(endpoints, PROBE_INTERVAL_MS);
+    }
+
+    EndpointRouter(List<String> endpoints, long probeIntervalMs) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.probeIntervalMs = probeIntervalMs;
+        for (String endpoint : this.endpoints) {
+            stats.put(endpoint, new EndpointStats());
+        }
+    }
+
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    public synchronized String bestEndpoint() {
+        String best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (String endpoint : endpoints) {
+            double score = stats.get(endpoint).score();
+            if (score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best != null ? best : endpoints.get(0);
+    }
+
+    // Returns the endpoint for this session, pinning it on first use.
+    public synchronized String routeForSession(String sessionId) {
+        if (sessionId == null) {
+            return bestEndpoint();
+        }
+        String baseURL = pinnedSessions.get(sessionId);
+        if (baseURL == null) {
+            baseURL = bestEndpoint();
+            pinnedSessions.put(sessionId, baseURL);
+            Log.d(TAG, "Session " + sessionId + " routed to " + baseURL);
+        }
+        return baseURL;
+    }
+
+    // Reported by metrics(); uploads do not affect routing.
+    public synchronized void recordUpload(String baseURL, long durationMs, boolean success) {
+        EndpointStats endpointStats = stats.get(baseURL);
+        if (endpointStats != null) {
+            endpointStats.recordUpload(durationMs, success);
+        }
+    }
+
+    public synchronized void recordProbe(String baseURL, long rttMs, boolean success) {
+        EndpointStats endpointStats = stats.get(baseURL);
+        if (endpointStats != null) {
+            endpointStats.recordProbe(rttMs, success);
+        }
+    }
+
+    // Per endpoint: the probe figures that make up its score, and the upload figures.
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> endpointsMetrics = new HashMap<>();
+        for (String endpoint : endpoints) {
+            EndpointStats endpointStats = stats.get(endpoint);
+            Map<String, Object> endpointMetrics = new HashMap<>();
+            endpointMetrics.put("score", endpointStats.score());
+            endpointMetrics.put("probes", endpointStats.probes);
+            endpointMetrics.put("probeRttMs", endpointStats.probeRttMs.valueOr(0));
+            endpointMetrics.put("probeErrorRate", endpointStats.probeErrorRate.valueOr(0));
+            endpointMetrics.put("uploads", endpointStats.uploads);
+            endpointMetrics.put("uploadLatencyMs", endpointStats.uploadLatencyMs.valueOr(0));
+            endpointMetrics.put("uploadErrorRate", endpointStats.uploadErrorRate.valueOr(0));
+            endpointsMetrics.put(endpoint, endpointMetrics);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("bestEndpoint", bestEndpoint());
+        metrics.put("endpoints", endpointsMetrics);
+        return metrics;
+    }
+
+    // The timer only enqueues; probes run on the scheduler as PREFETCH work, so they never
+    // share the link with a live upload.
+    public synchronized void startProbing(Prober prober, PriorityScheduler scheduler) {
+        if (probeExecutor != null || endpoints.size() < 2) {
+            return;
+        }
+        probeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EndpointRouterProbe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probeExecutor.scheduleWithFixedDelay(() -> {
+            if (!probingSuspended && !scheduler.trySubmit(PriorityScheduler.Priority.PREFETCH,
+                    () -> probeAll(prober, scheduler))) {
+                Log.d(TAG, "Probe queue full, skipping this tick");
+            }
+        }, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Suspended probes are skipped rather than rescheduled, so resuming picks up on the next tick.
+    public void setProbingSuspended(boolean suspended) {
+        probingSuspended = suspended;
+    }
+
+    public synchronized void shutdown() {
+        if (probeExecutor != null) {
+            probeExecutor.shutdownNow();
+            probeExecutor = null;
+        }
+    }
+
+    private void probeAll(Prober prober, PriorityScheduler scheduler) {
+        if (probingSuspended) {
+            return;
+        }
+        for (String endpoint : endpoints) {
+            if (scheduler.shouldYield(PriorityScheduler.Priority.PREFETCH)) {
+                // A live session started; the remaining endpoints wait for the next tick.
+                return;
+            }
+            try {
+                recordProbe(endpoint, prober.probe(endpoint), true);
+            } catch (Exception e) {
+                Log.e(TAG, "Probe failed for " + endpoint + ": " + e.getMessage());
+                recordProbe(endpoint, 0, false);
+            }
+        }
+    }
+}
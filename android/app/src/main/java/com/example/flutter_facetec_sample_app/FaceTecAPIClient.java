@@ -0,0 +1,109 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+import com.facetec.sdk.FaceTecSDK;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+// Minimal native client for the FaceTec server endpoints. The Dart processors still perform the
+// session uploads; this client covers the calls the native layer makes on its own, starting with
+// /session-token for the SessionTokenPool. All methods block and must be called off the main thread.
+public class FaceTecAPIClient {
+    private static final String TAG = "FaceTecAPIClient";
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private final String baseURL;
+    private final String deviceKeyIdentifier;
+
+    public FaceTecAPIClient(String baseURL, String deviceKeyIdentifier) {
+        this.baseURL = baseURL;
+        this.deviceKeyIdentifier = deviceKeyIdentifier;
+    }
+
+    public String getBaseURL() {
+        return baseURL;
+    }
+
+    public String getSessionToken() throws IOException {
+        HttpURLConnection connection = openConnection("/session-token", "GET");
+        try {
+            int statusCode = connection.getResponseCode();
+            String responseBody = readBody(statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            if (responseBody.isEmpty()) {
+                throw new IOException("Empty response from /session-token (HTTP " + statusCode + ")");
+            }
+            JSONObject responseJSON = new JSONObject(responseBody);
+            String sessionToken = responseJSON.optString("sessionToken", "");
+            if (sessionToken.isEmpty()) {
+                throw new IOException("No sessionToken in /session-token response (HTTP " + statusCode + ")");
+            }
+            return sessionToken;
+        } catch (JSONException e) {
+            throw new IOException("JSON parsing error: " + e.getMessage(), e);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Cheap reachability probe used by EndpointRouter. Any response below 500 counts as healthy.
+    public static long probe(String baseURL) throws IOException {
+        long startNanos = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseURL).openConnection();
+        try {
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(CONNECT_TIMEOUT_MS);
+            int statusCode = connection.getResponseCode();
+            if (statusCode >= 500) {
+                throw new IOException("Probe of " + baseURL + " returned HTTP " + statusCode);
+            }
+            return (System.nanoTime() - startNanos) / 1000000L;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseURL + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("X-Device-Key", deviceKeyIdentifier);
+        String userAgent = createUserAgentString("");
+        connection.setRequestProperty("User-Agent", userAgent);
+        connection.setRequestProperty("X-User-Agent", userAgent);
+        return connection;
+    }
+
+    private static String createUserAgentString(String sessionId) {
+        try {
+            return FaceTecSDK.createFaceTecAPIUserAgentString(sessionId);
+        } catch (Throwable t) {
+            Log.e(TAG, "Error creating user agent string: " + t.getMessage());
+            return "";
+        }
+    }
+
+    static String readBody(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return "";
+        }
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.facetec.sdk.FaceTecCustomization;
+import com.facetec.sdk.FaceTecSDK;
+import com.facetec.sdk.FaceTecSDKStatus;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Runs FaceTecSDK initialization at most once per key set and shares the outcome with every caller
+// through whenReady(). MainActivity starts it from configureFlutterEngine using the initialize
+// arguments cached from the previous launch, so by the time Dart calls initialize or starts a
+// session the SDK is usually ready. All methods must be called on the main thread.
+public class FaceTecSDKInitializer {
+    private static final String TAG = "FaceTecSDKInitializer";
+    private static final String PREFERENCES_NAME = "facetec_sdk_initializer";
+    private static final String KEY_INITIALIZE_ARGUMENTS = "initializeArguments";
+
+    public interface ReadyCallback {
+        void onReady(boolean success, String errorCode, String errorMessage);
+    }
+
+    // The FaceTecSDK calls initialization depends on; the JVM tests answer them themselves.
+    interface Sdk {
+        void initializeInDevelopmentMode(Context context, String deviceKeyIdentifier, String publicFaceScanEncryptionKey,
+                                         FaceTecSDK.InitializeCallback callback);
+
+        FaceTecSDKStatus getStatus(Context context);
+    }
+
+    private static final Sdk FACETEC_SDK = new Sdk() {
+        @Override
+        public void initializeInDevelopmentMode(Context context, String deviceKeyIdentifier, String publicFaceScanEncryptionKey,
+                                                FaceTecSDK.InitializeCallback callback) {
+            FaceTecSDK.initializeInDevelopmentMode(context, deviceKeyIdentifier, publicFaceScanEncryptionKey, callback);
+        }
+
+        @Override
+        public FaceTecSDKStatus getStatus(Context context) {
+            return FaceTecSDK.getStatus(context);
+        }
+    };
+
+    private final Context context;
+    private final Sdk sdk;
+    private final List<ReadyCallback> waitingCallbacks = new ArrayList<>();
+    private final Map<String, Long> phaseTimingsMs = new LinkedHashMap<>();
+    private String deviceKeyIdentifier;
+    private String publicFaceScanEncryptionKey;
+    private boolean finished = false;
+    private boolean succeeded = false;
+    private String errorCode;
+    private String errorMessage;
+    private boolean customizationApplied = false;
+
+    public FaceTecSDKInitializer(Context context) {
+        this(context, FACETEC_SDK);
+    }
+
+    FaceTecSDKInitializer(Context context, Sdk sdk) {
+        this.context = context;
+        this.sdk = sdk;
+    }
+
+    // Starts initialization for this key set. Returns false without doing anything when the same
+    // keys are already initializing or initialized.
+    public boolean initialize(String deviceKeyIdentifier, String publicFaceScanEncryptionKey) {
+        if (deviceKeyIdentifier.equals(this.deviceKeyIdentifier)
+                && publicFaceScanEncryptionKey.equals(this.publicFaceScanEncryptionKey)
+                && !(finished && !succeeded)) {
+            Log.d(TAG, "SDK already initialized or initializing with these keys");
+            return false;
+        }
+        this.deviceKeyIdentifier = deviceKeyIdentifier;
+        this.publicFaceScanEncryptionKey = publicFaceScanEncryptionKey;
+        finished = false;
+        succeeded = false;
+
+        if (!customizationApplied) {
+            long customizationStart = System.nanoTime();
+            applyCustomization();
+            customizationApplied = true;
+            recordPhase("customization", customizationStart);
+        }
+
+        final long initializeStart = System.nanoTime();
+        final int initializeCookie = Tracing.beginAsyncSection("FaceTecSDK.initialize");
+        sdk.initializeInDevelopmentMode(context, deviceKeyIdentifier, publicFaceScanEncryptionKey, success -> {
+            Tracing.endAsyncSection("FaceTecSDK.initialize", initializeCookie);
+            recordPhase("initialize", initializeStart);
+            if (!deviceKeyIdentifier.equals(this.deviceKeyIdentifier)
+                    || !publicFaceScanEncryptionKey.equals(this.publicFaceScanEncryptionKey)) {
+                // Superseded by a later initialize with different keys.
+                return;
+            }
+            if (success) {
+                finish(true, null, null);
+            } else {
+                FaceTecSDKStatus status = sdk.getStatus(context);
+                finish(false, status.name(), status.toString());
+            }
+        });
+        return true;
+    }
+
+    public boolean hasStarted() {
+        return deviceKeyIdentifier != null;
+    }
+
+    // Invokes the callback once the current initialization finishes, immediately if it already has.
+    public void whenReady(ReadyCallback callback) {
+        if (finished) {
+            callback.onReady(succeeded, errorCode, errorMessage);
+        } else {
+            waitingCallbacks.add(callback);
+        }
+    }
+
+    public Map<String, Long> getPhaseTimingsMs() {
+        return Collections.unmodifiableMap(phaseTimingsMs);
+    }
+
+    public void recordPhase(String phase, long startNanos) {
+        long durationMs = (System.nanoTime() - startNanos) / 1000000L;
+        phaseTimingsMs.put(phase, durationMs);
+        Log.d(TAG, "Init phase " + phase + " took " + durationMs + " ms");
+    }
+
+    // The initialize arguments from the last launch, or null on first launch.
+    public Map<String, Object> loadCachedArguments() {
+        String json = preferences().getString(KEY_INITIALIZE_ARGUMENTS, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            JSONObject jsonObject = new JSONObject(json);
+            Map<String, Object> arguments = new HashMap<>();
+            Iterator<String> keys = jsonObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (jsonObject.isNull(key)) {
+                    // Caches written before null options were stripped still hold JSON nulls.
+                    continue;
+                }
+                Object value = jsonObject.opt(key);
+                if (value instanceof JSONArray) {
+                    JSONArray array = (JSONArray) value;
+                    List<String> list = new ArrayList<>();
+                    for (int i = 0; i < array.length(); i++) {
+                        list.add(array.optString(i));
+                    }
+                    value = list;
+                }
+                else if (value instanceof JSONObject) {
+                    // Nested option maps such as uploadCompression are flat.
+                    JSONObject object = (JSONObject) value;
+                    Map<String, Object> map = new HashMap<>();
+                    Iterator<String> objectKeys = object.keys();
+                    while (objectKeys.hasNext()) {
+                        String objectKey = objectKeys.next();
+                        if (!object.isNull(objectKey)) {
+                            map.put(objectKey, object.opt(objectKey));
+                        }
+                    }
+                    value = map;
+                }
+                arguments.put(key, value);
+            }
+            return arguments;
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading cached initialize arguments: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Options Dart leaves to the native defaults arrive as null values, which the cache cannot
+    // round-trip. Callers strip them before saving or comparing arguments, so the arguments cached
+    // from the last launch equal the ones the same initialize call sends.
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> withoutNulls(Map<String, Object> arguments) {
+        Map<String, Object> stripped = new HashMap<>();
+        for (Map.Entry<String, Object> entry : arguments.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                value = withoutNulls((Map<String, Object>) value);
+            }
+            if (value != null) {
+                stripped.put(entry.getKey(), value);
+            }
+        }
+        return stripped;
+    }
+
+    public void saveArguments(Map<String, Object> arguments) {
+        preferences().edit().putString(KEY_INITIALIZE_ARGUMENTS, new JSONObject(arguments).toString()).apply();
+    }
+
+    private SharedPreferences preferences() {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private void finish(boolean success, String errorCode, String errorMessage) {
+        finished = true;
+        succeeded = success;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        List<ReadyCallback> callbacks = new ArrayList<>(waitingCallbacks);
+        waitingCallbacks.clear();
+        for (ReadyCallback callback : callbacks) {
+            callback.onReady(success, errorCode, errorMessage);
+        }
+    }
+
+    private void applyCustomization() {
+        // Configurar personalización del SDK
+        FaceTecCustomization ftCustomization = new FaceTecCustomization();
+
+        // Configurar la imagen de marca
+        ftCustomization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
+
+        // Configurar el fondo
+        ftCustomization.getOverlayCustomization().backgroundColor = android.graphics.Color.WHITE;
+
+        // Configurar mensajes personalizados para Photo ID Match
+        FaceTecCustomization.setIDScanUploadMessageOverrides(
+            "Subiendo\nDocumento\nEncriptado",
+            "Seguimos Subiendo...\nConexión Lenta",
+            "Subida Completada",
+            "Procesando Documento",
+            "Subiendo\nSelfie\nEncriptada",
+            "Seguimos Subiendo...\nConexión Lenta",
+            "Subida Completada",
+            "Procesando\nSelfie",
+            "Comparando\nDocumento con Selfie",
+            "Procesando...\nPor Favor Espere",
+            "Comparación Completada",
+            "", "", "", "", "", "", "", "", ""
+        );
+
+        // Aplicar la configuración
+        FaceTecSDK.setCustomization(ftCustomization);
+    }
+}
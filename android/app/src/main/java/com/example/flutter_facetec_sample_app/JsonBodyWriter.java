@@ -0,0 +1,116 @@
+package com.example.flutter_facetec_sample_app;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+// Streams a flat JSON object straight to an OutputStream, so multi-megabyte scan strings are
+// written without first building the whole body as a String and a byte[]. Values may be
+// Strings, Numbers or Booleans; null values are skipped.
+final class JsonBodyWriter {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_BYTES = 8192;
+
+    private JsonBodyWriter() {
+    }
+
+    // Exact UTF-8 length of the body, for fixed-length streaming.
+    static long length(Map<String, Object> body) {
+        CountingSink sink = new CountingSink();
+        try {
+            write(body, sink);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sink.count;
+    }
+
+    static void write(Map<String, Object> body, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_BYTES];
+        int[] position = {0};
+        put(out, buffer, position, '{');
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : body.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            if (!first) {
+                put(out, buffer, position, ',');
+            }
+            first = false;
+            writeString(out, buffer, position, entry.getKey());
+            put(out, buffer, position, ':');
+            if (value instanceof Number || value instanceof Boolean) {
+                writeRaw(out, buffer, position, value.toString());
+            } else {
+                writeString(out, buffer, position, value.toString());
+            }
+        }
+        put(out, buffer, position, '}');
+        out.write(buffer, 0, position[0]);
+    }
+
+    private static void writeString(OutputStream out, byte[] buffer, int[] position, String value) throws IOException {
+        put(out, buffer, position, '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                put(out, buffer, position, '\\');
+                put(out, buffer, position, c);
+            } else if (c < 0x20) {
+                put(out, buffer, position, '\\');
+                put(out, buffer, position, 'u');
+                put(out, buffer, position, '0');
+                put(out, buffer, position, '0');
+                put(out, buffer, position, HEX[c >> 4]);
+                put(out, buffer, position, HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                put(out, buffer, position, c);
+            } else if (c < 0x800) {
+                put(out, buffer, position, 0xC0 | (c >> 6));
+                put(out, buffer, position, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                put(out, buffer, position, 0xF0 | (codePoint >> 18));
+                put(out, buffer, position, 0x80 | ((codePoint >> 12) & 0x3F));
+                put(out, buffer, position, 0x80 | ((codePoint >> 6) & 0x3F));
+                put(out, buffer, position, 0x80 | (codePoint & 0x3F));
+            } else {
+                put(out, buffer, position, 0xE0 | (c >> 12));
+                put(out, buffer, position, 0x80 | ((c >> 6) & 0x3F));
+                put(out, buffer, position, 0x80 | (c & 0x3F));
+            }
+        }
+        put(out, buffer, position, '"');
+    }
+
+    private static void writeRaw(OutputStream out, byte[] buffer, int[] position, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            put(out, buffer, position, value.charAt(i));
+        }
+    }
+
+    private static void put(OutputStream out, byte[] buffer, int[] position, int b) throws IOException {
+        if (position[0] == buffer.length) {
+            out.write(buffer, 0, buffer.length);
+            position[0] = 0;
+        }
+        buffer[position[0]++] = (byte) b;
+    }
+
+    private static final class CountingSink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
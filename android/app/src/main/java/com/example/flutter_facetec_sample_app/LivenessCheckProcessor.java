@@ -1,34 +1,172 @@
 package com.example.flutter_facetec_sample_app;
 
-import android.content.Context;
+import android.app.Activity;
 import androidx.annotation.NonNull;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import com.facetec.sdk.FaceTecFaceScanProcessor;
 import com.facetec.sdk.FaceTecFaceScanResultCallback;
+import com.facetec.sdk.FaceTecSDK;
+import com.facetec.sdk.FaceTecSessionActivity;
 import com.facetec.sdk.FaceTecSessionResult;
 import com.facetec.sdk.FaceTecSessionStatus;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.util.HashMap;
 import java.util.Map;
-import io.flutter.plugin.common.MethodCall;
-import io.flutter.plugin.common.MethodChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
 
+// The processor for liveness sessions. The actual processing code lives in LivenessCheck.dart,
+// which cannot be called by the SDK directly, so this class implements the processor delegate
+// methods, processSessionWhileFaceTecSDKWaits() and onFaceTecSDKCompletelyDone(), and relays them
+// over the "com.facetec.sdk/livenesscheck" channel. With native uploads on it posts the FaceScan
+// itself. MainActivity launches sessions through it; see MainActivity.runLiveness().
 public class LivenessCheckProcessor implements FaceTecFaceScanProcessor, MethodChannel.MethodCallHandler {
     private static final String TAG = "LivenessCheckProcessor";
-    private MethodChannel processorChannel;
+    private static final long UPLOAD_DELAY_MESSAGE_MS = 6000;
+    private static final MethodChannel.Result NO_OP_RESULT = new MethodChannel.Result() {
+        @Override
+        public void success(Object result) {
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            Log.e(TAG, "processSession failed in Flutter: " + errorMessage);
+        }
+
+        @Override
+        public void notImplemented() {
+            Log.e(TAG, "processSession not implemented in Flutter");
+        }
+    };
+
+    private final MethodChannel processorChannel;
+    private final Activity activity;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Work hopping onto the main thread; a queue the JVM tests drain themselves stands in for it.
+    private Executor mainThread = mainHandler::post;
+    private EndpointGuard endpointGuard;
+    private ChannelRoundTripCounter roundTripCounter;
+    private MemoryGovernor memoryGovernor;
+    private PriorityScheduler scheduler;
+    private SessionResultCache resultCache;
+    private ScanUploader scanUploader;
+    private TelemetryJournal telemetryJournal;
+    private TelemetryUploader telemetryUploader;
+
     private FaceTecFaceScanResultCallback faceScanResultCallbackRef;
-    private Context context;
+    private int awaitScanResultCookie = 0;
+    private EndpointGuard.Call uploadCall;
+    private CancellationToken sessionCancellation;
+    // Cache key of the upload awaiting its result; null when none is outstanding.
+    private String resultKey;
+    private PriorityScheduler.LiveWindow liveWindow;
+    private long startNanos;
+    private long uploadStartNanos;
+    private long uploadBytes;
+    private long bytesSent;
+    private int scanAttempts;
+    private int sdkStatus = TelemetryJournal.NO_SDK_STATUS;
+    private String sessionId;
+    // The future of the session in progress and what it will be completed with.
+    private SessionFuture<LivenessResult> run;
+    private boolean flowInProgress = false;
+    private String scanResultBlob;
+    private short cancelReason = TelemetryJournal.CANCEL_NONE;
 
-    public LivenessCheckProcessor(MethodChannel processorChannel, Context context) {
+    public LivenessCheckProcessor(MethodChannel processorChannel, Activity activity) {
         this.processorChannel = processorChannel;
-        this.context = context.getApplicationContext();
+        this.activity = activity;
+    }
+
+    public void setEndpointGuard(EndpointGuard endpointGuard) {
+        this.endpointGuard = endpointGuard;
+    }
+
+    public void setRoundTripCounter(ChannelRoundTripCounter roundTripCounter) {
+        this.roundTripCounter = roundTripCounter;
+    }
+
+    public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    public void setResultCache(SessionResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    // With native uploads on, the /liveness-3d upload goes through scanUploader instead of
+    // LivenessCheck.dart.
+    public void setScanUploader(ScanUploader scanUploader) {
+        this.scanUploader = scanUploader;
+    }
+
+    // Either may be null, in which case the session is not recorded.
+    public void setTelemetry(TelemetryJournal telemetryJournal, TelemetryUploader telemetryUploader) {
+        this.telemetryJournal = telemetryJournal;
+        this.telemetryUploader = telemetryUploader;
+    }
+
+    // Background work on the scheduler is held back while the FaceScan upload is outstanding.
+    public void setScheduler(PriorityScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    void setMainThreadExecutor(Executor mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    // From launchSession until the SDK reports it is completely done, including the capture
+    // before processSession and the teardown after a cancel.
+    public boolean isSessionActive() {
+        return flowInProgress;
+    }
+
+    // The session's upload may still deliver a result: it has been neither cancelled nor finished.
+    private boolean isUploadLive() {
+        return sessionCancellation != null && !sessionCancellation.isCancelled();
+    }
+
+    // Aborts whatever upload is still running; the activity is going away.
+    public void shutdown() {
+        if (sessionCancellation != null) {
+            sessionCancellation.cancel();
+            sessionCancellation = null;
+        }
     }
 
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Tracing.beginSection("Liveness.onMethodCall." + call.method);
+        try {
+            result = ChannelTrafficRecorder.inbound(ChannelTrafficRecorder.CHANNEL_LIVENESS, call, result);
+            if (roundTripCounter != null) {
+                roundTripCounter.recordInbound(call.method);
+            }
+            if (MethodCallBatch.METHOD.equals(call.method)) {
+                MethodCallBatch.run(call, result, this::handleMethodCall, roundTripCounter);
+            } else {
+                handleMethodCall(call, result);
+            }
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void handleMethodCall(MethodCall call, MethodChannel.Result result) {
+        // Used to handle calls received over "com.facetec.sdk/livenesscheck".
+        // Your processor code may require more communication between dart and native code. If so,
+        // you may want to receive the results and handle updating logic or run code on completion here.
+        Log.d(TAG, "call.method is " + call.method);
         switch (call.method) {
             case "cancelFaceScan":
-                cancelFaceScan();
+                cancelFaceScan(EndpointGuard.dartCancelReason(call.argument("reason")));
                 result.success(null);
                 break;
             case "onScanResultBlobReceived":
@@ -36,8 +174,9 @@ public class LivenessCheckProcessor implements FaceTecFaceScanProcessor, MethodC
                     String scanResultBlob = call.argument("scanResultBlob");
                     onScanResultBlobReceived(scanResultBlob);
                     result.success(null);
-                } else {
-                    result.error("InvalidArguments", "Missing scanResultBlob", null);
+                }
+                else {
+                    result.error("InvalidArguments", "Missing arguments for onScanResultBlobReceived", null);
                 }
                 break;
             case "onScanResultUploadDelay":
@@ -45,7 +184,8 @@ public class LivenessCheckProcessor implements FaceTecFaceScanProcessor, MethodC
                     String uploadMessage = call.argument("uploadMessage");
                     onScanResultUploadDelay(uploadMessage);
                     result.success(null);
-                } else {
+                }
+                else {
                     result.error("InvalidArguments", "Missing uploadMessage", null);
                 }
                 break;
@@ -55,34 +195,254 @@ public class LivenessCheckProcessor implements FaceTecFaceScanProcessor, MethodC
         }
     }
 
-    @Override
+    // Opens the FaceTec interface for a session whose outcome completes future; see
+    // MainActivity.runLiveness(). Returns false, with future failed, if it could not launch.
+    // processSessionWhileFaceTecSDKWaits() and onFaceTecSDKCompletelyDone() are then called by the
+    // FaceTec controller.
+    public boolean launchSession(String sessionToken, SessionFuture<LivenessResult> future) {
+        startNanos = System.nanoTime();
+        bytesSent = 0;
+        scanAttempts = 0;
+        sdkStatus = TelemetryJournal.NO_SDK_STATUS;
+        sessionId = null;
+        scanResultBlob = null;
+        cancelReason = TelemetryJournal.CANCEL_NONE;
+        if (run != null) {
+            run.completeExceptionally(new CancellationException("Superseded by a new liveness session"));
+        }
+        run = future;
+        future.setOnCancel(() -> mainThread.execute(() -> {
+            if (run == future) {
+                run = null;
+                cancelFaceScan(TelemetryJournal.CANCEL_REQUESTED_BY_HOST);
+            }
+        }));
+        flowInProgress = true;
+        Tracing.beginSection("Liveness.launchSession");
+        try {
+            FaceTecSessionActivity.createAndLaunchSession(activity, this, sessionToken);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting liveness check: " + e.getMessage());
+            flowInProgress = false;
+            if (run == future) {
+                run = null;
+            }
+            future.completeExceptionally(new SessionStartException("START_ERROR", e.getMessage()));
+            return false;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    // FaceTecFaceScanProcessor interface methods
+    // These methods are required by the FaceTec SDK 9.7.69
+    // Note: @Override annotations removed due to interface compatibility issues
     public void processSessionWhileFaceTecSDKWaits(FaceTecSessionResult faceTecSessionResult, FaceTecFaceScanResultCallback faceTecFaceScanResultCallback) {
+        Tracing.beginSection("Liveness.processSessionWhileFaceTecSDKWaits");
+        try {
+            ChannelTrafficRecorder.sdkCallback(ChannelTrafficRecorder.CHANNEL_LIVENESS, "processSessionWhileFaceTecSDKWaits", faceTecSessionResult);
+            processSession(faceTecSessionResult, faceTecFaceScanResultCallback);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void processSession(FaceTecSessionResult faceTecSessionResult, FaceTecFaceScanResultCallback faceTecFaceScanResultCallback) {
         faceScanResultCallbackRef = faceTecFaceScanResultCallback;
+        final CancellationToken cancellation = beginSessionCancellation();
+        scanAttempts++;
+        sdkStatus = faceTecSessionResult.getStatus().ordinal();
+        sessionId = faceTecSessionResult.getSessionId();
 
         if (faceTecSessionResult.getStatus() != FaceTecSessionStatus.SESSION_COMPLETED_SUCCESSFULLY) {
             Log.d(TAG, "Status was not successful, canceling...");
-            cancelFaceScan();
+            cancelFaceScan(TelemetryJournal.CANCEL_SDK_STATUS);
             return;
         }
 
         Map<String, Object> args = new HashMap<>();
         args.put("status", "sessionCompletedSuccessfully");
-        args.put("lowQualityAuditTrailCompressedBase64",
-                faceTecSessionResult.getLowQualityAuditTrailCompressedBase64()[0]);
-        args.put("auditTrailCompressedBase64",
-                faceTecSessionResult.getAuditTrailCompressedBase64()[0]);
+        MemoryGovernor.putAuditTrails(memoryGovernor, args, "auditTrailCompressedBase64", "lowQualityAuditTrailCompressedBase64",
+                faceTecSessionResult.getAuditTrailCompressedBase64(),
+                faceTecSessionResult.getLowQualityAuditTrailCompressedBase64());
         args.put("faceScanBase64", faceTecSessionResult.getFaceScanBase64());
         args.put("sessionId", faceTecSessionResult.getSessionId());
+        args.put("ftUserAgentString", FaceTecSDK.createFaceTecAPIUserAgentString(faceTecSessionResult.getSessionId()));
+        String baseURL = endpointGuard != null ? endpointGuard.routeForSession(faceTecSessionResult.getSessionId()) : null;
+        if (baseURL != null) {
+            args.put("baseURL", baseURL);
+        }
+
+        resultKey = SessionResultCache.key(faceTecSessionResult.getSessionId(), SessionResultCache.Step.FACE,
+                faceTecSessionResult.getFaceScanBase64());
+        String cachedResult = resultCache != null ? resultCache.lookup(resultKey) : null;
+        if (cachedResult != null) {
+            Log.d(TAG, "Answering repeated FaceScan from the result cache");
+            onScanResultBlobReceived(cachedResult);
+            return;
+        }
+
+        uploadStartNanos = System.nanoTime();
+        uploadBytes = MainActivity.payloadChars(args);
+        // The span covers the upload until the scan result blob or a cancel comes back.
+        awaitScanResultCookie = Tracing.beginAsyncSection("Liveness.awaitScanResult");
+        // Prefetch, probes and telemetry hold off until the result blob or a cancel arrives.
+        if (liveWindow != null) {
+            liveWindow.close();
+        }
+        liveWindow = scheduler != null ? scheduler.openLiveWindow() : null;
+        uploadCall = endpointGuard != null ? endpointGuard.beginCall(EndpointGuard.LIVENESS_ENDPOINT, baseURL) : null;
+        if (scanUploader != null && baseURL != null) {
+            uploadSessionNatively(baseURL, args, cancellation);
+            return;
+        }
+        // The Dart upload cannot be aborted from here directly, so cancelling while it is still
+        // in flight asks LivenessCheck.dart to close its request.
+        cancellation.onCancel(() -> {
+            if (uploadCall != null) {
+                mainThread.execute(() -> processorChannel.invokeMethod("cancelUpload", null,
+                        Tracing.tracedResult("Liveness.invoke.cancelUpload", null)));
+            }
+        });
+        if (roundTripCounter != null) {
+            roundTripCounter.recordOutbound();
+        }
+        processorChannel.invokeMethod("processSession", args, ChannelTrafficRecorder.outbound(ChannelTrafficRecorder.CHANNEL_LIVENESS, "processSession", args,
+                Tracing.tracedResult("Liveness.invoke.processSession", NO_OP_RESULT)));
+    }
 
-        processorChannel.invokeMethod("processSession", args);
+    private CancellationToken beginSessionCancellation() {
+        if (sessionCancellation != null) {
+            sessionCancellation.cancel();
+        }
+        sessionCancellation = new CancellationToken("Liveness session");
+        return sessionCancellation;
+    }
+
+    private void uploadSessionNatively(String baseURL, Map<String, Object> args, CancellationToken cancellation) {
+        // Same request and response handling as LivenessCheck.dart, without the channel hops.
+        Map<String, Object> body = new HashMap<>();
+        body.put("faceScan", args.get("faceScanBase64"));
+        body.put("auditTrailImage", args.get("auditTrailCompressedBase64"));
+        Object lowQualityAuditTrail = args.get("lowQualityAuditTrailCompressedBase64");
+        body.put("lowQualityAuditTrailImage",
+                lowQualityAuditTrail != null ? lowQualityAuditTrail : args.get("auditTrailCompressedBase64"));
+
+        final Runnable uploadDelay = () -> onScanResultUploadDelay("Still Uploading...");
+        mainHandler.postDelayed(uploadDelay, UPLOAD_DELAY_MESSAGE_MS);
+        cancellation.onCancel(() -> mainHandler.removeCallbacks(uploadDelay));
+        scanUploader.upload(baseURL, EndpointGuard.LIVENESS_ENDPOINT, body, (String) args.get("ftUserAgentString"), cancellation, new ScanUploader.Callback() {
+            @Override
+            public void onResponse(int statusCode, String responseBody, long wireBytes) {
+                if (cancellation.isCancelled()) {
+                    return;
+                }
+                String scanResultBlob = null;
+                try {
+                    JSONObject responseJSON = new JSONObject(responseBody);
+                    if (responseJSON.optBoolean("error", false)) {
+                        Log.e(TAG, "Error while processing FaceScan: " + responseJSON.optString("errorMessage"));
+                    }
+                    else if (responseJSON.optBoolean("wasProcessed", false) && responseJSON.has("scanResultBlob")) {
+                        scanResultBlob = responseJSON.getString("scanResultBlob");
+                    }
+                } catch (JSONException e) {
+                    Log.e(TAG, "Invalid /liveness-3d response (HTTP " + statusCode + "): " + e.getMessage());
+                }
+                final String blob = scanResultBlob;
+                mainThread.execute(() -> {
+                    mainHandler.removeCallbacks(uploadDelay);
+                    if (cancellation != sessionCancellation || cancellation.isCancelled()) {
+                        return;
+                    }
+                    uploadBytes = wireBytes;
+                    if (blob != null) {
+                        onScanResultBlobReceived(blob);
+                    } else {
+                        // The rejected body still went out.
+                        bytesSent += wireBytes;
+                        cancelFaceScan(TelemetryJournal.CANCEL_SERVER_REJECTED);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Exception e, long wireBytes) {
+                mainThread.execute(() -> {
+                    mainHandler.removeCallbacks(uploadDelay);
+                    if (cancellation == sessionCancellation && !cancellation.isCancelled()) {
+                        bytesSent += wireBytes;
+                        cancelFaceScan(TelemetryJournal.CANCEL_UPLOAD_ERROR);
+                    }
+                });
+            }
+        });
     }
 
     public void onFaceTecSDKCompletelyDone() {
         Log.d(TAG, "onFaceTecSDKCompletelyDone");
+        flowInProgress = false;
+        if (sessionCancellation != null) {
+            sessionCancellation.cancel();
+            sessionCancellation = null;
+        }
+        if (liveWindow != null) {
+            liveWindow.close();
+            liveWindow = null;
+        }
+        resultKey = null;
+        if (telemetryJournal != null) {
+            telemetryJournal.recordSession(TelemetryJournal.FLOW_LIVENESS, sessionId, sdkStatus,
+                    (System.nanoTime() - startNanos) / 1000000L, bytesSent, Math.max(0, scanAttempts - 1));
+        }
+        if (telemetryUploader != null) {
+            telemetryUploader.flush(false);
+        }
+        if (run != null) {
+            SessionFuture<LivenessResult> future = run;
+            run = null;
+            future.complete(new LivenessResult(sessionId, scanResultBlob, sdkStatus, cancelReason,
+                    (System.nanoTime() - startNanos) / 1000000L, bytesSent, scanAttempts));
+        }
+        ChannelTrafficRecorder.sdkCallback(ChannelTrafficRecorder.CHANNEL_LIVENESS, "onFaceTecSDKCompletelyDone");
+        if (roundTripCounter != null) {
+            roundTripCounter.logSession("Liveness");
+        }
     }
 
-    private void cancelFaceScan() {
+    private void endAwaitScanResultSection() {
+        if (awaitScanResultCookie != 0) {
+            Tracing.endAsyncSection("Liveness.awaitScanResult", awaitScanResultCookie);
+            awaitScanResultCookie = 0;
+        }
+        if (liveWindow != null) {
+            liveWindow.close();
+            liveWindow = null;
+        }
+    }
+
+    private void cancelFaceScan(short reason) {
         Log.e(TAG, "Face Scan result cancelled");
+        if (telemetryJournal != null && isUploadLive()) {
+            telemetryJournal.recordCancel(TelemetryJournal.FLOW_LIVENESS, reason, sessionId, sdkStatus);
+        }
+        if (cancelReason == TelemetryJournal.CANCEL_NONE) {
+            cancelReason = reason;
+        }
+        endAwaitScanResultSection();
+        resultKey = null;
+        if (sessionCancellation != null) {
+            sessionCancellation.cancel();
+        }
+        if (uploadCall != null) {
+            if (EndpointGuard.isUploadFailure(reason)) {
+                uploadCall.failed();
+            } else {
+                uploadCall.cancelled();
+            }
+            uploadCall = null;
+        }
         if (faceScanResultCallbackRef != null) {
             faceScanResultCallbackRef.cancel();
         }
@@ -90,6 +450,33 @@ public class LivenessCheckProcessor implements FaceTecFaceScanProcessor, MethodC
     }
 
     private void onScanResultBlobReceived(String scanResultBlob) {
+        // Handle a successfully received scanResultBlob from the FaceTec API
+        if (resultKey == null) {
+            if (resultCache != null) {
+                resultCache.recordUnexpected(scanResultBlob);
+            }
+            return;
+        }
+        if (!isUploadLive()) {
+            Log.d(TAG, "Ignoring scanResultBlob for a cancelled session");
+            return;
+        }
+        if (resultCache != null) {
+            resultCache.put(resultKey, scanResultBlob);
+        }
+        resultKey = null;
+        if (telemetryJournal != null && uploadStartNanos != 0) {
+            telemetryJournal.recordPhase(TelemetryJournal.FLOW_LIVENESS, TelemetryJournal.PHASE_FACE_UPLOAD, sessionId,
+                    (System.nanoTime() - uploadStartNanos) / 1000000L, uploadBytes, TelemetryJournal.HTTP_STATUS_UNKNOWN);
+        }
+        bytesSent += uploadBytes;
+        uploadStartNanos = 0;
+        endAwaitScanResultSection();
+        if (uploadCall != null) {
+            uploadCall.succeeded();
+            uploadCall = null;
+        }
+        this.scanResultBlob = scanResultBlob;
         if (faceScanResultCallbackRef != null) {
             faceScanResultCallbackRef.proceedToNextStep(scanResultBlob);
         }
@@ -97,9 +484,13 @@ public class LivenessCheckProcessor implements FaceTecFaceScanProcessor, MethodC
     }
 
     private void onScanResultUploadDelay(String uploadMessage) {
+        // Handle if there is a long delay in uploading the face scan to the server
         Log.d(TAG, "Face Scan taking longer than usual, adding upload delay message.");
+        if (!isUploadLive()) {
+            return;
+        }
         if (faceScanResultCallbackRef != null) {
             faceScanResultCallbackRef.uploadMessageOverride(uploadMessage);
         }
     }
-} 
\ No newline at end of file
+}
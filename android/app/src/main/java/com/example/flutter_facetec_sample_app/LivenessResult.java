@@ -0,0 +1,36 @@
+package com.example.flutter_facetec_sample_app;
+
+// How a liveness session run through MainActivity.runLiveness() ended. Cancelled and rejected
+// sessions are results too, with succeeded false and the TelemetryJournal CANCEL_* reason; the
+// future only fails when the session could not be launched.
+public final class LivenessResult {
+    public final boolean succeeded;
+    public final String sessionId;
+    // The last result the server returned and the SDK was given; null if no upload succeeded.
+    public final String scanResultBlob;
+    // FaceTecSessionStatus ordinal of the last attempt, or TelemetryJournal.NO_SDK_STATUS.
+    public final int sdkStatus;
+    public final short cancelReason;
+    public final long durationMs;
+    public final long bytesSent;
+    public final int scanAttempts;
+
+    LivenessResult(String sessionId, String scanResultBlob, int sdkStatus, short cancelReason,
+                   long durationMs, long bytesSent, int scanAttempts) {
+        this.succeeded = scanResultBlob != null && cancelReason == TelemetryJournal.CANCEL_NONE;
+        this.sessionId = sessionId;
+        this.scanResultBlob = scanResultBlob;
+        this.sdkStatus = sdkStatus;
+        this.cancelReason = cancelReason;
+        this.durationMs = durationMs;
+        this.bytesSent = bytesSent;
+        this.scanAttempts = scanAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "LivenessResult{succeeded=" + succeeded + ", sessionId=" + sessionId + ", sdkStatus=" + sdkStatus
+                + ", cancelReason=" + cancelReason + ", durationMs=" + durationMs + ", bytesSent=" + bytesSent
+                + ", scanAttempts=" + scanAttempts + "}";
+    }
+}
@@ -1,91 +1,227 @@
 package com.example.flutter_facetec_sample_app;
 
-import android.content.Context;
 import androidx.annotation.NonNull;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
-import com.facetec.sdk.FaceTecCustomization;
-import com.facetec.sdk.FaceTecFaceScanProcessor;
-import com.facetec.sdk.FaceTecFaceScanResultCallback;
 import com.facetec.sdk.FaceTecSDK;
-import com.facetec.sdk.FaceTecSDKStatus;
-import com.facetec.sdk.FaceTecSessionActivity;
-import com.facetec.sdk.FaceTecSessionResult;
-import com.facetec.sdk.FaceTecSessionStatus;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import io.flutter.embedding.android.FlutterActivity;
 import io.flutter.embedding.engine.FlutterEngine;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 
-public class MainActivity extends FlutterActivity implements FaceTecFaceScanProcessor {
-    // MainActivity acts as a makeshift processor for the FaceTec session, since the actual
-    // processing code in Dart cannot directly be called. It implements the required methods of a
-    // processor delegate, processSessionWhileFaceTecSDKWaits() and onFaceTecSDKCompletelyDone().
+public class MainActivity extends FlutterActivity {
+    // MainActivity wires the FaceTec SDK to Flutter: it initializes the SDK, owns the components
+    // shared by both flows and launches sessions through LivenessCheckProcessor and
+    // PhotoIDMatchProcessor, which relay the processor callbacks to the Dart processors.
     private static final String CHANNEL = "com.facetec.sdk";
     private static final String PROCESSOR_CHANNEL = "com.facetec.sdk/livenesscheck";
     private static final String PROCESSOR_CHANNEL_PHOTO_ID_MATCH = "com.facetec.sdk/photo_id_match";
 
+    private MethodChannel sdkChannel;
     private MethodChannel processorChannel;
     private MethodChannel photoIDMatchChannel;
-    private FaceTecFaceScanResultCallback faceScanResultCallbackRef;
+    private final EndpointGuard endpointGuard = new EndpointGuard();
+    private FaceTecSDKInitializer sdkInitializer;
+    private final ChannelRoundTripCounter channelRoundTripCounter = new ChannelRoundTripCounter();
+    private Map<String, Object> appliedInitializeArguments;
+    private LivenessCheckProcessor livenessCheckProcessor;
     private PhotoIDMatchProcessor photoIDMatchProcessor;
-    
+    // Both belong to the active tenant; see TenantRegistry.
+    private SessionTokenPool sessionTokenPool;
+    private ScanUploader scanUploader;
+    private TenantRegistry tenantRegistry;
+    private final MemoryGovernor memoryGovernor = new MemoryGovernor();
+    // Shared by uploads, token prefetch and endpoint probes so background work yields to sessions.
+    // Sized from the device profile, so it is created once the profile is known.
+    private PriorityScheduler scheduler;
+    private DeviceProfile deviceProfile;
+    private final SessionResultCache resultCache = new SessionResultCache();
+    // Null when the journal file could not be opened; telemetry is then skipped.
+    private TelemetryJournal telemetryJournal;
+    private TelemetryUploader telemetryUploader;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
 
     @Override
     public void configureFlutterEngine(@NonNull FlutterEngine flutterEngine) {
+        Tracing.beginSection("MainActivity.configureFlutterEngine");
+        try {
+            setUpChannels(flutterEngine);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void setUpChannels(@NonNull FlutterEngine flutterEngine) {
         super.configureFlutterEngine(flutterEngine);
 
         // configureFlutterEngine() creates processor channels for commmunicating with main.dart and LivenessCheckProcessor.dart.
         // Other processors you may create will be instantiated through another method channel.
-        MethodChannel SDKChannel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), CHANNEL);
+        sdkChannel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), CHANNEL);
         processorChannel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), PROCESSOR_CHANNEL);
         photoIDMatchChannel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), PROCESSOR_CHANNEL_PHOTO_ID_MATCH);
 
-        SDKChannel.setMethodCallHandler(this::receivedFaceTecSDKMethodCall);
-        processorChannel.setMethodCallHandler(this::receivedLivenessCheckProcessorCall);
-        
+        sdkChannel.setMethodCallHandler(this::receivedFaceTecSDKMethodCall);
+
+        // The profile has to be settled before anything sized from it exists. A deviceClass
+        // override from a later initialize call changes everything but the worker count, which
+        // follows it from the next launch.
+        sdkInitializer = new FaceTecSDKInitializer(this);
+        tenantRegistry = new TenantRegistry(this);
+        Map<String, Object> cachedArguments = sdkInitializer.loadCachedArguments();
+        deviceProfile = DeviceProfile.load(this, cachedArguments != null ? (String) cachedArguments.get("deviceClass") : null);
+        scheduler = new PriorityScheduler(deviceProfile.schedulerWorkers);
+        openTelemetryJournal();
+        applyDeviceProfile();
+        if (!deviceProfile.isBenchmarked()) {
+            scheduler.trySubmit(PriorityScheduler.Priority.TELEMETRY, () -> DeviceProfile.runBenchmark(this));
+        }
+
+        livenessCheckProcessor = new LivenessCheckProcessor(processorChannel, this);
+        livenessCheckProcessor.setEndpointGuard(endpointGuard);
+        livenessCheckProcessor.setRoundTripCounter(channelRoundTripCounter);
+        livenessCheckProcessor.setMemoryGovernor(memoryGovernor);
+        livenessCheckProcessor.setScheduler(scheduler);
+        livenessCheckProcessor.setResultCache(resultCache);
+        livenessCheckProcessor.setTelemetry(telemetryJournal, telemetryUploader);
+        processorChannel.setMethodCallHandler(livenessCheckProcessor);
+
         // Initialize PhotoIDMatchProcessor with the correct constructor
         photoIDMatchProcessor = new PhotoIDMatchProcessor(photoIDMatchChannel, this);
+        photoIDMatchProcessor.setEndpointGuard(endpointGuard);
+        photoIDMatchProcessor.setRoundTripCounter(channelRoundTripCounter);
+        photoIDMatchProcessor.setMemoryGovernor(memoryGovernor);
+        photoIDMatchProcessor.setScheduler(scheduler);
+        photoIDMatchProcessor.setResultCache(resultCache);
+        photoIDMatchProcessor.setTelemetry(telemetryJournal, telemetryUploader);
+        photoIDMatchProcessor.setTenantRegistry(tenantRegistry);
         photoIDMatchChannel.setMethodCallHandler(photoIDMatchProcessor);
+
+        memoryGovernor.addListener(this::onMemoryModeChanged);
+        registerComponentCallbacks(memoryGovernor);
+
+        startBackgroundInitialization(cachedArguments);
+    }
+
+    @Override
+    protected void onDestroy() {
+        Tracing.beginSection("MainActivity.onDestroy");
+        try {
+            unregisterComponentCallbacks(memoryGovernor);
+            livenessCheckProcessor.shutdown();
+            // Releases every tenant's uploader, token pool and router, active or not.
+            tenantRegistry.shutdown();
+            scanUploader = null;
+            livenessCheckProcessor.setScanUploader(null);
+            photoIDMatchProcessor.setScanUploader(null);
+            sessionTokenPool = null;
+            endpointGuard.setRouter(null);
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+            if (telemetryJournal != null) {
+                try {
+                    telemetryJournal.close();
+                } catch (IOException e) {
+                    Log.e("MainActivity", "Error closing telemetry journal: " + e.getMessage());
+                }
+            }
+            super.onDestroy();
+        } finally {
+            Tracing.endSection();
+        }
     }
 
     private void receivedFaceTecSDKMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Tracing.beginSection("MainActivity.onMethodCall." + call.method);
+        try {
+            result = ChannelTrafficRecorder.inbound(ChannelTrafficRecorder.CHANNEL_SDK, call, result);
+            // A session's channel traffic is counted from its start call onwards.
+            if (call.method.equals("startLivenessCheck") || call.method.equals("startPhotoIDMatch")) {
+                channelRoundTripCounter.reset();
+                memoryGovernor.maybeRelax();
+            }
+            channelRoundTripCounter.recordInbound(call.method);
+            handleFaceTecSDKMethodCall(call, result);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void handleFaceTecSDKMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
         // Used to handle calls received over the "com.facetec.sdk" channel.
         // Currently two methods are implemented: initialize and startLivenessCheck.
+        // startLivenessCheck and startPhotoIDMatch accept an optional sessionToken; when it is
+        // omitted a token is drawn from the SessionTokenPool configured by initialize.
         // When you make a call in main.dart or another file linked to the "com.facetec.sdk"
         // method channel, it will be received here and you will need to add logic for handling
         // that request.
         switch (call.method) {
             case "initialize":
                 if (call.hasArgument("deviceKeyIdentifier") && call.hasArgument("publicFaceScanEncryptionKey")) {
-                    String deviceKeyIdentifier = call.argument("deviceKeyIdentifier");
-                    String faceScanEncryptionKey = call.argument("publicFaceScanEncryptionKey");
-                    initialize(deviceKeyIdentifier, faceScanEncryptionKey, result);
+                    Map<String, Object> arguments = FaceTecSDKInitializer.withoutNulls(call.arguments());
+                    initialize(arguments, result);
                 }
                 else {
                     result.error("InvalidArguments", "Missing deviceKeyIdentifier or publicFaceScanEncryptionKey", null);
                 }
                 break;
             case "startLivenessCheck":
-                if (call.hasArgument("sessionToken")) {
-                    String sessionToken = call.argument("sessionToken");
-                    startLivenessCheck(sessionToken, result);
-                }
-                else {
-                    result.error("InvalidArguments", "Missing sessionToken", null);
-                }
+                // Dart is answered once the session is launched; the outcome reaches it through
+                // the processor channel as before.
+                runLiveness(call.argument("sessionToken"), () -> result.success(true))
+                        .whenComplete((livenessResult, error) -> SessionStartException.reply(error, result));
                 break;
             case "startPhotoIDMatch":
-                if (call.hasArgument("sessionToken")) {
-                    String sessionToken = call.argument("sessionToken");
-                    photoIDMatchProcessor.startPhotoIDMatchCheck(sessionToken, result);
+                runPhotoIDMatch(call.argument("sessionToken"), () -> result.success(true))
+                        .whenComplete((photoIDMatchResult, error) -> SessionStartException.reply(error, result));
+                break;
+            case "getMemoryMode":
+                result.success(memoryGovernor.metrics());
+                break;
+            case "getSchedulerMetrics":
+                result.success(scheduler.metrics());
+                break;
+            case "getEndpointMetrics":
+                result.success(endpointGuard.getRouter() != null ? endpointGuard.getRouter().metrics() : null);
+                break;
+            case "getDeviceProfile":
+                result.success(deviceProfile.metrics());
+                break;
+            case "getResultCacheMetrics":
+                result.success(resultCache.metrics());
+                break;
+            case "registerTenant":
+                if (call.hasArgument("tenantId") && call.hasArgument("deviceKeyIdentifier")
+                        && call.hasArgument("publicFaceScanEncryptionKey")) {
+                    Map<String, Object> arguments = FaceTecSDKInitializer.withoutNulls(call.arguments());
+                    registerTenant((String) arguments.remove("tenantId"), arguments, result);
                 }
                 else {
-                    result.error("InvalidArguments", "Missing sessionToken", null);
+                    result.error("InvalidArguments", "Missing tenantId, deviceKeyIdentifier or publicFaceScanEncryptionKey", null);
                 }
                 break;
+            case "switchTenant":
+                switchTenant(call.argument("tenantId"), result);
+                break;
+            case "getTenantMetrics":
+                result.success(tenantRegistry.metrics());
+                break;
+            case "startChannelTrafficRecording":
+                startChannelTrafficRecording(!Boolean.FALSE.equals(call.argument("redactPayloads")), result);
+                break;
+            case "stopChannelTrafficRecording":
+                result.success(ChannelTrafficRecorder.stop());
+                break;
             case "createAPIUserAgentString":
                 String data = FaceTecSDK.createFaceTecAPIUserAgentString("");
                 result.success(data);
@@ -96,140 +232,385 @@ public class MainActivity extends FlutterActivity implements FaceTecFaceScanProc
         }
     }
 
-    private void receivedLivenessCheckProcessorCall(MethodCall call, MethodChannel.Result result) {
-        // Used to handle calls received over "com.facetec.sdk/livenesscheck".
-        // Currently there is only one method needed, but your processor code may require
-        // more communication between dart and native code. If so, you may want to implement
-        // any processor code and then receive the results and handle updating logic or run code on completion here.
-        Log.d("MainActivity", "call.method is " + call.method);
-        switch (call.method) {
-            case "cancelFaceScan":
-                cancelFaceScan();
-                break;
-            case "onScanResultBlobReceived":
-                if (call.hasArgument("scanResultBlob")) {
-                    String scanResultBlob = call.argument("scanResultBlob");
-                    onScanResultBlobReceived(scanResultBlob);
-                }
-                else {
-                    result.error("InvalidArguments", "Missing arguments for onScanResultBlobReceived", null);
-                }
-                break;
-            case "onScanResultUploadDelay":
-                if (call.hasArgument("uploadMessage")) {
-                    String uploadMessage = call.argument("uploadMessage");
-                    onScanResultUploadDelay(uploadMessage);
-                }
-                break;
-            default:
-                result.notImplemented();
-                break;
+    private void initialize(Map<String, Object> arguments, MethodChannel.Result result) {
+        if (replacesActiveTenantMidSession(TenantRegistry.DEFAULT_TENANT, arguments)) {
+            result.error("SESSION_IN_PROGRESS", "Changed initialize arguments can only be applied between sessions", null);
+            return;
+        }
+        applyInitializeArguments(arguments);
+        sdkInitializer.saveArguments(arguments);
+        sdkInitializer.whenReady((success, errorCode, errorMessage) -> {
+            if (success) {
+                result.success(true);
+            }
+            else {
+                result.error(errorCode, errorMessage, null);
+            }
+        });
+    }
+
+    private void startBackgroundInitialization(Map<String, Object> cachedArguments) {
+        // Initialize with the arguments cached from the previous launch while Flutter is still
+        // starting up; the initialize call from Dart then only waits on the shared result.
+        if (cachedArguments == null) {
+            return;
+        }
+        final long engineStart = System.nanoTime();
+        mainHandler.post(() -> {
+            if (sdkInitializer.hasStarted()) {
+                return;
+            }
+            Log.d("MainActivity", "Starting background SDK initialization from cached config");
+            applyInitializeArguments(cachedArguments);
+            sdkInitializer.whenReady((success, errorCode, errorMessage) ->
+                    sdkInitializer.recordPhase("engineStartToReady", engineStart));
+        });
+    }
+
+    private void applyInitializeArguments(Map<String, Object> arguments) {
+        if (!arguments.equals(appliedInitializeArguments)) {
+            appliedInitializeArguments = new HashMap<>(arguments);
+            DeviceProfile overridden = deviceProfile.withOverride((String) arguments.get("deviceClass"));
+            if (overridden != deviceProfile) {
+                deviceProfile = overridden;
+                applyDeviceProfile();
+            }
+            photoIDMatchProcessor.setOptimisticFaceUpload(Boolean.TRUE.equals(arguments.get("optimisticPhotoIDMatch")));
+            if (telemetryUploader != null) {
+                telemetryUploader.setCollectorURL((String) arguments.get("telemetryCollectorURL"));
+            }
+            // Changed arguments release the default tenant's pool, router and uploader.
+            tenantRegistry.register(TenantRegistry.DEFAULT_TENANT, arguments);
+        }
+        // A repeated initialize keeps the tenant Dart switched to; the default tenant is activated
+        // on the first one, or again when it was active and has just been replaced.
+        TenantRegistry.Tenant active = tenantRegistry.getActive();
+        if (active == null || active.id.equals(TenantRegistry.DEFAULT_TENANT)) {
+            activateTenant(tenantRegistry.get(TenantRegistry.DEFAULT_TENANT));
+        }
+    }
+
+    private void registerTenant(String tenantId, Map<String, Object> arguments, MethodChannel.Result result) {
+        if (replacesActiveTenantMidSession(tenantId, arguments)) {
+            result.error("SESSION_IN_PROGRESS", "The active tenant can only be re-registered between sessions", null);
+            return;
         }
+        TenantRegistry.Tenant active = tenantRegistry.getActive();
+        TenantRegistry.Tenant tenant = tenantRegistry.register(tenantId, arguments);
+        if (active != null && active.id.equals(tenantId) && tenant != active) {
+            // The active tenant was replaced; its old components are already shut down.
+            activateTenant(tenant);
+        }
+        result.success(null);
+    }
+
+    // Replacing a tenant shuts its components down, which must not happen to the ones a running
+    // session is using.
+    private boolean replacesActiveTenantMidSession(String tenantId, Map<String, Object> arguments) {
+        TenantRegistry.Tenant active = tenantRegistry.getActive();
+        return active != null && active.id.equals(tenantId)
+                && !tenantRegistry.isRegisteredWith(tenantId, arguments) && isSessionInProgress();
+    }
+
+    private boolean isSessionInProgress() {
+        return livenessCheckProcessor.isSessionActive() || photoIDMatchProcessor.isSessionActive();
     }
 
-    private void initialize(String deviceKeyIdentifier, String publicFaceScanEncryptionKey, MethodChannel.Result result) {
-        final Context context = this;
-
-        // Configurar personalización del SDK
-        FaceTecCustomization ftCustomization = new FaceTecCustomization();
-        
-        // Configurar la imagen de marca
-        ftCustomization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
-        
-        // Configurar el fondo
-        ftCustomization.getOverlayCustomization().backgroundColor = android.graphics.Color.WHITE;
-        
-        // Configurar mensajes personalizados para Photo ID Match
-        FaceTecCustomization.setIDScanUploadMessageOverrides(
-            "Subiendo\nDocumento\nEncriptado",
-            "Seguimos Subiendo...\nConexión Lenta",
-            "Subida Completada",
-            "Procesando Documento",
-            "Subiendo\nSelfie\nEncriptada",
-            "Seguimos Subiendo...\nConexión Lenta",
-            "Subida Completada",
-            "Procesando\nSelfie",
-            "Comparando\nDocumento con Selfie",
-            "Procesando...\nPor Favor Espere",
-            "Comparación Completada",
-            "", "", "", "", "", "", "", "", ""
-        );
-        
-        // Aplicar la configuración
-        FaceTecSDK.setCustomization(ftCustomization);
-
-        // Inicializar el SDK
-        FaceTecSDK.initializeInDevelopmentMode(context, deviceKeyIdentifier, publicFaceScanEncryptionKey, success -> {
+    private void switchTenant(String tenantId, MethodChannel.Result result) {
+        TenantRegistry.Tenant tenant = tenantId != null ? tenantRegistry.get(tenantId) : null;
+        if (tenant == null) {
+            result.error("UNKNOWN_TENANT", "No tenant registered as " + tenantId, null);
+            return;
+        }
+        if (isSessionInProgress()) {
+            result.error("SESSION_IN_PROGRESS", "Tenants can only be switched between sessions", null);
+            return;
+        }
+        activateTenant(tenant);
+        sdkInitializer.whenReady((success, errorCode, errorMessage) -> {
             if (success) {
-                result.success(true);
+                result.success(tenantRegistry.metrics());
             }
             else {
-                FaceTecSDKStatus status = FaceTecSDK.getStatus(context);
-                result.error(status.name(), status.toString(), null);
+                result.error(errorCode, errorMessage, null);
+            }
+        });
+    }
+
+    // Swaps the tenant's components in and initializes the SDK when its key set is not the current
+    // one. Components are built on the tenant's first activation only, so switching back and forth
+    // between tenants that share a key set is a handful of reference assignments.
+    private void activateTenant(TenantRegistry.Tenant tenant) {
+        final long startNanos = System.nanoTime();
+        boolean rebuilt = false;
+        if (!tenant.hasComponents()) {
+            tenant.setComponents(
+                    buildSessionTokenPool(tenant.arguments, tenant.deviceKeyIdentifier),
+                    buildEndpointRouter(tenant.arguments),
+                    buildScanUploader(tenant.arguments, tenant.deviceKeyIdentifier));
+            rebuilt = true;
+        }
+        TenantRegistry.Tenant previous = tenantRegistry.activate(tenant);
+        if (previous != null && previous != tenant) {
+            previous.setBackgroundWorkSuspended(true);
+        }
+        sessionTokenPool = tenant.getSessionTokenPool();
+        scanUploader = tenant.getScanUploader();
+        livenessCheckProcessor.setScanUploader(scanUploader);
+        photoIDMatchProcessor.setScanUploader(scanUploader);
+        endpointGuard.setRouter(tenant.getRouter());
+        // New components start prefetching once the SDK is ready, below; resumed ones right away.
+        if (!rebuilt || memoryGovernor.isCritical()) {
+            tenant.setBackgroundWorkSuspended(memoryGovernor.isCritical());
+        }
+        boolean started = sdkInitializer.initialize(tenant.deviceKeyIdentifier, tenant.publicFaceScanEncryptionKey);
+        FaceTecSDK.setCustomization(tenant.getCustomization());
+        if (previous != tenant || rebuilt || started) {
+            tenantRegistry.recordSwitch(tenant, System.nanoTime() - startNanos, rebuilt, started);
+        }
+        if (started) {
+            sdkInitializer.whenReady((success, errorCode, errorMessage) -> {
+                if (telemetryJournal != null) {
+                    Long initializeMs = sdkInitializer.getPhaseTimingsMs().get("initialize");
+                    telemetryJournal.recordPhase(TelemetryJournal.FLOW_NONE, TelemetryJournal.PHASE_SDK_INITIALIZE, null,
+                            initializeMs != null ? initializeMs : 0, 0, TelemetryJournal.HTTP_STATUS_UNKNOWN);
+                }
+                if (telemetryUploader != null) {
+                    // Whatever the last launch left behind goes out once nothing else is running.
+                    telemetryUploader.flush(true);
+                }
+            });
+        }
+        final boolean startComponents = rebuilt;
+        sdkInitializer.whenReady((success, errorCode, errorMessage) -> {
+            tenantRegistry.recordReady(tenant, System.nanoTime() - startNanos);
+            if (!success || !startComponents) {
+                return;
+            }
+            if (tenant.getSessionTokenPool() != null) {
+                tenant.getSessionTokenPool().start();
+            }
+            if (tenant.getRouter() != null) {
+                tenant.getRouter().startProbing(FaceTecAPIClient::probe, scheduler);
             }
         });
     }
 
-    private void startLivenessCheck(String sessionToken, MethodChannel.Result result) {
-        // startLivenessCheck() will open the FaceTec interface and start the liveness check process. The
-        // method processSessionWhileFaceTecSDKWaits() and onFaceTecSDKCompletelyDone() are not explicitly called,
-        // but are implicitly called through the FaceTec controller. If you want to implement multiple processors,
-        // you would need to keep track of which method was called to instantiate the session (in this case, startLivenessCheck)
-        // and having branching logic in the implicitly called methods to handle multiple processors.
-        FaceTecSessionActivity.createAndLaunchSession(this, this, sessionToken);
-        result.success(true);
+    // Native entry points for the two flows, for hosts that compose sessions without going through
+    // the Flutter engine; the "startLivenessCheck" and "startPhotoIDMatch" channel calls are thin
+    // adapters over them. A null sessionToken is drawn from the SessionTokenPool. The future
+    // fails with a SessionStartException if the session cannot be launched and otherwise
+    // completes once the SDK is done with it; cancelling it cancels the session. Must be called
+    // on the main thread.
+    public SessionFuture<LivenessResult> runLiveness(String sessionToken) {
+        return runLiveness(sessionToken, null);
     }
 
-    // FaceTecFaceScanProcessor interface methods
-    // These methods are required by the FaceTec SDK 9.7.69
-    // Note: @Override annotations removed due to interface compatibility issues
-    public void processSessionWhileFaceTecSDKWaits(FaceTecSessionResult faceTecSessionResult, FaceTecFaceScanResultCallback faceTecFaceScanResultCallback) {
-        faceScanResultCallbackRef = faceTecFaceScanResultCallback;
+    public SessionFuture<PhotoIDMatchResult> runPhotoIDMatch(String sessionToken) {
+        return runPhotoIDMatch(sessionToken, null);
+    }
 
-        if (faceTecSessionResult.getStatus() != FaceTecSessionStatus.SESSION_COMPLETED_SUCCESSFULLY) {
-            Log.d("MainActivity", "Status was not successful, canceling...");
-            cancelFaceScan();
+    private SessionFuture<LivenessResult> runLiveness(String sessionToken, Runnable onLaunched) {
+        SessionFuture<LivenessResult> future = new SessionFuture<>();
+        startSession(future, sessionToken, token -> {
+            if (livenessCheckProcessor.launchSession(token, future) && onLaunched != null) {
+                onLaunched.run();
+            }
+        }, EndpointGuard.LIVENESS_ENDPOINT);
+        return future;
+    }
+
+    private SessionFuture<PhotoIDMatchResult> runPhotoIDMatch(String sessionToken, Runnable onLaunched) {
+        SessionFuture<PhotoIDMatchResult> future = new SessionFuture<>();
+        startSession(future, sessionToken, token -> {
+            if (photoIDMatchProcessor.launchSession(token, future) && onLaunched != null) {
+                onLaunched.run();
+            }
+        }, EndpointGuard.LIVENESS_ENDPOINT, EndpointGuard.PHOTO_ID_MATCH_ENDPOINT);
+        return future;
+    }
+
+    // Launches the session once the shared SDK initialization has finished and a token is at hand,
+    // unless the future was cancelled meanwhile.
+    private void startSession(SessionFuture<?> future, String sessionToken, SessionTokenConsumer launch, String... endpoints) {
+        // Fail before the camera opens when the backend is known to be degraded or the API quota
+        // is exhausted, instead of after the user has completed a full capture.
+        String guardErrorCode = endpointGuard.checkSessionStart(endpoints);
+        if (guardErrorCode != null) {
+            future.completeExceptionally(new SessionStartException(guardErrorCode, EndpointGuard.errorMessage(guardErrorCode)));
             return;
         }
+        future.whenComplete((value, error) -> endpointGuard.releaseSessionStart(endpoints));
+        if (!sdkInitializer.hasStarted()) {
+            future.completeExceptionally(new SessionStartException("NOT_INITIALIZED", "initialize must be called before starting a session"));
+            return;
+        }
+        sdkInitializer.whenReady((success, errorCode, errorMessage) -> {
+            if (!success) {
+                future.completeExceptionally(new SessionStartException(errorCode, errorMessage));
+            }
+            else if (future.isDone()) {
+                Log.d("MainActivity", "Session cancelled before launch");
+            }
+            else if (sessionToken != null) {
+                launch.accept(sessionToken);
+            }
+            else if (sessionTokenPool != null) {
+                withPooledSessionToken(future, launch);
+            }
+            else {
+                future.completeExceptionally(new SessionStartException("InvalidArguments", "Missing sessionToken"));
+            }
+        });
+    }
+
+    private SessionTokenPool buildSessionTokenPool(Map<String, Object> arguments, String deviceKeyIdentifier) {
+        // The pool is only enabled when Dart passes the server URL, so older callers that always
+        // send a sessionToken keep working unchanged.
+        String baseURL = (String) arguments.get("baseURL");
+        if (baseURL == null || baseURL.isEmpty()) {
+            return null;
+        }
+        Number poolSize = (Number) arguments.get("sessionTokenPoolSize");
+        Number maxTokenAgeMs = (Number) arguments.get("sessionTokenMaxAgeMs");
+        FaceTecAPIClient apiClient = new FaceTecAPIClient(baseURL, deviceKeyIdentifier);
+        return new SessionTokenPool(
+                apiClient::getSessionToken,
+                poolSize != null ? poolSize.intValue() : deviceProfile.sessionTokenPoolSize,
+                maxTokenAgeMs != null ? maxTokenAgeMs.longValue() : SessionTokenPool.DEFAULT_MAX_TOKEN_AGE_MS,
+                scheduler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private EndpointRouter buildEndpointRouter(Map<String, Object> arguments) {
+        // "endpoints" lists the regional processing servers; a single baseURL routes trivially.
+        List<String> endpoints = new ArrayList<>();
+        List<String> endpointsArgument = (List<String>) arguments.get("endpoints");
+        if (endpointsArgument != null) {
+            endpoints.addAll(endpointsArgument);
+        }
+        String baseURL = (String) arguments.get("baseURL");
+        if (endpoints.isEmpty() && baseURL != null && !baseURL.isEmpty()) {
+            endpoints.add(baseURL);
+        }
+        return endpoints.isEmpty() ? null : new EndpointRouter(endpoints);
+    }
+
+    private void startChannelTrafficRecording(boolean redactPayloads, MethodChannel.Result result) {
+        // Payloads are redacted to sizes unless Dart explicitly asks for them, since scans and
+        // audit trails are biometric data.
+        File directory = new File(getFilesDir(), "channel-traffic");
+        File logFile = new File(directory, "channel-traffic-" + System.currentTimeMillis() + ".ftcr");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            ChannelTrafficRecorder.start(new FileOutputStream(logFile), redactPayloads);
+            result.success(logFile.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e("MainActivity", "Error starting channel traffic recording: " + e.getMessage());
+            result.error("RECORDING_ERROR", e.getMessage(), null);
+        }
+    }
 
-        Map<String, Object> args = new HashMap<>();
-        args.put("status", "sessionCompletedSuccessfully");
-        args.put("lowQualityAuditTrailCompressedBase64",
-                faceTecSessionResult.getLowQualityAuditTrailCompressedBase64()[0]);
-        args.put("auditTrailCompressedBase64",
-                faceTecSessionResult.getAuditTrailCompressedBase64()[0]);
-        args.put("faceScanBase64", faceTecSessionResult.getFaceScanBase64());
-        args.put("sessionId", faceTecSessionResult.getSessionId());
-        args.put("ftUserAgentString", FaceTecSDK.createFaceTecAPIUserAgentString(faceTecSessionResult.getSessionId()));
+    private void onMemoryModeChanged(MemoryGovernor.Mode mode) {
+        runOnMainThread(() -> {
+            // CRITICAL drops pooled tokens and stops background prefetch and probes, leaving the
+            // session upload as the only network work in flight.
+            boolean critical = mode == MemoryGovernor.Mode.CRITICAL;
+            if (sessionTokenPool != null) {
+                if (critical) {
+                    sessionTokenPool.clear();
+                }
+                sessionTokenPool.setPrefetchSuspended(critical);
+            }
+            EndpointRouter router = endpointGuard.getRouter();
+            if (router != null) {
+                router.setProbingSuspended(critical);
+            }
+            if (sdkChannel != null) {
+                Map<String, Object> metrics = memoryGovernor.metrics();
+                sdkChannel.invokeMethod("onMemoryModeChanged", metrics,
+                        ChannelTrafficRecorder.outbound(ChannelTrafficRecorder.CHANNEL_SDK, "onMemoryModeChanged", metrics,
+                                Tracing.tracedResult("MainActivity.invoke.onMemoryModeChanged", null)));
+            }
+        });
+    }
 
-        processorChannel.invokeMethod("processSession", args);
+    @SuppressWarnings("unchecked")
+    private ScanUploader buildScanUploader(Map<String, Object> arguments, String deviceKeyIdentifier) {
+        // Opt-in: without "nativeUploads" the Dart processors keep doing the uploads.
+        if (!Boolean.TRUE.equals(arguments.get("nativeUploads"))) {
+            return null;
+        }
+        UploadCompression compression = UploadCompression.fromArguments(
+                (Map<String, Object>) arguments.get("uploadCompression"), deviceProfile);
+        ScanUploader uploader = new ScanUploader(deviceKeyIdentifier, compression, scheduler);
+        uploader.setTimeouts(deviceProfile.uploadConnectTimeoutMs, deviceProfile.uploadReadTimeoutMs);
+        return uploader;
     }
 
-    public void onFaceTecSDKCompletelyDone() {
-        Log.d("MainActivity", "onFaceTecSDKCompletelyDone");
+    private void openTelemetryJournal() {
+        try {
+            telemetryJournal = new TelemetryJournal(new File(new File(getFilesDir(), "telemetry"), "journal.bin"));
+            telemetryUploader = new TelemetryUploader(telemetryJournal, scheduler);
+        } catch (IOException e) {
+            Log.e("MainActivity", "Error opening telemetry journal: " + e.getMessage());
+        }
     }
 
-    private void cancelFaceScan() {
-        Log.e("MainActivity", "Face Scan result cancelled");
-        if (faceScanResultCallbackRef != null) {
-            faceScanResultCallbackRef.cancel();
+    // Size of the string payload handed to a Dart upload, as a stand-in for the bytes it sends.
+    // Native uploads replace it with the count ScanUploader reports.
+    static long payloadChars(Map<String, Object> args) {
+        long chars = 0;
+        for (Object value : args.values()) {
+            if (value instanceof String) {
+                chars += ((String) value).length();
+            }
         }
-        faceScanResultCallbackRef = null;
+        return chars;
     }
 
-    private void onScanResultBlobReceived(String scanResultBlob) {
-        // Handle a successfully received scanResultBlob from the FaceTec API
-        if (faceScanResultCallbackRef != null) {
-            faceScanResultCallbackRef.proceedToNextStep(scanResultBlob);
+    private void applyDeviceProfile() {
+        // Low-end devices always upload the low-quality audit trail and release scans early.
+        memoryGovernor.setFloor(deviceProfile.lowQualityAuditTrailsOnly ? MemoryGovernor.Mode.REDUCED : MemoryGovernor.Mode.NORMAL);
+        if (telemetryJournal != null) {
+            telemetryJournal.setDeviceClass(deviceProfile.deviceClass);
         }
-        faceScanResultCallbackRef = null;
     }
 
-    private void onScanResultUploadDelay(String uploadMessage) {
-        // Handle if there is a long delay in uploading the face scan to the server
-        Log.d("MainActivity", "Face Scan taking longer than usual, adding upload delay message.");
-        if (faceScanResultCallbackRef != null) {
-            faceScanResultCallbackRef.uploadMessageOverride(uploadMessage);
+    private interface SessionTokenConsumer {
+        void accept(String sessionToken);
+    }
+
+    private void withPooledSessionToken(SessionFuture<?> future, SessionTokenConsumer consumer) {
+        final long startNanos = System.nanoTime();
+        sessionTokenPool.acquire(new SessionTokenPool.TokenCallback() {
+            @Override
+            public void onToken(String sessionToken) {
+                runOnMainThread(() -> {
+                    if (telemetryJournal != null) {
+                        telemetryJournal.recordPhase(TelemetryJournal.FLOW_NONE, TelemetryJournal.PHASE_SESSION_TOKEN, null,
+                                (System.nanoTime() - startNanos) / 1000000L, 0, TelemetryJournal.HTTP_STATUS_UNKNOWN);
+                    }
+                    if (!future.isDone()) {
+                        consumer.accept(sessionToken);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Exception e) {
+                runOnMainThread(() -> future.completeExceptionally(new SessionStartException("SESSION_TOKEN_ERROR", e.getMessage())));
+            }
+        });
+    }
+
+    private void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Turns onTrimMemory/onLowMemory signals into a memory mode the native layer degrades against:
+//   NORMAL   - full quality audit trails, background prefetch and probes allowed.
+//   REDUCED  - uploads carry only the low-quality audit trail and scan copies are released as soon
+//              as they have been handed to Flutter.
+//   CRITICAL - additionally drops pooled session tokens and suspends background network work so
+//              nothing runs alongside the session upload.
+// Android never reports that pressure has gone away, so the mode steps back down one level at a
+// time once no trim event has arrived for RELAX_AFTER_MS; callers check this via maybeRelax() at
+// natural points such as session start. Trim events can be injected directly on the JVM.
+// A floor keeps the mode from relaxing below a level; low-end device profiles use REDUCED.
+public class MemoryGovernor implements ComponentCallbacks2 {
+    private static final String TAG = "MemoryGovernor";
+    private static final long RELAX_AFTER_MS = TimeUnit.SECONDS.toMillis(60);
+
+    public enum Mode { NORMAL, REDUCED, CRITICAL }
+
+    public interface Listener {
+        void onMemoryModeChanged(Mode mode);
+    }
+
+    // Milliseconds on a monotonic clock; the JVM tests advance their own.
+    interface Clock {
+        long nowMs();
+    }
+
+    private static final Clock MONOTONIC_CLOCK = () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+
+    private final long relaxAfterMs;
+    private final Clock clock;
+    private final List<Listener> listeners = new ArrayList<>();
+    private Mode mode = Mode.NORMAL;
+    private Mode floor = Mode.NORMAL;
+    private long lastPressureMs = 0;
+    private int trimEvents = 0;
+    private int lowMemoryEvents = 0;
+    private final Map<Mode, Integer> modeEntries = new HashMap<>();
+
+    public MemoryGovernor() {
+        this(RELAX_AFTER_MS, MONOTONIC_CLOCK);
+    }
+
+    MemoryGovernor(long relaxAfterMs, Clock clock) {
+        this.relaxAfterMs = relaxAfterMs;
+        this.clock = clock;
+    }
+
+    public synchronized void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized Mode getMode() {
+        return mode;
+    }
+
+    public boolean isReduced() {
+        return getMode() != Mode.NORMAL;
+    }
+
+    public boolean isCritical() {
+        return getMode() == Mode.CRITICAL;
+    }
+
+    public void setFloor(Mode floor) {
+        boolean raise;
+        synchronized (this) {
+            this.floor = floor;
+            raise = mode.ordinal() < floor.ordinal();
+        }
+        if (raise) {
+            setMode(floor);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        Mode target;
+        synchronized (this) {
+            trimEvents++;
+        }
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL
+                || level == TRIM_MEMORY_RUNNING_LOW) {
+            target = Mode.CRITICAL;
+        } else if (level == TRIM_MEMORY_RUNNING_MODERATE || level == TRIM_MEMORY_BACKGROUND) {
+            target = Mode.REDUCED;
+        } else {
+            // TRIM_MEMORY_UI_HIDDEN only asks for UI resources to be released.
+            return;
+        }
+        Log.d(TAG, "onTrimMemory level " + level + " -> " + target);
+        raiseTo(target);
+    }
+
+    @Override
+    public void onLowMemory() {
+        synchronized (this) {
+            lowMemoryEvents++;
+        }
+        raiseTo(Mode.CRITICAL);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    public void maybeRelax() {
+        Mode relaxed;
+        synchronized (this) {
+            if (mode.ordinal() <= floor.ordinal() || now() - lastPressureMs < relaxAfterMs) {
+                return;
+            }
+            relaxed = mode == Mode.CRITICAL ? Mode.REDUCED : Mode.NORMAL;
+            // Give the lower level its own quiet period before relaxing further.
+            lastPressureMs = now();
+        }
+        Log.d(TAG, "No memory pressure for " + relaxAfterMs + " ms, relaxing to " + relaxed);
+        setMode(relaxed);
+    }
+
+    // Copies the first audit trail image of each quality into a channel payload. Outside NORMAL
+    // mode the full-quality image is never copied; the low-quality one goes under auditTrailKey.
+    public static void putAuditTrails(MemoryGovernor governor, Map<String, Object> args, String auditTrailKey,
+                                      String lowQualityAuditTrailKey, String[] auditTrail, String[] lowQualityAuditTrail) {
+        String lowQualityImage = firstImage(lowQualityAuditTrail);
+        if (governor != null && governor.isReduced() && lowQualityImage != null) {
+            args.put(auditTrailKey, lowQualityImage);
+            return;
+        }
+        args.put(auditTrailKey, firstImage(auditTrail));
+        args.put(lowQualityAuditTrailKey, lowQualityImage);
+    }
+
+    private static String firstImage(String[] images) {
+        return images != null && images.length > 0 ? images[0] : null;
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("mode", mode.name().toLowerCase(Locale.US));
+        metrics.put("floor", floor.name().toLowerCase(Locale.US));
+        metrics.put("trimEvents", trimEvents);
+        metrics.put("lowMemoryEvents", lowMemoryEvents);
+        for (Mode entered : Mode.values()) {
+            Integer count = modeEntries.get(entered);
+            metrics.put("entered" + entered.name().charAt(0) + entered.name().substring(1).toLowerCase(Locale.US),
+                    count == null ? 0 : count);
+        }
+        return metrics;
+    }
+
+    private void raiseTo(Mode target) {
+        synchronized (this) {
+            lastPressureMs = now();
+            if (target.ordinal() <= mode.ordinal()) {
+                return;
+            }
+        }
+        setMode(target);
+    }
+
+    private void setMode(Mode newMode) {
+        List<Listener> currentListeners;
+        synchronized (this) {
+            if (newMode == mode) {
+                return;
+            }
+            mode = newMode;
+            Integer count = modeEntries.get(newMode);
+            modeEntries.put(newMode, count == null ? 1 : count + 1);
+            currentListeners = new ArrayList<>(listeners);
+        }
+        Log.d(TAG, "Memory mode is now " + newMode);
+        for (Listener listener : currentListeners) {
+            listener.onMemoryModeChanged(newMode);
+        }
+    }
+
+    private long now() {
+        return clock.nowMs();
+    }
+}
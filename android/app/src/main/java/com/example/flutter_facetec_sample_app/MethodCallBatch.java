@@ -0,0 +1,70 @@
+package com.example.flutter_facetec_sample_app;
+
+import androidx.annotation.NonNull;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Executes a "batch" call: an ordered list of {method, arguments} operations run through the
+// channel's own handler in a single main-thread turn, so sequences such as cancelPhotoIDMatch +
+// releaseCamera cost one round trip instead of two. Every operation runs even if an earlier one
+// fails; the reply lists one {method, success, result | errorCode, errorMessage} entry per operation.
+public final class MethodCallBatch {
+    public static final String METHOD = "batch";
+
+    private MethodCallBatch() {
+    }
+
+    public static void run(@NonNull MethodCall call, @NonNull MethodChannel.Result result,
+                           @NonNull MethodChannel.MethodCallHandler handler, ChannelRoundTripCounter counter) {
+        List<Map<String, Object>> operations = call.argument("operations");
+        if (operations == null) {
+            result.error("INVALID_ARGUMENTS", "Missing operations", null);
+            return;
+        }
+        List<Map<String, Object>> replies = new ArrayList<>(operations.size());
+        for (Map<String, Object> operation : operations) {
+            String method = (String) operation.get("method");
+            Map<String, Object> reply = new HashMap<>();
+            reply.put("method", method);
+            replies.add(reply);
+            if (method == null || METHOD.equals(method)) {
+                reply.put("success", false);
+                reply.put("errorCode", "INVALID_ARGUMENTS");
+                reply.put("errorMessage", "Invalid batched method: " + method);
+                continue;
+            }
+            if (counter != null) {
+                counter.recordBatchedOperation();
+            }
+            Object arguments = operation.get("arguments");
+            handler.onMethodCall(new MethodCall(method, arguments != null ? arguments : new HashMap<String, Object>()),
+                    new MethodChannel.Result() {
+                        @Override
+                        public void success(Object operationResult) {
+                            reply.put("success", true);
+                            reply.put("result", operationResult);
+                        }
+
+                        @Override
+                        public void error(String errorCode, String errorMessage, Object errorDetails) {
+                            reply.put("success", false);
+                            reply.put("errorCode", errorCode);
+                            reply.put("errorMessage", errorMessage);
+                        }
+
+                        @Override
+                        public void notImplemented() {
+                            reply.put("success", false);
+                            reply.put("errorCode", "NOT_IMPLEMENTED");
+                            reply.put("errorMessage", "Method not implemented: " + method);
+                        }
+                    });
+        }
+        result.success(replies);
+    }
+}
@@ -23,6 +23,8 @@ import org.json.JSONObject;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
 
 public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecIDScanProcessor, MethodChannel.MethodCallHandler {
     private static final String TAG = "PhotoIDMatchProcessor";
@@ -35,7 +37,13 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
     private boolean isProcessingPhotoID = false;
     private boolean isProcessingDocument = false;
     private static final int FLUTTER_TIMEOUT_MS = 10000; // 10 seconds timeout
+    // Serialized mode: PhotoIDMatch.dart calls startDocumentScan a few seconds after the selfie
+    // result. A flow still waiting for it after this long is ended as timed out.
+    private static final long DOCUMENT_SCAN_TIMEOUT_MS = 30000;
     private Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Work hopping onto the main thread; a queue the JVM tests drain themselves stands in for it.
+    private Executor mainThread = mainHandler::post;
+    private DelayedExecutor delayedMainThread = mainHandler::postDelayed;
     private Runnable timeoutRunnable;
     private String currentSessionId = null;
     private String finalIdScanBase64 = null;
@@ -43,6 +51,53 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
     private boolean isFrontScan = true;
     private boolean isScanningComplete = false;
     private static PhotoIDMatchProcessor instance;
+    private EndpointGuard endpointGuard;
+    private EndpointGuard.Call uploadCall;
+    private ChannelRoundTripCounter roundTripCounter;
+    private MemoryGovernor memoryGovernor;
+    private CancellationToken sessionCancellation;
+    private PriorityScheduler scheduler;
+    private PriorityScheduler.LiveWindow liveWindow;
+    private SessionResultCache resultCache;
+    // Cache key of the upload awaiting its result blob; null when none is outstanding.
+    private String pendingResultKey;
+    // Optimistic mode: the ID capture starts as soon as the selfie is handed to Dart, and the
+    // selfie result is joined in before the ID upload. null while no selfie has been handed off.
+    private enum FaceOutcome { PENDING, SUCCEEDED, FAILED }
+    private boolean optimisticFaceUpload = false;
+    private FaceOutcome faceOutcome;
+    // Set between the hand-off and onFaceTecSDKCompletelyDone for the selfie session.
+    private boolean faceSessionHandedOff = false;
+    private Runnable pendingIDScanUpload;
+    // The ID capture can only be closed through a callback the SDK has not used yet, and it hands
+    // one over with each side. A session cancelled while none is held sets this, and the next
+    // callback is cancelled on arrival, so the capture screen stays up until the user scans a side.
+    private boolean idScanCancelPending = false;
+    private TenantRegistry tenantRegistry;
+    private ScanUploader scanUploader;
+    private TelemetryJournal telemetryJournal;
+    private TelemetryUploader telemetryUploader;
+    private long sessionStartNanos;
+    private long sessionBytesSent;
+    private int sessionUploads;
+    private int lastSdkStatus = TelemetryJournal.NO_SDK_STATUS;
+    private short uploadPhase = TelemetryJournal.PHASE_NONE;
+    private long uploadStartNanos;
+    private long uploadBytes;
+    // The future of the flow in progress, completed once the ID step or a failure has ended it.
+    private SessionFuture<PhotoIDMatchResult> run;
+    private boolean flowInProgress = false;
+    private String runFaceResultBlob;
+    private String runMatchResultBlob;
+    private short runCancelReason = TelemetryJournal.CANCEL_NONE;
+    private boolean runReachedDocumentScan = false;
+    // Between the selfie session and the ID session of the serialized mode, when no SDK session
+    // is left to end the flow through onFaceTecSDKCompletelyDone.
+    private boolean awaitingDocumentScan = false;
+
+    interface DelayedExecutor {
+        void executeDelayed(Runnable task, long delayMs);
+    }
 
     public static synchronized PhotoIDMatchProcessor getInstance(MethodChannel processorChannel, Activity activity) {
         if (instance == null) {
@@ -57,15 +112,90 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
         this.applicationContext = activity.getApplicationContext();
     }
 
+    public void setEndpointGuard(EndpointGuard endpointGuard) {
+        this.endpointGuard = endpointGuard;
+    }
+
+    public void setRoundTripCounter(ChannelRoundTripCounter roundTripCounter) {
+        this.roundTripCounter = roundTripCounter;
+    }
+
+    public void setMemoryGovernor(MemoryGovernor memoryGovernor) {
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    public void setResultCache(SessionResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    // Overlaps the selfie upload with the ID capture instead of waiting for the selfie result.
+    public void setOptimisticFaceUpload(boolean optimisticFaceUpload) {
+        this.optimisticFaceUpload = optimisticFaceUpload;
+    }
+
+    // Sessions use the active tenant's branding instead of the built-in one.
+    public void setTenantRegistry(TenantRegistry tenantRegistry) {
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    // With native uploads on, the /photo-id-match upload goes through scanUploader instead of
+    // PhotoIDMatch.dart. The selfie upload stays in Dart: in the serialized mode PhotoIDMatch.dart
+    // starts the document scan from the selfie result.
+    public void setScanUploader(ScanUploader scanUploader) {
+        this.scanUploader = scanUploader;
+    }
+
+    // From launchSession until the flow ends in maybeCompleteRun, so it also covers the selfie
+    // capture and, in the serialized mode, the wait for startDocumentScan between the sessions.
+    public boolean isSessionActive() {
+        return flowInProgress;
+    }
+
+    // Either may be null, in which case the session is not recorded.
+    public void setTelemetry(TelemetryJournal telemetryJournal, TelemetryUploader telemetryUploader) {
+        this.telemetryJournal = telemetryJournal;
+        this.telemetryUploader = telemetryUploader;
+    }
+
+    // Background work on the scheduler is held back while a selfie or ID upload is outstanding.
+    public void setScheduler(PriorityScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    void setMainThreadExecutor(Executor mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    void setDelayedMainThreadExecutor(DelayedExecutor delayedMainThread) {
+        this.delayedMainThread = delayedMainThread;
+    }
+
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        Tracing.beginSection("PhotoIDMatchProcessor.onMethodCall." + call.method);
+        try {
+            result = ChannelTrafficRecorder.inbound(ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH, call, result);
+            if (roundTripCounter != null) {
+                roundTripCounter.recordInbound(call.method);
+            }
+            if (MethodCallBatch.METHOD.equals(call.method)) {
+                MethodCallBatch.run(call, result, this::handleMethodCall, roundTripCounter);
+            } else {
+                handleMethodCall(call, result);
+            }
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void handleMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
         Log.d(TAG, "=== START receivedPhotoIDMatchProcessorCall ===");
         Log.d(TAG, "Received call: " + call.method);
         try {
             switch (call.method) {
                 case "cancelPhotoIDMatch":
                     Log.d(TAG, "Handling cancelPhotoIDMatch call");
-                    cancelPhotoIDMatch();
+                    cancelPhotoIDMatch(EndpointGuard.dartCancelReason(call.argument("reason")));
                     result.success(null);
                     break;
                 case "releaseCamera":
@@ -97,7 +227,11 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
                     break;
                 case "startDocumentScan":
                     Log.d(TAG, "Handling startDocumentScan call");
-                    if (call.hasArgument("sessionToken")) {
+                    if (!flowInProgress) {
+                        // The flow timed out or was cancelled while Dart was getting ready.
+                        Log.e(TAG, "No Photo ID Match is waiting for its document scan");
+                        result.error("SESSION_ENDED", "The Photo ID Match already ended", null);
+                    } else if (call.hasArgument("sessionToken")) {
                         String sessionToken = call.argument("sessionToken");
                         startDocumentScan(sessionToken);
                         result.success(null);
@@ -124,14 +258,16 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
         Log.d(TAG, "=== END receivedPhotoIDMatchProcessorCall ===");
     }
 
-    public void startPhotoIDMatchCheck(String sessionToken, MethodChannel.Result result) {
+    // Launches the selfie session of a flow whose outcome completes future; see
+    // MainActivity.runPhotoIDMatch(). Returns false, with future failed, if it could not launch.
+    public boolean launchSession(String sessionToken, SessionFuture<PhotoIDMatchResult> future) {
         try {
             Log.d(TAG, "Starting Photo ID Match process");
             
             if (activity == null) {
                 Log.e(TAG, "Activity context is null");
-                result.error("START_ERROR", "Activity context is not available", null);
-                return;
+                future.completeExceptionally(new SessionStartException("START_ERROR", "Activity context is not available"));
+                return false;
             }
             
             // Configurar mensajes personalizados
@@ -144,11 +280,24 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             isScanningComplete = false;
             finalIdScanBase64 = null;
             finalIdScanBackBase64 = null;
+            sessionStartNanos = System.nanoTime();
+            sessionBytesSent = 0;
+            sessionUploads = 0;
+            lastSdkStatus = TelemetryJournal.NO_SDK_STATUS;
+            faceOutcome = null;
+            faceSessionHandedOff = false;
+            pendingIDScanUpload = null;
+            beginSessionCancellation();
+            beginRun(future);
+            flowInProgress = true;
             
             // Configurar el tipo de sesión para Photo ID Match
-            FaceTecCustomization customization = new FaceTecCustomization();
-            customization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
-            customization.getOverlayCustomization().backgroundColor = android.graphics.Color.WHITE;
+            FaceTecCustomization customization = tenantCustomization();
+            if (customization == null) {
+                customization = new FaceTecCustomization();
+                customization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
+                customization.getOverlayCustomization().backgroundColor = android.graphics.Color.WHITE;
+            }
             
             // Configurar el SDK para usar el modo Photo ID Match
             try {
@@ -159,12 +308,79 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             }
             
             // Lanzar la sesión con el tipo correcto para Photo ID Match
-            FaceTecSessionActivity.createAndLaunchSession(activity, (FaceTecFaceScanProcessor)this, sessionToken);
-            result.success(true);
+            Tracing.beginSection("PhotoIDMatchProcessor.launchFaceScanSession");
+            try {
+                FaceTecSessionActivity.createAndLaunchSession(activity, (FaceTecFaceScanProcessor)this, sessionToken);
+            } finally {
+                Tracing.endSection();
+            }
+            return true;
         } catch (Exception e) {
             Log.e(TAG, "Error starting Photo ID Match: " + e.getMessage());
-            result.error("START_ERROR", e.getMessage(), null);
+            flowInProgress = false;
+            if (run == future) {
+                run = null;
+            }
+            future.completeExceptionally(new SessionStartException("START_ERROR", e.getMessage()));
+            return false;
+        }
+    }
+
+    private void beginRun(SessionFuture<PhotoIDMatchResult> future) {
+        if (run != null) {
+            run.completeExceptionally(new CancellationException("Superseded by a new Photo ID Match"));
+        }
+        run = future;
+        runFaceResultBlob = null;
+        runMatchResultBlob = null;
+        runCancelReason = TelemetryJournal.CANCEL_NONE;
+        runReachedDocumentScan = false;
+        awaitingDocumentScan = false;
+        future.setOnCancel(() -> mainThread.execute(() -> {
+            if (run == future) {
+                run = null;
+                runCancelReason = TelemetryJournal.CANCEL_REQUESTED_BY_HOST;
+                cancelPhotoIDMatch(TelemetryJournal.CANCEL_REQUESTED_BY_HOST);
+            }
+        }));
+    }
+
+    // Called when a session ends. After a successful selfie in the serialized mode the flow goes
+    // on once PhotoIDMatch.dart calls startDocumentScan, so the run stays open until then, or
+    // until a cancel or DOCUMENT_SCAN_TIMEOUT_MS ends it through cancelPhotoIDMatch.
+    // Otherwise the flow is over: its session record is written here, once for both SDK sessions.
+    private void maybeCompleteRun() {
+        if (runFaceResultBlob != null && !runReachedDocumentScan && runCancelReason == TelemetryJournal.CANCEL_NONE) {
+            awaitingDocumentScan = true;
+            final SessionFuture<PhotoIDMatchResult> awaited = run;
+            delayedMainThread.executeDelayed(() -> {
+                if (awaitingDocumentScan && run == awaited) {
+                    Log.e(TAG, "startDocumentScan did not arrive in time");
+                    cancelPhotoIDMatch(TelemetryJournal.CANCEL_TIMED_OUT);
+                }
+            }, DOCUMENT_SCAN_TIMEOUT_MS);
+            return;
+        }
+        awaitingDocumentScan = false;
+        flowInProgress = false;
+        if (telemetryJournal != null) {
+            telemetryJournal.recordSession(TelemetryJournal.FLOW_PHOTO_ID_MATCH, currentSessionId, lastSdkStatus,
+                    (System.nanoTime() - sessionStartNanos) / 1000000L, sessionBytesSent, Math.max(0, sessionUploads - 2));
         }
+        if (telemetryUploader != null) {
+            telemetryUploader.flush(false);
+        }
+        if (run == null) {
+            return;
+        }
+        SessionFuture<PhotoIDMatchResult> future = run;
+        run = null;
+        future.complete(new PhotoIDMatchResult(currentSessionId, runFaceResultBlob, runMatchResultBlob, lastSdkStatus,
+                runCancelReason, (System.nanoTime() - sessionStartNanos) / 1000000L, sessionBytesSent, sessionUploads));
+    }
+
+    private FaceTecCustomization tenantCustomization() {
+        return tenantRegistry != null ? tenantRegistry.getActiveCustomization() : null;
     }
 
     private void configureCustomMessages() {
@@ -214,6 +430,7 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             }
             
             isProcessingDocument = true;
+            runReachedDocumentScan = true;
             Log.d(TAG, "Set isProcessingDocument to true");
             
             // Configurar mensajes directamente en Java
@@ -237,8 +454,11 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
                 Log.d(TAG, "ID scan upload messages configured successfully");
 
                 // Configuración básica del SDK
-                FaceTecCustomization customization = new FaceTecCustomization();
-                customization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
+                FaceTecCustomization customization = tenantCustomization();
+                if (customization == null) {
+                    customization = new FaceTecCustomization();
+                    customization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
+                }
                 
                 // Configurar el SDK para usar el modo de escaneo de documento
                 try {
@@ -259,84 +479,21 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             // Lanzar la sesión de escaneo de documento
             Log.d(TAG, "Creating and launching ID scan session");
             try {
-                // Verificar que el procesador esté correctamente inicializado
-                if (idScanResultCallbackRef == null) {
-                    Log.d(TAG, "Initializing idScanResultCallbackRef");
-                    idScanResultCallbackRef = new FaceTecIDScanResultCallback() {
-                        @Override
-                        public boolean proceedToNextStep(String nextStep) {
-                            try {
-                                Log.d(TAG, "=== START proceedToNextStep ===");
-                                Log.d(TAG, "Next step: " + nextStep);
-                                Log.d(TAG, "Current state - isProcessingPhotoID: " + isProcessingPhotoID + ", isProcessingDocument: " + isProcessingDocument);
-                                
-                                // Verificar el estado actual
-                                if (!isProcessingDocument) {
-                                    Log.e(TAG, "Not processing document, returning false");
-                                    return false;
-                                }
-                                
-                                // Verificar el siguiente paso
-                                if (nextStep == null || nextStep.isEmpty()) {
-                                    Log.e(TAG, "Next step is null or empty");
-                                    return false;
-                                }
-                                
-                                Log.d(TAG, "Proceeding to next step: " + nextStep);
-                                Log.d(TAG, "=== END proceedToNextStep ===");
-                                return true;
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error in proceedToNextStep: " + e.getMessage());
-                                Log.e(TAG, "Stack trace: " + Log.getStackTraceString(e));
-                                return false;
-                            }
-                        }
-
-                        @Override
-                        public void cancel() {
-                            try {
-                                Log.d(TAG, "=== START cancel ===");
-                                Log.d(TAG, "Current state - isProcessingPhotoID: " + isProcessingPhotoID + ", isProcessingDocument: " + isProcessingDocument);
-                                Log.d(TAG, "Cancelling ID scan");
-                                cancelPhotoIDMatch();
-                                Log.d(TAG, "=== END cancel ===");
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error in cancel: " + e.getMessage());
-                                Log.e(TAG, "Stack trace: " + Log.getStackTraceString(e));
-                            }
-                        }
-
-                        @Override
-                        public void uploadMessageOverride(String message) {
-                            try {
-                                Log.d(TAG, "=== START uploadMessageOverride ===");
-                                Log.d(TAG, "Message: " + message);
-                                Log.d(TAG, "Current state - isProcessingPhotoID: " + isProcessingPhotoID + ", isProcessingDocument: " + isProcessingDocument);
-                                Log.d(TAG, "=== END uploadMessageOverride ===");
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error in uploadMessageOverride: " + e.getMessage());
-                                Log.e(TAG, "Stack trace: " + Log.getStackTraceString(e));
-                            }
-                        }
-
-                        @Override
-                        public void uploadProgress(float progress) {
-                            try {
-                                Log.d(TAG, "=== START uploadProgress ===");
-                                Log.d(TAG, "Progress: " + progress);
-                                Log.d(TAG, "Current state - isProcessingPhotoID: " + isProcessingPhotoID + ", isProcessingDocument: " + isProcessingDocument);
-                                Log.d(TAG, "=== END uploadProgress ===");
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error in uploadProgress: " + e.getMessage());
-                                Log.e(TAG, "Stack trace: " + Log.getStackTraceString(e));
-                            }
-                        }
-                    };
-                }
+                // The selfie session is over and its callback can close nothing; the SDK hands the ID
+                // session's callbacks over through processIDScanWhileFaceTecSDKWaits.
+                faceScanResultCallbackRef = null;
+                idScanResultCallbackRef = null;
+                idScanCancelPending = false;
 
                 // Lanzar la sesión con el tipo correcto para escaneo combinado
-                FaceTecSessionActivity.createAndLaunchSession(activity, (FaceTecIDScanProcessor)this, sessionToken);
+                Tracing.beginSection("PhotoIDMatchProcessor.launchIDScanSession");
+                try {
+                    FaceTecSessionActivity.createAndLaunchSession(activity, (FaceTecIDScanProcessor)this, sessionToken);
+                } finally {
+                    Tracing.endSection();
+                }
                 Log.d(TAG, "ID scan session launched successfully");
+                awaitingDocumentScan = false;
             } catch (Exception e) {
                 Log.e(TAG, "Error launching ID scan session: " + e.getMessage());
                 Log.e(TAG, "Stack trace: " + Log.getStackTraceString(e));
@@ -353,6 +510,17 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
 
     @Override
     public void processSessionWhileFaceTecSDKWaits(FaceTecSessionResult faceTecSessionResult, FaceTecFaceScanResultCallback faceTecFaceScanResultCallback) {
+        Tracing.beginSection("PhotoIDMatchProcessor.processSessionWhileFaceTecSDKWaits");
+        try {
+            ChannelTrafficRecorder.sdkCallback(ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH,
+                    "processSessionWhileFaceTecSDKWaits", faceTecSessionResult);
+            processSession(faceTecSessionResult, faceTecFaceScanResultCallback);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void processSession(FaceTecSessionResult faceTecSessionResult, FaceTecFaceScanResultCallback faceTecFaceScanResultCallback) {
         try {
             Log.d(TAG, "=== START processSessionWhileFaceTecSDKWaits ===");
             Log.d(TAG, "Session ID: " + faceTecSessionResult.getSessionId());
@@ -364,6 +532,7 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             
             faceScanResultCallbackRef = faceTecFaceScanResultCallback;
             Log.d(TAG, "Stored faceScanResultCallbackRef");
+            lastSdkStatus = faceTecSessionResult.getStatus().ordinal();
 
             // Verificar si hay problemas de conexión
             String statusString = faceTecSessionResult.getStatus().toString();
@@ -373,13 +542,13 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
                 if (faceScanResultCallbackRef != null) {
                     faceScanResultCallbackRef.uploadMessageOverride(errorMessage);
                 }
-                cancelPhotoIDMatch();
+                cancelPhotoIDMatch(TelemetryJournal.CANCEL_SDK_STATUS);
                 return;
             }
 
             if (faceTecSessionResult.getStatus() != FaceTecSessionStatus.SESSION_COMPLETED_SUCCESSFULLY) {
                 Log.e(TAG, "Session not successful, canceling");
-                cancelPhotoIDMatch();
+                cancelPhotoIDMatch(TelemetryJournal.CANCEL_SDK_STATUS);
                 return;
             }
 
@@ -395,15 +564,42 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             args.put("status", "sessionCompletedSuccessfully");
             args.put("sessionId", currentSessionId);
             args.put("faceScanBase64", faceTecSessionResult.getFaceScanBase64());
+            // PhotoIDMatch.dart cancels the session when no audit trail image is present.
+            MemoryGovernor.putAuditTrails(memoryGovernor, args, "auditTrailImage", "lowQualityAuditTrailImage",
+                    faceTecSessionResult.getAuditTrailCompressedBase64(),
+                    faceTecSessionResult.getLowQualityAuditTrailCompressedBase64());
             args.put("sessionStatus", faceTecSessionResult.getStatus().toString());
             args.put("sessionSuccess", Boolean.TRUE);
+            args.put("optimistic", optimisticFaceUpload);
             args.put("endpoint", "/photo-id-match");
-            
+            args.put("ftUserAgentString", FaceTecSDK.createFaceTecAPIUserAgentString(currentSessionId));
+            String baseURL = putRoutedBaseURL(args, currentSessionId);
+
+            // Not answered from the result cache: Dart starts the document scan once processSession
+            // returns, so a selfie answered natively would leave the session waiting for it. The
+            // key still marks the upload as outstanding for the duplicate check.
+            pendingResultKey = SessionResultCache.key(currentSessionId, SessionResultCache.Step.FACE,
+                    faceTecSessionResult.getFaceScanBase64());
+
+            // Dart uploads the selfie to /liveness-3d while the SDK waits
+            beginUploadCall(EndpointGuard.LIVENESS_ENDPOINT, baseURL, args);
+            final CancellationToken cancellation = currentCancellation();
+            if (optimisticFaceUpload) {
+                handOffFaceScan();
+            }
+
             // Enviar datos a Flutter
-            mainHandler.post(() -> {
+            mainThread.execute(() -> {
+                if (cancellation.isCancelled()) {
+                    Log.d(TAG, "Session cancelled before processSession was sent to Flutter");
+                    return;
+                }
                 try {
                     Log.d(TAG, "Invoking processSession method in Flutter");
-                    processorChannel.invokeMethod("processSession", args, new MethodChannel.Result() {
+                    if (roundTripCounter != null) {
+                        roundTripCounter.recordOutbound();
+                    }
+                    processorChannel.invokeMethod("processSession", args, ChannelTrafficRecorder.outbound(ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH, "processSession", args, Tracing.tracedResult("PhotoIDMatchProcessor.invoke.processSession", cancellation.guard(new MethodChannel.Result() {
                         @Override
                         public void success(Object result) {
                             Log.d(TAG, "Data sent successfully to Flutter");
@@ -468,7 +664,7 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
                                 cancelPhotoIDMatch();
                             }
                         }
-                    });
+                    }))));
                 } catch (Exception e) {
                     Log.e(TAG, "Exception while sending data to Flutter: " + e.getMessage());
                     Log.e(TAG, "Stack trace: " + Log.getStackTraceString(e));
@@ -511,14 +707,36 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
 
     @Override
     public void processIDScanWhileFaceTecSDKWaits(FaceTecIDScanResult faceTecIDScanResult, FaceTecIDScanResultCallback faceTecIDScanResultCallback) {
+        Tracing.beginSection("PhotoIDMatchProcessor.processIDScanWhileFaceTecSDKWaits");
+        try {
+            ChannelTrafficRecorder.sdkCallback(ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH,
+                    "processIDScanWhileFaceTecSDKWaits", faceTecIDScanResult);
+            processIDScan(faceTecIDScanResult, faceTecIDScanResultCallback);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void processIDScan(FaceTecIDScanResult faceTecIDScanResult, FaceTecIDScanResultCallback faceTecIDScanResultCallback) {
         Log.d(TAG, "=== START processIDScanWhileFaceTecSDKWaits ===");
         Log.d(TAG, "ID Scan Status: " + faceTecIDScanResult.getStatus());
         
+        if (idScanCancelPending) {
+            // The session was cancelled, e.g. the selfie was rejected, while the user was scanning the ID.
+            Log.d(TAG, "Session already cancelled, cancelling ID scan");
+            idScanCancelPending = false;
+            faceTecIDScanResultCallback.cancel();
+            return;
+        }
+
         // Guardar el callback para usarlo más tarde
         this.idScanResultCallbackRef = faceTecIDScanResultCallback;
         
         // Guardar el ID de la sesión
         currentSessionId = faceTecIDScanResult.getSessionId();
+        if (faceTecIDScanResult.getStatus() != null) {
+            lastSdkStatus = faceTecIDScanResult.getStatus().ordinal();
+        }
         
         // Determinar si es el escaneo frontal o el reverso
         if (faceTecIDScanResult.getStatus() == FaceTecIDScanStatus.SUCCESS) {
@@ -529,6 +747,8 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
                 isFrontScan = false;
                 // Indicar al SDK que necesitamos escanear el reverso
                 faceTecIDScanResultCallback.proceedToNextStep(faceTecIDScanResult.getSessionId());
+                // Spent; the back arrives with a new callback.
+                idScanResultCallbackRef = null;
             } else {
                 Log.d(TAG, "Storing back scan");
                 finalIdScanBackBase64 = faceTecIDScanResult.getIDScanBase64();
@@ -549,57 +769,351 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
             args.put("sessionStatus", faceTecIDScanResult.getStatus() != null ? faceTecIDScanResult.getStatus().toString() : "UNKNOWN");
             args.put("sessionSuccess", Boolean.TRUE);
             args.put("endpoint", "/photo-id-match");
+            args.put("ftUserAgentString", FaceTecSDK.createFaceTecAPIUserAgentString(currentSessionId));
+            String baseURL = putRoutedBaseURL(args, currentSessionId);
+
+            if (faceOutcome == FaceOutcome.PENDING) {
+                // Optimistic mode: the match is only uploaded once the selfie has been accepted.
+                Log.d(TAG, "Holding ID scan upload until the selfie result arrives");
+                pendingIDScanUpload = () -> uploadIDScan(args, baseURL);
+            } else {
+                uploadIDScan(args, baseURL);
+            }
+        }
+        
+        Log.d(TAG, "=== END processIDScanWhileFaceTecSDKWaits ===");
+    }
+
+    private void uploadIDScan(Map<String, Object> args, String baseURL) {
+        // In the serialized mode the selfie session's token ended with it; the ID session's token is
+        // begun here, before pendingResultKey is set, since beginning one clears it.
+        CancellationToken cancellation = currentCancellation();
+        pendingResultKey = SessionResultCache.key(currentSessionId, SessionResultCache.Step.ID_SCAN,
+                finalIdScanBase64, finalIdScanBackBase64);
+        String cachedResult = resultCache != null ? resultCache.lookup(pendingResultKey) : null;
+        if (cachedResult != null) {
+            Log.d(TAG, "Answering repeated ID scan from the result cache");
+            onPhotoIDMatchResultBlobReceived(cachedResult);
+            return;
+        }
+
+        beginUploadCall(EndpointGuard.PHOTO_ID_MATCH_ENDPOINT, baseURL, args);
+        if (scanUploader != null && baseURL != null) {
+            uploadIDScanNatively(baseURL, args, cancellation);
+            releaseIDScansUnderPressure();
+            return;
+        }
+
+        // Enviar los argumentos a Flutter
+        if (roundTripCounter != null) {
+            roundTripCounter.recordOutbound();
+        }
+        processorChannel.invokeMethod("processIDScan", args, ChannelTrafficRecorder.outbound(ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH, "processIDScan", args, Tracing.tracedResult("PhotoIDMatchProcessor.invoke.processIDScan", cancellation.guard(new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                Log.d(TAG, "Flutter processIDScan call succeeded");
+                if (idScanResultCallbackRef != null) {
+                    try {
+                        // Crear un JSON con el resultado final
+                        JSONObject finalResult = new JSONObject();
+                        finalResult.put("success", true);
+                        finalResult.put("sessionId", currentSessionId);
+                        finalResult.put("matchComplete", true);
+                        idScanResultCallbackRef.proceedToNextStep(finalResult.toString());
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error sending final result to SDK: " + e.getMessage());
+                        cancelPhotoIDMatch();
+                    }
+                }
+            }
             
-            // Enviar los argumentos a Flutter
-            processorChannel.invokeMethod("processIDScan", args, new MethodChannel.Result() {
-                @Override
-                public void success(Object result) {
-                    Log.d(TAG, "Flutter processIDScan call succeeded");
-                    if (idScanResultCallbackRef != null) {
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                Log.e(TAG, "Flutter processIDScan call failed: " + errorMessage);
+                cancelPhotoIDMatch(TelemetryJournal.CANCEL_UPLOAD_ERROR);
+            }
+            
+            @Override
+            public void notImplemented() {
+                Log.e(TAG, "Flutter processIDScan method not implemented");
+                cancelPhotoIDMatch();
+            }
+        }))));
+
+        releaseIDScansUnderPressure();
+    }
+
+    // The upload has taken its own reference to the scans (invokeMethod has encoded them, the
+    // native body holds them), so under memory pressure the processor's copies are released now
+    // instead of when the SDK reports it is done.
+    private void releaseIDScansUnderPressure() {
+        if (memoryGovernor != null && memoryGovernor.isReduced()) {
+            finalIdScanBase64 = null;
+            finalIdScanBackBase64 = null;
+        }
+    }
+
+    // Same request and response handling as PhotoIDMatch.dart's processIDScan, without the
+    // channel hops; failures reach the SDK as the same error blobs Dart would deliver.
+    private void uploadIDScanNatively(String baseURL, Map<String, Object> args, final CancellationToken cancellation) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("idScan", args.get("idScanBase64"));
+        body.put("sessionId", args.get("sessionId"));
+        body.put("sessionStatus", args.get("sessionStatus"));
+        body.put("sessionSuccess", args.get("sessionSuccess"));
+        body.put("ftUserAgentString", args.get("ftUserAgentString"));
+        body.put("documentType", "ID_DOCUMENT");
+        body.put("countryCode", "ANY");
+        scanUploader.upload(baseURL, EndpointGuard.PHOTO_ID_MATCH_ENDPOINT, body, (String) args.get("ftUserAgentString"),
+                cancellation, new ScanUploader.Callback() {
+                    @Override
+                    public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                        String resultBlob;
                         try {
-                            // Crear un JSON con el resultado final
-                            JSONObject finalResult = new JSONObject();
-                            finalResult.put("success", true);
-                            finalResult.put("sessionId", currentSessionId);
-                            finalResult.put("matchComplete", true);
-                            idScanResultCallbackRef.proceedToNextStep(finalResult.toString());
+                            JSONObject responseJSON = new JSONObject(responseBody);
+                            if (responseJSON.optBoolean("error", false)) {
+                                resultBlob = errorResultBlob("ENDPOINT_ERROR",
+                                        responseJSON.optString("errorMessage", "Unknown error from endpoint"));
+                            } else if (responseJSON.optBoolean("wasProcessed", false) && responseJSON.has("scanResultBlob")) {
+                                resultBlob = responseJSON.getString("scanResultBlob");
+                            } else {
+                                resultBlob = errorResultBlob("INVALID_SCAN_RESULT",
+                                        responseJSON.optString("errorMessage", "No scanResultBlob or wasProcessed is false"));
+                            }
                         } catch (Exception e) {
-                            Log.e(TAG, "Error sending final result to SDK: " + e.getMessage());
-                            cancelPhotoIDMatch();
+                            Log.e(TAG, "Invalid /photo-id-match response (HTTP " + statusCode + "): " + e.getMessage());
+                            resultBlob = errorResultBlob("JSON_PARSE_ERROR", e.getMessage());
                         }
+                        deliverNativeResult(cancellation, resultBlob, bytesSent);
                     }
-                }
-                
-                @Override
-                public void error(String errorCode, String errorMessage, Object errorDetails) {
-                    Log.e(TAG, "Flutter processIDScan call failed: " + errorMessage);
-                    cancelPhotoIDMatch();
-                }
-                
-                @Override
-                public void notImplemented() {
-                    Log.e(TAG, "Flutter processIDScan method not implemented");
-                    cancelPhotoIDMatch();
-                }
-            });
+
+                    @Override
+                    public void onError(Exception e, long bytesSent) {
+                        deliverNativeResult(cancellation, errorResultBlob("NETWORK_ERROR", e.toString()), bytesSent);
+                    }
+                });
+    }
+
+    private void deliverNativeResult(final CancellationToken cancellation, final String resultBlob, final long bytesSent) {
+        mainThread.execute(() -> {
+            if (cancellation != sessionCancellation || cancellation.isCancelled()) {
+                return;
+            }
+            uploadBytes = bytesSent;
+            onPhotoIDMatchResultBlobReceived(resultBlob);
+            if (isErrorResultBlob(resultBlob)) {
+                releaseCamera();
+            }
+        });
+    }
+
+    private static String errorResultBlob(String error, String message) {
+        try {
+            JSONObject errorResult = new JSONObject();
+            errorResult.put("success", false);
+            errorResult.put("error", error);
+            errorResult.put("message", message);
+            return errorResult.toString();
+        } catch (Exception e) {
+            return "{\"success\":false,\"error\":\"" + error + "\"}";
         }
-        
-        Log.d(TAG, "=== END processIDScanWhileFaceTecSDKWaits ===");
     }
 
     public void onFaceTecSDKCompletelyDone() {
-        Log.d(TAG, "SDK process completed");
-        isProcessingPhotoID = false;
-        isProcessingDocument = false;
-        isFrontScan = true;
-        isScanningComplete = false;
-        finalIdScanBase64 = null;
-        finalIdScanBackBase64 = null;
+        Tracing.beginSection("PhotoIDMatchProcessor.onFaceTecSDKCompletelyDone");
+        try {
+            ChannelTrafficRecorder.sdkCallback(ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH,
+                    "onFaceTecSDKCompletelyDone");
+            Log.d(TAG, "SDK process completed");
+            if (roundTripCounter != null) {
+                roundTripCounter.logSession("PhotoIDMatch");
+            }
+            if (faceSessionHandedOff) {
+                faceSessionHandedOff = false;
+                if (faceOutcome != FaceOutcome.FAILED) {
+                    // Only the selfie session is done; its upload keeps running during the ID capture.
+                    // Posted so the selfie activity has finished before the ID session launches.
+                    isProcessingPhotoID = false;
+                    final String sessionId = currentSessionId;
+                    mainThread.execute(() -> {
+                        if (faceOutcome != FaceOutcome.FAILED) {
+                            startDocumentScan(sessionId);
+                        }
+                    });
+                    return;
+                }
+            }
+            faceOutcome = null;
+            pendingIDScanUpload = null;
+            idScanCancelPending = false;
+            isProcessingPhotoID = false;
+            isProcessingDocument = false;
+            isFrontScan = true;
+            isScanningComplete = false;
+            finalIdScanBase64 = null;
+            finalIdScanBackBase64 = null;
+            closeLiveWindow();
+            pendingResultKey = null;
+            maybeCompleteRun();
+            // Nothing may outlive the session: abort any upload still running for it.
+            if (sessionCancellation != null) {
+                sessionCancellation.cancel();
+                sessionCancellation = null;
+            }
+        } finally {
+            Tracing.endSection();
+        }
     }
 
     private void cancelPhotoIDMatch() {
+        cancelPhotoIDMatch(TelemetryJournal.CANCEL_INTERNAL_ERROR);
+    }
+
+    private void cancelPhotoIDMatch(short reason) {
+        Tracing.beginSection("PhotoIDMatchProcessor.cancelPhotoIDMatch");
+        try {
+            if (telemetryJournal != null && (awaitingDocumentScan
+                    || sessionCancellation != null && !sessionCancellation.isCancelled())) {
+                telemetryJournal.recordCancel(TelemetryJournal.FLOW_PHOTO_ID_MATCH, reason, currentSessionId, lastSdkStatus);
+            }
+            if (run != null && runCancelReason == TelemetryJournal.CANCEL_NONE) {
+                runCancelReason = reason;
+            }
+            doCancelPhotoIDMatch(reason);
+            // No SDK session is left to call onFaceTecSDKCompletelyDone, so the flow ends here.
+            if (awaitingDocumentScan) {
+                maybeCompleteRun();
+            }
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void beginSessionCancellation() {
+        if (sessionCancellation != null) {
+            sessionCancellation.cancel();
+        }
+        pendingResultKey = null;
+        final CancellationToken cancellation = new CancellationToken("PhotoIDMatch session");
+        // The uploads run in Dart, so cancelling while one is in flight asks PhotoIDMatch.dart to
+        // abort its request.
+        cancellation.onCancel(() -> {
+            if (uploadCall != null) {
+                mainThread.execute(() -> processorChannel.invokeMethod("cancelUpload", null,
+                        Tracing.tracedResult("PhotoIDMatchProcessor.invoke.cancelUpload", null)));
+            }
+        });
+        sessionCancellation = cancellation;
+    }
+
+    private CancellationToken currentCancellation() {
+        if (sessionCancellation == null) {
+            beginSessionCancellation();
+        }
+        return sessionCancellation;
+    }
+
+    // Both steps of a session are routed to the same server; see EndpointRouter.
+    private String putRoutedBaseURL(Map<String, Object> args, String sessionId) {
+        String baseURL = endpointGuard != null ? endpointGuard.routeForSession(sessionId) : null;
+        if (baseURL != null) {
+            args.put("baseURL", baseURL);
+        }
+        return baseURL;
+    }
+
+    private void beginUploadCall(String endpoint, String baseURL, Map<String, Object> args) {
+        if (uploadCall != null) {
+            // Superseded by the next step's upload.
+            uploadCall.cancelled();
+        }
+        uploadPhase = EndpointGuard.PHOTO_ID_MATCH_ENDPOINT.equals(endpoint)
+                ? TelemetryJournal.PHASE_ID_UPLOAD : TelemetryJournal.PHASE_FACE_UPLOAD;
+        uploadStartNanos = System.nanoTime();
+        uploadBytes = MainActivity.payloadChars(args);
+        sessionUploads++;
+        uploadCall = endpointGuard != null ? endpointGuard.beginCall(endpoint, baseURL) : null;
+        closeLiveWindow();
+        if (scheduler != null) {
+            liveWindow = scheduler.openLiveWindow();
+        }
+    }
+
+    private void closeLiveWindow() {
+        if (liveWindow != null) {
+            liveWindow.close();
+            liveWindow = null;
+        }
+    }
+
+    private void recordUploadPhase() {
+        if (uploadPhase == TelemetryJournal.PHASE_NONE) {
+            return;
+        }
+        if (telemetryJournal != null) {
+            telemetryJournal.recordPhase(TelemetryJournal.FLOW_PHOTO_ID_MATCH, uploadPhase, currentSessionId,
+                    (System.nanoTime() - uploadStartNanos) / 1000000L, uploadBytes, TelemetryJournal.HTTP_STATUS_UNKNOWN);
+        }
+        sessionBytesSent += uploadBytes;
+        uploadPhase = TelemetryJournal.PHASE_NONE;
+    }
+
+    private void finishUploadCall(boolean succeeded) {
+        closeLiveWindow();
+        pendingResultKey = null;
+        if (uploadCall == null) {
+            return;
+        }
+        if (succeeded) {
+            uploadCall.succeeded();
+        } else {
+            uploadCall.failed();
+        }
+        uploadCall = null;
+    }
+
+    // A cancelled upload says nothing about the server, so it is dropped without being recorded.
+    private void cancelUploadCall() {
+        closeLiveWindow();
+        pendingResultKey = null;
+        if (uploadCall != null) {
+            uploadCall.cancelled();
+            uploadCall = null;
+        }
+    }
+
+    // Dart reports server and network failures as a JSON blob with success=false instead of a
+    // scanResultBlob; anything else is an opaque blob from the FaceTec server.
+    private static boolean isErrorResultBlob(String resultBlob) {
+        if (resultBlob == null || resultBlob.isEmpty()) {
+            return true;
+        }
+        if (!resultBlob.startsWith("{")) {
+            return false;
+        }
+        try {
+            JSONObject resultJSON = new JSONObject(resultBlob);
+            return resultJSON.has("error") && !resultJSON.optBoolean("success", false);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void doCancelPhotoIDMatch(short reason) {
         try {
             Log.d(TAG, "Canceling Photo ID Match");
+            if (faceOutcome == FaceOutcome.PENDING) {
+                faceOutcome = FaceOutcome.FAILED;
+            }
+            pendingIDScanUpload = null;
+            if (sessionCancellation != null) {
+                sessionCancellation.cancel();
+            }
+            if (EndpointGuard.isUploadFailure(reason)) {
+                finishUploadCall(false);
+            } else {
+                cancelUploadCall();
+            }
             if (timeoutRunnable != null) {
                 mainHandler.removeCallbacks(timeoutRunnable);
                 timeoutRunnable = null;
@@ -630,6 +1144,9 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
                 } catch (Exception e) {
                     Log.e(TAG, "Error canceling ID scan: " + e.getMessage());
                 }
+            } else if (isProcessingDocument) {
+                Log.d(TAG, "ID capture running without a callback, cancelling it when the SDK hands one over");
+                idScanCancelPending = true;
             }
 
             // Esperar un momento antes de limpiar el estado para dar tiempo a que la cámara se libere
@@ -700,10 +1217,91 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
         }
     }
 
+    // Tells the SDK the selfie step is done without waiting for the server; the real selfie result
+    // arrives later through onOptimisticFaceResult.
+    private void handOffFaceScan() {
+        FaceTecFaceScanResultCallback callback = faceScanResultCallbackRef;
+        if (callback == null) {
+            return;
+        }
+        try {
+            JSONObject handOffResult = new JSONObject();
+            handOffResult.put("success", true);
+            handOffResult.put("sessionId", currentSessionId);
+            handOffResult.put("nextStep", "DOCUMENT_SCAN");
+            handOffResult.put("optimistic", true);
+            faceOutcome = FaceOutcome.PENDING;
+            faceSessionHandedOff = true;
+            // The selfie session ends here; failures from now on cancel the ID session instead.
+            faceScanResultCallbackRef = null;
+            callback.proceedToNextStep(handOffResult.toString());
+            Log.d(TAG, "Selfie handed off, ID capture starts while it uploads");
+        } catch (Exception e) {
+            Log.e(TAG, "Error handing off selfie: " + e.getMessage());
+            cancelPhotoIDMatch();
+        }
+    }
+
+    // The selfie result in optimistic mode. Kept apart from onPhotoIDMatchResultBlobReceived, whose
+    // state reset would otherwise strand the ID capture that is already running.
+    private void onOptimisticFaceResult(String faceResultBlob) {
+        if (sessionCancellation == null || sessionCancellation.isCancelled()) {
+            Log.d(TAG, "Ignoring selfie result for a cancelled session");
+            return;
+        }
+        boolean failed = isErrorResultBlob(faceResultBlob);
+        recordUploadPhase();
+        finishUploadCall(!failed);
+        if (failed) {
+            Log.e(TAG, "Selfie rejected after hand-off, failing the session");
+            cancelPhotoIDMatch(TelemetryJournal.CANCEL_SERVER_REJECTED);
+            return;
+        }
+        faceOutcome = FaceOutcome.SUCCEEDED;
+        runFaceResultBlob = faceResultBlob;
+        Runnable upload = pendingIDScanUpload;
+        pendingIDScanUpload = null;
+        if (upload != null) {
+            upload.run();
+        }
+    }
+
     private void onPhotoIDMatchResultBlobReceived(String photoIDMatchResultBlob) {
+        // Checked before the state reset below, which must not run for a duplicate: it would
+        // strand the step that is actually in progress.
+        if (pendingResultKey == null) {
+            if (resultCache != null) {
+                resultCache.recordUnexpected(photoIDMatchResultBlob);
+            }
+            return;
+        }
+        if (faceOutcome == FaceOutcome.PENDING) {
+            onOptimisticFaceResult(photoIDMatchResultBlob);
+            return;
+        }
         try {
             Log.d(TAG, "=== START onPhotoIDMatchResultBlobReceived ===");
+            if (sessionCancellation == null || sessionCancellation.isCancelled()) {
+                // A late result for a session that was already cancelled or finished.
+                Log.d(TAG, "Ignoring result blob for a cancelled session");
+                return;
+            }
             Log.d(TAG, "Received result blob - Length: " + (photoIDMatchResultBlob != null ? photoIDMatchResultBlob.length() : 0));
+            if (resultCache != null && isProcessingDocument && photoIDMatchResultBlob != null
+                    && !isErrorResultBlob(photoIDMatchResultBlob)) {
+                // Only ID scan results are looked up. Error results are not cached, so a retried
+                // step uploads again.
+                resultCache.put(pendingResultKey, photoIDMatchResultBlob);
+            }
+            recordUploadPhase();
+            finishUploadCall(!isErrorResultBlob(photoIDMatchResultBlob));
+            if (!isErrorResultBlob(photoIDMatchResultBlob)) {
+                if (isProcessingDocument) {
+                    runMatchResultBlob = photoIDMatchResultBlob;
+                } else {
+                    runFaceResultBlob = photoIDMatchResultBlob;
+                }
+            }
             
             // Determinar qué callback usar basado en el estado actual
             if (isProcessingDocument && idScanResultCallbackRef != null) {
@@ -753,6 +1351,9 @@ public class PhotoIDMatchProcessor implements FaceTecFaceScanProcessor, FaceTecI
     private void onPhotoIDMatchResultUploadDelay(String uploadMessage) {
         try {
             Log.d(TAG, "Upload delay message: " + uploadMessage);
+            if (sessionCancellation == null || sessionCancellation.isCancelled()) {
+                return;
+            }
             if (faceScanResultCallbackRef != null) {
                 Log.d(TAG, "Setting upload message override");
                 faceScanResultCallbackRef.uploadMessageOverride(uploadMessage);
@@ -0,0 +1,37 @@
+package com.example.flutter_facetec_sample_app;
+
+// How a Photo ID Match run through runPhotoIDMatch() ended, after the ID step or the failure that
+// stopped the flow. As with LivenessResult, cancellations and rejections are results.
+public final class PhotoIDMatchResult {
+    public final boolean succeeded;
+    public final String sessionId;
+    // The selfie result; null if the selfie step failed.
+    public final String faceScanResultBlob;
+    // The match result from /photo-id-match; null unless succeeded.
+    public final String matchResultBlob;
+    public final int sdkStatus;
+    public final short cancelReason;
+    public final long durationMs;
+    public final long bytesSent;
+    public final int uploads;
+
+    PhotoIDMatchResult(String sessionId, String faceScanResultBlob, String matchResultBlob, int sdkStatus,
+                       short cancelReason, long durationMs, long bytesSent, int uploads) {
+        this.succeeded = matchResultBlob != null && cancelReason == TelemetryJournal.CANCEL_NONE;
+        this.sessionId = sessionId;
+        this.faceScanResultBlob = faceScanResultBlob;
+        this.matchResultBlob = matchResultBlob;
+        this.sdkStatus = sdkStatus;
+        this.cancelReason = cancelReason;
+        this.durationMs = durationMs;
+        this.bytesSent = bytesSent;
+        this.uploads = uploads;
+    }
+
+    @Override
+    public String toString() {
+        return "PhotoIDMatchResult{succeeded=" + succeeded + ", sessionId=" + sessionId + ", sdkStatus=" + sdkStatus
+                + ", cancelReason=" + cancelReason + ", durationMs=" + durationMs + ", bytesSent=" + bytesSent
+                + ", uploads=" + uploads + "}";
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Shared worker pool for native background work, so uploads, prefetches, probes and telemetry
+// stop competing for threads and for the link. Tasks run in strict class order:
+//   LIVE_UPLOAD > LIVE_PARSE > RETRY > PREFETCH > TELEMETRY
+// Each class has a bounded queue; trySubmit() rejects when it is full and submit() blocks the
+// producer until there is room, which is how backpressure reaches it. Non-live classes never
+// occupy more than maxBackgroundWorkers threads, so a live task always finds a free worker, and
+// while any live window is open (a session waiting in processSessionWhileFaceTecSDKWaits) they
+// are not dispatched at all. Long background tasks should check shouldYield() between steps.
+public class PriorityScheduler {
+    private static final String TAG = "PriorityScheduler";
+    public static final int DEFAULT_WORKERS = 2;
+
+    public enum Priority {
+        LIVE_UPLOAD(16), LIVE_PARSE(16), RETRY(8), PREFETCH(4), TELEMETRY(32);
+
+        final int defaultCapacity;
+
+        Priority(int defaultCapacity) {
+            this.defaultCapacity = defaultCapacity;
+        }
+
+        public boolean isLive() {
+            return this == LIVE_UPLOAD || this == LIVE_PARSE;
+        }
+    }
+
+    // Closed once the session's upload has produced a result or been cancelled. close() is idempotent.
+    public final class LiveWindow {
+        private boolean closed = false;
+
+        public void close() {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                liveWindows--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static final class Task {
+        final Priority priority;
+        final Runnable runnable;
+        final long enqueuedNanos;
+
+        Task(Priority priority, Runnable runnable) {
+            this.priority = priority;
+            this.runnable = runnable;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private static final class ClassStats {
+        long executed;
+        long rejected;
+        long totalWaitNanos;
+        long maxWaitNanos;
+    }
+
+    private final Object lock = new Object();
+    private final Map<Priority, ArrayDeque<Task>> queues = new HashMap<>();
+    private final Map<Priority, Integer> capacities = new HashMap<>();
+    private final Map<Priority, ClassStats> stats = new HashMap<>();
+    private final int maxBackgroundWorkers;
+    private int runningBackground = 0;
+    private int liveWindows = 0;
+    private boolean shutdown = false;
+
+    public PriorityScheduler() {
+        this(DEFAULT_WORKERS);
+    }
+
+    public PriorityScheduler(int workers) {
+        int workerCount = Math.max(2, workers);
+        this.maxBackgroundWorkers = workerCount - 1;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            capacities.put(priority, priority.defaultCapacity);
+            stats.put(priority, new ClassStats());
+        }
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::runWorker, "PriorityScheduler-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    public void setCapacity(Priority priority, int capacity) {
+        synchronized (lock) {
+            capacities.put(priority, Math.max(1, capacity));
+        }
+    }
+
+    // Enqueues the task, or returns false right away when its class queue is full.
+    public boolean trySubmit(Priority priority, Runnable runnable) {
+        synchronized (lock) {
+            if (shutdown || queues.get(priority).size() >= capacities.get(priority)) {
+                stats.get(priority).rejected++;
+                return false;
+            }
+            queues.get(priority).addLast(new Task(priority, runnable));
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    // Waits up to timeoutMs for room in the class queue; returns false if there was none.
+    public boolean submit(Priority priority, Runnable runnable, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (lock) {
+            while (!shutdown && queues.get(priority).size() >= capacities.get(priority)) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    stats.get(priority).rejected++;
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+            }
+            if (shutdown) {
+                return false;
+            }
+            queues.get(priority).addLast(new Task(priority, runnable));
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    public LiveWindow openLiveWindow() {
+        synchronized (lock) {
+            liveWindows++;
+            return new LiveWindow();
+        }
+    }
+
+    // True when a background task of this class should stop at its next safe point and requeue.
+    public boolean shouldYield(Priority priority) {
+        if (priority.isLive()) {
+            return false;
+        }
+        synchronized (lock) {
+            return shutdown || liveWindows > 0
+                    || !queues.get(Priority.LIVE_UPLOAD).isEmpty() || !queues.get(Priority.LIVE_PARSE).isEmpty();
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        synchronized (lock) {
+            metrics.put("liveWindows", liveWindows);
+            metrics.put("runningBackground", runningBackground);
+            for (Priority priority : Priority.values()) {
+                ClassStats classStats = stats.get(priority);
+                Map<String, Object> classMetrics = new HashMap<>();
+                classMetrics.put("queueDepth", queues.get(priority).size());
+                classMetrics.put("capacity", capacities.get(priority));
+                classMetrics.put("executed", classStats.executed);
+                classMetrics.put("rejected", classStats.rejected);
+                classMetrics.put("meanWaitMs", classStats.executed == 0 ? 0
+                        : TimeUnit.NANOSECONDS.toMillis(classStats.totalWaitNanos / classStats.executed));
+                classMetrics.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(classStats.maxWaitNanos));
+                metrics.put(priority.name().toLowerCase(Locale.US), classMetrics);
+            }
+        }
+        return metrics;
+    }
+
+    // Drops queued work; tasks already running finish on their own.
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            for (ArrayDeque<Task> queue : queues.values()) {
+                queue.clear();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            Task task;
+            synchronized (lock) {
+                while ((task = nextTaskLocked()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            try {
+                task.runnable.run();
+            } catch (Throwable t) {
+                Log.e(TAG, "Error in " + task.priority + " task: " + t.getMessage());
+            } finally {
+                if (!task.priority.isLive()) {
+                    synchronized (lock) {
+                        runningBackground--;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private Task nextTaskLocked() {
+        for (Priority priority : Priority.values()) {
+            ArrayDeque<Task> queue = queues.get(priority);
+            if (queue.isEmpty()) {
+                continue;
+            }
+            if (!priority.isLive() && (liveWindows > 0 || runningBackground >= maxBackgroundWorkers)) {
+                // Everything below is background too and equally held back.
+                return null;
+            }
+            Task task = queue.pollFirst();
+            if (!priority.isLive()) {
+                runningBackground++;
+            }
+            ClassStats classStats = stats.get(priority);
+            long waitNanos = System.nanoTime() - task.enqueuedNanos;
+            classStats.executed++;
+            classStats.totalWaitNanos += waitNanos;
+            classStats.maxWaitNanos = Math.max(classStats.maxWaitNanos, waitNanos);
+            // Wake producers blocked on a full queue.
+            lock.notifyAll();
+            return task;
+        }
+        return null;
+    }
+}
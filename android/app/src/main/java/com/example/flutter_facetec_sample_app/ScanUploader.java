@@ -0,0 +1,193 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+// Native upload path for the session endpoints, used instead of the Dart http client when
+// initialize is called with "nativeUploads": true. Bodies are streamed from the session data
+// through UploadCompression on a PriorityScheduler worker as LIVE_UPLOAD work, so neither the JSON
+// encoding nor the deflate work ever runs on the main looper. Callbacks are handed off as
+// LIVE_PARSE work, which frees the upload slot while the response is parsed.
+// Each upload runs under the session's CancellationToken: cancelling it disconnects the socket
+// mid-write or mid-read, and no callback is delivered for a cancelled upload. The uploader owns
+// the body map and clears it once the request is done, so the scan strings are released early.
+// Both callbacks report the request body bytes that reached the socket, after compression and
+// including a retry without it, for the session telemetry.
+public class ScanUploader {
+    private static final String TAG = "ScanUploader";
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_READ_TIMEOUT_MS = 60000;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    public interface Callback {
+        void onResponse(int statusCode, String responseBody, long bytesSent);
+
+        void onError(Exception e, long bytesSent);
+    }
+
+    private final String deviceKeyIdentifier;
+    private final UploadCompression compression;
+    private final PriorityScheduler scheduler;
+    private volatile boolean shutdown = false;
+    private volatile int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+    private volatile int readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+
+    public ScanUploader(String deviceKeyIdentifier, UploadCompression compression, PriorityScheduler scheduler) {
+        this.deviceKeyIdentifier = deviceKeyIdentifier;
+        this.scheduler = scheduler;
+        this.compression = compression != null ? compression : UploadCompression.disabled();
+    }
+
+    public void setTimeouts(int connectTimeoutMs, int readTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    public void upload(String baseURL, String path, Map<String, Object> body, String userAgent,
+                       CancellationToken token, Callback callback) {
+        boolean queued = scheduler.trySubmit(PriorityScheduler.Priority.LIVE_UPLOAD, () -> {
+            if (shutdown) {
+                body.clear();
+                return;
+            }
+            Response response = null;
+            Exception error = null;
+            final long[] bytesSent = new long[1];
+            try {
+                token.throwIfCancelled();
+                Tracing.beginSection("ScanUploader.upload" + path);
+                try {
+                    response = post(baseURL, path, body, userAgent, token, bytesSent);
+                } finally {
+                    Tracing.endSection();
+                }
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                body.clear();
+            }
+            if (token.isCancelled()) {
+                Log.d(TAG, "Upload to " + path + " cancelled, dropping its outcome");
+            } else if (error != null) {
+                Log.e(TAG, "Error uploading to " + path + ": " + error.getMessage());
+                callback.onError(error, bytesSent[0]);
+            } else {
+                Response completed = response;
+                if (!scheduler.trySubmit(PriorityScheduler.Priority.LIVE_PARSE,
+                        () -> callback.onResponse(completed.statusCode, completed.body, bytesSent[0]))) {
+                    callback.onResponse(completed.statusCode, completed.body, bytesSent[0]);
+                }
+            }
+        });
+        if (!queued) {
+            body.clear();
+            callback.onError(new RejectedExecutionException("Upload queue is full"), 0);
+        }
+    }
+
+    // The scheduler is shared and outlives the uploader; queued uploads are dropped when they run.
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    private static final class Response {
+        final int statusCode;
+        final String body;
+
+        Response(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+    }
+
+    private Response post(String baseURL, String path, Map<String, Object> body, String userAgent,
+                          CancellationToken token, long[] bytesSent) throws IOException {
+        long bodyBytes = JsonBodyWriter.length(body);
+        boolean compress = compression.shouldCompress(baseURL, bodyBytes);
+        Response response = postOnce(baseURL, path, body, bodyBytes, compress, userAgent, token, bytesSent);
+        if (compress && response.statusCode == HTTP_UNSUPPORTED_MEDIA_TYPE) {
+            compression.markUnsupported(baseURL);
+            response = postOnce(baseURL, path, body, bodyBytes, false, userAgent, token, bytesSent);
+        }
+        return response;
+    }
+
+    private Response postOnce(String baseURL, String path, Map<String, Object> body, long bodyBytes,
+                              boolean compress, String userAgent, CancellationToken token,
+                              long[] bytesSent) throws IOException {
+        token.throwIfCancelled();
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseURL + path).openConnection();
+        // Disconnecting from the cancelling thread closes the socket under a blocked write or read.
+        Runnable unregister = token.onCancel(connection::disconnect);
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(connectTimeoutMs);
+            connection.setReadTimeout(readTimeoutMs);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("X-Device-Key", deviceKeyIdentifier);
+            connection.setRequestProperty("User-Agent", userAgent);
+            connection.setRequestProperty("X-User-Agent", userAgent);
+            if (compress) {
+                // The compressed length is unknown until the body has been written.
+                connection.setRequestProperty("Content-Encoding", compression.getEncoding());
+                connection.setChunkedStreamingMode(0);
+            } else {
+                connection.setFixedLengthStreamingMode(bodyBytes);
+            }
+            OutputStream connectionStream = new CancellableOutputStream(connection.getOutputStream(), token, bytesSent);
+            try (OutputStream out = compress ? compression.wrap(connectionStream) : connectionStream) {
+                JsonBodyWriter.write(body, out);
+            }
+            int statusCode = connection.getResponseCode();
+            compression.onAcceptEncoding(baseURL, connection.getHeaderField("Accept-Encoding"));
+            String responseBody = FaceTecAPIClient.readBody(
+                    statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            Log.d(TAG, path + " returned HTTP " + statusCode + ", body " + bodyBytes + " bytes"
+                    + (compress ? " (" + compression.getEncoding() + ")" : ""));
+            return new Response(statusCode, responseBody);
+        } finally {
+            unregister.run();
+            connection.disconnect();
+        }
+    }
+
+    // Stops writing at the next buffer boundary once the token is cancelled, even if the
+    // platform's disconnect() has not yet reached the socket. Counts what it passes on into
+    // bytesSent[0].
+    private static final class CancellableOutputStream extends FilterOutputStream {
+        private final CancellationToken token;
+        private final long[] bytesSent;
+
+        CancellableOutputStream(OutputStream out, CancellationToken token, long[] bytesSent) {
+            super(out);
+            this.token = token;
+            this.bytesSent = bytesSent;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (token.isCancelled()) {
+                throw new IOException("Upload cancelled");
+            }
+            out.write(b);
+            bytesSent[0]++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (token.isCancelled()) {
+                throw new IOException("Upload cancelled");
+            }
+            out.write(b, off, len);
+            bytesSent[0] += len;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.flutter_facetec_sample_app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// The result of a session run by MainActivity.runLiveness() or runPhotoIDMatch(), composable like
+// a CompletableFuture: the method names are the same so hosts can move over once minSdk reaches
+// 24, but it only depends on APIs available on 21. Stages without an executor run on the thread
+// that completes the future, which for sessions is the main thread; pass an executor to move
+// uploads or result handling off it. A failing stage fails its dependents with the same
+// Throwable, unwrapped. Cancelling a future cancels the session behind it; cancelling a
+// dependent stage does not reach back upstream.
+public final class SessionFuture<T> implements Future<T> {
+    public interface Transform<T, R> {
+        R apply(T value) throws Exception;
+    }
+
+    public interface Chain<T, R> {
+        SessionFuture<R> apply(T value) throws Exception;
+    }
+
+    public interface Listener<T> {
+        // Exactly one of value and error is meaningful; error is null on success.
+        void onComplete(T value, Throwable error);
+    }
+
+    private boolean done = false;
+    private T value;
+    private Throwable error;
+    private List<Runnable> callbacks = new ArrayList<>();
+    private Runnable onCancel;
+
+    public static <T> SessionFuture<T> completedFuture(T value) {
+        SessionFuture<T> future = new SessionFuture<>();
+        future.complete(value);
+        return future;
+    }
+
+    public static <T> SessionFuture<T> failedFuture(Throwable error) {
+        SessionFuture<T> future = new SessionFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    // Completes once every future has, failing with the first error in argument order.
+    public static SessionFuture<Void> allOf(SessionFuture<?>... futures) {
+        SessionFuture<Void> all = new SessionFuture<>();
+        if (futures.length == 0) {
+            all.complete(null);
+            return all;
+        }
+        final int[] remaining = {futures.length};
+        for (SessionFuture<?> future : futures) {
+            future.onDone(() -> {
+                synchronized (remaining) {
+                    if (--remaining[0] > 0) {
+                        return;
+                    }
+                }
+                for (SessionFuture<?> f : futures) {
+                    Throwable failure = f.failure();
+                    if (failure != null) {
+                        all.completeExceptionally(failure);
+                        return;
+                    }
+                }
+                all.complete(null);
+            });
+        }
+        return all;
+    }
+
+    public boolean complete(T value) {
+        return finish(value, null);
+    }
+
+    public boolean completeExceptionally(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("error");
+        }
+        return finish(null, error);
+    }
+
+    // Run once if the future is cancelled, on the cancelling thread.
+    void setOnCancel(Runnable onCancel) {
+        synchronized (this) {
+            this.onCancel = onCancel;
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Runnable action;
+        synchronized (this) {
+            action = onCancel;
+            onCancel = null;
+        }
+        if (!finish(null, new CancellationException("Session future cancelled"))) {
+            return false;
+        }
+        if (action != null) {
+            action.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return error instanceof CancellationException;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized boolean isCompletedExceptionally() {
+        return done && error != null;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        awaitDone(-1);
+        return report();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!awaitDone(unit.toNanos(timeout))) {
+            throw new TimeoutException("Session future not completed after " + unit.toMillis(timeout) + " ms");
+        }
+        return report();
+    }
+
+    public <R> SessionFuture<R> thenApply(Transform<? super T, ? extends R> transform) {
+        return thenApplyAsync(transform, null);
+    }
+
+    public <R> SessionFuture<R> thenApplyAsync(Transform<? super T, ? extends R> transform, Executor executor) {
+        SessionFuture<R> next = new SessionFuture<>();
+        addCallback(() -> {
+            Throwable failure = failure();
+            if (failure != null) {
+                next.completeExceptionally(failure);
+                return;
+            }
+            try {
+                next.complete(transform.apply(value()));
+            } catch (Throwable t) {
+                next.completeExceptionally(t);
+            }
+        }, next, executor);
+        return next;
+    }
+
+    public <R> SessionFuture<R> thenCompose(Chain<? super T, R> chain) {
+        return thenComposeAsync(chain, null);
+    }
+
+    public <R> SessionFuture<R> thenComposeAsync(Chain<? super T, R> chain, Executor executor) {
+        SessionFuture<R> next = new SessionFuture<>();
+        addCallback(() -> {
+            Throwable failure = failure();
+            if (failure != null) {
+                next.completeExceptionally(failure);
+                return;
+            }
+            try {
+                SessionFuture<R> inner = chain.apply(value());
+                if (inner == null) {
+                    throw new NullPointerException("Chain returned no future");
+                }
+                inner.whenComplete((innerValue, innerError) -> {
+                    if (innerError != null) {
+                        next.completeExceptionally(innerError);
+                    } else {
+                        next.complete(innerValue);
+                    }
+                });
+            } catch (Throwable t) {
+                next.completeExceptionally(t);
+            }
+        }, next, executor);
+        return next;
+    }
+
+    // Maps a failure to a value; successful values pass through.
+    public SessionFuture<T> exceptionally(Transform<Throwable, ? extends T> recover) {
+        SessionFuture<T> next = new SessionFuture<>();
+        addCallback(() -> {
+            Throwable failure = failure();
+            if (failure == null) {
+                next.complete(value());
+                return;
+            }
+            try {
+                next.complete(recover.apply(failure));
+            } catch (Throwable t) {
+                next.completeExceptionally(t);
+            }
+        }, next, null);
+        return next;
+    }
+
+    public SessionFuture<T> whenComplete(Listener<? super T> listener) {
+        return whenCompleteAsync(listener, null);
+    }
+
+    // The returned future completes like this one once the listener has run, or with the
+    // listener's exception if this one succeeded.
+    public SessionFuture<T> whenCompleteAsync(Listener<? super T> listener, Executor executor) {
+        SessionFuture<T> next = new SessionFuture<>();
+        addCallback(() -> {
+            Throwable failure = failure();
+            try {
+                listener.onComplete(value(), failure);
+            } catch (Throwable t) {
+                if (failure == null) {
+                    next.completeExceptionally(t);
+                    return;
+                }
+            }
+            next.finish(value(), failure);
+        }, next, executor);
+        return next;
+    }
+
+    private boolean finish(T value, Throwable error) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            this.value = value;
+            this.error = error;
+            pending = callbacks;
+            callbacks = null;
+            if (error == null) {
+                onCancel = null;
+            }
+        }
+        for (Runnable callback : pending) {
+            callback.run();
+        }
+        return true;
+    }
+
+    private void addCallback(Runnable callback, SessionFuture<?> dependent, Executor executor) {
+        onDone(executor == null ? callback : () -> {
+            try {
+                executor.execute(callback);
+            } catch (RejectedExecutionException e) {
+                dependent.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void onDone(Runnable callback) {
+        synchronized (this) {
+            if (!done) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    private synchronized T value() {
+        return value;
+    }
+
+    private synchronized Throwable failure() {
+        return error;
+    }
+
+    private boolean awaitDone(long timeoutNanos) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        onDone(latch::countDown);
+        if (timeoutNanos < 0) {
+            latch.await();
+            return true;
+        }
+        return latch.await(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private T report() throws ExecutionException {
+        Throwable failure = failure();
+        if (failure instanceof CancellationException) {
+            throw (CancellationException) failure;
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Server results already delivered to the SDK, keyed by session, step and the scan that was
+// uploaded. The processors use it in two ways:
+//   - before uploading, a scan whose result is cached is answered from the cache, so a replayed
+//     step does not push the same multi-MB body to the server again;
+//   - a result blob that arrives while no upload is outstanding is a duplicate or late delivery
+//     (a Dart retry, a batch replayed after a timeout) and is dropped instead of being handed to
+//     whatever callback is current.
+// The scan is part of the key because an SDK retry keeps the sessionId but captures a new scan,
+// which must be uploaded. Error results are never cached. Bounded LRU, entries expire after ttlMs.
+public class SessionResultCache {
+    private static final String TAG = "SessionResultCache";
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    public static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    // Front and back of the ID travel in one /photo-id-match upload, so they share a step.
+    public enum Step { FACE, ID_SCAN }
+
+    private static final class Entry {
+        final String result;
+        final long storedAtMs;
+
+        Entry(String result, long storedAtMs) {
+            this.result = result;
+            this.storedAtMs = storedAtMs;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long duplicatesDropped = 0;
+    private long strayDropped = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    public SessionResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS);
+    }
+
+    public SessionResultCache(int maxEntries, long ttlMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SessionResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Length plus String.hashCode of each scan. The hash is computed once per string and kept by
+    // it, so the cost is a single pass over the scan when the step starts.
+    public static String key(String sessionId, Step step, String... scans) {
+        StringBuilder key = new StringBuilder().append(sessionId).append('/').append(step);
+        for (String scan : scans) {
+            key.append('/');
+            if (scan == null) {
+                key.append('-');
+            } else {
+                key.append(scan.length()).append(':').append(Integer.toHexString(scan.hashCode()));
+            }
+        }
+        return key.toString();
+    }
+
+    // The cached result for this key, or null when there is none or it has expired.
+    public synchronized String lookup(String key) {
+        dropExpiredLocked();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    public synchronized void put(String key, String result) {
+        entries.put(key, new Entry(result, now()));
+    }
+
+    // Called for a result that arrived with no upload outstanding. Always dropped; counted as a
+    // duplicate when it matches a result that was already delivered.
+    public synchronized void recordUnexpected(String result) {
+        dropExpiredLocked();
+        for (Entry entry : entries.values()) {
+            if (entry.result.equals(result)) {
+                duplicatesDropped++;
+                Log.d(TAG, "Dropped duplicate result delivery");
+                return;
+            }
+        }
+        strayDropped++;
+        Log.d(TAG, "Dropped result delivery with no upload outstanding");
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        dropExpiredLocked();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("entries", entries.size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("ttlMs", ttlMs);
+        metrics.put("hits", hits);
+        metrics.put("misses", misses);
+        metrics.put("duplicatesDropped", duplicatesDropped);
+        metrics.put("strayDropped", strayDropped);
+        metrics.put("evictions", evictions);
+        metrics.put("expirations", expirations);
+        return metrics;
+    }
+
+    private void dropExpiredLocked() {
+        long now = now();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().storedAtMs >= ttlMs) {
+                iterator.remove();
+                expirations++;
+            }
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
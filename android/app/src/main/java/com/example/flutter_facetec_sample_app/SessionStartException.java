@@ -0,0 +1,23 @@
+package com.example.flutter_facetec_sample_app;
+
+import io.flutter.plugin.common.MethodChannel;
+
+// Fails a SessionFuture when the session never launched: SDK not ready, endpoint guard refusal,
+// no session token. The code is the one the MethodChannel adapters report to Dart.
+public class SessionStartException extends Exception {
+    public final String code;
+
+    public SessionStartException(String code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    // Reports a failed start to Dart; true if error was one.
+    static boolean reply(Throwable error, MethodChannel.Result result) {
+        if (!(error instanceof SessionStartException)) {
+            return false;
+        }
+        result.error(((SessionStartException) error).code, error.getMessage(), null);
+        return true;
+    }
+}
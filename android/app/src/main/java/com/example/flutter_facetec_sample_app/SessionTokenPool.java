@@ -0,0 +1,288 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Keeps a small number of session tokens fetched ahead of time so startLivenessCheck and
+// startPhotoIDMatch can open the camera without waiting on a /session-token round trip.
+// Tokens are discarded once they reach maxTokenAgeMs, which must stay below the server's own
+// token lifetime, and the pool refills in the background whenever it drops to the low watermark.
+// Once started, a timer also replaces the oldest token shortly before it expires, so an idle pool
+// stays full, and retries a failed refill with exponential backoff.
+// Refills run on the shared PriorityScheduler as PREFETCH work and step aside for live sessions;
+// an on-demand fetch has a user waiting on it and runs as LIVE_UPLOAD.
+public class SessionTokenPool {
+    private static final String TAG = "SessionTokenPool";
+    public static final int DEFAULT_CAPACITY = 2;
+    public static final long DEFAULT_MAX_TOKEN_AGE_MS = TimeUnit.MINUTES.toMillis(4);
+    // How long before its expiry a token is replaced; capped at a quarter of maxTokenAgeMs.
+    private static final long REFRESH_AHEAD_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long INITIAL_RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public interface TokenFetcher {
+        String fetchSessionToken() throws Exception;
+    }
+
+    public interface TokenCallback {
+        void onToken(String sessionToken);
+
+        void onError(Exception e);
+    }
+
+    private static final class PooledToken {
+        final String sessionToken;
+        final long issuedAtMs;
+
+        PooledToken(String sessionToken, long issuedAtMs) {
+            this.sessionToken = sessionToken;
+            this.issuedAtMs = issuedAtMs;
+        }
+    }
+
+    private final TokenFetcher fetcher;
+    private final int capacity;
+    private final int lowWatermark;
+    private final long maxTokenAgeMs;
+    private final long refreshAheadMs;
+    private final ArrayDeque<PooledToken> tokens = new ArrayDeque<>();
+    private final PriorityScheduler scheduler;
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> pendingTimer;
+    private long initialRetryDelayMs = INITIAL_RETRY_DELAY_MS;
+    private long maxRetryDelayMs = MAX_RETRY_DELAY_MS;
+    private int consecutiveFailures = 0;
+    private boolean refillScheduled = false;
+    private boolean prefetchSuspended = false;
+    private boolean shutdown = false;
+
+    public SessionTokenPool(TokenFetcher fetcher, int capacity, long maxTokenAgeMs, PriorityScheduler scheduler) {
+        this.fetcher = fetcher;
+        this.scheduler = scheduler;
+        this.capacity = Math.max(1, capacity);
+        this.lowWatermark = this.capacity / 2;
+        this.maxTokenAgeMs = maxTokenAgeMs;
+        this.refreshAheadMs = Math.min(REFRESH_AHEAD_MS, maxTokenAgeMs / 4);
+    }
+
+    public void start() {
+        Log.d(TAG, "Starting session token prefetch, capacity: " + capacity);
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            if (timer == null) {
+                timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "SessionTokenPoolTimer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        scheduleRefill();
+    }
+
+    // Overrides the delays between retries of a failed refill, which double up to maxDelayMs.
+    void setRetryBackoff(long initialDelayMs, long maxDelayMs) {
+        synchronized (this) {
+            initialRetryDelayMs = initialDelayMs;
+            maxRetryDelayMs = maxDelayMs;
+        }
+    }
+
+    // Returns a fresh pooled token, or null when none is available. Never blocks.
+    public String poll() {
+        String sessionToken = null;
+        synchronized (this) {
+            dropExpiredLocked();
+            PooledToken pooledToken = tokens.pollFirst();
+            if (pooledToken != null) {
+                sessionToken = pooledToken.sessionToken;
+                scheduleRefreshLocked();
+            }
+        }
+        if (available() <= lowWatermark) {
+            scheduleRefill();
+        }
+        return sessionToken;
+    }
+
+    // Delivers a token on the calling thread when one is pooled, otherwise fetches one on the
+    // scheduler and delivers it there. Callers must hop back to the main thread.
+    public void acquire(TokenCallback callback) {
+        String sessionToken = poll();
+        if (sessionToken != null) {
+            callback.onToken(sessionToken);
+            return;
+        }
+        Log.d(TAG, "Pool empty, fetching session token on demand");
+        boolean queued = scheduler.trySubmit(PriorityScheduler.Priority.LIVE_UPLOAD, () -> {
+            try {
+                callback.onToken(fetcher.fetchSessionToken());
+            } catch (Exception e) {
+                Log.e(TAG, "Error fetching session token: " + e.getMessage());
+                callback.onError(e);
+            }
+        });
+        if (!queued) {
+            callback.onError(new RejectedExecutionException("Session token queue is full"));
+        }
+    }
+
+    public synchronized int available() {
+        dropExpiredLocked();
+        return tokens.size();
+    }
+
+    public synchronized void clear() {
+        tokens.clear();
+        scheduleRefreshLocked();
+    }
+
+    // While suspended the pool stops prefetching; acquire() still fetches on demand.
+    public void setPrefetchSuspended(boolean suspended) {
+        synchronized (this) {
+            prefetchSuspended = suspended;
+        }
+        if (!suspended) {
+            scheduleRefill();
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            tokens.clear();
+            if (timer != null) {
+                timer.shutdownNow();
+                timer = null;
+                pendingTimer = null;
+            }
+        }
+    }
+
+    private void scheduleRefill() {
+        synchronized (this) {
+            if (refillScheduled || prefetchSuspended || shutdown) {
+                return;
+            }
+            refillScheduled = true;
+        }
+        if (!scheduler.trySubmit(PriorityScheduler.Priority.PREFETCH, this::refill)) {
+            // Backpressure: leave it to the next poll() below the watermark.
+            synchronized (this) {
+                refillScheduled = false;
+            }
+        }
+    }
+
+    private void refill() {
+        boolean requeue = false;
+        try {
+            while (true) {
+                synchronized (this) {
+                    dropExpiredLocked();
+                    if (shutdown || prefetchSuspended) {
+                        return;
+                    }
+                    if (freshCountLocked() >= capacity) {
+                        // Woken a little early; wait for the oldest token again.
+                        scheduleRefreshLocked();
+                        return;
+                    }
+                }
+                if (scheduler.shouldYield(PriorityScheduler.Priority.PREFETCH)) {
+                    // Queued behind the live session; it runs again once the window closes.
+                    requeue = true;
+                    return;
+                }
+                String sessionToken = fetcher.fetchSessionToken();
+                synchronized (this) {
+                    consecutiveFailures = 0;
+                    tokens.addLast(new PooledToken(sessionToken, now()));
+                    // A full pool only refills to replace tokens about to expire; those go now.
+                    while (tokens.size() > capacity) {
+                        tokens.pollFirst();
+                    }
+                    Log.d(TAG, "Prefetched session token, pool size: " + tokens.size());
+                    scheduleRefreshLocked();
+                }
+            }
+        } catch (Exception e) {
+            // Leave the pool short and retry after a backoff; a poll() below the watermark
+            // still retries sooner.
+            synchronized (this) {
+                consecutiveFailures++;
+                long delayMs = Math.min(maxRetryDelayMs,
+                        initialRetryDelayMs << Math.min(consecutiveFailures - 1, 16));
+                Log.e(TAG, "Error prefetching session token, retrying in " + delayMs + " ms: " + e.getMessage());
+                scheduleTimerLocked(delayMs);
+            }
+        } finally {
+            synchronized (this) {
+                refillScheduled = false;
+            }
+            if (requeue) {
+                scheduleRefill();
+            }
+        }
+    }
+
+    private void dropExpiredLocked() {
+        long now = now();
+        while (!tokens.isEmpty() && now - tokens.peekFirst().issuedAtMs >= maxTokenAgeMs) {
+            tokens.pollFirst();
+            Log.d(TAG, "Dropped expired session token");
+        }
+    }
+
+    // Tokens not yet within refreshAheadMs of expiring. Tokens are kept in issue order.
+    private int freshCountLocked() {
+        long now = now();
+        int fresh = 0;
+        Iterator<PooledToken> newestFirst = tokens.descendingIterator();
+        while (newestFirst.hasNext() && now - newestFirst.next().issuedAtMs < maxTokenAgeMs - refreshAheadMs) {
+            fresh++;
+        }
+        return fresh;
+    }
+
+    // Wakes the pool when the oldest token is due for replacement. A pending retry is kept, since
+    // a failing server would fail the refresh too.
+    private void scheduleRefreshLocked() {
+        if (consecutiveFailures > 0) {
+            return;
+        }
+        PooledToken oldest = tokens.peekFirst();
+        if (oldest == null) {
+            if (pendingTimer != null) {
+                pendingTimer.cancel(false);
+                pendingTimer = null;
+            }
+            return;
+        }
+        scheduleTimerLocked(Math.max(0, oldest.issuedAtMs + maxTokenAgeMs - refreshAheadMs - now()));
+    }
+
+    private void scheduleTimerLocked(long delayMs) {
+        if (timer == null) {
+            // Not started, or shut down.
+            return;
+        }
+        if (pendingTimer != null) {
+            pendingTimer.cancel(false);
+        }
+        pendingTimer = timer.schedule(this::scheduleRefill, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
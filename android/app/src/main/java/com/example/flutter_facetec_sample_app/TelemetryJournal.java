@@ -0,0 +1,297 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Per-session field telemetry as fixed 64-byte binary records in a memory-mapped ring of segments.
+// The file never grows past segments * segmentBytes: when the write segment fills up the next one
+// is reused, dropping whatever it still held that had not been uploaded. Records are plain stores
+// into the mapping, so record() neither allocates nor makes a system call, and the kernel keeps
+// the pages when the process dies. The type byte is written last and doubles as the commit flag.
+//
+// Segment header (64 bytes): int magic "FTJ1", short version, short recordBytes, long sequence,
+// int uploadedRecords. Records that follow, big-endian:
+//    0 long  wallClockMs        8 long  bytesSent        16 long  bytesReceived
+//   24 int   sessionHash       28 int   durationMs       32 int   retries
+//   36 int   httpStatus        40 short phase            42 short cancelReason
+//   44 byte  flow              45 byte  deviceClass      46 byte  sdkStatus
+//   47..62   reserved          63 byte  type (0 = empty)
+// The facetec-perf TelemetryCollector decodes the same layout.
+public class TelemetryJournal implements Closeable {
+    private static final String TAG = "TelemetryJournal";
+    public static final int MAGIC = 0x46544a31;
+    public static final short VERSION = 1;
+    public static final int RECORD_BYTES = 64;
+    public static final int DEFAULT_SEGMENT_BYTES = 32 * 1024;
+    public static final int DEFAULT_SEGMENTS = 4;
+    private static final int HEADER_BYTES = RECORD_BYTES;
+    private static final int HEADER_SEQUENCE = 8;
+    private static final int HEADER_UPLOADED = 16;
+
+    public static final byte TYPE_SESSION = 1;
+    public static final byte TYPE_PHASE = 2;
+    public static final byte TYPE_CANCEL = 3;
+
+    public static final byte FLOW_NONE = 0;
+    public static final byte FLOW_LIVENESS = 1;
+    public static final byte FLOW_PHOTO_ID_MATCH = 2;
+
+    public static final short PHASE_NONE = 0;
+    public static final short PHASE_SDK_INITIALIZE = 1;
+    public static final short PHASE_SESSION_TOKEN = 2;
+    public static final short PHASE_FACE_UPLOAD = 3;
+    public static final short PHASE_ID_UPLOAD = 4;
+
+    public static final short CANCEL_NONE = 0;
+    public static final short CANCEL_SDK_STATUS = 1;
+    public static final short CANCEL_UPLOAD_ERROR = 2;
+    public static final short CANCEL_SERVER_REJECTED = 3;
+    public static final short CANCEL_REQUESTED_BY_DART = 4;
+    public static final short CANCEL_INTERNAL_ERROR = 5;
+    // A native host cancelled the SessionFuture of the session.
+    public static final short CANCEL_REQUESTED_BY_HOST = 6;
+    // The flow gave up waiting for its next step, e.g. for startDocumentScan after the selfie.
+    public static final short CANCEL_TIMED_OUT = 7;
+
+    public static final byte NO_SDK_STATUS = -1;
+    public static final int HTTP_STATUS_UNKNOWN = 0;
+
+    private static final int OFFSET_WALL_CLOCK = 0;
+    private static final int OFFSET_BYTES_SENT = 8;
+    private static final int OFFSET_BYTES_RECEIVED = 16;
+    private static final int OFFSET_SESSION_HASH = 24;
+    private static final int OFFSET_DURATION = 28;
+    private static final int OFFSET_RETRIES = 32;
+    private static final int OFFSET_HTTP_STATUS = 36;
+    private static final int OFFSET_PHASE = 40;
+    private static final int OFFSET_CANCEL_REASON = 42;
+    private static final int OFFSET_FLOW = 44;
+    private static final int OFFSET_DEVICE_CLASS = 45;
+    private static final int OFFSET_SDK_STATUS = 46;
+    private static final int OFFSET_TYPE = 63;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int segments;
+    private final int segmentBytes;
+    private final int recordsPerSegment;
+    // Per segment: records written, recovered by scanning for the first empty type byte.
+    private final int[] writtenRecords;
+    private int writeSegment;
+    private long nextSequence;
+    private byte deviceClass = -1;
+    private long recordsWritten = 0;
+    private long recordsDropped = 0;
+
+    public TelemetryJournal(File path) throws IOException {
+        this(path, DEFAULT_SEGMENTS, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public TelemetryJournal(File path, int segments, int segmentBytes) throws IOException {
+        this.segments = Math.max(2, segments);
+        this.segmentBytes = Math.max(HEADER_BYTES + RECORD_BYTES, segmentBytes / RECORD_BYTES * RECORD_BYTES);
+        this.recordsPerSegment = (this.segmentBytes - HEADER_BYTES) / RECORD_BYTES;
+        this.writtenRecords = new int[this.segments];
+        File directory = path.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        file = new RandomAccessFile(path, "rw");
+        long size = (long) this.segments * this.segmentBytes;
+        boolean fresh = file.length() != size;
+        if (fresh) {
+            // A different geometry from an older build; start over.
+            file.setLength(0);
+            file.setLength(size);
+        }
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        recover(fresh);
+    }
+
+    // Stamped into every following record.
+    public synchronized void setDeviceClass(DeviceProfile.DeviceClass deviceClass) {
+        this.deviceClass = (byte) deviceClass.ordinal();
+    }
+
+    public void recordPhase(byte flow, short phase, String sessionId, long durationMs, long bytesSent, int httpStatus) {
+        record(TYPE_PHASE, flow, phase, sessionId, NO_SDK_STATUS, CANCEL_NONE, durationMs, bytesSent, 0, 0, httpStatus);
+    }
+
+    public void recordCancel(byte flow, short cancelReason, String sessionId, int sdkStatus) {
+        record(TYPE_CANCEL, flow, PHASE_NONE, sessionId, sdkStatus, cancelReason, 0, 0, 0, 0, 0);
+    }
+
+    public void recordSession(byte flow, String sessionId, int sdkStatus, long durationMs, long bytesSent, int retries) {
+        record(TYPE_SESSION, flow, PHASE_NONE, sessionId, sdkStatus, CANCEL_NONE, durationMs, bytesSent, 0, retries, 0);
+    }
+
+    // Hot path: absolute puts into the mapping only.
+    public synchronized void record(byte type, byte flow, short phase, String sessionId, int sdkStatus,
+                                    short cancelReason, long durationMs, long bytesSent, long bytesReceived,
+                                    int retries, int httpStatus) {
+        if (writtenRecords[writeSegment] == recordsPerSegment) {
+            advanceSegment();
+        }
+        int offset = recordOffset(writeSegment, writtenRecords[writeSegment]);
+        buffer.putLong(offset + OFFSET_WALL_CLOCK, System.currentTimeMillis());
+        buffer.putLong(offset + OFFSET_BYTES_SENT, bytesSent);
+        buffer.putLong(offset + OFFSET_BYTES_RECEIVED, bytesReceived);
+        buffer.putInt(offset + OFFSET_SESSION_HASH, sessionId != null ? sessionId.hashCode() : 0);
+        buffer.putInt(offset + OFFSET_DURATION, (int) Math.min(Integer.MAX_VALUE, Math.max(0, durationMs)));
+        buffer.putInt(offset + OFFSET_RETRIES, retries);
+        buffer.putInt(offset + OFFSET_HTTP_STATUS, httpStatus);
+        buffer.putShort(offset + OFFSET_PHASE, phase);
+        buffer.putShort(offset + OFFSET_CANCEL_REASON, cancelReason);
+        buffer.put(offset + OFFSET_FLOW, flow);
+        buffer.put(offset + OFFSET_DEVICE_CLASS, deviceClass);
+        buffer.put(offset + OFFSET_SDK_STATUS, (byte) sdkStatus);
+        buffer.put(offset + OFFSET_TYPE, type);
+        writtenRecords[writeSegment]++;
+        recordsWritten++;
+    }
+
+    public synchronized int pendingRecords() {
+        int pending = 0;
+        for (int segment = 0; segment < segments; segment++) {
+            pending += writtenRecords[segment] - uploadedRecords(segment);
+        }
+        return pending;
+    }
+
+    // Copies up to maxRecords records not yet uploaded, oldest first, and returns a batch to pass
+    // to markUploaded() once the collector has accepted it. Returns null when nothing is pending.
+    public synchronized Batch copyPending(OutputStream out, int maxRecords) throws IOException {
+        Batch batch = new Batch(segments);
+        byte[] record = new byte[RECORD_BYTES];
+        int copied = 0;
+        for (int step = 1; step <= segments && copied < maxRecords; step++) {
+            // Oldest segment first: the one after the write segment, wrapping round to it.
+            int segment = (writeSegment + step) % segments;
+            int from = uploadedRecords(segment);
+            int to = Math.min(writtenRecords[segment], from + maxRecords - copied);
+            for (int index = from; index < to; index++) {
+                int offset = recordOffset(segment, index);
+                for (int i = 0; i < RECORD_BYTES; i++) {
+                    record[i] = buffer.get(offset + i);
+                }
+                out.write(record);
+            }
+            if (to > from) {
+                batch.sequences[segment] = buffer.getLong(headerOffset(segment) + HEADER_SEQUENCE);
+                batch.uploadedUpTo[segment] = to;
+                copied += to - from;
+            }
+        }
+        batch.records = copied;
+        return copied == 0 ? null : batch;
+    }
+
+    // Segments reused since the batch was copied are left alone.
+    public synchronized void markUploaded(Batch batch) {
+        for (int segment = 0; segment < segments; segment++) {
+            if (batch.uploadedUpTo[segment] > 0
+                    && buffer.getLong(headerOffset(segment) + HEADER_SEQUENCE) == batch.sequences[segment]) {
+                buffer.putInt(headerOffset(segment) + HEADER_UPLOADED,
+                        Math.max(uploadedRecords(segment), batch.uploadedUpTo[segment]));
+            }
+        }
+    }
+
+    public synchronized long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public synchronized long getRecordsDropped() {
+        return recordsDropped;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+
+    public static final class Batch {
+        final long[] sequences;
+        final int[] uploadedUpTo;
+        int records;
+
+        Batch(int segments) {
+            sequences = new long[segments];
+            uploadedUpTo = new int[segments];
+        }
+
+        public int getRecords() {
+            return records;
+        }
+    }
+
+    private void recover(boolean fresh) {
+        long highestSequence = -1;
+        for (int segment = 0; segment < segments; segment++) {
+            int header = headerOffset(segment);
+            if (fresh || buffer.getInt(header) != MAGIC || buffer.getShort(header + 4) != VERSION) {
+                resetSegment(segment, 0);
+                continue;
+            }
+            int count = 0;
+            while (count < recordsPerSegment && buffer.get(recordOffset(segment, count) + OFFSET_TYPE) != 0) {
+                count++;
+            }
+            writtenRecords[segment] = count;
+            long sequence = buffer.getLong(header + HEADER_SEQUENCE);
+            if (sequence > highestSequence) {
+                highestSequence = sequence;
+                writeSegment = segment;
+            }
+        }
+        nextSequence = highestSequence + 1;
+        if (highestSequence < 0) {
+            writeSegment = 0;
+            buffer.putLong(headerOffset(0) + HEADER_SEQUENCE, nextSequence++);
+        }
+        Log.d(TAG, "Telemetry journal opened, " + pendingRecords() + " records pending upload");
+    }
+
+    private void advanceSegment() {
+        writeSegment = (writeSegment + 1) % segments;
+        int notUploaded = writtenRecords[writeSegment] - uploadedRecords(writeSegment);
+        if (notUploaded > 0) {
+            recordsDropped += notUploaded;
+            Log.d(TAG, "Journal full, dropping " + notUploaded + " records that were never uploaded");
+        }
+        resetSegment(writeSegment, nextSequence++);
+    }
+
+    private void resetSegment(int segment, long sequence) {
+        int header = headerOffset(segment);
+        // Zero the whole segment so recovery finds the end of the records by their type byte.
+        for (int offset = header; offset < header + segmentBytes; offset += 8) {
+            buffer.putLong(offset, 0L);
+        }
+        buffer.putInt(header, MAGIC);
+        buffer.putShort(header + 4, VERSION);
+        buffer.putShort(header + 6, (short) RECORD_BYTES);
+        buffer.putLong(header + HEADER_SEQUENCE, sequence);
+        writtenRecords[segment] = 0;
+    }
+
+    private int uploadedRecords(int segment) {
+        return buffer.getInt(headerOffset(segment) + HEADER_UPLOADED);
+    }
+
+    private int headerOffset(int segment) {
+        return segment * segmentBytes;
+    }
+
+    private int recordOffset(int segment, int index) {
+        return headerOffset(segment) + HEADER_BYTES + index * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+// Ships TelemetryJournal records to the collector configured with the "telemetryCollectorURL"
+// initialize argument; without one, flushes do nothing and records stay in the journal. Flushes
+// run as TELEMETRY work on the PriorityScheduler, so they only go out once no session is
+// uploading, and post one gzip batch per request:
+//   int magic "FTTB", short version, short recordBytes, int recordCount, then the records.
+// Records are only marked uploaded once the collector answers 2xx; a failed flush leaves them
+// in the journal for the next one.
+public class TelemetryUploader {
+    private static final String TAG = "TelemetryUploader";
+    public static final int BATCH_MAGIC = 0x46545442;
+    public static final int MAX_BATCH_RECORDS = 512;
+    // Below this a flush waits for more records, unless forced.
+    public static final int MIN_BATCH_RECORDS = 16;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private final TelemetryJournal journal;
+    private volatile String collectorURL;
+    private final PriorityScheduler scheduler;
+    private boolean flushQueued = false;
+    private long batchesSent = 0;
+    private long flushFailures = 0;
+
+    public TelemetryUploader(TelemetryJournal journal, PriorityScheduler scheduler) {
+        this.journal = journal;
+        this.scheduler = scheduler;
+    }
+
+    public void setCollectorURL(String collectorURL) {
+        this.collectorURL = collectorURL != null && !collectorURL.isEmpty() ? collectorURL : null;
+    }
+
+    // Queues a flush; force sends even a small batch, e.g. on the first flush after a launch.
+    public void flush(boolean force) {
+        synchronized (this) {
+            if (flushQueued || collectorURL == null) {
+                return;
+            }
+            if (!force && journal.pendingRecords() < MIN_BATCH_RECORDS) {
+                return;
+            }
+            flushQueued = true;
+        }
+        if (!scheduler.trySubmit(PriorityScheduler.Priority.TELEMETRY, this::runFlush)) {
+            synchronized (this) {
+                flushQueued = false;
+            }
+        }
+    }
+
+    public synchronized long getBatchesSent() {
+        return batchesSent;
+    }
+
+    public synchronized long getFlushFailures() {
+        return flushFailures;
+    }
+
+    private void runFlush() {
+        try {
+            while (!scheduler.shouldYield(PriorityScheduler.Priority.TELEMETRY)) {
+                ByteArrayOutputStream records = new ByteArrayOutputStream();
+                TelemetryJournal.Batch batch = journal.copyPending(records, MAX_BATCH_RECORDS);
+                if (batch == null) {
+                    return;
+                }
+                int statusCode = post(batch.getRecords(), records.toByteArray());
+                if (statusCode / 100 != 2) {
+                    Log.e(TAG, "Collector answered HTTP " + statusCode + ", keeping " + batch.getRecords() + " records");
+                    synchronized (this) {
+                        flushFailures++;
+                    }
+                    return;
+                }
+                journal.markUploaded(batch);
+                synchronized (this) {
+                    batchesSent++;
+                }
+                Log.d(TAG, "Uploaded " + batch.getRecords() + " telemetry records");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error uploading telemetry: " + e.getMessage());
+            synchronized (this) {
+                flushFailures++;
+            }
+        } finally {
+            synchronized (this) {
+                flushQueued = false;
+            }
+        }
+    }
+
+    private int post(int recordCount, byte[] records) throws IOException {
+        String url = collectorURL;
+        if (url == null) {
+            throw new IOException("No telemetry collector configured");
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setChunkedStreamingMode(0);
+            try (OutputStream out = new GZIPOutputStream(connection.getOutputStream());
+                 DataOutputStream data = new DataOutputStream(out)) {
+                data.writeInt(BATCH_MAGIC);
+                data.writeShort(TelemetryJournal.VERSION);
+                data.writeShort(TelemetryJournal.RECORD_BYTES);
+                data.writeInt(recordCount);
+                data.write(records);
+            }
+            int statusCode = connection.getResponseCode();
+            FaceTecAPIClient.readBody(statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            return statusCode;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.content.Context;
+import android.util.Log;
+import com.facetec.sdk.FaceTecCustomization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Tenants of a white-label build, each with its own keys, server, token pool and branding. A tenant
+// is registered once with initialize-style arguments plus an optional "branding" map
+// ({"brandingImage": drawable name, "backgroundColor": "#RRGGBB"}); its FaceTecCustomization is
+// built at registration and its SessionTokenPool, EndpointRouter and ScanUploader on its first
+// activation, then kept. Switching is a reference swap: the previous tenant's prefetch and probes
+// are suspended, not torn down. The arguments of the plain initialize call are the DEFAULT tenant.
+//
+// FaceTecSDK holds a single active key set, so only tenants sharing a key set switch without
+// running initialize again; the metrics tell the two cases apart. All methods must be called on
+// the main thread.
+public class TenantRegistry {
+    private static final String TAG = "TenantRegistry";
+    public static final String DEFAULT_TENANT = "default";
+
+    public static final class Tenant {
+        public final String id;
+        public final Map<String, Object> arguments;
+        public final String deviceKeyIdentifier;
+        public final String publicFaceScanEncryptionKey;
+        private final FaceTecCustomization customization;
+        private boolean hasComponents = false;
+        private SessionTokenPool sessionTokenPool;
+        private EndpointRouter router;
+        private ScanUploader scanUploader;
+        private long activations = 0;
+
+        private Tenant(String id, Map<String, Object> arguments, FaceTecCustomization customization) {
+            this.id = id;
+            this.arguments = arguments;
+            this.deviceKeyIdentifier = (String) arguments.get("deviceKeyIdentifier");
+            this.publicFaceScanEncryptionKey = (String) arguments.get("publicFaceScanEncryptionKey");
+            this.customization = customization;
+        }
+
+        public boolean hasComponents() {
+            return hasComponents;
+        }
+
+        // Any of them may be null when the tenant's arguments do not enable it.
+        public void setComponents(SessionTokenPool sessionTokenPool, EndpointRouter router, ScanUploader scanUploader) {
+            this.sessionTokenPool = sessionTokenPool;
+            this.router = router;
+            this.scanUploader = scanUploader;
+            hasComponents = true;
+        }
+
+        public SessionTokenPool getSessionTokenPool() {
+            return sessionTokenPool;
+        }
+
+        public EndpointRouter getRouter() {
+            return router;
+        }
+
+        public ScanUploader getScanUploader() {
+            return scanUploader;
+        }
+
+        public FaceTecCustomization getCustomization() {
+            return customization;
+        }
+
+        // Inactive tenants keep their pooled tokens but stop prefetching and probing.
+        public void setBackgroundWorkSuspended(boolean suspended) {
+            if (sessionTokenPool != null) {
+                sessionTokenPool.setPrefetchSuspended(suspended);
+            }
+            if (router != null) {
+                router.setProbingSuspended(suspended);
+            }
+        }
+
+        String keySet() {
+            return deviceKeyIdentifier + "/" + (publicFaceScanEncryptionKey != null ? publicFaceScanEncryptionKey.hashCode() : 0);
+        }
+
+        private void release() {
+            if (sessionTokenPool != null) {
+                sessionTokenPool.shutdown();
+            }
+            if (router != null) {
+                router.shutdown();
+            }
+            if (scanUploader != null) {
+                scanUploader.shutdown();
+            }
+            sessionTokenPool = null;
+            router = null;
+            scanUploader = null;
+            hasComponents = false;
+        }
+    }
+
+    private final Context context;
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private Tenant active;
+    private long switches = 0;
+    private long switchesWithInitialize = 0;
+    private long switchesWithRebuild = 0;
+    private long totalSwapMicros = 0;
+    private long maxSwapMicros = 0;
+    private final Map<String, Object> lastSwitch = new HashMap<>();
+
+    public TenantRegistry(Context context) {
+        this.context = context;
+    }
+
+    // Registers or replaces a tenant. Re-registering identical arguments keeps the existing tenant
+    // and its components; changed arguments release them, so callers must not replace the active
+    // tenant while a session is using its components.
+    public Tenant register(String id, Map<String, Object> arguments) {
+        Tenant existing = tenants.get(id);
+        if (isRegisteredWith(id, arguments)) {
+            return existing;
+        }
+        if (existing != null) {
+            existing.release();
+            if (existing == active) {
+                active = null;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        Tenant tenant = new Tenant(id, new HashMap<>(arguments),
+                buildCustomization((Map<String, Object>) arguments.get("branding")));
+        tenants.put(id, tenant);
+        Log.d(TAG, "Registered tenant " + id);
+        return tenant;
+    }
+
+    // True when register(id, arguments) would keep the tenant already registered.
+    public boolean isRegisteredWith(String id, Map<String, Object> arguments) {
+        Tenant existing = tenants.get(id);
+        return existing != null && existing.arguments.equals(arguments);
+    }
+
+    public Tenant get(String id) {
+        return tenants.get(id);
+    }
+
+    public Tenant getActive() {
+        return active;
+    }
+
+    // The branding of the active tenant, or null before any activation.
+    public FaceTecCustomization getActiveCustomization() {
+        return active != null ? active.customization : null;
+    }
+
+    // Makes the tenant active and returns the previously active one, which may be the same.
+    public Tenant activate(Tenant tenant) {
+        Tenant previous = active;
+        active = tenant;
+        tenant.activations++;
+        return previous;
+    }
+
+    public void recordSwitch(Tenant tenant, long swapNanos, boolean rebuilt, boolean initialized) {
+        long swapMicros = swapNanos / 1000L;
+        switches++;
+        if (rebuilt) {
+            switchesWithRebuild++;
+        }
+        if (initialized) {
+            switchesWithInitialize++;
+        }
+        totalSwapMicros += swapMicros;
+        maxSwapMicros = Math.max(maxSwapMicros, swapMicros);
+        lastSwitch.clear();
+        lastSwitch.put("tenantId", tenant.id);
+        lastSwitch.put("swapMicros", swapMicros);
+        lastSwitch.put("rebuilt", rebuilt);
+        lastSwitch.put("initialized", initialized);
+        Log.d(TAG, "Switched to tenant " + tenant.id + " in " + swapMicros + " us"
+                + (rebuilt ? ", components built" : "") + (initialized ? ", SDK initializing" : ""));
+    }
+
+    // Time from the switch until the SDK was ready for the tenant's key set.
+    public void recordReady(Tenant tenant, long readyNanos) {
+        if (active == tenant && tenant.id.equals(lastSwitch.get("tenantId"))) {
+            lastSwitch.put("readyMs", readyNanos / 1000000L);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        Set<String> keySets = new HashSet<>();
+        List<String> ids = new ArrayList<>();
+        Map<String, Object> activations = new HashMap<>();
+        for (Tenant tenant : tenants.values()) {
+            ids.add(tenant.id);
+            keySets.add(tenant.keySet());
+            activations.put(tenant.id, tenant.activations);
+        }
+        metrics.put("tenants", ids);
+        metrics.put("keySets", keySets.size());
+        metrics.put("activeTenant", active != null ? active.id : null);
+        metrics.put("activations", activations);
+        metrics.put("switches", switches);
+        metrics.put("switchesWithRebuild", switchesWithRebuild);
+        metrics.put("switchesWithInitialize", switchesWithInitialize);
+        metrics.put("meanSwapMicros", switches > 0 ? totalSwapMicros / switches : 0);
+        metrics.put("maxSwapMicros", maxSwapMicros);
+        metrics.put("lastSwitch", new HashMap<>(lastSwitch));
+        return metrics;
+    }
+
+    public void shutdown() {
+        for (Tenant tenant : tenants.values()) {
+            tenant.release();
+        }
+        active = null;
+    }
+
+    // The same base look FaceTecSDKInitializer applies, with the tenant's branding on top.
+    private FaceTecCustomization buildCustomization(Map<String, Object> branding) {
+        FaceTecCustomization customization = new FaceTecCustomization();
+        customization.getOverlayCustomization().brandingImage = R.drawable.flutter_logo;
+        customization.getOverlayCustomization().backgroundColor = android.graphics.Color.WHITE;
+        if (branding == null) {
+            return customization;
+        }
+        Object brandingImage = branding.get("brandingImage");
+        if (brandingImage instanceof String) {
+            int resourceId = context.getResources().getIdentifier((String) brandingImage, "drawable", context.getPackageName());
+            if (resourceId != 0) {
+                customization.getOverlayCustomization().brandingImage = resourceId;
+            } else {
+                Log.e(TAG, "Unknown brandingImage drawable: " + brandingImage);
+            }
+        }
+        Object backgroundColor = branding.get("backgroundColor");
+        if (backgroundColor instanceof String) {
+            try {
+                customization.getOverlayCustomization().backgroundColor = android.graphics.Color.parseColor((String) backgroundColor);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Invalid backgroundColor: " + backgroundColor);
+            }
+        }
+        return customization;
+    }
+}
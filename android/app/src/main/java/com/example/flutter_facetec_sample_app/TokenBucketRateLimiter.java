@@ -0,0 +1,43 @@
+package com.example.flutter_facetec_sample_app;
+
+import java.util.concurrent.TimeUnit;
+
+// Classic token bucket: holds up to capacity permits and refills at permitsPerMinute. Used to keep
+// session starts within the FaceTec API quota across all sessions in the process.
+public class TokenBucketRateLimiter {
+    private final int capacity;
+    private final double permitsPerMs;
+    private double availablePermits;
+    private long lastRefillMs;
+
+    public TokenBucketRateLimiter(int capacity, int permitsPerMinute) {
+        this.capacity = capacity;
+        this.permitsPerMs = permitsPerMinute / (double) TimeUnit.MINUTES.toMillis(1);
+        this.availablePermits = capacity;
+        this.lastRefillMs = now();
+    }
+
+    public synchronized boolean tryAcquire() {
+        refillLocked();
+        if (availablePermits >= 1) {
+            availablePermits -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized int availablePermits() {
+        refillLocked();
+        return (int) availablePermits;
+    }
+
+    private void refillLocked() {
+        long now = now();
+        availablePermits = Math.min(capacity, availablePermits + (now - lastRefillMs) * permitsPerMs);
+        lastRefillMs = now;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
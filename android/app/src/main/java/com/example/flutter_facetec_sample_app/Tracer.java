@@ -0,0 +1,15 @@
+package com.example.flutter_facetec_sample_app;
+
+// Span sink used by MainActivity and the processors. Synchronous sections must begin and end on
+// the same thread and nest properly; async sections may end on any thread and are matched by
+// name and cookie. AndroidTracer forwards to android.os.Trace so spans show up in Perfetto next
+// to Flutter's frame traces, while ChromeTraceTracer records the same spans off-device.
+public interface Tracer {
+    void beginSection(String name);
+
+    void endSection();
+
+    void beginAsyncSection(String name, int cookie);
+
+    void endAsyncSection(String name, int cookie);
+}
@@ -0,0 +1,84 @@
+package com.example.flutter_facetec_sample_app;
+
+import io.flutter.plugin.common.MethodChannel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Process-wide access point for the active Tracer plus helpers for the span shapes the native
+// layer uses. Defaults to AndroidTracer; PhotoIDMatchProcessorTest and UploadBenchmark --trace swap
+// in a ChromeTraceTracer with setTracer().
+public final class Tracing {
+    private static volatile Tracer tracer = new AndroidTracer();
+    private static final AtomicInteger nextCookie = new AtomicInteger(1);
+
+    private Tracing() {
+    }
+
+    public static Tracer getTracer() {
+        return tracer;
+    }
+
+    public static void setTracer(Tracer newTracer) {
+        tracer = newTracer;
+    }
+
+    public static void beginSection(String name) {
+        tracer.beginSection(name);
+    }
+
+    public static void endSection() {
+        tracer.endSection();
+    }
+
+    // Starts a cross-thread span and returns the cookie needed to end it.
+    public static int beginAsyncSection(String name) {
+        int cookie = nextCookie.getAndIncrement();
+        tracer.beginAsyncSection(name, cookie);
+        return cookie;
+    }
+
+    public static void endAsyncSection(String name, int cookie) {
+        tracer.endAsyncSection(name, cookie);
+    }
+
+    // Wraps a MethodChannel.Result so the span opened for an invokeMethod call ends when Dart
+    // answers, whichever of the three callbacks fires. delegate may be null for calls whose reply
+    // nobody waits on; the span still shows how long Dart took to answer.
+    public static MethodChannel.Result tracedResult(String name, MethodChannel.Result delegate) {
+        final int cookie = beginAsyncSection(name);
+        return new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                endAsyncSection(name, cookie);
+                if (delegate != null) {
+                    traceCallback(name + ".success", () -> delegate.success(result));
+                }
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                endAsyncSection(name, cookie);
+                if (delegate != null) {
+                    traceCallback(name + ".error", () -> delegate.error(errorCode, errorMessage, errorDetails));
+                }
+            }
+
+            @Override
+            public void notImplemented() {
+                endAsyncSection(name, cookie);
+                if (delegate != null) {
+                    traceCallback(name + ".notImplemented", delegate::notImplemented);
+                }
+            }
+        };
+    }
+
+    private static void traceCallback(String name, Runnable callback) {
+        beginSection(name);
+        try {
+            callback.run();
+        } finally {
+            endSection();
+        }
+    }
+}
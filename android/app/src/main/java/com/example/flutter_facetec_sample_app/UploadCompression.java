@@ -0,0 +1,133 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Request body compression for ScanUploader. Bodies below minBytes go out as-is, since the
+// deflate header and the CPU spent are not worth it for small requests. There is no standard way
+// to ask a server which request encodings it accepts, so compression is tried optimistically and
+// a server is remembered as unsupported once it answers 415 or advertises an Accept-Encoding that
+// does not include ours. Scans are encrypted, so the saving is mostly the base64 overhead:
+// CompressionBenchmark, with the unit tests, shows about 23% at level 1 and 24% at level 6 for
+// noticeably more CPU, hence the fast default.
+public class UploadCompression {
+    private static final String TAG = "UploadCompression";
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+    public static final int DEFAULT_MIN_BYTES = 16 * 1024;
+    public static final int DEFAULT_BUFFER_BYTES = 16 * 1024;
+
+    private final String encoding;
+    private final int level;
+    private final long minBytes;
+    private final int bufferBytes;
+    private final Set<String> unsupportedBaseURLs = Collections.synchronizedSet(new HashSet<>());
+
+    public UploadCompression(String encoding, int level, long minBytes) {
+        this(encoding, level, minBytes, DEFAULT_BUFFER_BYTES);
+    }
+
+    public UploadCompression(String encoding, int level, long minBytes, int bufferBytes) {
+        if (encoding != null && !GZIP.equals(encoding) && !DEFLATE.equals(encoding)) {
+            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+        }
+        this.encoding = encoding;
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.minBytes = minBytes;
+        this.bufferBytes = Math.max(512, bufferBytes);
+    }
+
+    public static UploadCompression disabled() {
+        return new UploadCompression(null, DEFAULT_LEVEL, Long.MAX_VALUE);
+    }
+
+    // Reads {"encoding": "gzip", "level": 3, "minBytes": 16384} as passed to initialize; an
+    // encoding of "none" disables compression. Without arguments the device profile decides, and
+    // its level and buffer size fill in whatever the arguments leave out.
+    public static UploadCompression fromArguments(Map<String, Object> arguments, DeviceProfile profile) {
+        if (arguments == null && profile.compressionLevel == 0) {
+            return disabled();
+        }
+        if (arguments != null && "none".equals(arguments.get("encoding"))) {
+            return disabled();
+        }
+        Object encoding = arguments != null ? arguments.get("encoding") : null;
+        Number level = arguments != null ? (Number) arguments.get("level") : null;
+        Number minBytes = arguments != null ? (Number) arguments.get("minBytes") : null;
+        int profileLevel = profile.compressionLevel > 0 ? profile.compressionLevel : DEFAULT_LEVEL;
+        return new UploadCompression(
+                encoding != null ? encoding.toString() : GZIP,
+                level != null ? level.intValue() : profileLevel,
+                minBytes != null ? minBytes.longValue() : DEFAULT_MIN_BYTES,
+                profile.uploadBufferBytes);
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public boolean shouldCompress(String baseURL, long bodyBytes) {
+        return encoding != null && bodyBytes >= minBytes && !unsupportedBaseURLs.contains(baseURL);
+    }
+
+    public void markUnsupported(String baseURL) {
+        if (encoding != null && unsupportedBaseURLs.add(baseURL)) {
+            Log.d(TAG, baseURL + " does not accept " + encoding + " request bodies, sending them uncompressed");
+        }
+    }
+
+    // Called with the Accept-Encoding header of any response from baseURL.
+    public void onAcceptEncoding(String baseURL, String acceptEncoding) {
+        if (encoding == null || acceptEncoding == null) {
+            return;
+        }
+        for (String accepted : acceptEncoding.toLowerCase(Locale.US).split(",")) {
+            String token = accepted.trim().split(";")[0].trim();
+            if (token.equals(encoding) || token.equals("*")) {
+                return;
+            }
+        }
+        markUnsupported(baseURL);
+    }
+
+    // Wraps the connection stream; closing the returned stream finishes the deflate stream and
+    // releases the native Deflater.
+    public OutputStream wrap(OutputStream out) throws IOException {
+        if (GZIP.equals(encoding)) {
+            return new LeveledGZIPOutputStream(out, level, bufferBytes);
+        }
+        final Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(out, deflater, bufferBytes) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream out, int level, int bufferBytes) throws IOException {
+            super(out, bufferBytes);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.flutter_facetec_sample_app;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Reads a ChannelTrafficRecorder log and feeds it back through the processors in JVM tests. The
+// replayer only drives events that originate outside the processors: inbound calls from Dart,
+// Dart's replies to native invokeMethod calls and SDK callbacks. Outbound calls and the replies
+// the processors send are recorded for comparison but produced by the code under test.
+public final class ChannelTrafficReplayer {
+
+    public enum Kind { INBOUND_CALL, INBOUND_REPLY, OUTBOUND_CALL, OUTBOUND_REPLY, SDK_CALLBACK }
+
+    public static final class Event {
+        public final Kind kind;
+        public final long timestampNanos;
+        public final long threadId;
+        public final String channel;
+        public final String method;
+        public final Object payload;
+        public final int payloadBytes;
+
+        Event(Kind kind, long timestampNanos, long threadId, String channel, String method, Object payload, int payloadBytes) {
+            this.kind = kind;
+            this.timestampNanos = timestampNanos;
+            this.threadId = threadId;
+            this.channel = channel;
+            this.method = method;
+            this.payload = payload;
+            this.payloadBytes = payloadBytes;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + channel + "/" + method + " @" + TimeUnit.NANOSECONDS.toMicros(timestampNanos)
+                    + "us thread " + threadId + " (" + payloadBytes + " bytes)";
+        }
+    }
+
+    // Receives the replayed events. Fakes typically forward inbound calls to a processor's
+    // onMethodCall, hand Dart replies to the Result captured from their fake BinaryMessenger and
+    // turn SDK callback summaries into fake SDK results.
+    public interface Target {
+        void onInboundCall(String channel, MethodCall call, MethodChannel.Result result);
+
+        void onOutboundReply(String channel, String method, Map<String, Object> outcome);
+
+        void onSdkCallback(String channel, String callback, Map<String, Object> summary);
+    }
+
+    public static final class ReplayResult {
+        public final int replayedEvents;
+        public final long elapsedNanos;
+        // Time spent inside the target per channel/method, for micro-benchmarks.
+        public final Map<String, Long> handlerNanos;
+        // Replies the processors sent during replay, in order, for comparison with the recording.
+        public final List<Event> producedReplies;
+
+        ReplayResult(int replayedEvents, long elapsedNanos, Map<String, Long> handlerNanos, List<Event> producedReplies) {
+            this.replayedEvents = replayedEvents;
+            this.elapsedNanos = elapsedNanos;
+            this.handlerNanos = Collections.unmodifiableMap(handlerNanos);
+            this.producedReplies = Collections.unmodifiableList(producedReplies);
+        }
+    }
+
+    private final List<Event> events;
+    private final boolean redacted;
+
+    private ChannelTrafficReplayer(List<Event> events, boolean redacted) {
+        this.events = events;
+        this.redacted = redacted;
+    }
+
+    public static ChannelTrafficReplayer read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        byte[] magic = new byte[ChannelTrafficRecorder.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, ChannelTrafficRecorder.MAGIC)) {
+            throw new IOException("Not a channel traffic log");
+        }
+        int version = in.readUnsignedByte();
+        if (version != ChannelTrafficRecorder.VERSION) {
+            throw new IOException("Unsupported channel traffic log version " + version);
+        }
+        boolean redacted = (in.readUnsignedByte() & ChannelTrafficRecorder.FLAG_REDACTED) != 0;
+        ChannelTrafficCodec codec = new ChannelTrafficCodec(redacted);
+        List<String> stringTable = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        long timestampNanos = 0;
+        while (true) {
+            int kind = in.read();
+            if (kind == -1) {
+                break;
+            }
+            try {
+                timestampNanos += readVarLong(in);
+                long threadId = readVarLong(in);
+                String channel = readString(in, stringTable);
+                String method = readString(in, stringTable);
+                byte[] payload = new byte[(int) readVarLong(in)];
+                in.readFully(payload);
+                events.add(new Event(kindOf(kind), timestampNanos, threadId, channel, method,
+                        codec.decode(payload), payload.length));
+            } catch (EOFException e) {
+                // A log cut short by a crash still replays up to its last complete record.
+                break;
+            }
+        }
+        return new ChannelTrafficReplayer(Collections.unmodifiableList(events), redacted);
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public boolean isRedacted() {
+        return redacted;
+    }
+
+    // Replays every driving event on the calling thread. With originalSpeed the gaps between
+    // events are reproduced; otherwise events run back to back.
+    @SuppressWarnings("unchecked")
+    public ReplayResult replay(Target target, boolean originalSpeed) throws InterruptedException {
+        Map<String, Long> handlerNanos = new LinkedHashMap<>();
+        List<Event> producedReplies = Collections.synchronizedList(new ArrayList<>());
+        int replayed = 0;
+        long startNanos = System.nanoTime();
+        for (Event event : events) {
+            if (event.kind != Kind.INBOUND_CALL && event.kind != Kind.OUTBOUND_REPLY && event.kind != Kind.SDK_CALLBACK) {
+                continue;
+            }
+            if (originalSpeed) {
+                long waitNanos = event.timestampNanos - (System.nanoTime() - startNanos);
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            }
+            long handlerStart = System.nanoTime();
+            switch (event.kind) {
+                case INBOUND_CALL:
+                    target.onInboundCall(event.channel, new MethodCall(event.method, event.payload),
+                            replyCollector(event, producedReplies, startNanos));
+                    break;
+                case OUTBOUND_REPLY:
+                    target.onOutboundReply(event.channel, event.method, (Map<String, Object>) event.payload);
+                    break;
+                default:
+                    target.onSdkCallback(event.channel, event.method, (Map<String, Object>) event.payload);
+                    break;
+            }
+            String key = event.channel + "/" + event.method;
+            Long total = handlerNanos.get(key);
+            handlerNanos.put(key, (total != null ? total : 0L) + System.nanoTime() - handlerStart);
+            replayed++;
+        }
+        return new ReplayResult(replayed, System.nanoTime() - startNanos, handlerNanos, producedReplies);
+    }
+
+    // Applies a recorded outcome to a Result, e.g. the one a fake BinaryMessenger captured for an
+    // invokeMethod made during replay.
+    public static void deliver(Map<String, Object> outcome, MethodChannel.Result result) {
+        Object kind = outcome != null ? outcome.get("outcome") : null;
+        if ("success".equals(kind)) {
+            result.success(outcome.get("result"));
+        } else if ("error".equals(kind)) {
+            result.error((String) outcome.get("errorCode"), (String) outcome.get("errorMessage"), null);
+        } else {
+            result.notImplemented();
+        }
+    }
+
+    private static MethodChannel.Result replyCollector(Event call, List<Event> producedReplies, long startNanos) {
+        return new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                add(ChannelTrafficRecorder.successOutcome(result));
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                add(ChannelTrafficRecorder.errorOutcome(errorCode, errorMessage));
+            }
+
+            @Override
+            public void notImplemented() {
+                add(ChannelTrafficRecorder.notImplementedOutcome());
+            }
+
+            private void add(Map<String, Object> outcome) {
+                producedReplies.add(new Event(Kind.INBOUND_REPLY, System.nanoTime() - startNanos,
+                        Thread.currentThread().getId(), call.channel, call.method, outcome, 0));
+            }
+        };
+    }
+
+    private static Kind kindOf(int kind) throws IOException {
+        switch (kind) {
+            case ChannelTrafficRecorder.KIND_INBOUND_CALL:
+                return Kind.INBOUND_CALL;
+            case ChannelTrafficRecorder.KIND_INBOUND_REPLY:
+                return Kind.INBOUND_REPLY;
+            case ChannelTrafficRecorder.KIND_OUTBOUND_CALL:
+                return Kind.OUTBOUND_CALL;
+            case ChannelTrafficRecorder.KIND_OUTBOUND_REPLY:
+                return Kind.OUTBOUND_REPLY;
+            case ChannelTrafficRecorder.KIND_SDK_CALLBACK:
+                return Kind.SDK_CALLBACK;
+            default:
+                throw new IOException("Unknown record kind " + kind);
+        }
+    }
+
+    private static String readString(DataInputStream in, List<String> stringTable) throws IOException {
+        int id = (int) readVarLong(in);
+        if (id < stringTable.size()) {
+            return stringTable.get(id);
+        }
+        if (id != stringTable.size()) {
+            throw new IOException("Corrupt string table reference " + id);
+        }
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        stringTable.add(value);
+        return value;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
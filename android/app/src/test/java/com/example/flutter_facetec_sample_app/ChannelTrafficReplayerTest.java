@@ -0,0 +1,147 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Records a serialized Photo ID Match -- selfie, then both sides of the ID -- played by the fakes in
+// PhotoIDMatchReplayTarget, and replays the log into a fresh processor.
+public class ChannelTrafficReplayerTest {
+    private static final String CHANNEL = ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH;
+    private static final String SESSION_ID = "replay-session";
+    private static final String FACE_RESULT_BLOB = "face-scan-result-blob";
+    private static final String MATCH_RESULT_BLOB = "match-result-blob";
+
+    @After
+    public void tearDown() {
+        ChannelTrafficRecorder.stop();
+    }
+
+    @Test
+    public void replayedSessionMatchesTheRecording() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ChannelTrafficRecorder.start(log, false);
+        PhotoIDMatchReplayTarget recorded = new PhotoIDMatchReplayTarget();
+        List<Map<String, Object>> recordedReplies = runSession(recorded);
+        assertTrue(ChannelTrafficRecorder.stop() > 0);
+
+        assertTrue(recorded.future.isDone());
+        PhotoIDMatchResult result = recorded.future.get();
+        assertTrue(result.toString(), result.succeeded);
+        assertEquals(FACE_RESULT_BLOB, result.faceScanResultBlob);
+        assertEquals(MATCH_RESULT_BLOB, result.matchResultBlob);
+
+        ChannelTrafficReplayer replayer = ChannelTrafficReplayer.read(new ByteArrayInputStream(log.toByteArray()));
+        PhotoIDMatchReplayTarget replayed = new PhotoIDMatchReplayTarget();
+        replayed.launch("session-token");
+        ChannelTrafficReplayer.ReplayResult replay = replayer.replay(replayed, false);
+
+        assertEquals(recordedReplies, outcomes(replay.producedReplies));
+        assertEquals(recordedReplies, outcomes(eventsOf(replayer, ChannelTrafficReplayer.Kind.INBOUND_REPLY)));
+        assertEquals(recorded.sdk.calls, replayed.sdk.calls);
+        assertEquals(outboundCalls(recorded), outboundCalls(replayed));
+        assertEquals(outboundCalls(recorded), payloads(eventsOf(replayer, ChannelTrafficReplayer.Kind.OUTBOUND_CALL)));
+        assertTrue(replayed.future.isDone());
+        assertEquals(MATCH_RESULT_BLOB, replayed.future.get().matchResultBlob);
+    }
+
+    // The flow as PhotoIDMatch.dart and the SDK drive it; returns the replies native sent to Dart.
+    private static List<Map<String, Object>> runSession(PhotoIDMatchReplayTarget target) {
+        List<Map<String, Object>> replies = new ArrayList<>();
+        target.launch("session-token");
+
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+        target.onOutboundReply(CHANNEL, "processSession", ChannelTrafficRecorder.successOutcome(null));
+        replies.add(callFromDart(target, "onPhotoIDMatchResultBlobReceived", "photoIDMatchResultBlob", FACE_RESULT_BLOB));
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+
+        replies.add(callFromDart(target, "startDocumentScan", "sessionToken", "session-token"));
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "ZnJvbnQ="));
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "YmFjaw=="));
+        target.onOutboundReply(CHANNEL, "processIDScan", ChannelTrafficRecorder.successOutcome(null));
+        replies.add(callFromDart(target, "onPhotoIDMatchResultBlobReceived", "photoIDMatchResultBlob", MATCH_RESULT_BLOB));
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        return replies;
+    }
+
+    private static Map<String, Object> callFromDart(PhotoIDMatchReplayTarget target, String method, String key, String value) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put(key, value);
+        List<Map<String, Object>> outcomes = new ArrayList<>();
+        target.onInboundCall(CHANNEL, new MethodCall(method, arguments), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+                outcomes.add(ChannelTrafficRecorder.successOutcome(result));
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                outcomes.add(ChannelTrafficRecorder.errorOutcome(errorCode, errorMessage));
+            }
+
+            @Override
+            public void notImplemented() {
+                outcomes.add(ChannelTrafficRecorder.notImplementedOutcome());
+            }
+        });
+        assertEquals(method + " replies once", 1, outcomes.size());
+        return outcomes.get(0);
+    }
+
+    private static Map<String, Object> summary(String status, String scanKey, String scan) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("status", status);
+        summary.put("sessionId", SESSION_ID);
+        summary.put(scanKey, scan);
+        return summary;
+    }
+
+    private static List<ChannelTrafficReplayer.Event> eventsOf(ChannelTrafficReplayer replayer,
+                                                              ChannelTrafficReplayer.Kind kind) {
+        List<ChannelTrafficReplayer.Event> events = new ArrayList<>();
+        for (ChannelTrafficReplayer.Event event : replayer.getEvents()) {
+            if (event.kind == kind) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> outcomes(List<ChannelTrafficReplayer.Event> replies) {
+        List<Map<String, Object>> outcomes = new ArrayList<>();
+        for (ChannelTrafficReplayer.Event reply : replies) {
+            outcomes.add((Map<String, Object>) reply.payload);
+        }
+        return outcomes;
+    }
+
+    private static List<Object> payloads(List<ChannelTrafficReplayer.Event> calls) {
+        List<Object> payloads = new ArrayList<>();
+        for (ChannelTrafficReplayer.Event call : calls) {
+            payloads.add(call.method + " " + call.payload);
+        }
+        return payloads;
+    }
+
+    private static List<Object> outboundCalls(PhotoIDMatchReplayTarget target) {
+        List<Object> calls = new ArrayList<>();
+        for (FakeBinaryMessenger.Invocation invocation : target.messenger.getInvocations()) {
+            calls.add(invocation.call.method + " " + invocation.call.arguments);
+        }
+        return calls;
+    }
+}
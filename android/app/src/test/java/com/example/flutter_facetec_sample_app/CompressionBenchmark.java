@@ -0,0 +1,172 @@
+package com.example.flutter_facetec_sample_app;
+
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// CPU time against bytes saved for the upload body compression stage, per encoding and level, on
+// request bodies the size of the ones the flows send. Bodies are written the way ScanUploader
+// writes them, JsonBodyWriter through UploadCompression.wrap(), and every compressed body is
+// posted to a StandInServer, which decodes it and checks the request fields, so the framing and
+// the JSON are validated as well. Lives with the unit tests so it runs against the app classes.
+//
+// Usage: CompressionBenchmark [--levels 1,3,6,9] [--iterations 20] [--report build/compression-benchmark.json]
+public final class CompressionBenchmark {
+    private static final String[] ENCODINGS = {UploadCompression.GZIP, UploadCompression.DEFLATE};
+
+    // Liveness with both audit trails, liveness with the low-quality trail only, and the ID scan.
+    private static final String[] PAYLOAD_NAMES = {"liveness-3d", "liveness-3d-low-memory", "photo-id-match"};
+
+    private CompressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = {1, 3, 6, 9};
+        int iterations = 20;
+        Path reportPath = Paths.get("build", "compression-benchmark.json");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--levels":
+                    String[] parts = args[++i].split(",");
+                    levels = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        levels[j] = Integer.parseInt(parts[j].trim());
+                    }
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--report":
+                    reportPath = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        try (StandInServer sink = new StandInServer()) {
+            for (String payload : PAYLOAD_NAMES) {
+                Map<String, Object> body = body(payload, random);
+                long bodyBytes = JsonBodyWriter.length(body);
+                String path = payload.startsWith("liveness-3d") ? EndpointGuard.LIVENESS_ENDPOINT
+                        : EndpointGuard.PHOTO_ID_MATCH_ENDPOINT;
+                for (String encoding : ENCODINGS) {
+                    for (int level : levels) {
+                        UploadCompression compression = new UploadCompression(encoding, level, 0);
+                        byte[] compressed = compress(body, compression);
+                        for (int warmup = 0; warmup < 3; warmup++) {
+                            compress(body, compression);
+                        }
+                        long cpuStart = threads.getCurrentThreadCpuTime();
+                        for (int i = 0; i < iterations; i++) {
+                            compress(body, compression);
+                        }
+                        long cpuMicros = (threads.getCurrentThreadCpuTime() - cpuStart) / 1000 / iterations;
+                        long decodedBytes = postCompressed(sink.baseURL() + path, encoding, compressed);
+                        if (decodedBytes != bodyBytes) {
+                            throw new IllegalStateException(encoding + " level " + level + " decoded to "
+                                    + decodedBytes + " bytes, expected " + bodyBytes);
+                        }
+                        double saved = 1.0 - (double) compressed.length / bodyBytes;
+                        System.out.printf(Locale.US, "%-24s %-8s level %d  %8d -> %8d B  saved %5.1f%%  cpu %7d us%n",
+                                payload, encoding, level, bodyBytes, compressed.length, saved * 100, cpuMicros);
+                        lines.add(String.format(Locale.US,
+                                "{\"payload\":\"%s\",\"encoding\":\"%s\",\"level\":%d,\"bodyBytes\":%d,"
+                                        + "\"compressedBytes\":%d,\"cpuMicros\":%d}",
+                                payload, encoding, level, bodyBytes, compressed.length, cpuMicros));
+                    }
+                }
+            }
+        }
+
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            writer.write("{\"results\":[\n" + String.join(",\n", lines) + "\n]}\n");
+        }
+        System.out.println("Wrote " + reportPath.toAbsolutePath());
+    }
+
+    private static byte[] compress(Map<String, Object> body, UploadCompression compression) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream compressing = compression.wrap(out)) {
+            JsonBodyWriter.write(body, compressing);
+        }
+        return out.toByteArray();
+    }
+
+    private static long postCompressed(String url, String encoding, byte[] compressed) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Content-Encoding", encoding);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(compressed);
+            }
+            if (connection.getResponseCode() != 200) {
+                throw new IOException("Stand-in rejected " + encoding + " body: HTTP " + connection.getResponseCode());
+            }
+            connection.getInputStream().close();
+            return Long.parseLong(connection.getHeaderField(StandInServer.DECODED_BYTES_HEADER));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // The bodies ScanUploader sends, with random base64 like UploadBenchmark: scans are encrypted
+    // and audit trails are JPEGs, so only the base64 overhead is compressible.
+    private static Map<String, Object> body(String payload, Random random) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("sessionId", "compression-benchmark");
+        switch (payload) {
+            case "liveness-3d":
+                body.put("faceScan", base64Filler(200 * 1024, random));
+                body.put("auditTrailImage", base64Filler(60 * 1024, random));
+                body.put("lowQualityAuditTrailImage", base64Filler(15 * 1024, random));
+                break;
+            case "liveness-3d-low-memory":
+                body.put("faceScan", base64Filler(200 * 1024, random));
+                body.put("auditTrailImage", base64Filler(15 * 1024, random));
+                break;
+            default:
+                body.put("idScan", base64Filler(400 * 1024, random));
+                body.put("documentType", "ID_DOCUMENT");
+                body.put("countryCode", "ANY");
+                break;
+        }
+        return body;
+    }
+
+    private static String base64Filler(int length, Random random) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
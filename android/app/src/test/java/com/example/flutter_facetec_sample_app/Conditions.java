@@ -0,0 +1,21 @@
+package com.example.flutter_facetec_sample_app;
+
+// Polling waits for tests that observe background threads.
+final class Conditions {
+    interface Condition {
+        boolean isMet() throws Exception;
+    }
+
+    private Conditions() {
+    }
+
+    static void waitFor(Condition condition, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within " + timeoutMs + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Drives EndpointGuard with real uploads against a stand-in server that degrades on demand.
+public class EndpointGuardTest {
+    private static final long OPEN_DURATION_MS = 300;
+    private static final String ENDPOINT = EndpointGuard.LIVENESS_ENDPOINT;
+
+    private StandInServer server;
+    private PriorityScheduler scheduler;
+    private ScanUploader uploader;
+    private EndpointGuard guard;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        scheduler = new PriorityScheduler(2);
+        uploader = new ScanUploader("test-device-key", UploadCompression.disabled(), scheduler);
+        guard = new EndpointGuard(new TokenBucketRateLimiter(100, 6000), OPEN_DURATION_MS);
+    }
+
+    @After
+    public void tearDown() {
+        uploader.shutdown();
+        scheduler.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void opensWhenTheServerDegradesAndClosesAfterAHealthyProbe() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertNull(runSession());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+
+        server.setErrorInjection(1.0, StandInServer.Failure.HTTP_500);
+        int failedSessions = 0;
+        while (runSession() == null) {
+            failedSessions++;
+            assertTrue("circuit never opened", failedSessions <= 10);
+        }
+        // Four failures against four successes reach the 50% threshold.
+        assertEquals(4, failedSessions);
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        assertEquals(EndpointGuard.ERROR_CIRCUIT_OPEN, guard.checkSessionStart(ENDPOINT));
+
+        server.setErrorInjection(0, StandInServer.Failure.HTTP_500);
+        Thread.sleep(OPEN_DURATION_MS + 50);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+        assertNull(runSession());
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+    }
+
+    @Test
+    public void cancelledUploadsAreNotCountedAsFailures() throws Exception {
+        server.setProcessingDelay(2000, 0);
+        for (int i = 0; i < 8; i++) {
+            assertNull(guard.checkSessionStart(ENDPOINT));
+            EndpointGuard.Call call = guard.beginCall(ENDPOINT, server.baseURL());
+            CancellationToken token = new CancellationToken("test session " + i);
+            AtomicBoolean delivered = new AtomicBoolean(false);
+            uploader.upload(server.baseURL(), ENDPOINT, livenessBody(), "test-agent", token, new ScanUploader.Callback() {
+                @Override
+                public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                    delivered.set(true);
+                }
+
+                @Override
+                public void onError(Exception e, long bytesSent) {
+                    delivered.set(true);
+                }
+            });
+            Thread.sleep(50);
+            token.cancel();
+            call.cancelled();
+            assertFalse(delivered.get());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+        assertNull(guard.checkSessionStart(ENDPOINT));
+    }
+
+    @Test
+    public void halfOpenAdmitsOneProbeSessionAtATime() throws Exception {
+        openCircuit();
+
+        assertNull(guard.checkSessionStart(ENDPOINT));
+        assertEquals(EndpointGuard.ERROR_CIRCUIT_OPEN, guard.checkSessionStart(ENDPOINT));
+
+        // The probe session ended before uploading, for instance while fetching its token.
+        guard.releaseSessionStart(ENDPOINT);
+        assertNull(guard.checkSessionStart(ENDPOINT));
+    }
+
+    @Test
+    public void rateLimitedSessionDoesNotTakeTheProbe() throws Exception {
+        // Five permits and no refill: four failing sessions open the circuit, one permit is left.
+        guard = new EndpointGuard(new TokenBucketRateLimiter(5, 0), OPEN_DURATION_MS);
+        openCircuit();
+        assertNull(guard.checkSessionStart(EndpointGuard.PHOTO_ID_MATCH_ENDPOINT));
+
+        assertEquals(EndpointGuard.ERROR_RATE_LIMITED, guard.checkSessionStart(ENDPOINT));
+        assertTrue(guard.circuitBreaker(ENDPOINT).isCallPermitted());
+    }
+
+    private void openCircuit() throws Exception {
+        server.setErrorInjection(1.0, StandInServer.Failure.HTTP_500);
+        for (int i = 0; i < 4; i++) {
+            assertNull(runSession());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        server.setErrorInjection(0, StandInServer.Failure.HTTP_500);
+        Thread.sleep(OPEN_DURATION_MS + 50);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+    }
+
+    // Starts a session and uploads its FaceScan, reporting the outcome the way the processors do.
+    // Returns the guard's error code when the session was rejected.
+    private String runSession() throws Exception {
+        String errorCode = guard.checkSessionStart(ENDPOINT);
+        if (errorCode != null) {
+            return errorCode;
+        }
+        EndpointGuard.Call call = guard.beginCall(ENDPOINT, server.baseURL());
+        CountDownLatch done = new CountDownLatch(1);
+        uploader.upload(server.baseURL(), ENDPOINT, livenessBody(), "test-agent", new CancellationToken("test session"),
+                new ScanUploader.Callback() {
+                    @Override
+                    public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                        if (statusCode == 200 && new JSONObject(responseBody).optBoolean("wasProcessed", false)) {
+                            call.succeeded();
+                        } else {
+                            call.failed();
+                        }
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception e, long bytesSent) {
+                        call.failed();
+                        done.countDown();
+                    }
+                });
+        assertTrue("upload did not finish", done.await(5, TimeUnit.SECONDS));
+        return null;
+    }
+
+    private CircuitBreaker.State state() {
+        return guard.circuitBreaker(ENDPOINT).getState();
+    }
+
+    private static Map<String, Object> livenessBody() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("faceScan", "ZmFjZVNjYW4=");
+        body.put("auditTrailImage", "YXVkaXRUcmFpbA==");
+        return body;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Two stand-in servers play two regions: "near" answers probes at once, "far" after a delay.
+public class EndpointRouterTest {
+    private static final long PROBE_INTERVAL_MS = 100;
+    private static final long FAR_PROBE_DELAY_MS = 150;
+
+    private StandInServer near;
+    private StandInServer far;
+    private PriorityScheduler scheduler;
+    private EndpointRouter router;
+
+    @Before
+    public void setUp() throws Exception {
+        near = new StandInServer();
+        far = new StandInServer();
+        far.setProbeDelay(FAR_PROBE_DELAY_MS);
+        scheduler = new PriorityScheduler(2);
+        router = new EndpointRouter(Arrays.asList(near.baseURL(), far.baseURL()), PROBE_INTERVAL_MS);
+        router.startProbing(FaceTecAPIClient::probe, scheduler);
+        waitFor(() -> probes(near) >= 2 && probes(far) >= 2, 5000);
+    }
+
+    @After
+    public void tearDown() {
+        router.shutdown();
+        scheduler.shutdown();
+        near.close();
+        far.close();
+    }
+
+    @Test
+    public void routesToTheEndpointWithTheFastestProbes() {
+        assertEquals(near.baseURL(), router.bestEndpoint());
+        assertEquals(near.baseURL(), router.routeForSession("session-1"));
+    }
+
+    @Test
+    public void slowUploadsDoNotMoveSessionsAway() throws Exception {
+        // Uploads several times slower than the far region's probes, from server processing time.
+        near.setProcessingDelay(600, 0);
+        EndpointGuard guard = new EndpointGuard();
+        guard.setRouter(router);
+        ScanUploader uploader = new ScanUploader("test-device-key", UploadCompression.disabled(), scheduler);
+        for (int i = 0; i < 2; i++) {
+            upload(guard, uploader, near.baseURL());
+        }
+        uploader.shutdown();
+
+        Map<String, Object> nearMetrics = endpointMetrics(near);
+        assertEquals(2L, nearMetrics.get("uploads"));
+        assertTrue((double) nearMetrics.get("uploadLatencyMs") >= 600);
+        assertTrue((double) nearMetrics.get("probeRttMs") < FAR_PROBE_DELAY_MS);
+        assertEquals(near.baseURL(), router.bestEndpoint());
+    }
+
+    @Test
+    public void failingProbesMoveNewSessionsButNotPinnedOnes() throws Exception {
+        String nearURL = near.baseURL();
+        assertEquals(nearURL, router.routeForSession("pinned"));
+
+        near.close();
+        waitFor(() -> far.baseURL().equals(router.bestEndpoint()), 5000);
+
+        assertEquals(far.baseURL(), router.routeForSession("new"));
+        // Its first step already reached near, which holds the session's state.
+        assertEquals(nearURL, router.routeForSession("pinned"));
+        assertTrue((double) endpointMetrics(nearURL).get("probeErrorRate") > 0);
+    }
+
+    private static void upload(EndpointGuard guard, ScanUploader uploader, String baseURL) throws Exception {
+        EndpointGuard.Call call = guard.beginCall(EndpointGuard.LIVENESS_ENDPOINT, baseURL);
+        Map<String, Object> body = new HashMap<>();
+        body.put("faceScan", "ZmFjZVNjYW4=");
+        body.put("auditTrailImage", "YXVkaXRUcmFpbA==");
+        CountDownLatch done = new CountDownLatch(1);
+        uploader.upload(baseURL, EndpointGuard.LIVENESS_ENDPOINT, body, "test-agent", new CancellationToken("test session"),
+                new ScanUploader.Callback() {
+                    @Override
+                    public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                        if (statusCode == 200) {
+                            call.succeeded();
+                        } else {
+                            call.failed();
+                        }
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception e, long bytesSent) {
+                        call.failed();
+                        done.countDown();
+                    }
+                });
+        assertTrue("upload did not finish", done.await(5, TimeUnit.SECONDS));
+    }
+
+    private long probes(StandInServer server) {
+        return (long) endpointMetrics(server).get("probes");
+    }
+
+    private Map<String, Object> endpointMetrics(StandInServer server) {
+        return endpointMetrics(server.baseURL());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> endpointMetrics(String baseURL) {
+        Map<String, Object> endpoints = (Map<String, Object>) router.metrics().get("endpoints");
+        return (Map<String, Object>) endpoints.get(baseURL);
+    }
+}
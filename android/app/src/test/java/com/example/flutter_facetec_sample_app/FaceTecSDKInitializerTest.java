@@ -0,0 +1,146 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import com.facetec.sdk.FaceTecSDK;
+import com.facetec.sdk.FaceTecSDKStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The initialize arguments cache and how initialize() shares, repeats and supersedes SDK
+// initializations. The SDK is a fake whose initializations the tests answer themselves.
+public class FaceTecSDKInitializerTest {
+    private final FakeSharedPreferences preferences = new FakeSharedPreferences();
+    private final FakeSdk sdk = new FakeSdk();
+    private final List<String> outcomes = new ArrayList<>();
+    private FaceTecSDKInitializer initializer;
+
+    @Before
+    public void setUp() {
+        initializer = new FaceTecSDKInitializer(preferences.context(), sdk);
+    }
+
+    @Test
+    public void cachedArgumentsEqualTheArgumentsTheyWereSavedFrom() {
+        assertNull(initializer.loadCachedArguments());
+        Map<String, Object> compression = new HashMap<>();
+        compression.put("encoding", "gzip");
+        compression.put("level", null);
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("deviceKeyIdentifier", "device-key");
+        arguments.put("publicFaceScanEncryptionKey", "public-key");
+        arguments.put("baseURL", "https://api.example.com");
+        arguments.put("endpoints", Arrays.asList("https://eu.example.com", "https://us.example.com"));
+        arguments.put("sessionTokenPoolSize", 3);
+        arguments.put("nativeUploads", true);
+        arguments.put("uploadCompression", compression);
+        // Options Dart leaves to the native defaults.
+        arguments.put("deviceClass", null);
+        arguments.put("telemetryCollectorURL", null);
+
+        Map<String, Object> stripped = FaceTecSDKInitializer.withoutNulls(arguments);
+        initializer.saveArguments(stripped);
+
+        Map<String, Object> cached = new FaceTecSDKInitializer(preferences.context(), sdk).loadCachedArguments();
+        assertEquals(stripped, cached);
+        assertFalse(cached.containsKey("deviceClass"));
+        assertEquals(Collections.singletonMap("encoding", "gzip"), cached.get("uploadCompression"));
+    }
+
+    @Test
+    public void nullsInCachesFromOlderVersionsAreDropped() {
+        preferences.edit().putString("initializeArguments",
+                "{\"deviceKeyIdentifier\":\"device-key\",\"deviceClass\":null,\"uploadCompression\":{\"level\":null}}").apply();
+
+        Map<String, Object> cached = initializer.loadCachedArguments();
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("deviceKeyIdentifier", "device-key");
+        expected.put("uploadCompression", new HashMap<>());
+        assertEquals(expected, cached);
+    }
+
+    @Test
+    public void repeatedInitializeWithTheSameKeysSharesTheFirst() {
+        assertFalse(initializer.hasStarted());
+        assertTrue(initializer.initialize("device-key", "public-key"));
+        initializer.whenReady(this::record);
+        assertFalse(initializer.initialize("device-key", "public-key"));
+        initializer.whenReady(this::record);
+        assertTrue(initializer.hasStarted());
+        assertEquals(1, sdk.pending.size());
+        assertTrue(outcomes.isEmpty());
+
+        sdk.answer(0, true);
+        assertEquals(Arrays.asList("ready", "ready"), outcomes);
+        assertFalse(initializer.initialize("device-key", "public-key"));
+        initializer.whenReady(this::record);
+        assertEquals(Arrays.asList("ready", "ready", "ready"), outcomes);
+        assertEquals(1, sdk.pending.size());
+    }
+
+    @Test
+    public void changedKeysInitializeAgainAndTheSupersededAnswerIsIgnored() {
+        assertTrue(initializer.initialize("device-key", "public-key"));
+        initializer.whenReady(this::record);
+        assertTrue(initializer.initialize("other-device-key", "other-public-key"));
+        assertEquals(Arrays.asList("device-key", "other-device-key"), sdk.deviceKeys);
+
+        // The first initialization failing does not fail the one that replaced it.
+        sdk.answer(0, false);
+        assertTrue(outcomes.isEmpty());
+        sdk.answer(1, true);
+        assertEquals(Collections.singletonList("ready"), outcomes);
+    }
+
+    @Test
+    public void failedInitializationIsRetriedWithTheSameKeys() {
+        assertTrue(initializer.initialize("device-key", "public-key"));
+        sdk.answer(0, false);
+        initializer.whenReady(this::record);
+        assertEquals(Collections.singletonList("failed INVALID_DEVICE_KEY_IDENTIFIER"), outcomes);
+
+        assertTrue(initializer.initialize("device-key", "public-key"));
+        initializer.whenReady(this::record);
+        assertEquals(1, outcomes.size());
+        sdk.answer(1, true);
+        assertEquals(Arrays.asList("failed INVALID_DEVICE_KEY_IDENTIFIER", "ready"), outcomes);
+    }
+
+    private void record(boolean success, String errorCode, String errorMessage) {
+        outcomes.add(success ? "ready" : "failed " + errorCode);
+    }
+
+    private static final class FakeSdk implements FaceTecSDKInitializer.Sdk {
+        final List<String> deviceKeys = new ArrayList<>();
+        final List<FaceTecSDK.InitializeCallback> pending = new ArrayList<>();
+
+        @Override
+        public void initializeInDevelopmentMode(Context context, String deviceKeyIdentifier, String publicFaceScanEncryptionKey,
+                                                FaceTecSDK.InitializeCallback callback) {
+            deviceKeys.add(deviceKeyIdentifier);
+            pending.add(callback);
+        }
+
+        @Override
+        public FaceTecSDKStatus getStatus(Context context) {
+            return FaceTecSDKStatus.INVALID_DEVICE_KEY_IDENTIFIER;
+        }
+
+        void answer(int initialization, boolean success) {
+            pending.get(initialization).onCompletion(success);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.flutter_facetec_sample_app;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.FlutterException;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.common.StandardMethodCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Plays the Dart side of the processor channels. Calls native makes with invokeMethod are kept,
+// decoded, until the test answers them with reply(); calls from Dart go through the handler the
+// processor's MethodChannel registered, encoded with the same codec the engine uses.
+final class FakeBinaryMessenger implements BinaryMessenger {
+    private static final StandardMethodCodec CODEC = StandardMethodCodec.INSTANCE;
+
+    static final class Invocation {
+        final String channel;
+        final MethodCall call;
+        private final BinaryReply reply;
+
+        Invocation(String channel, MethodCall call, BinaryReply reply) {
+            this.channel = channel;
+            this.call = call;
+            this.reply = reply;
+        }
+    }
+
+    private final Map<String, BinaryMessageHandler> handlers = new HashMap<>();
+    private final List<Invocation> invocations = new ArrayList<>();
+    private final List<Invocation> unanswered = new ArrayList<>();
+
+    @Override
+    public void send(String channel, ByteBuffer message) {
+        send(channel, message, null);
+    }
+
+    @Override
+    public void send(String channel, ByteBuffer message, BinaryReply callback) {
+        Invocation invocation = new Invocation(channel, CODEC.decodeMethodCall(written(message)), callback);
+        invocations.add(invocation);
+        if (callback != null) {
+            unanswered.add(invocation);
+        }
+    }
+
+    @Override
+    public void setMessageHandler(String channel, BinaryMessageHandler handler) {
+        if (handler == null) {
+            handlers.remove(channel);
+        } else {
+            handlers.put(channel, handler);
+        }
+    }
+
+    // Every invokeMethod native made, answered or not, in order.
+    List<Invocation> getInvocations() {
+        return invocations;
+    }
+
+    // Answers the oldest unanswered invokeMethod of method with a ChannelTrafficRecorder outcome.
+    void reply(String method, Map<String, Object> outcome) {
+        for (Iterator<Invocation> it = unanswered.iterator(); it.hasNext(); ) {
+            Invocation invocation = it.next();
+            if (invocation.call.method.equals(method)) {
+                it.remove();
+                invocation.reply.reply(envelope(outcome));
+                return;
+            }
+        }
+        throw new IllegalStateException("No unanswered " + method + " call");
+    }
+
+    // Calls native the way Dart would and returns the reply as a ChannelTrafficRecorder outcome.
+    Map<String, Object> callFromDart(String channel, String method, Object arguments) {
+        BinaryMessageHandler handler = handlers.get(channel);
+        if (handler == null) {
+            throw new IllegalStateException("No handler on " + channel);
+        }
+        final List<Map<String, Object>> outcomes = new ArrayList<>();
+        handler.onMessage(written(CODEC.encodeMethodCall(new MethodCall(method, arguments))),
+                reply -> ChannelTrafficReplayer.deliver(outcomeOf(reply), new MethodChannel.Result() {
+                    @Override
+                    public void success(Object result) {
+                        outcomes.add(ChannelTrafficRecorder.successOutcome(result));
+                    }
+
+                    @Override
+                    public void error(String errorCode, String errorMessage, Object errorDetails) {
+                        outcomes.add(ChannelTrafficRecorder.errorOutcome(errorCode, errorMessage));
+                    }
+
+                    @Override
+                    public void notImplemented() {
+                        outcomes.add(ChannelTrafficRecorder.notImplementedOutcome());
+                    }
+                }));
+        return outcomes.isEmpty() ? null : outcomes.get(0);
+    }
+
+    private static ByteBuffer envelope(Map<String, Object> outcome) {
+        Object kind = outcome.get("outcome");
+        if ("success".equals(kind)) {
+            return written(CODEC.encodeSuccessEnvelope(outcome.get("result")));
+        }
+        if ("error".equals(kind)) {
+            return written(CODEC.encodeErrorEnvelope((String) outcome.get("errorCode"),
+                    (String) outcome.get("errorMessage"), null));
+        }
+        // The engine answers a channel without a handler with an empty reply.
+        return null;
+    }
+
+    private static Map<String, Object> outcomeOf(ByteBuffer envelope) {
+        if (envelope == null) {
+            return ChannelTrafficRecorder.notImplementedOutcome();
+        }
+        try {
+            return ChannelTrafficRecorder.successOutcome(CODEC.decodeEnvelope(written(envelope)));
+        } catch (FlutterException e) {
+            return ChannelTrafficRecorder.errorOutcome(e.code, e.getMessage());
+        }
+    }
+
+    // Codecs leave the position after the last byte written; the engine passes on what is before it.
+    private static ByteBuffer written(ByteBuffer buffer) {
+        ByteBuffer bytes = buffer.duplicate();
+        if (bytes.position() > 0) {
+            bytes.flip();
+        }
+        return bytes;
+    }
+}
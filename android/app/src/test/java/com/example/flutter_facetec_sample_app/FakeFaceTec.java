@@ -0,0 +1,136 @@
+package com.example.flutter_facetec_sample_app;
+
+import com.facetec.sdk.FaceTecFaceScanResultCallback;
+import com.facetec.sdk.FaceTecIDScanResult;
+import com.facetec.sdk.FaceTecIDScanResultCallback;
+import com.facetec.sdk.FaceTecIDScanStatus;
+import com.facetec.sdk.FaceTecSessionResult;
+import com.facetec.sdk.FaceTecSessionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// SDK results rebuilt from the summaries ChannelTrafficRecorder stores for SDK callbacks, and a
+// result callback that keeps what the processors told the SDK.
+final class FakeFaceTec {
+    private FakeFaceTec() {
+    }
+
+    static final class SessionResult extends FaceTecSessionResult {
+        private final FaceTecSessionStatus status;
+        private final String sessionId;
+        private final String faceScanBase64;
+        private final String auditTrail;
+        private final String lowQualityAuditTrail;
+
+        SessionResult(FaceTecSessionStatus status, String sessionId, String faceScanBase64) {
+            this(status, sessionId, faceScanBase64, "YXVkaXRUcmFpbA==", "bG93UXVhbGl0eQ==");
+        }
+
+        SessionResult(FaceTecSessionStatus status, String sessionId, String faceScanBase64,
+                      String auditTrail, String lowQualityAuditTrail) {
+            this.status = status;
+            this.sessionId = sessionId;
+            this.faceScanBase64 = faceScanBase64;
+            this.auditTrail = auditTrail;
+            this.lowQualityAuditTrail = lowQualityAuditTrail;
+        }
+
+        static SessionResult fromSummary(Map<String, Object> summary) {
+            return new SessionResult(statusOf(FaceTecSessionStatus.values(), summary.get("status")),
+                    (String) summary.get("sessionId"), (String) summary.get("faceScanBase64"));
+        }
+
+        @Override
+        public FaceTecSessionStatus getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public String getFaceScanBase64() {
+            return faceScanBase64;
+        }
+
+        @Override
+        public String[] getAuditTrailCompressedBase64() {
+            return new String[]{auditTrail};
+        }
+
+        @Override
+        public String[] getLowQualityAuditTrailCompressedBase64() {
+            return new String[]{lowQualityAuditTrail};
+        }
+    }
+
+    static final class IDScanResult extends FaceTecIDScanResult {
+        private final FaceTecIDScanStatus status;
+        private final String sessionId;
+        private final String idScanBase64;
+
+        IDScanResult(FaceTecIDScanStatus status, String sessionId, String idScanBase64) {
+            this.status = status;
+            this.sessionId = sessionId;
+            this.idScanBase64 = idScanBase64;
+        }
+
+        static IDScanResult fromSummary(Map<String, Object> summary) {
+            return new IDScanResult(statusOf(FaceTecIDScanStatus.values(), summary.get("status")),
+                    (String) summary.get("sessionId"), (String) summary.get("idScanBase64"));
+        }
+
+        @Override
+        public FaceTecIDScanStatus getStatus() {
+            return status;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public String getIDScanBase64() {
+            return idScanBase64;
+        }
+    }
+
+    // Both callback types in one, keeping every call in order as "proceedToNextStep <arg>" or "cancel".
+    static final class ResultCallback implements FaceTecFaceScanResultCallback, FaceTecIDScanResultCallback {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public boolean proceedToNextStep(String nextStep) {
+            calls.add("proceedToNextStep " + nextStep);
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+            calls.add("cancel");
+        }
+
+        @Override
+        public void uploadMessageOverride(String message) {
+        }
+
+        @Override
+        public void uploadProgress(float progress) {
+        }
+    }
+
+    // The recorder stores String.valueOf(status), which the SDK enums override with a description.
+    private static <S extends Enum<S>> S statusOf(S[] values, Object recorded) {
+        for (S value : values) {
+            if (value.name().equals(recorded) || value.toString().equals(recorded)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// A liveness session with native uploads on: the processor posts the FaceScan to a stand-in server
+// and hands the result to the SDK, played by FakeFaceTec, without a round trip to Dart.
+public class LivenessCheckProcessorTest {
+    private static final String CHANNEL = ChannelTrafficRecorder.CHANNEL_LIVENESS;
+    private static final String SESSION_ID = "native-liveness-session";
+
+    private StandInServer server;
+    private PriorityScheduler scheduler;
+    private ScanUploader uploader;
+    private LivenessReplayTarget target;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        scheduler = new PriorityScheduler(2);
+        uploader = new ScanUploader("test-device-key", UploadCompression.disabled(), scheduler);
+        EndpointGuard guard = new EndpointGuard();
+        guard.setRouter(new EndpointRouter(Collections.singletonList(server.baseURL())));
+        target = new LivenessReplayTarget();
+        target.processor.setEndpointGuard(guard);
+        target.processor.setScanUploader(uploader);
+        target.processor.setScheduler(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        uploader.shutdown();
+        scheduler.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void uploadsTheFaceScanNatively() throws Exception {
+        scanFace();
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+
+        assertTrue(target.messenger.getInvocations().isEmpty());
+        assertTrue(server.statsJSON(), server.statsJSON().contains("\"liveness-3d\":{\"requests\":1,"));
+        LivenessResult result = target.future.get();
+        assertTrue(result.toString(), result.succeeded);
+        assertEquals(Collections.singletonList("proceedToNextStep " + result.scanResultBlob), target.sdk.calls);
+        assertEquals(1, result.scanAttempts);
+    }
+
+    @Test
+    public void failedUploadEndsTheSessionWithoutRetrying() throws Exception {
+        server.setErrorInjection(1.0, StandInServer.Failure.DROP);
+        scanFace();
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+
+        assertEquals(Collections.singletonList("cancel"), target.sdk.calls);
+        assertTrue(server.statsJSON(), server.statsJSON().contains("\"liveness-3d\":{\"requests\":1,"));
+        LivenessResult result = target.future.get();
+        assertFalse(result.succeeded);
+        assertEquals(TelemetryJournal.CANCEL_UPLOAD_ERROR, result.cancelReason);
+        assertFalse(target.processor.isSessionActive());
+    }
+
+    @Test
+    public void sessionCountsAsActiveFromLaunchUntilTheSDKIsDone() throws Exception {
+        // MainActivity refuses tenant switches while this holds.
+        assertFalse(target.processor.isSessionActive());
+        target.launch("session-token");
+        assertTrue("during the capture, before processSession", target.processor.isSessionActive());
+
+        target.future.cancel(true);
+        target.runMainThreadTasks();
+        assertTrue("the SDK is still tearing the session down", target.processor.isSessionActive());
+
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        assertFalse(target.processor.isSessionActive());
+    }
+
+    // Runs the session until the upload has answered the SDK.
+    private void scanFace() throws Exception {
+        target.launch("session-token");
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("status", "SESSION_COMPLETED_SUCCESSFULLY");
+        summary.put("sessionId", SESSION_ID);
+        summary.put("faceScanBase64", "ZmFjZVNjYW4=");
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits", summary);
+        waitFor(() -> {
+            target.runMainThreadTasks();
+            return !target.sdk.calls.isEmpty();
+        }, 5000);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.app.Activity;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// A LivenessCheckProcessor wired to fakes, like PhotoIDMatchReplayTarget: Dart is a
+// FakeBinaryMessenger behind the processor's channel, the SDK is FakeFaceTec, and work the
+// processor posts to the main thread is run after each event or through runMainThreadTasks().
+final class LivenessReplayTarget implements ChannelTrafficReplayer.Target {
+    static final String CHANNEL_NAME = "com.facetec.sdk/livenesscheck";
+
+    final FakeBinaryMessenger messenger = new FakeBinaryMessenger();
+    final FakeFaceTec.ResultCallback sdk = new FakeFaceTec.ResultCallback();
+    final SessionFuture<LivenessResult> future = new SessionFuture<>();
+    final LivenessCheckProcessor processor;
+    private final Queue<Runnable> mainThread = new ConcurrentLinkedQueue<>();
+
+    LivenessReplayTarget() {
+        MethodChannel channel = new MethodChannel(messenger, CHANNEL_NAME);
+        processor = new LivenessCheckProcessor(channel, new Activity());
+        processor.setMainThreadExecutor(mainThread::add);
+        channel.setMethodCallHandler(processor);
+    }
+
+    void launch(String sessionToken) {
+        processor.launchSession(sessionToken, future);
+        runMainThreadTasks();
+    }
+
+    @Override
+    public void onInboundCall(String channel, MethodCall call, MethodChannel.Result result) {
+        ChannelTrafficReplayer.deliver(messenger.callFromDart(CHANNEL_NAME, call.method, call.arguments), result);
+        runMainThreadTasks();
+    }
+
+    @Override
+    public void onOutboundReply(String channel, String method, Map<String, Object> outcome) {
+        messenger.reply(method, outcome);
+        runMainThreadTasks();
+    }
+
+    @Override
+    public void onSdkCallback(String channel, String callback, Map<String, Object> summary) {
+        switch (callback) {
+            case "processSessionWhileFaceTecSDKWaits":
+                processor.processSessionWhileFaceTecSDKWaits(FakeFaceTec.SessionResult.fromSummary(summary), sdk);
+                break;
+            case "onFaceTecSDKCompletelyDone":
+                processor.onFaceTecSDKCompletelyDone();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown SDK callback " + callback);
+        }
+        runMainThreadTasks();
+    }
+
+    void runMainThreadTasks() {
+        Runnable task;
+        while ((task = mainThread.poll()) != null) {
+            task.run();
+        }
+    }
+}
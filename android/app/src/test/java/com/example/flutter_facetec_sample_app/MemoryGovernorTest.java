@@ -0,0 +1,113 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Injects trim events the way the framework delivers them through registerComponentCallbacks.
+public class MemoryGovernorTest {
+    private static final long RELAX_AFTER_MS = 100;
+
+    private MemoryGovernor governor;
+    private final List<MemoryGovernor.Mode> changes = new ArrayList<>();
+    private long nowMs = 1000;
+
+    @Before
+    public void setUp() {
+        governor = new MemoryGovernor(RELAX_AFTER_MS, () -> nowMs);
+        governor.addListener(changes::add);
+    }
+
+    @Test
+    public void trimEventsOnlyRaiseTheMode() {
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(MemoryGovernor.Mode.NORMAL, governor.getMode());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(MemoryGovernor.Mode.CRITICAL, governor.getMode());
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(MemoryGovernor.Mode.CRITICAL, governor.getMode());
+
+        assertEquals(Arrays.asList(MemoryGovernor.Mode.REDUCED, MemoryGovernor.Mode.CRITICAL), changes);
+        Map<String, Object> metrics = governor.metrics();
+        assertEquals("critical", metrics.get("mode"));
+        assertEquals(4, metrics.get("trimEvents"));
+        assertEquals(1, metrics.get("enteredReduced"));
+        assertEquals(1, metrics.get("enteredCritical"));
+    }
+
+    @Test
+    public void relaxesOneLevelPerQuietPeriod() {
+        governor.onLowMemory();
+        assertEquals(MemoryGovernor.Mode.CRITICAL, governor.getMode());
+        nowMs += RELAX_AFTER_MS - 1;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.CRITICAL, governor.getMode());
+
+        nowMs += 1;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+        nowMs += RELAX_AFTER_MS - 1;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+
+        nowMs += 1;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.NORMAL, governor.getMode());
+        assertEquals(Arrays.asList(MemoryGovernor.Mode.CRITICAL, MemoryGovernor.Mode.REDUCED,
+                MemoryGovernor.Mode.NORMAL), changes);
+    }
+
+    @Test
+    public void pressureDuringTheQuietPeriodRestartsIt() {
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        nowMs += RELAX_AFTER_MS / 2;
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        nowMs += RELAX_AFTER_MS / 2;
+
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+        nowMs += RELAX_AFTER_MS / 2;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.NORMAL, governor.getMode());
+    }
+
+    @Test
+    public void floorHoldsTheModeUp() {
+        governor.setFloor(MemoryGovernor.Mode.REDUCED);
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(MemoryGovernor.Mode.CRITICAL, governor.getMode());
+
+        nowMs += RELAX_AFTER_MS;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+        nowMs += RELAX_AFTER_MS;
+        governor.maybeRelax();
+        assertEquals(MemoryGovernor.Mode.REDUCED, governor.getMode());
+        assertEquals("reduced", governor.metrics().get("floor"));
+    }
+
+    @Test
+    public void reducedModeSendsOnlyTheLowQualityAuditTrail() {
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        Map<String, Object> args = new HashMap<>();
+        MemoryGovernor.putAuditTrails(governor, args, "auditTrail", "lowQualityAuditTrail",
+                new String[]{"full"}, new String[]{"low"});
+
+        assertEquals("low", args.get("auditTrail"));
+        assertFalse(args.containsKey("lowQualityAuditTrail"));
+    }
+}
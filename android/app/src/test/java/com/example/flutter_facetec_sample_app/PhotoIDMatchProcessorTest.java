@@ -0,0 +1,436 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import com.example.flutter_facetec_sample_app.standin.RequestRecord;
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A serialized Photo ID Match with native uploads on: Dart, played by the fakes, uploads the selfie
+// and starts the document scan, and the processor posts the ID scan to a stand-in server itself.
+public class PhotoIDMatchProcessorTest {
+    private static final String CHANNEL = ChannelTrafficRecorder.CHANNEL_PHOTO_ID_MATCH;
+    private static final String SESSION_ID = "native-upload-session";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private StandInServer server;
+    private PriorityScheduler scheduler;
+    private ScanUploader uploader;
+    private PhotoIDMatchReplayTarget target;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        scheduler = new PriorityScheduler(2);
+        uploader = new ScanUploader("test-device-key", UploadCompression.disabled(), scheduler);
+        EndpointGuard guard = new EndpointGuard();
+        guard.setRouter(new EndpointRouter(Collections.singletonList(server.baseURL())));
+        target = new PhotoIDMatchReplayTarget();
+        target.processor.setEndpointGuard(guard);
+        target.processor.setScanUploader(uploader);
+    }
+
+    @After
+    public void tearDown() {
+        uploader.shutdown();
+        scheduler.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void uploadsTheIDScanNatively() throws Exception {
+        int sdkCalls = scanID();
+        waitFor(() -> {
+            target.runMainThreadTasks();
+            return target.sdk.calls.size() > sdkCalls;
+        }, 5000);
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+
+        for (FakeBinaryMessenger.Invocation invocation : target.messenger.getInvocations()) {
+            assertFalse("processIDScan sent to Dart", "processIDScan".equals(invocation.call.method));
+        }
+        assertTrue(server.statsJSON(), server.statsJSON().contains("\"photo-id-match\":{\"requests\":1,"));
+        PhotoIDMatchResult result = target.future.get();
+        assertTrue(result.toString(), result.succeeded);
+        assertNotNull(result.matchResultBlob);
+        assertEquals("proceedToNextStep " + result.matchResultBlob, target.sdk.calls.get(sdkCalls));
+    }
+
+    @Test
+    public void rejectedIDScanReachesTheSDKAsAnErrorResult() throws Exception {
+        server.setErrorInjection(1.0, StandInServer.Failure.HTTP_500);
+        int sdkCalls = scanID();
+        waitFor(() -> {
+            target.runMainThreadTasks();
+            return target.sdk.calls.size() > sdkCalls;
+        }, 5000);
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+
+        String delivered = target.sdk.calls.get(sdkCalls);
+        assertTrue(delivered, delivered.startsWith("proceedToNextStep {") && delivered.contains("\"success\":false"));
+        // Like PhotoIDMatch.dart, a failed upload also releases the camera.
+        assertEquals("cancel", target.sdk.calls.get(target.sdk.calls.size() - 1));
+        assertFalse(target.future.get().succeeded);
+    }
+
+    @Test
+    public void cachedSelfieStillReachesTheDocumentScan() throws Exception {
+        SessionResultCache cache = new SessionResultCache();
+        cache.put(SessionResultCache.key(SESSION_ID, SessionResultCache.Step.FACE, "ZmFjZVNjYW4="), "cached-face-result");
+        target.processor.setResultCache(cache);
+        int sdkCalls = scanID();
+        waitFor(() -> {
+            target.runMainThreadTasks();
+            return target.sdk.calls.size() > sdkCalls;
+        }, 5000);
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+
+        assertEquals("processSession", target.messenger.getInvocations().get(0).call.method);
+        assertFalse(target.sdk.calls.contains("proceedToNextStep cached-face-result"));
+        assertTrue(target.future.get().succeeded);
+    }
+
+    @Test
+    public void rejectedSelfieCancelsTheIDCaptureThroughTheSDKsNextCallback() throws Exception {
+        target.processor.setOptimisticFaceUpload(true);
+        target.launch("session-token");
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+        // The hand-off ends the selfie session and the ID capture starts while the selfie uploads.
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        target.onOutboundReply(CHANNEL, "processSession", ChannelTrafficRecorder.successOutcome(null));
+        int sdkCalls = target.sdk.calls.size();
+
+        callFromDart("onPhotoIDMatchResultBlobReceived", "photoIDMatchResultBlob",
+                "{\"success\":false,\"error\":\"HTTP_ERROR\",\"message\":\"rejected\"}");
+        assertEquals("nothing to cancel before the SDK hands over a callback", sdkCalls, target.sdk.calls.size());
+
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "ZnJvbnQ="));
+        assertEquals(Collections.singletonList("cancel"), target.sdk.calls.subList(sdkCalls, target.sdk.calls.size()));
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        assertFalse(target.future.get().succeeded);
+    }
+
+    @Test
+    public void cancelBetweenTheSidesOfTheIDIsDeliveredThroughTheNextCallback() throws Exception {
+        target.launch("session-token");
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+        target.onOutboundReply(CHANNEL, "processSession", ChannelTrafficRecorder.successOutcome(null));
+        callFromDart("onPhotoIDMatchResultBlobReceived", "photoIDMatchResultBlob", "face-scan-result-blob");
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        callFromDart("startDocumentScan", "sessionToken", "session-token");
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "ZnJvbnQ="));
+        int sdkCalls = target.sdk.calls.size();
+
+        // The front's callback is spent, so only the back's can close the capture.
+        callFromDart("cancelPhotoIDMatch", new HashMap<>());
+        assertEquals(target.sdk.calls.toString(), sdkCalls, target.sdk.calls.size());
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "YmFjaw=="));
+
+        assertEquals(Collections.singletonList("cancel"), target.sdk.calls.subList(sdkCalls, target.sdk.calls.size()));
+        for (FakeBinaryMessenger.Invocation invocation : target.messenger.getInvocations()) {
+            assertFalse("processIDScan sent to Dart", "processIDScan".equals(invocation.call.method));
+        }
+        assertEquals(0, server.records().size());
+    }
+
+    @Test
+    public void onlyDartCancelsMarkedAsUploadErrorsCountAgainstTheEndpoint() throws Exception {
+        EndpointGuard guard = new EndpointGuard(new TokenBucketRateLimiter(100, 6000), 30_000);
+        // Dart cancels before uploading too, e.g. when the audit trail image is missing.
+        for (int i = 0; i < 4; i++) {
+            cancelSelfieFromDart(guard, new HashMap<>());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, guard.circuitBreaker(EndpointGuard.LIVENESS_ENDPOINT).getState());
+
+        Map<String, Object> uploadError = new HashMap<>();
+        uploadError.put("reason", EndpointGuard.DART_CANCEL_UPLOAD_ERROR);
+        for (int i = 0; i < 4; i++) {
+            cancelSelfieFromDart(guard, uploadError);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitBreaker(EndpointGuard.LIVENESS_ENDPOINT).getState());
+    }
+
+    @Test
+    public void serializedFlowRecordsOneSessionWithTheBytesSentNatively() throws Exception {
+        TelemetryJournal journal = new TelemetryJournal(new File(folder.getRoot(), "journal.bin"));
+        target.processor.setTelemetry(journal, null);
+        int sdkCalls = scanID();
+        waitFor(() -> {
+            target.runMainThreadTasks();
+            return target.sdk.calls.size() > sdkCalls;
+        }, 5000);
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        assertTrue(target.future.get().succeeded);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        journal.copyPending(out, 16);
+        journal.close();
+        ByteBuffer records = ByteBuffer.wrap(out.toByteArray());
+        List<Long> sessionBytes = new ArrayList<>();
+        long phaseBytes = 0;
+        long idUploadBytes = -1;
+        for (int offset = 0; offset < records.limit(); offset += TelemetryJournal.RECORD_BYTES) {
+            long bytesSent = records.getLong(offset + 8);
+            if (records.get(offset + 63) == TelemetryJournal.TYPE_SESSION) {
+                sessionBytes.add(bytesSent);
+            } else if (records.get(offset + 63) == TelemetryJournal.TYPE_PHASE) {
+                phaseBytes += bytesSent;
+                if (records.getShort(offset + 40) == TelemetryJournal.PHASE_ID_UPLOAD) {
+                    idUploadBytes = bytesSent;
+                }
+            }
+        }
+        // One record for the selfie and ID sessions together, covering both uploads.
+        assertEquals(Collections.singletonList(phaseBytes), sessionBytes);
+        long receivedBytes = -1;
+        for (RequestRecord record : server.records()) {
+            if (StandInServer.PHOTO_ID_MATCH.equals(record.endpoint)) {
+                receivedBytes = record.requestBytes;
+            }
+        }
+        assertEquals(receivedBytes, idUploadBytes);
+    }
+
+    @Test
+    public void flowCountsAsActiveAcrossTheCaptureAndBetweenTheSessions() throws Exception {
+        // MainActivity refuses tenant switches while this holds.
+        assertFalse(target.processor.isSessionActive());
+        target.launch("session-token");
+        assertTrue("during the selfie capture", target.processor.isSessionActive());
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+        target.onOutboundReply(CHANNEL, "processSession", ChannelTrafficRecorder.successOutcome(null));
+        callFromDart("onPhotoIDMatchResultBlobReceived", "photoIDMatchResultBlob", "face-scan-result-blob");
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        assertTrue("waiting for startDocumentScan", target.processor.isSessionActive());
+
+        callFromDart("startDocumentScan", "sessionToken", "session-token");
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "ZnJvbnQ="));
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "YmFjaw=="));
+        assertTrue("during the ID upload", target.processor.isSessionActive());
+        int sdkCalls = target.sdk.calls.size();
+        waitFor(() -> {
+            target.runMainThreadTasks();
+            return target.sdk.calls.size() > sdkCalls;
+        }, 5000);
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        assertFalse(target.processor.isSessionActive());
+        assertTrue(target.future.get().succeeded);
+    }
+
+    @Test
+    public void documentScanThatNeverArrivesTimesTheFlowOut() throws Exception {
+        scanSelfie();
+        assertTrue(target.processor.isSessionActive());
+
+        target.runDelayedMainThreadTasks();
+        assertFalse(target.processor.isSessionActive());
+        PhotoIDMatchResult result = target.future.get();
+        assertFalse(result.succeeded);
+        assertEquals(TelemetryJournal.CANCEL_TIMED_OUT, result.cancelReason);
+        assertEquals("face-scan-result-blob", result.faceScanResultBlob);
+
+        // A late startDocumentScan is refused instead of launching an ID session for the ended flow.
+        String[] errorCode = new String[1];
+        target.onInboundCall(CHANNEL, new MethodCall("startDocumentScan",
+                Collections.singletonMap("sessionToken", "session-token")), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+            }
+
+            @Override
+            public void error(String code, String errorMessage, Object errorDetails) {
+                errorCode[0] = code;
+            }
+
+            @Override
+            public void notImplemented() {
+            }
+        });
+        assertEquals("SESSION_ENDED", errorCode[0]);
+        assertFalse(target.processor.isSessionActive());
+    }
+
+    @Test
+    public void cancelBetweenTheSessionsEndsTheFlow() throws Exception {
+        TelemetryJournal journal = new TelemetryJournal(new File(folder.getRoot(), "journal.bin"));
+        target.processor.setTelemetry(journal, null);
+        scanSelfie();
+        long recordsWritten = journal.getRecordsWritten();
+
+        callFromDart("cancelPhotoIDMatch", new HashMap<>());
+        assertFalse(target.processor.isSessionActive());
+        assertEquals(TelemetryJournal.CANCEL_REQUESTED_BY_DART, target.future.get().cancelReason);
+        // The timeout of the ended flow finds nothing left to cancel.
+        target.runDelayedMainThreadTasks();
+        // The cancel and the session record.
+        assertEquals(recordsWritten + 2, journal.getRecordsWritten());
+        journal.close();
+    }
+
+    @Test
+    public void cancellingTheFutureCancelsTheSession() throws Exception {
+        target.launch("session-token");
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+
+        assertTrue(target.future.cancel(true));
+        target.runMainThreadTasks();
+        assertEquals(Collections.singletonList("cancel"), target.sdk.calls);
+        assertTrue(target.future.isCancelled());
+
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+        assertFalse(target.processor.isSessionActive());
+    }
+
+    @Test
+    public void tracesTheSessionChannelAndTeardownSpans() throws Exception {
+        ChromeTraceTracer tracer = new ChromeTraceTracer();
+        Tracer previous = Tracing.getTracer();
+        Tracing.setTracer(tracer);
+        try {
+            int sdkCalls = scanID();
+            waitFor(() -> {
+                target.runMainThreadTasks();
+                return target.sdk.calls.size() > sdkCalls;
+            }, 5000);
+            target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+            // A host cancel of the next session tears it down through cancelPhotoIDMatch.
+            SessionFuture<PhotoIDMatchResult> next = new SessionFuture<>();
+            target.processor.launchSession("session-token", next);
+            next.cancel(true);
+            target.runMainThreadTasks();
+        } finally {
+            Tracing.setTracer(previous);
+        }
+
+        StringWriter json = new StringWriter();
+        tracer.writeTo(json);
+        JSONArray events = new JSONObject(json.toString()).getJSONArray("traceEvents");
+        assertEquals(tracer.eventCount(), events.length());
+        List<String> sections = spanNames(events, "B");
+        assertTrue(sections.toString(), sections.contains("PhotoIDMatchProcessor.launchFaceScanSession"));
+        assertTrue(sections.toString(), sections.contains("PhotoIDMatchProcessor.processSessionWhileFaceTecSDKWaits"));
+        assertTrue(sections.toString(), sections.contains("PhotoIDMatchProcessor.launchIDScanSession"));
+        assertTrue(sections.toString(), sections.contains("PhotoIDMatchProcessor.onFaceTecSDKCompletelyDone"));
+        assertTrue(sections.toString(), sections.contains("PhotoIDMatchProcessor.cancelPhotoIDMatch"));
+        assertEquals(sections.size(), spanNames(events, "E").size());
+        // The processSession invoke span is open until Dart answers it.
+        assertEquals(Collections.singletonList("PhotoIDMatchProcessor.invoke.processSession"),
+                filter(spanNames(events, "b"), "PhotoIDMatchProcessor.invoke.processSession"));
+        assertEquals(Collections.singletonList("PhotoIDMatchProcessor.invoke.processSession"),
+                filter(spanNames(events, "e"), "PhotoIDMatchProcessor.invoke.processSession"));
+    }
+
+    // Runs the selfie session to its end, leaving the flow waiting for startDocumentScan.
+    private void scanSelfie() {
+        target.launch("session-token");
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+        target.onOutboundReply(CHANNEL, "processSession", ChannelTrafficRecorder.successOutcome(null));
+        callFromDart("onPhotoIDMatchResultBlobReceived", "photoIDMatchResultBlob", "face-scan-result-blob");
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+    }
+
+    // Runs the flow up to the second side of the ID and returns how many SDK calls it made.
+    private int scanID() {
+        scanSelfie();
+        callFromDart("startDocumentScan", "sessionToken", "session-token");
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "ZnJvbnQ="));
+        target.onSdkCallback(CHANNEL, "processIDScanWhileFaceTecSDKWaits", summary("SUCCESS", "idScanBase64", "YmFjaw=="));
+        return target.sdk.calls.size();
+    }
+
+    // A session whose selfie upload Dart cancels with the given arguments.
+    private void cancelSelfieFromDart(EndpointGuard guard, Map<String, Object> arguments) {
+        target = new PhotoIDMatchReplayTarget();
+        target.processor.setEndpointGuard(guard);
+        target.launch("session-token");
+        target.onSdkCallback(CHANNEL, "processSessionWhileFaceTecSDKWaits",
+                summary("SESSION_COMPLETED_SUCCESSFULLY", "faceScanBase64", "ZmFjZVNjYW4="));
+        callFromDart("cancelPhotoIDMatch", arguments);
+        target.onSdkCallback(CHANNEL, "onFaceTecSDKCompletelyDone", new HashMap<>());
+    }
+
+    private void callFromDart(String method, String key, String value) {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put(key, value);
+        callFromDart(method, arguments);
+    }
+
+    private void callFromDart(String method, Map<String, Object> arguments) {
+        target.onInboundCall(CHANNEL, new MethodCall(method, arguments), new MethodChannel.Result() {
+            @Override
+            public void success(Object result) {
+            }
+
+            @Override
+            public void error(String errorCode, String errorMessage, Object errorDetails) {
+                throw new AssertionError(method + " failed: " + errorMessage);
+            }
+
+            @Override
+            public void notImplemented() {
+                throw new AssertionError(method + " not implemented");
+            }
+        });
+    }
+
+    // Names of the trace events of the given phase, in order; end events of sections have none.
+    private static List<String> spanNames(JSONArray events, String phase) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < events.length(); i++) {
+            JSONObject event = events.getJSONObject(i);
+            if (phase.equals(event.getString("ph"))) {
+                names.add(event.optString("name", null));
+            }
+        }
+        return names;
+    }
+
+    private static List<String> filter(List<String> names, String name) {
+        List<String> matching = new ArrayList<>();
+        for (String candidate : names) {
+            if (name.equals(candidate)) {
+                matching.add(candidate);
+            }
+        }
+        return matching;
+    }
+
+    private static Map<String, Object> summary(String status, String scanKey, String scan) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("status", status);
+        summary.put("sessionId", SESSION_ID);
+        summary.put(scanKey, scan);
+        return summary;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.app.Activity;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// A PhotoIDMatchProcessor wired to fakes: Dart is a FakeBinaryMessenger behind the processor's
+// channel, the SDK is FakeFaceTec, and work the processor posts to the main thread is run after
+// each event, or through runMainThreadTasks() when a background upload posts it. Delayed work,
+// such as the startDocumentScan timeout, only runs through runDelayedMainThreadTasks(). Tests drive
+// it directly while recording and through ChannelTrafficReplayer after.
+final class PhotoIDMatchReplayTarget implements ChannelTrafficReplayer.Target {
+    static final String CHANNEL_NAME = "com.facetec.sdk/photo_id_match";
+
+    final FakeBinaryMessenger messenger = new FakeBinaryMessenger();
+    final FakeFaceTec.ResultCallback sdk = new FakeFaceTec.ResultCallback();
+    final SessionFuture<PhotoIDMatchResult> future = new SessionFuture<>();
+    final PhotoIDMatchProcessor processor;
+    private final Queue<Runnable> mainThread = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> delayedMainThread = new ConcurrentLinkedQueue<>();
+
+    PhotoIDMatchReplayTarget() {
+        MethodChannel channel = new MethodChannel(messenger, CHANNEL_NAME);
+        processor = new PhotoIDMatchProcessor(channel, new Activity());
+        processor.setMainThreadExecutor(mainThread::add);
+        processor.setDelayedMainThreadExecutor((task, delayMs) -> delayedMainThread.add(task));
+        channel.setMethodCallHandler(processor);
+    }
+
+    void launch(String sessionToken) {
+        processor.launchSession(sessionToken, future);
+        runMainThreadTasks();
+    }
+
+    @Override
+    public void onInboundCall(String channel, MethodCall call, MethodChannel.Result result) {
+        ChannelTrafficReplayer.deliver(messenger.callFromDart(CHANNEL_NAME, call.method, call.arguments), result);
+        runMainThreadTasks();
+    }
+
+    @Override
+    public void onOutboundReply(String channel, String method, Map<String, Object> outcome) {
+        messenger.reply(method, outcome);
+        runMainThreadTasks();
+    }
+
+    @Override
+    public void onSdkCallback(String channel, String callback, Map<String, Object> summary) {
+        switch (callback) {
+            case "processSessionWhileFaceTecSDKWaits":
+                processor.processSessionWhileFaceTecSDKWaits(FakeFaceTec.SessionResult.fromSummary(summary), sdk);
+                break;
+            case "processIDScanWhileFaceTecSDKWaits":
+                processor.processIDScanWhileFaceTecSDKWaits(FakeFaceTec.IDScanResult.fromSummary(summary), sdk);
+                break;
+            case "onFaceTecSDKCompletelyDone":
+                processor.onFaceTecSDKCompletelyDone();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown SDK callback " + callback);
+        }
+        runMainThreadTasks();
+    }
+
+    void runMainThreadTasks() {
+        Runnable task;
+        while ((task = mainThread.poll()) != null) {
+            task.run();
+        }
+    }
+
+    // Runs the delayed work posted so far as if its delay had passed.
+    void runDelayedMainThreadTasks() {
+        Runnable task;
+        while ((task = delayedMainThread.poll()) != null) {
+            task.run();
+        }
+        runMainThreadTasks();
+    }
+}
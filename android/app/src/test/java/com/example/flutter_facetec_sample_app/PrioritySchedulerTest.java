@@ -0,0 +1,172 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Two workers, so one is free for background work and the other is kept for live tasks. Tasks
+// that hold a worker wait on a latch the test counts down.
+public class PrioritySchedulerTest {
+    private PriorityScheduler scheduler;
+    private final List<PriorityScheduler.Priority> ran = Collections.synchronizedList(new ArrayList<>());
+    private final List<CountDownLatch> latches = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        scheduler = new PriorityScheduler(2);
+    }
+
+    @After
+    public void tearDown() {
+        for (CountDownLatch latch : latches) {
+            latch.countDown();
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void runsQueuedTasksInClassOrder() throws Exception {
+        CountDownLatch first = occupyWorker(PriorityScheduler.Priority.LIVE_UPLOAD);
+        occupyWorker(PriorityScheduler.Priority.LIVE_UPLOAD);
+        waitFor(() -> ran.size() == 2, 5000);
+        ran.clear();
+
+        for (PriorityScheduler.Priority priority : new PriorityScheduler.Priority[]{
+                PriorityScheduler.Priority.TELEMETRY, PriorityScheduler.Priority.PREFETCH, PriorityScheduler.Priority.RETRY,
+                PriorityScheduler.Priority.LIVE_PARSE, PriorityScheduler.Priority.LIVE_UPLOAD}) {
+            assertTrue(scheduler.trySubmit(priority, () -> ran.add(priority)));
+        }
+        // A single free worker takes them one at a time.
+        first.countDown();
+
+        waitFor(() -> ran.size() == 5, 5000);
+        assertEquals(Arrays.asList(PriorityScheduler.Priority.LIVE_UPLOAD, PriorityScheduler.Priority.LIVE_PARSE,
+                PriorityScheduler.Priority.RETRY, PriorityScheduler.Priority.PREFETCH,
+                PriorityScheduler.Priority.TELEMETRY), ran);
+    }
+
+    @Test
+    public void backgroundWorkWaitsForTheLiveWindowToClose() throws Exception {
+        PriorityScheduler.LiveWindow window = scheduler.openLiveWindow();
+        assertTrue(scheduler.shouldYield(PriorityScheduler.Priority.PREFETCH));
+        assertFalse(scheduler.shouldYield(PriorityScheduler.Priority.LIVE_UPLOAD));
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.PREFETCH, () -> ran.add(PriorityScheduler.Priority.PREFETCH)));
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.LIVE_UPLOAD, () -> ran.add(PriorityScheduler.Priority.LIVE_UPLOAD)));
+
+        waitFor(() -> ran.size() == 1, 5000);
+        assertEquals(Collections.singletonList(PriorityScheduler.Priority.LIVE_UPLOAD), ran);
+        assertEquals(1, classMetrics(PriorityScheduler.Priority.PREFETCH).get("queueDepth"));
+
+        window.close();
+        window.close();
+        assertFalse(scheduler.shouldYield(PriorityScheduler.Priority.PREFETCH));
+        waitFor(() -> ran.size() == 2, 5000);
+        assertEquals(0, scheduler.metrics().get("liveWindows"));
+    }
+
+    @Test
+    public void lastWorkerIsKeptForLiveTasks() throws Exception {
+        CountDownLatch retry = occupyWorker(PriorityScheduler.Priority.RETRY);
+        waitFor(() -> ran.size() == 1, 5000);
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.TELEMETRY, () -> ran.add(PriorityScheduler.Priority.TELEMETRY)));
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.LIVE_PARSE, () -> ran.add(PriorityScheduler.Priority.LIVE_PARSE)));
+
+        waitFor(() -> ran.size() == 2, 5000);
+        assertEquals(Arrays.asList(PriorityScheduler.Priority.RETRY, PriorityScheduler.Priority.LIVE_PARSE), ran);
+        assertEquals(1, scheduler.metrics().get("runningBackground"));
+        assertEquals(1, classMetrics(PriorityScheduler.Priority.TELEMETRY).get("queueDepth"));
+
+        retry.countDown();
+        waitFor(() -> ran.size() == 3, 5000);
+        assertEquals(PriorityScheduler.Priority.TELEMETRY, ran.get(2));
+    }
+
+    @Test
+    public void trySubmitRejectsWhenTheClassQueueIsFull() {
+        scheduler.openLiveWindow();
+        scheduler.setCapacity(PriorityScheduler.Priority.TELEMETRY, 2);
+
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.TELEMETRY, () -> { }));
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.TELEMETRY, () -> { }));
+        assertFalse(scheduler.trySubmit(PriorityScheduler.Priority.TELEMETRY, () -> { }));
+        // Other classes have their own queues.
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.PREFETCH, () -> { }));
+
+        Map<String, Object> telemetry = classMetrics(PriorityScheduler.Priority.TELEMETRY);
+        assertEquals(2, telemetry.get("queueDepth"));
+        assertEquals(1L, telemetry.get("rejected"));
+    }
+
+    @Test
+    public void submitTimesOutOnAFullQueue() throws Exception {
+        scheduler.openLiveWindow();
+        scheduler.setCapacity(PriorityScheduler.Priority.PREFETCH, 1);
+        assertTrue(scheduler.submit(PriorityScheduler.Priority.PREFETCH, () -> { }, 0));
+
+        long start = System.nanoTime();
+        assertFalse(scheduler.submit(PriorityScheduler.Priority.PREFETCH, () -> { }, 100));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertEquals(1L, classMetrics(PriorityScheduler.Priority.PREFETCH).get("rejected"));
+    }
+
+    @Test
+    public void submitBlocksTheProducerUntilThereIsRoom() throws Exception {
+        PriorityScheduler.LiveWindow window = scheduler.openLiveWindow();
+        scheduler.setCapacity(PriorityScheduler.Priority.PREFETCH, 1);
+        assertTrue(scheduler.trySubmit(PriorityScheduler.Priority.PREFETCH, () -> ran.add(PriorityScheduler.Priority.PREFETCH)));
+
+        AtomicBoolean queued = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            try {
+                queued.set(scheduler.submit(PriorityScheduler.Priority.PREFETCH,
+                        () -> ran.add(PriorityScheduler.Priority.PREFETCH), 5000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        waitFor(() -> producer.getState() == Thread.State.TIMED_WAITING, 5000);
+        assertTrue(ran.isEmpty());
+
+        // Dispatching the queued task makes room for the producer's.
+        window.close();
+        producer.join(5000);
+        assertTrue(queued.get());
+        waitFor(() -> ran.size() == 2, 5000);
+    }
+
+    // Submits a task that records its class and then holds its worker until the returned latch opens.
+    private CountDownLatch occupyWorker(PriorityScheduler.Priority priority) {
+        CountDownLatch release = new CountDownLatch(1);
+        latches.add(release);
+        assertTrue(scheduler.trySubmit(priority, () -> {
+            ran.add(priority);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        return release;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> classMetrics(PriorityScheduler.Priority priority) {
+        return (Map<String, Object>) scheduler.metrics().get(priority.name().toLowerCase(Locale.US));
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import com.example.flutter_facetec_sample_app.perf.NetworkConditionProxy;
+import com.example.flutter_facetec_sample_app.perf.NetworkProfile;
+import com.example.flutter_facetec_sample_app.standin.RequestRecord;
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cancels uploads streaming through a throttled proxy to a stand-in server, so a body is still
+// being written when its session's token is cancelled.
+public class ScanUploaderTest {
+    private static final long UPLINK_BYTES_PER_SECOND = 200_000;
+    // Twenty seconds of uplink at that rate.
+    private static final int LARGE_SCAN_CHARS = 4 * 1024 * 1024;
+    private static final long SETTLE_MS = 500;
+
+    private StandInServer server;
+    private NetworkConditionProxy proxy;
+    private PriorityScheduler scheduler;
+    private ScanUploader uploader;
+    private String baseURL;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        proxy = new NetworkConditionProxy("127.0.0.1", server.getPort(),
+                new NetworkProfile("slow-uplink", UPLINK_BYTES_PER_SECOND, 0, 0, 0, 0, -1, 0, 0));
+        baseURL = "http://127.0.0.1:" + proxy.getPort();
+        scheduler = new PriorityScheduler(2);
+        uploader = new ScanUploader("test-device-key", UploadCompression.disabled(), scheduler);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        uploader.shutdown();
+        scheduler.shutdown();
+        proxy.close();
+        server.close();
+    }
+
+    @Test
+    public void cancellingStopsAnUploadMidWrite() throws Exception {
+        CancellationToken token = new CancellationToken("test session");
+        AtomicInteger callbacks = new AtomicInteger();
+        Map<String, Object> body = body(LARGE_SCAN_CHARS);
+        uploader.upload(baseURL, EndpointGuard.LIVENESS_ENDPOINT, body, "test-agent", token, countingCallback(callbacks));
+        waitFor(() -> proxy.getUplinkBytes() > 100 * 1024, 5000);
+
+        token.cancel();
+        // The worker releases the body once post() has returned, long before the body could be sent.
+        waitFor(body::isEmpty, 3000);
+        Thread.sleep(SETTLE_MS);
+
+        assertEquals("callbacks for the cancelled upload", 0, callbacks.get());
+        for (RequestRecord record : server.records()) {
+            assertFalse("cancelled body reached the server: " + record,
+                    record.requestBytes >= LARGE_SCAN_CHARS && record.statusCode == 200);
+        }
+    }
+
+    @Test
+    public void uploadWithACancelledTokenSendsNothing() throws Exception {
+        CancellationToken token = new CancellationToken("test session");
+        token.cancel();
+        AtomicInteger callbacks = new AtomicInteger();
+        Map<String, Object> body = body(1024);
+        uploader.upload(baseURL, EndpointGuard.LIVENESS_ENDPOINT, body, "test-agent", token, countingCallback(callbacks));
+
+        CountDownLatch next = new CountDownLatch(1);
+        uploader.upload(baseURL, EndpointGuard.LIVENESS_ENDPOINT, body(1024), "test-agent",
+                new CancellationToken("next session"), latchCallback(next));
+        assertTrue("next upload did not finish", next.await(5, TimeUnit.SECONDS));
+
+        // The stand-in records a request after it has answered it.
+        waitFor(() -> server.records().size() == 1, 2000);
+        assertEquals(0, callbacks.get());
+        assertTrue(body.isEmpty());
+        assertEquals(1, proxy.getConnectionCount());
+    }
+
+    @Test
+    public void reportsTheBytesThatReachedTheServer() throws Exception {
+        // Straight to the server: the throttled proxy would make a 64 KB body take a while.
+        String directURL = server.baseURL();
+        long[] reported = new long[2];
+        Map<String, Object> plain = body(64 * 1024);
+        long plainBytes = JsonBodyWriter.length(plain);
+        upload(uploader, directURL, plain, reported, 0);
+
+        ScanUploader compressing = new ScanUploader("test-device-key",
+                new UploadCompression(UploadCompression.GZIP, UploadCompression.DEFAULT_LEVEL, 1024), scheduler);
+        try {
+            upload(compressing, directURL, body(64 * 1024), reported, 1);
+        } finally {
+            compressing.shutdown();
+        }
+
+        waitFor(() -> server.records().size() == 2, 2000);
+        assertEquals(plainBytes, reported[0]);
+        assertEquals(server.records().get(0).requestBytes, reported[0]);
+        // The repeating scan compresses to a small fraction of its length.
+        assertEquals(server.records().get(1).requestBytes, reported[1]);
+        assertTrue(reported[1] + " >= " + plainBytes, reported[1] < plainBytes / 10);
+    }
+
+    private static void upload(ScanUploader uploader, String baseURL, Map<String, Object> body, long[] reported,
+                               int index) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        uploader.upload(baseURL, EndpointGuard.LIVENESS_ENDPOINT, body, "test-agent", new CancellationToken("session"),
+                new ScanUploader.Callback() {
+                    @Override
+                    public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                        reported[index] = bytesSent;
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception e, long bytesSent) {
+                        throw new AssertionError("upload failed", e);
+                    }
+                });
+        assertTrue("upload did not finish", done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Map<String, Object> body(int scanChars) {
+        StringBuilder scan = new StringBuilder(scanChars);
+        for (int i = 0; i < scanChars; i++) {
+            scan.append((char) ('A' + i % 26));
+        }
+        // Polled by the test while the uploader clears it.
+        Map<String, Object> body = Collections.synchronizedMap(new HashMap<>());
+        body.put("faceScan", scan.toString());
+        body.put("auditTrailImage", "YXVkaXRUcmFpbA==");
+        return body;
+    }
+
+    private static ScanUploader.Callback countingCallback(AtomicInteger callbacks) {
+        return new ScanUploader.Callback() {
+            @Override
+            public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                callbacks.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Exception e, long bytesSent) {
+                callbacks.incrementAndGet();
+            }
+        };
+    }
+
+    private static ScanUploader.Callback latchCallback(CountDownLatch done) {
+        return new ScanUploader.Callback() {
+            @Override
+            public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                assertEquals(200, statusCode);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e, long bytesSent) {
+                throw new AssertionError("next upload failed", e);
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Stages run where the tests can see them: inline, or on an executor that queues tasks until the
+// test runs them.
+public class SessionFutureTest {
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @Test
+    public void allOfWaitsForEveryFutureAndFailsWithTheFirstErrorInArgumentOrder() throws Exception {
+        SessionFuture<String> first = new SessionFuture<>();
+        SessionFuture<String> second = new SessionFuture<>();
+        SessionFuture<String> third = new SessionFuture<>();
+        SessionFuture<Void> all = SessionFuture.allOf(first, second, third);
+
+        IllegalStateException secondError = new IllegalStateException("second");
+        third.completeExceptionally(new IllegalStateException("third"));
+        second.completeExceptionally(secondError);
+        assertFalse(all.isDone());
+        first.complete("first");
+
+        assertTrue(all.isCompletedExceptionally());
+        assertSame(secondError, cause(all));
+        assertTrue(SessionFuture.allOf().isDone());
+        assertNull(SessionFuture.allOf(SessionFuture.completedFuture("done")).get());
+    }
+
+    @Test
+    public void thenComposeCompletesWithTheInnerFuture() throws Exception {
+        SessionFuture<String> source = new SessionFuture<>();
+        SessionFuture<Integer> inner = new SessionFuture<>();
+        List<String> applied = new ArrayList<>();
+        SessionFuture<Integer> composed = source.thenCompose(value -> {
+            applied.add(value);
+            return inner;
+        });
+
+        source.complete("token");
+        assertEquals(Arrays.asList("token"), applied);
+        assertFalse(composed.isDone());
+        inner.complete(42);
+        assertEquals(Integer.valueOf(42), composed.get());
+
+        // An inner failure and a missing inner future both fail the composed stage.
+        IllegalStateException innerError = new IllegalStateException("inner");
+        assertSame(innerError, cause(SessionFuture.completedFuture("token")
+                .thenCompose(value -> SessionFuture.failedFuture(innerError))));
+        assertTrue(cause(SessionFuture.completedFuture("token").thenCompose(value -> null))
+                instanceof NullPointerException);
+    }
+
+    @Test
+    public void thenComposeSkipsTheChainWhenTheSourceFails() throws Exception {
+        IllegalStateException error = new IllegalStateException("source");
+        SessionFuture<Integer> composed = SessionFuture.<String>failedFuture(error).thenCompose(value -> {
+            fail("chain ran for a failed source");
+            return null;
+        });
+        assertSame(error, cause(composed));
+    }
+
+    @Test
+    public void whenCompleteAsyncRunsTheListenerOnTheExecutor() throws Exception {
+        SessionFuture<String> source = new SessionFuture<>();
+        AtomicReference<String> seen = new AtomicReference<>();
+        SessionFuture<String> next = source.whenCompleteAsync((value, error) -> seen.set(value), queued::add);
+
+        source.complete("result");
+        assertNull("ran before the executor did", seen.get());
+        assertFalse(next.isDone());
+        runQueued();
+        assertEquals("result", seen.get());
+        assertEquals("result", next.get());
+    }
+
+    @Test
+    public void whenCompleteAsyncFailsWithTheListenerErrorOnlyIfTheSourceSucceeded() throws Exception {
+        IllegalStateException listenerError = new IllegalStateException("listener");
+        SessionFuture<String> afterSuccess = SessionFuture.completedFuture("result")
+                .whenCompleteAsync((value, error) -> {
+                    throw listenerError;
+                }, queued::add);
+        IllegalStateException sourceError = new IllegalStateException("source");
+        SessionFuture<String> afterFailure = SessionFuture.<String>failedFuture(sourceError)
+                .whenCompleteAsync((value, error) -> {
+                    throw listenerError;
+                }, queued::add);
+        runQueued();
+
+        assertSame(listenerError, cause(afterSuccess));
+        assertSame(sourceError, cause(afterFailure));
+    }
+
+    @Test
+    public void rejectedExecutionFailsTheDependentStage() throws Exception {
+        RejectedExecutionException rejected = new RejectedExecutionException("shut down");
+        SessionFuture<String> next = SessionFuture.completedFuture("result")
+                .whenCompleteAsync((value, error) -> fail("listener ran"), task -> {
+                    throw rejected;
+                });
+        assertSame(rejected, cause(next));
+    }
+
+    @Test
+    public void cancelRunsTheCancelActionOnceAndDoesNotReachBackUpstream() {
+        SessionFuture<String> source = new SessionFuture<>();
+        List<String> cancels = new ArrayList<>();
+        source.setOnCancel(() -> cancels.add("session"));
+        SessionFuture<Integer> dependent = source.thenApply(String::length);
+
+        assertTrue(dependent.cancel(true));
+        assertTrue(cancels.isEmpty());
+        assertFalse(source.isDone());
+
+        assertTrue(source.cancel(true));
+        assertFalse(source.cancel(true));
+        assertEquals(Arrays.asList("session"), cancels);
+        assertTrue(source.isCancelled());
+        assertTrue(source.isCompletedExceptionally());
+    }
+
+    @Test
+    public void completedFutureIgnoresCancel() {
+        SessionFuture<String> future = new SessionFuture<>();
+        List<String> cancels = new ArrayList<>();
+        future.setOnCancel(() -> cancels.add("session"));
+        future.complete("result");
+
+        assertFalse(future.cancel(true));
+        assertFalse(future.isCancelled());
+        assertTrue(cancels.isEmpty());
+    }
+
+    @Test
+    public void cancellationPropagatesToDependentsAndIsThrownByGet() throws Exception {
+        SessionFuture<String> source = new SessionFuture<>();
+        SessionFuture<Integer> dependent = source.thenApply(String::length);
+        source.cancel(true);
+
+        assertTrue(dependent.isCancelled());
+        try {
+            dependent.get();
+            fail("get() returned for a cancelled future");
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void getBlocksUntilAnotherThreadCompletes() throws Exception {
+        SessionFuture<String> future = new SessionFuture<>();
+        AtomicReference<String> got = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                got.set(future.get());
+            } catch (Exception e) {
+                got.set(e.toString());
+            }
+        });
+        waiter.start();
+        waitFor(() -> waiter.getState() == Thread.State.WAITING, 5000);
+        assertNull(got.get());
+
+        future.complete("result");
+        waiter.join(5000);
+        assertEquals("result", got.get());
+    }
+
+    @Test
+    public void timedGetThrowsTimeoutExceptionAndWrapsFailures() throws Exception {
+        SessionFuture<String> future = new SessionFuture<>();
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail("get() returned for a pending future");
+        } catch (TimeoutException expected) {
+        }
+
+        IllegalStateException error = new IllegalStateException("failed");
+        future.completeExceptionally(error);
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail("get() returned for a failed future");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    private void runQueued() {
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+    }
+
+    // The Throwable the future failed with, which must have happened already.
+    private static Throwable cause(SessionFuture<?> future) throws InterruptedException {
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("not failed with an ExecutionException");
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import com.example.flutter_facetec_sample_app.standin.RequestRecord;
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SessionTokenPoolTest {
+    private StandInServer server;
+    private PriorityScheduler scheduler;
+    private SessionTokenPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer();
+        scheduler = new PriorityScheduler(2);
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        scheduler.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void fillsToCapacityOnStart() throws Exception {
+        pool = newPool(2, SessionTokenPool.DEFAULT_MAX_TOKEN_AGE_MS);
+        pool.start();
+
+        waitFor(() -> pool.available() == 2, 5000);
+        String sessionToken = pool.poll();
+        assertNotNull(sessionToken);
+        assertTrue(sessionToken.startsWith("standin-"));
+    }
+
+    @Test
+    public void replacesOldestTokenBeforeItExpires() throws Exception {
+        // Replaced 200 ms ahead of the 800 ms expiry, without anyone polling.
+        pool = newPool(1, 800);
+        pool.start();
+        waitFor(() -> pool.available() == 1, 5000);
+
+        waitFor(() -> sessionTokenRequests() >= 2, 5000);
+        waitFor(() -> pool.available() == 1, 5000);
+    }
+
+    @Test
+    public void retriesFailedRefillWithBackoff() throws Exception {
+        server.setErrorInjection(1.0, StandInServer.Failure.HTTP_500);
+        pool = newPool(2, SessionTokenPool.DEFAULT_MAX_TOKEN_AGE_MS);
+        pool.setRetryBackoff(50, 200);
+        pool.start();
+
+        // Attempts at about 0, 50, 150 and 350 ms.
+        waitFor(() -> sessionTokenRequests() >= 3, 5000);
+        assertEquals(0, pool.available());
+
+        server.setErrorInjection(0, StandInServer.Failure.HTTP_500);
+        waitFor(() -> pool.available() == 2, 5000);
+    }
+
+    @Test
+    public void refillStepsAsideForALiveSession() throws Exception {
+        CountDownLatch firstFetch = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        pool = new SessionTokenPool(() -> {
+            if (fetches.incrementAndGet() == 1) {
+                firstFetch.await();
+            }
+            return "token-" + fetches.get();
+        }, 2, SessionTokenPool.DEFAULT_MAX_TOKEN_AGE_MS, scheduler);
+        pool.start();
+        waitFor(() -> fetches.get() == 1, 5000);
+
+        // The refill is mid-fetch when the session opens its window; it stops before the next one.
+        PriorityScheduler.LiveWindow window = scheduler.openLiveWindow();
+        firstFetch.countDown();
+        waitFor(() -> pool.available() == 1, 5000);
+        assertEquals(1, fetches.get());
+
+        window.close();
+        waitFor(() -> pool.available() == 2, 5000);
+        assertEquals(2, fetches.get());
+    }
+
+    private SessionTokenPool newPool(int capacity, long maxTokenAgeMs) {
+        FaceTecAPIClient apiClient = new FaceTecAPIClient(server.baseURL(), "test-device-key");
+        return new SessionTokenPool(apiClient::getSessionToken, capacity, maxTokenAgeMs, scheduler);
+    }
+
+    private int sessionTokenRequests() {
+        int requests = 0;
+        for (RequestRecord record : server.records()) {
+            if (StandInServer.SESSION_TOKEN.equals(record.endpoint)) {
+                requests++;
+            }
+        }
+        return requests;
+    }
+}
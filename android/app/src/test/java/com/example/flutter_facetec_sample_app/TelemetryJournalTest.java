@@ -0,0 +1,132 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A two-segment ring of four records each, so a handful of records wraps it. Each record carries
+// its number in durationMs, which is how the tests tell which records were copied.
+public class TelemetryJournalTest {
+    private static final int SEGMENTS = 2;
+    private static final int RECORDS_PER_SEGMENT = 4;
+    private static final int SEGMENT_BYTES = TelemetryJournal.RECORD_BYTES * (1 + RECORDS_PER_SEGMENT);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File path;
+    private TelemetryJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        path = new File(folder.getRoot(), "telemetry/journal.bin");
+        journal = new TelemetryJournal(path, SEGMENTS, SEGMENT_BYTES);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Test
+    public void wrappingDropsRecordsThatWereNeverUploaded() throws Exception {
+        record(1, 9);
+        assertEquals(9, journal.getRecordsWritten());
+        // The ninth record reused the first segment and dropped records 1 to 4.
+        assertEquals(4, journal.getRecordsDropped());
+        assertEquals(5, journal.pendingRecords());
+        assertEquals(Arrays.asList(5, 6, 7, 8, 9), copyPending(16));
+    }
+
+    @Test
+    public void uploadedRecordsAreNotCountedAsDropped() throws Exception {
+        record(1, 4);
+        journal.markUploaded(copyPendingBatch(16));
+        record(5, 9);
+
+        assertEquals(0, journal.getRecordsDropped());
+        assertEquals(Arrays.asList(5, 6, 7, 8, 9), copyPending(16));
+    }
+
+    @Test
+    public void reopeningRecoversTheRecordsAndUploadProgress() throws Exception {
+        record(1, 6);
+        journal.markUploaded(copyPendingBatch(2));
+        journal.close();
+
+        journal = new TelemetryJournal(path, SEGMENTS, SEGMENT_BYTES);
+        assertEquals(4, journal.pendingRecords());
+        record(7, 7);
+        assertEquals(Arrays.asList(3, 4, 5, 6, 7), copyPending(16));
+    }
+
+    @Test
+    public void reopeningWithAnotherGeometryStartsOver() throws Exception {
+        record(1, 3);
+        journal.close();
+
+        journal = new TelemetryJournal(path, SEGMENTS + 1, SEGMENT_BYTES);
+        assertEquals(0, journal.pendingRecords());
+        assertNull(journal.copyPending(new ByteArrayOutputStream(), 16));
+    }
+
+    @Test
+    public void markUploadedSkipsSegmentsReusedSinceTheCopy() throws Exception {
+        record(1, 3);
+        TelemetryJournal.Batch batch = copyPendingBatch(16);
+        assertEquals(3, batch.getRecords());
+        // Fills both segments and starts over in the first one while the batch is in flight.
+        record(4, 9);
+
+        journal.markUploaded(batch);
+        assertEquals(Arrays.asList(5, 6, 7, 8, 9), copyPending(16));
+    }
+
+    @Test
+    public void copiesAtMostTheRequestedRecordsOldestFirst() throws Exception {
+        record(1, 6);
+        assertEquals(Arrays.asList(1, 2, 3), copyPending(3));
+        journal.markUploaded(copyPendingBatch(3));
+        assertEquals(Arrays.asList(4, 5, 6), copyPending(16));
+    }
+
+    private void record(int first, int last) {
+        for (int number = first; number <= last; number++) {
+            journal.recordPhase(TelemetryJournal.FLOW_LIVENESS, TelemetryJournal.PHASE_FACE_UPLOAD, "session",
+                    number, 1024, 200);
+        }
+    }
+
+    private TelemetryJournal.Batch copyPendingBatch(int maxRecords) throws IOException {
+        return journal.copyPending(new ByteArrayOutputStream(), maxRecords);
+    }
+
+    // The numbers of the records copyPending() would upload next.
+    private List<Integer> copyPending(int maxRecords) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        journal.copyPending(out, maxRecords);
+        return recordNumbers(out.toByteArray());
+    }
+
+    static List<Integer> recordNumbers(byte[] records) {
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        List<Integer> numbers = new ArrayList<>();
+        for (int offset = 0; offset < records.length; offset += TelemetryJournal.RECORD_BYTES) {
+            numbers.add(buffer.getInt(offset + 28));
+        }
+        return numbers;
+    }
+}
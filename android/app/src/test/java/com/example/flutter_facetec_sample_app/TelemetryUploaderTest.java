@@ -0,0 +1,121 @@
+package com.example.flutter_facetec_sample_app;
+
+import static org.junit.Assert.assertEquals;
+import static com.example.flutter_facetec_sample_app.Conditions.waitFor;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+// Flushes to a collector stub that keeps every batch and answers with the status the test sets.
+public class TelemetryUploaderTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer collector;
+    private final List<byte[]> batches = new CopyOnWriteArrayList<>();
+    private volatile int collectorStatus = 204;
+    private PriorityScheduler scheduler;
+    private TelemetryJournal journal;
+    private TelemetryUploader uploader;
+
+    @Before
+    public void setUp() throws Exception {
+        collector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        collector.createContext("/telemetry", exchange -> {
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+                batches.add(body.toByteArray());
+            }
+            exchange.sendResponseHeaders(collectorStatus, -1);
+            exchange.close();
+        });
+        collector.start();
+        scheduler = new PriorityScheduler(2);
+        journal = new TelemetryJournal(new File(folder.getRoot(), "journal.bin"));
+        uploader = new TelemetryUploader(journal, scheduler);
+        uploader.setCollectorURL("http://127.0.0.1:" + collector.getAddress().getPort() + "/telemetry");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+        journal.close();
+        collector.stop(0);
+    }
+
+    @Test
+    public void postsPendingRecordsAsOneBatch() throws Exception {
+        record(1, 3);
+        uploader.flush(true);
+
+        waitFor(() -> uploader.getBatchesSent() == 1, 5000);
+        assertEquals(0, journal.pendingRecords());
+        DataInputStream batch = new DataInputStream(new ByteArrayInputStream(batches.get(0)));
+        assertEquals(TelemetryUploader.BATCH_MAGIC, batch.readInt());
+        assertEquals(TelemetryJournal.VERSION, batch.readShort());
+        assertEquals(TelemetryJournal.RECORD_BYTES, batch.readShort());
+        assertEquals(3, batch.readInt());
+        byte[] records = new byte[3 * TelemetryJournal.RECORD_BYTES];
+        batch.readFully(records);
+        assertEquals(-1, batch.read());
+        assertEquals(Arrays.asList(1, 2, 3), TelemetryJournalTest.recordNumbers(records));
+    }
+
+    @Test
+    public void rejectedBatchStaysInTheJournal() throws Exception {
+        collectorStatus = 503;
+        record(1, 3);
+        uploader.flush(true);
+
+        waitFor(() -> uploader.getFlushFailures() == 1, 5000);
+        assertEquals(0, uploader.getBatchesSent());
+        assertEquals(3, journal.pendingRecords());
+
+        collectorStatus = 200;
+        uploader.flush(true);
+        waitFor(() -> uploader.getBatchesSent() == 1, 5000);
+        assertEquals(0, journal.pendingRecords());
+        assertEquals(2, batches.size());
+        assertEquals(batches.get(0).length, batches.get(1).length);
+    }
+
+    @Test
+    public void unforcedFlushWaitsForAFullBatch() throws Exception {
+        record(1, TelemetryUploader.MIN_BATCH_RECORDS - 1);
+        uploader.flush(false);
+        record(TelemetryUploader.MIN_BATCH_RECORDS, TelemetryUploader.MIN_BATCH_RECORDS);
+        uploader.flush(false);
+
+        waitFor(() -> uploader.getBatchesSent() == 1, 5000);
+        assertEquals(1, batches.size());
+        assertEquals(TelemetryUploader.MIN_BATCH_RECORDS, new DataInputStream(new ByteArrayInputStream(batches.get(0), 8, 4)).readInt());
+    }
+
+    private void record(int first, int last) {
+        for (int number = first; number <= last; number++) {
+            journal.recordPhase(TelemetryJournal.FLOW_PHOTO_ID_MATCH, TelemetryJournal.PHASE_ID_UPLOAD, "session",
+                    number, 2048, 200);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.example.flutter_facetec_sample_app;
+
+import android.app.Activity;
+
+import com.example.flutter_facetec_sample_app.perf.BenchmarkReport;
+import com.example.flutter_facetec_sample_app.perf.NetworkConditionProxy;
+import com.example.flutter_facetec_sample_app.perf.NetworkProfile;
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+import com.facetec.sdk.FaceTecIDScanStatus;
+import com.facetec.sdk.FaceTecSessionStatus;
+
+import io.flutter.plugin.common.MethodChannel;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// End-to-end latency benchmark for the native upload path. Each iteration runs a Liveness or a
+// Photo ID Match session through the app's LivenessCheckProcessor and PhotoIDMatchProcessor with
+// native uploads on, wired to the fakes the processor tests use: FakeFaceTec plays the SDK and
+// hands over scans of representative size as soon as each capture starts, and a
+// FakeBinaryMessenger plays Dart. The liveness FaceScan and the ID scan go out through the app's
+// ScanUploader; the Photo ID Match selfie is still uploaded by PhotoIDMatch.dart, which is played
+// here with the same request, reply and waits before startDocumentScan. Everything goes through a
+// NetworkConditionProxy configured for each profile. As in the app, a failed upload ends the
+// session with a cancel; nothing is retried, so retries are what the session results count.
+// Time-to-result runs from the launch until the session future completes, for the sessions that
+// succeeded, and is written with the bytes sent per session to a JSON report that can be checked
+// against a stored baseline. Lives with the unit tests so it runs against the app classes on the JVM.
+//
+// Usage: UploadBenchmark [--target http://host:port/base] [--profiles 3g,lossy-wifi]
+//        [--iterations 5] [--report build/upload-benchmark.json] [--baseline file] [--tolerance 0.10]
+//        [--server-delay-ms 0] [--server-error-rate 0.0] [--compression gzip|deflate|none]
+//        [--trace build/upload-benchmark-trace.json]
+//
+// Without --target the run uses a local StandInServer, which takes --server-delay-ms to process
+// each scan and drops the connection on --server-error-rate of the uploads, failing those sessions;
+// its per-endpoint request stats are printed after the run. The proxy forwards plain TCP, so
+// targets must be reachable over http. --trace installs a ChromeTraceTracer for the run and writes
+// the processors' spans to the given file, for chrome://tracing or Perfetto.
+public final class UploadBenchmark {
+    private static final long SESSION_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+    private static final String SESSION_TOKEN = "benchmark-session-token";
+    private static final String LIVENESS_CHANNEL = "com.facetec.sdk/livenesscheck";
+    private static final String PHOTO_ID_MATCH_CHANNEL = "com.facetec.sdk/photo_id_match";
+    // PhotoIDMatch.dart waits 2 s after the selfie result, then 2 s and 1 s more in
+    // startDocumentScan, before it asks native to launch the ID capture.
+    private static final long DART_DOCUMENT_SCAN_DELAY_MS = 5000;
+
+    // Approximate base64 sizes of the session data the SDK hands to the processors.
+    private static final int FACE_SCAN_BYTES = 200 * 1024;
+    private static final int AUDIT_TRAIL_BYTES = 60 * 1024;
+    private static final int LOW_QUALITY_AUDIT_TRAIL_BYTES = 15 * 1024;
+    private static final int ID_SCAN_BYTES = 400 * 1024;
+
+    private final URL target;
+    private final ScanUploader uploader;
+    // PhotoIDMatch.dart's selfie upload; the http package sends bodies uncompressed.
+    private final ScanUploader dartUploader;
+    private final PriorityScheduler scheduler;
+    private final ScheduledExecutorService dartTimers = Executors.newSingleThreadScheduledExecutor();
+    // The main thread: the benchmark thread runs what the processors and the fakes post here.
+    private final BlockingQueue<Runnable> mainThread = new LinkedBlockingQueue<>();
+    private final Random random = new Random(7);
+    // Built once, outside the timed sessions; no result cache is set, so repeating them is fine.
+    private final String faceScan = base64Filler(FACE_SCAN_BYTES);
+    private final String auditTrail = base64Filler(AUDIT_TRAIL_BYTES);
+    private final String lowQualityAuditTrail = base64Filler(LOW_QUALITY_AUDIT_TRAIL_BYTES);
+    private final String idScanFront = base64Filler(ID_SCAN_BYTES);
+    private final String idScanBack = base64Filler(ID_SCAN_BYTES);
+    private EndpointGuard endpointGuard;
+    private int retries;
+
+    private UploadBenchmark(URL target, ScanUploader uploader, ScanUploader dartUploader, PriorityScheduler scheduler) {
+        this.target = target;
+        this.uploader = uploader;
+        this.dartUploader = dartUploader;
+        this.scheduler = scheduler;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String targetArgument = null;
+        List<NetworkProfile> profiles = NetworkProfile.defaults();
+        int iterations = 5;
+        Path reportPath = Paths.get("build", "upload-benchmark.json");
+        Path baselinePath = null;
+        double tolerance = 0.10;
+        long serverDelayMs = 0;
+        double serverErrorRate = 0;
+        String compressionEncoding = "none";
+        Path tracePath = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--target":
+                    targetArgument = args[++i];
+                    break;
+                case "--profiles":
+                    profiles = new ArrayList<>();
+                    for (String name : args[++i].split(",")) {
+                        profiles.add(NetworkProfile.byName(name.trim()));
+                    }
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--report":
+                    reportPath = Paths.get(args[++i]);
+                    break;
+                case "--baseline":
+                    baselinePath = Paths.get(args[++i]);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "--server-delay-ms":
+                    serverDelayMs = Long.parseLong(args[++i]);
+                    break;
+                case "--server-error-rate":
+                    serverErrorRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--compression":
+                    compressionEncoding = args[++i];
+                    break;
+                case "--trace":
+                    tracePath = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        UploadCompression compression = "none".equals(compressionEncoding) ? UploadCompression.disabled()
+                : new UploadCompression(compressionEncoding, UploadCompression.DEFAULT_LEVEL,
+                        UploadCompression.DEFAULT_MIN_BYTES);
+        PriorityScheduler scheduler = new PriorityScheduler();
+        ScanUploader uploader = new ScanUploader("benchmark", compression, scheduler);
+        ScanUploader dartUploader = new ScanUploader("benchmark", UploadCompression.disabled(), scheduler);
+        ChromeTraceTracer tracer = null;
+        if (tracePath != null) {
+            tracer = new ChromeTraceTracer();
+            Tracing.setTracer(tracer);
+        }
+        BenchmarkReport report;
+        UploadBenchmark benchmark = null;
+        try {
+            if (targetArgument == null) {
+                try (StandInServer server = new StandInServer()) {
+                    server.setProcessingDelay(serverDelayMs, 0);
+                    server.setErrorInjection(serverErrorRate, StandInServer.Failure.DROP);
+                    benchmark = new UploadBenchmark(new URL(server.baseURL()), uploader, dartUploader, scheduler);
+                    report = benchmark.run(profiles, iterations);
+                    System.out.println("Server: " + server.statsJSON());
+                }
+            } else {
+                benchmark = new UploadBenchmark(new URL(targetArgument), uploader, dartUploader, scheduler);
+                report = benchmark.run(profiles, iterations);
+            }
+        } finally {
+            if (benchmark != null) {
+                benchmark.dartTimers.shutdownNow();
+            }
+            uploader.shutdown();
+            dartUploader.shutdown();
+            scheduler.shutdown();
+        }
+
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            report.writeTo(writer);
+        }
+        System.out.println("Wrote " + reportPath.toAbsolutePath());
+        if (tracer != null) {
+            if (tracePath.getParent() != null) {
+                Files.createDirectories(tracePath.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(tracePath, StandardCharsets.UTF_8)) {
+                tracer.writeTo(writer);
+            }
+            System.out.println("Wrote " + tracer.eventCount() + " trace events to " + tracePath.toAbsolutePath());
+        }
+
+        if (baselinePath != null) {
+            List<String> regressions = report.regressionsAgainst(BenchmarkReport.read(baselinePath), tolerance);
+            for (String regression : regressions) {
+                System.err.println("REGRESSION " + regression);
+            }
+            if (!regressions.isEmpty()) {
+                System.exit(1);
+            }
+        }
+    }
+
+    public BenchmarkReport run(List<NetworkProfile> profiles, int iterations) throws IOException, InterruptedException {
+        BenchmarkReport report = new BenchmarkReport();
+        for (NetworkProfile profile : profiles) {
+            for (String flow : Arrays.asList("liveness", "photo-id-match")) {
+                // A fresh proxy per flow so offline windows and dropped connections apply to each.
+                try (NetworkConditionProxy proxy = new NetworkConditionProxy(target.getHost(), port(target), profile)) {
+                    // What MainActivity builds for a tenant with a single baseURL.
+                    endpointGuard = new EndpointGuard();
+                    endpointGuard.setRouter(new EndpointRouter(Collections.singletonList(
+                            "http://127.0.0.1:" + proxy.getPort() + target.getPath())));
+                    List<Long> timesMs = new ArrayList<>();
+                    int failures = 0;
+                    retries = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        long startNanos = System.nanoTime();
+                        boolean success = "liveness".equals(flow) ? runLiveness() : runPhotoIDMatch();
+                        if (success) {
+                            timesMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                        } else {
+                            failures++;
+                        }
+                    }
+                    BenchmarkReport.Result result = new BenchmarkReport.Result(profile.name, flow, iterations,
+                            failures, retries, timesMs, proxy.getUplinkBytes() / iterations);
+                    report.add(result);
+                    System.out.printf("%-22s %-15s median %6d ms  p90 %6d ms  sent %9d B  failures %d  retries %d%n",
+                            profile.name, flow, result.medianMs, result.p90Ms, result.bytesSent, failures, retries);
+                }
+            }
+        }
+        return report;
+    }
+
+    // One capture whose FaceScan the processor uploads itself; the SDK ends the session once it has
+    // been given the result or cancelled.
+    private boolean runLiveness() throws InterruptedException {
+        FakeBinaryMessenger messenger = new FakeBinaryMessenger();
+        LivenessCheckProcessor processor = new LivenessCheckProcessor(new MethodChannel(messenger, LIVENESS_CHANNEL), new Activity());
+        processor.setMainThreadExecutor(mainThread::add);
+        processor.setEndpointGuard(endpointGuard);
+        processor.setScheduler(scheduler);
+        processor.setScanUploader(uploader);
+
+        SessionFuture<LivenessResult> future = new SessionFuture<>();
+        processor.launchSession(SESSION_TOKEN, future);
+        FakeFaceTec.ResultCallback faceScan = new FakeFaceTec.ResultCallback();
+        processor.processSessionWhileFaceTecSDKWaits(faceScanResult(UUID.randomUUID().toString()), faceScan);
+        if (runMainThreadUntil(() -> !faceScan.calls.isEmpty())) {
+            processor.onFaceTecSDKCompletelyDone();
+        } else {
+            future.cancel(true);
+            runMainThreadTasks();
+        }
+        LivenessResult result = resultOf(future);
+        if (result == null) {
+            return false;
+        }
+        retries += Math.max(0, result.scanAttempts - 1);
+        return result.succeeded;
+    }
+
+    // The serialized flow: PhotoIDMatch.dart uploads the selfie and starts the document scan, then
+    // the processor uploads the ID scan itself once the SDK has both sides.
+    private boolean runPhotoIDMatch() throws InterruptedException {
+        FakeBinaryMessenger messenger = new FakeBinaryMessenger();
+        MethodChannel channel = new MethodChannel(messenger, PHOTO_ID_MATCH_CHANNEL);
+        PhotoIDMatchProcessor processor = new PhotoIDMatchProcessor(channel, new Activity());
+        processor.setMainThreadExecutor(mainThread::add);
+        processor.setEndpointGuard(endpointGuard);
+        processor.setScheduler(scheduler);
+        processor.setScanUploader(uploader);
+        channel.setMethodCallHandler(processor);
+        PhotoIDMatchDart dart = new PhotoIDMatchDart(messenger);
+
+        String sessionId = UUID.randomUUID().toString();
+        SessionFuture<PhotoIDMatchResult> future = new SessionFuture<>();
+        boolean finished = false;
+        processor.launchSession(SESSION_TOKEN, future);
+        FakeFaceTec.ResultCallback faceScan = new FakeFaceTec.ResultCallback();
+        processor.processSessionWhileFaceTecSDKWaits(faceScanResult(sessionId), faceScan);
+        if (runMainThreadUntil(dart, () -> !faceScan.calls.isEmpty())) {
+            processor.onFaceTecSDKCompletelyDone();
+            if (future.isDone()) {
+                finished = true;
+            } else if (runMainThreadUntil(dart, () -> dart.documentScanStarted)) {
+                FakeFaceTec.ResultCallback front = new FakeFaceTec.ResultCallback();
+                processor.processIDScanWhileFaceTecSDKWaits(idScanResult(sessionId, idScanFront), front);
+                FakeFaceTec.ResultCallback back = new FakeFaceTec.ResultCallback();
+                processor.processIDScanWhileFaceTecSDKWaits(idScanResult(sessionId, idScanBack), back);
+                if (runMainThreadUntil(dart, () -> !back.calls.isEmpty())) {
+                    processor.onFaceTecSDKCompletelyDone();
+                    finished = true;
+                }
+            }
+        }
+        if (!finished) {
+            future.cancel(true);
+            dart.cancelUpload();
+            runMainThreadTasks();
+        }
+        PhotoIDMatchResult result = resultOf(future);
+        if (result == null) {
+            return false;
+        }
+        retries += Math.max(0, result.uploads - 2);
+        return result.succeeded;
+    }
+
+    // Plays PhotoIDMatch.dart in the serialized mode for the calls native makes on its channel.
+    private final class PhotoIDMatchDart {
+        private final FakeBinaryMessenger messenger;
+        private int handledInvocations = 0;
+        private CancellationToken upload;
+        boolean documentScanStarted = false;
+
+        PhotoIDMatchDart(FakeBinaryMessenger messenger) {
+            this.messenger = messenger;
+        }
+
+        void onMainThreadTask() {
+            List<FakeBinaryMessenger.Invocation> invocations = messenger.getInvocations();
+            while (handledInvocations < invocations.size()) {
+                FakeBinaryMessenger.Invocation invocation = invocations.get(handledInvocations++);
+                if ("processSession".equals(invocation.call.method)) {
+                    uploadSelfie(invocation.call.arguments());
+                } else if ("cancelUpload".equals(invocation.call.method)) {
+                    cancelUpload();
+                }
+            }
+        }
+
+        void cancelUpload() {
+            if (upload != null) {
+                upload.cancel();
+            }
+        }
+
+        private void uploadSelfie(Map<String, Object> args) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("faceScan", args.get("faceScanBase64"));
+            body.put("sessionId", args.get("sessionId"));
+            body.put("isPhotoID", false);
+            body.put("sessionStatus", args.get("sessionStatus"));
+            body.put("sessionSuccess", args.get("sessionSuccess"));
+            body.put("auditTrailImage", args.get("auditTrailImage"));
+            Object lowQualityAuditTrail = args.get("lowQualityAuditTrailImage");
+            body.put("lowQualityAuditTrailImage", lowQualityAuditTrail != null ? lowQualityAuditTrail : args.get("auditTrailImage"));
+            body.put("ftUserAgentString", args.get("ftUserAgentString"));
+            final String sessionId = (String) args.get("sessionId");
+            upload = new CancellationToken("PhotoIDMatch.dart selfie upload");
+            dartUploader.upload((String) args.get("baseURL"), EndpointGuard.LIVENESS_ENDPOINT, body,
+                    (String) args.get("ftUserAgentString"), upload, new ScanUploader.Callback() {
+                        @Override
+                        public void onResponse(int statusCode, String responseBody, long bytesSent) {
+                            String scanResultBlob = null;
+                            try {
+                                JSONObject responseJSON = new JSONObject(responseBody);
+                                if (!responseJSON.optBoolean("error", false) && responseJSON.optBoolean("wasProcessed", false)
+                                        && responseJSON.has("scanResultBlob")) {
+                                    scanResultBlob = responseJSON.getString("scanResultBlob");
+                                }
+                            } catch (Exception e) {
+                                // jsonDecode throws too, and the catch-all cancels with an upload error.
+                            }
+                            final String blob = scanResultBlob;
+                            mainThread.add(() -> onSelfieResult(sessionId, blob));
+                        }
+
+                        @Override
+                        public void onError(Exception e, long bytesSent) {
+                            mainThread.add(() -> onSelfieResult(sessionId, null));
+                        }
+                    });
+        }
+
+        private void onSelfieResult(String sessionId, String scanResultBlob) {
+            if (upload.isCancelled()) {
+                return;
+            }
+            if (scanResultBlob == null) {
+                messenger.callFromDart(PHOTO_ID_MATCH_CHANNEL, "cancelPhotoIDMatch",
+                        Collections.singletonMap("reason", EndpointGuard.DART_CANCEL_UPLOAD_ERROR));
+                messenger.reply("processSession", ChannelTrafficRecorder.successOutcome(null));
+                return;
+            }
+            messenger.callFromDart(PHOTO_ID_MATCH_CHANNEL, "onPhotoIDMatchResultBlobReceived",
+                    Collections.singletonMap("photoIDMatchResultBlob", scanResultBlob));
+            dartTimers.schedule(() -> mainThread.add(() -> {
+                if (upload.isCancelled()) {
+                    return;
+                }
+                Map<String, Object> outcome = messenger.callFromDart(PHOTO_ID_MATCH_CHANNEL, "startDocumentScan",
+                        Collections.singletonMap("sessionToken", sessionId));
+                documentScanStarted = outcome != null && "success".equals(outcome.get("outcome"));
+                // Dart's processSession handler returns only now, after awaiting the whole step.
+                messenger.reply("processSession", ChannelTrafficRecorder.successOutcome(null));
+            }), DART_DOCUMENT_SCAN_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean runMainThreadUntil(BooleanSupplier condition) throws InterruptedException {
+        return runMainThreadUntil(null, condition);
+    }
+
+    // Runs main thread tasks as they are posted until condition holds; false if it timed out.
+    private boolean runMainThreadUntil(PhotoIDMatchDart dart, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SESSION_TIMEOUT_MS);
+        while (true) {
+            if (dart != null) {
+                dart.onMainThreadTask();
+            }
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            Runnable task = remainingNanos > 0 ? mainThread.poll(remainingNanos, TimeUnit.NANOSECONDS) : null;
+            if (task == null) {
+                return false;
+            }
+            task.run();
+        }
+    }
+
+    // Runs what is already queued, e.g. the cancel of a session that timed out.
+    private void runMainThreadTasks() {
+        Runnable task;
+        while ((task = mainThread.poll()) != null) {
+            task.run();
+        }
+    }
+
+    // Null when the session was cancelled or could not be launched.
+    private static <T> T resultOf(SessionFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    private FakeFaceTec.SessionResult faceScanResult(String sessionId) {
+        return new FakeFaceTec.SessionResult(FaceTecSessionStatus.SESSION_COMPLETED_SUCCESSFULLY, sessionId,
+                faceScan, auditTrail, lowQualityAuditTrail);
+    }
+
+    private static FakeFaceTec.IDScanResult idScanResult(String sessionId, String idScan) {
+        return new FakeFaceTec.IDScanResult(FaceTecIDScanStatus.SUCCESS, sessionId, idScan);
+    }
+
+    // Random base64 text: scans are encrypted, so the filler must not compress better than they do.
+    private String base64Filler(int length) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static int port(URL url) {
+        return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    }
+}
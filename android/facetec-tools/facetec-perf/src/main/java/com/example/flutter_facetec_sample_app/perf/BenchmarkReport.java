@@ -0,0 +1,140 @@
+package com.example.flutter_facetec_sample_app.perf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Machine-readable result of an UploadBenchmark run. The JSON is written with one result object
+// per line so a stored baseline can be compared without pulling a JSON library into the module.
+public final class BenchmarkReport {
+    private static final Pattern RESULT_LINE = Pattern.compile(
+            "\\{\"profile\":\"([^\"]+)\",\"flow\":\"([^\"]+)\",\"iterations\":(\\d+),\"failures\":(\\d+),"
+                    + ".*\"medianMs\":(\\d+),.*\"bytesSent\":(\\d+)}.*");
+
+    public static final class Result {
+        public final String profile;
+        public final String flow;
+        public final int iterations;
+        public final int failures;
+        public final int retries;
+        public final long medianMs;
+        public final long p90Ms;
+        public final long maxMs;
+        public final long bytesSent;
+
+        public Result(String profile, String flow, int iterations, int failures, int retries, List<Long> timesMs,
+                      long bytesSent) {
+            List<Long> sorted = new ArrayList<>(timesMs);
+            Collections.sort(sorted);
+            this.profile = profile;
+            this.flow = flow;
+            this.iterations = iterations;
+            this.failures = failures;
+            this.retries = retries;
+            this.medianMs = percentile(sorted, 0.5);
+            this.p90Ms = percentile(sorted, 0.9);
+            this.maxMs = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1);
+            this.bytesSent = bytesSent;
+        }
+
+        Result(String profile, String flow, int iterations, int failures, long medianMs, long bytesSent) {
+            this.profile = profile;
+            this.flow = flow;
+            this.iterations = iterations;
+            this.failures = failures;
+            this.retries = 0;
+            this.medianMs = medianMs;
+            this.p90Ms = 0;
+            this.maxMs = 0;
+            this.bytesSent = bytesSent;
+        }
+
+        String key() {
+            return profile + "/" + flow;
+        }
+
+        double successRatio() {
+            return iterations > 0 ? (double) (iterations - failures) / iterations : 0;
+        }
+
+        private static long percentile(List<Long> sorted, double percentile) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+        }
+    }
+
+    private final List<Result> results = new ArrayList<>();
+
+    public void add(Result result) {
+        results.add(result);
+    }
+
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        writer.write("{\"results\":[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            writer.write(String.format(Locale.US,
+                    "{\"profile\":\"%s\",\"flow\":\"%s\",\"iterations\":%d,\"failures\":%d,\"retries\":%d,"
+                            + "\"medianMs\":%d,\"p90Ms\":%d,\"maxMs\":%d,\"bytesSent\":%d}%s\n",
+                    result.profile, result.flow, result.iterations, result.failures, result.retries,
+                    result.medianMs, result.p90Ms, result.maxMs, result.bytesSent,
+                    i < results.size() - 1 ? "," : ""));
+        }
+        writer.write("]}\n");
+        writer.flush();
+    }
+
+    public static BenchmarkReport read(Path path) throws IOException {
+        BenchmarkReport report = new BenchmarkReport();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            Matcher matcher = RESULT_LINE.matcher(line);
+            if (matcher.matches()) {
+                report.add(new Result(matcher.group(1), matcher.group(2),
+                        Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)),
+                        Long.parseLong(matcher.group(5)), Long.parseLong(matcher.group(6))));
+            }
+        }
+        return report;
+    }
+
+    // Lists every profile/flow whose median time or bytes sent grew by more than tolerance
+    // (0.10 = 10%) against the baseline, or that failed more often at all. Failed runs are left
+    // out of the times, so a flow that starts failing can otherwise look faster.
+    public List<String> regressionsAgainst(BenchmarkReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Result result : results) {
+            for (Result base : baseline.results) {
+                if (!base.key().equals(result.key())) {
+                    continue;
+                }
+                // The ratio, since the two runs may differ in iterations.
+                if (result.successRatio() < base.successRatio()) {
+                    regressions.add(result.key() + " failures " + base.failures + "/" + base.iterations
+                            + " -> " + result.failures + "/" + result.iterations);
+                }
+                if (result.medianMs > base.medianMs * (1 + tolerance)) {
+                    regressions.add(result.key() + " medianMs " + base.medianMs + " -> " + result.medianMs);
+                }
+                if (result.bytesSent > base.bytesSent * (1 + tolerance)) {
+                    regressions.add(result.key() + " bytesSent " + base.bytesSent + " -> " + result.bytesSent);
+                }
+            }
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.flutter_facetec_sample_app.perf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local TCP proxy that forwards to a target host and shapes the traffic according to a
+// NetworkProfile: bandwidth caps per direction, latency plus jitter, a slow first response byte,
+// connection resets at a request byte offset and an initial offline window. Point an upload at
+// localhost:getPort() instead of the real server to reproduce field conditions on a desk.
+public class NetworkConditionProxy implements Closeable {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final String targetHost;
+    private final int targetPort;
+    private final NetworkProfile profile;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "NetworkConditionProxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random = new Random(42);
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private final AtomicLong uplinkBytes = new AtomicLong();
+    private final AtomicLong downlinkBytes = new AtomicLong();
+    private volatile boolean closed = false;
+
+    public NetworkConditionProxy(String targetHost, int targetPort, NetworkProfile profile) throws IOException {
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.profile = profile;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public NetworkProfile getProfile() {
+        return profile;
+    }
+
+    // Request bytes the client managed to push through the proxy, including dropped attempts.
+    public long getUplinkBytes() {
+        return uplinkBytes.get();
+    }
+
+    public long getDownlinkBytes() {
+        return downlinkBytes.get();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public void resetCounters() {
+        uplinkBytes.set(0);
+        downlinkBytes.set(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket client = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                if (elapsedMs() < profile.offlineMs) {
+                    client.close();
+                    continue;
+                }
+                executor.execute(() -> handle(client));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("NetworkConditionProxy accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        Socket server = new Socket();
+        try {
+            server.connect(new InetSocketAddress(targetHost, targetPort));
+            client.setTcpNoDelay(true);
+            server.setTcpNoDelay(true);
+            long dropAfter = profile.dropAfterUplinkBytes >= 0 && droppedCount.getAndIncrement() < profile.droppedConnections
+                    ? profile.dropAfterUplinkBytes : -1;
+            executor.execute(() -> pump(client, server, profile.uplinkBytesPerSecond, 0, dropAfter, uplinkBytes));
+            pump(server, client, profile.downlinkBytesPerSecond, profile.firstByteDelayMs, -1, downlinkBytes);
+        } catch (IOException e) {
+            closeQuietly(client);
+            closeQuietly(server);
+        }
+    }
+
+    private static final class Chunk {
+        final byte[] data;
+        final long releaseNanos;
+
+        Chunk(byte[] data, long releaseNanos) {
+            this.data = data;
+            this.releaseNanos = releaseNanos;
+        }
+    }
+
+    // Copies one direction through a delay line: the reader stamps every chunk with its release
+    // time so latency does not stall reading, and the writer releases chunks in order, paced to the
+    // configured rate.
+    private void pump(Socket from, Socket to, long bytesPerSecond, long firstByteDelayMs, long dropAfter, AtomicLong counter) {
+        LinkedBlockingQueue<Chunk> delayLine = new LinkedBlockingQueue<>();
+        executor.execute(() -> drain(delayLine, from, to, bytesPerSecond, dropAfter, counter));
+        long lastReleaseNanos = 0;
+        boolean firstChunk = true;
+        try {
+            InputStream in = from.getInputStream();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                long delayMs = profile.latencyMs + (profile.jitterMs > 0 ? nextJitter() : 0);
+                if (firstChunk) {
+                    delayMs += firstByteDelayMs;
+                    firstChunk = false;
+                }
+                long releaseNanos = Math.max(lastReleaseNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs));
+                lastReleaseNanos = releaseNanos;
+                byte[] data = new byte[read];
+                System.arraycopy(buffer, 0, data, 0, read);
+                delayLine.add(new Chunk(data, releaseNanos));
+            }
+        } catch (IOException e) {
+            // Treated as end of stream; the writer closes both sockets.
+        }
+        delayLine.add(new Chunk(null, lastReleaseNanos));
+    }
+
+    private void drain(LinkedBlockingQueue<Chunk> delayLine, Socket from, Socket to, long bytesPerSecond,
+                       long dropAfter, AtomicLong counter) {
+        long forwarded = 0;
+        try {
+            OutputStream out = to.getOutputStream();
+            while (true) {
+                Chunk chunk = delayLine.take();
+                sleepNanos(chunk.releaseNanos - System.nanoTime());
+                if (chunk.data == null) {
+                    to.shutdownOutput();
+                    return;
+                }
+                if (dropAfter >= 0 && forwarded + chunk.data.length > dropAfter) {
+                    int allowed = (int) (dropAfter - forwarded);
+                    out.write(chunk.data, 0, allowed);
+                    counter.addAndGet(allowed);
+                    reset(from, to);
+                    return;
+                }
+                out.write(chunk.data);
+                out.flush();
+                forwarded += chunk.data.length;
+                counter.addAndGet(chunk.data.length);
+                if (bytesPerSecond > 0) {
+                    sleepNanos(TimeUnit.SECONDS.toNanos(chunk.data.length) / bytesPerSecond);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    private synchronized long nextJitter() {
+        return (long) (random.nextDouble() * profile.jitterMs);
+    }
+
+    private long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    private static void reset(Socket from, Socket to) {
+        try {
+            to.setSoLinger(true, 0);
+        } catch (IOException ignored) {
+        }
+        closeQuietly(to);
+        closeQuietly(from);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.flutter_facetec_sample_app.perf;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Link conditions applied by NetworkConditionProxy. Rates are in bytes per second (0 = unlimited)
+// and delays in milliseconds. dropAfterUplinkBytes resets the first droppedConnections connections
+// once that many request bytes have passed; offlineMs refuses every connection for that long
+// after the proxy starts.
+public final class NetworkProfile {
+    public final String name;
+    public final long uplinkBytesPerSecond;
+    public final long downlinkBytesPerSecond;
+    public final long latencyMs;
+    public final long jitterMs;
+    public final long firstByteDelayMs;
+    public final long dropAfterUplinkBytes;
+    public final int droppedConnections;
+    public final long offlineMs;
+
+    public NetworkProfile(String name, long uplinkBytesPerSecond, long downlinkBytesPerSecond, long latencyMs,
+                          long jitterMs, long firstByteDelayMs, long dropAfterUplinkBytes, int droppedConnections,
+                          long offlineMs) {
+        this.name = name;
+        this.uplinkBytesPerSecond = uplinkBytesPerSecond;
+        this.downlinkBytesPerSecond = downlinkBytesPerSecond;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.firstByteDelayMs = firstByteDelayMs;
+        this.dropAfterUplinkBytes = dropAfterUplinkBytes;
+        this.droppedConnections = droppedConnections;
+        this.offlineMs = offlineMs;
+    }
+
+    public static final NetworkProfile UNTHROTTLED =
+            new NetworkProfile("unthrottled", 0, 0, 0, 0, 0, -1, 0, 0);
+    public static final NetworkProfile THREE_G =
+            new NetworkProfile("3g", 48_000, 96_000, 150, 40, 300, -1, 0, 0);
+    public static final NetworkProfile CONGESTED_LTE =
+            new NetworkProfile("congested-lte", 125_000, 500_000, 80, 120, 600, -1, 0, 0);
+    public static final NetworkProfile LOSSY_WIFI =
+            new NetworkProfile("lossy-wifi", 1_000_000, 2_500_000, 20, 60, 0, 64 * 1024, 1, 0);
+    public static final NetworkProfile OFFLINE_THEN_RECOVER =
+            new NetworkProfile("offline-then-recover", 500_000, 1_000_000, 40, 10, 0, -1, 0, 3000);
+
+    public static List<NetworkProfile> defaults() {
+        return Arrays.asList(UNTHROTTLED, THREE_G, CONGESTED_LTE, LOSSY_WIFI, OFFLINE_THEN_RECOVER);
+    }
+
+    public static NetworkProfile byName(String name) {
+        for (NetworkProfile profile : defaults()) {
+            if (profile.name.equals(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown network profile: " + name);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.flutter_facetec_sample_app.perf;
+
+import com.example.flutter_facetec_sample_app.standin.StandInServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Timeline of one Photo ID Match session in the serialized and the optimistic mode of
+// PhotoIDMatchProcessor, through a NetworkConditionProxy per profile:
+//   serialized  selfie upload -> handoff delays in PhotoIDMatch.dart -> ID capture -> ID upload
+//   optimistic  selfie upload || ID capture -> ID upload once both are done
+// The ID capture is the user scanning the document, emulated with --capture-ms. With --fail-face
+// the selfie result is treated as a server rejection: the serialized mode never starts the
+// capture, the optimistic mode must fail the session when the selfie result lands and must not
+// upload the ID.
+//
+// Usage: PhotoIDMatchTimeline [--profiles 3g,congested-lte] [--capture-ms 8000] [--fail-face]
+public final class PhotoIDMatchTimeline {
+    // The two Future.delayed calls before startDocumentScan plus the one inside it.
+    private static final long SERIALIZED_HANDOFF_MS = 5000;
+    private static final int FACE_SCAN_BYTES = 275 * 1024;
+    private static final int ID_SCAN_BYTES = 400 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 60000;
+
+    private final Random random = new Random(11);
+    private final List<String> events = new ArrayList<>();
+    private long startNanos;
+
+    private PhotoIDMatchTimeline() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<NetworkProfile> profiles = new ArrayList<>();
+        profiles.add(NetworkProfile.THREE_G);
+        profiles.add(NetworkProfile.CONGESTED_LTE);
+        long captureMs = 8000;
+        boolean failFace = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--profiles":
+                    profiles.clear();
+                    for (String name : args[++i].split(",")) {
+                        profiles.add(NetworkProfile.byName(name.trim()));
+                    }
+                    break;
+                case "--capture-ms":
+                    captureMs = Long.parseLong(args[++i]);
+                    break;
+                case "--fail-face":
+                    failFace = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        try (StandInServer sink = new StandInServer()) {
+            int sinkPort = new URL(sink.baseURL()).getPort();
+            for (NetworkProfile profile : profiles) {
+                for (boolean optimistic : new boolean[] {false, true}) {
+                    try (NetworkConditionProxy proxy = new NetworkConditionProxy("127.0.0.1", sinkPort, profile)) {
+                        PhotoIDMatchTimeline timeline = new PhotoIDMatchTimeline();
+                        long totalMs = optimistic
+                                ? timeline.runOptimistic(proxy, captureMs, failFace)
+                                : timeline.runSerialized(proxy, captureMs, failFace);
+                        System.out.printf(Locale.US, "%s %s: %d ms, sent %d B%n", profile.name,
+                                optimistic ? "optimistic" : "serialized", totalMs, proxy.getUplinkBytes());
+                        for (String event : timeline.events) {
+                            System.out.println("  " + event);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private long runSerialized(NetworkConditionProxy proxy, long captureMs, boolean failFace) throws Exception {
+        startNanos = System.nanoTime();
+        mark("selfie upload started");
+        boolean faceOK = post(proxy, "/liveness-3d", "faceScan", FACE_SCAN_BYTES) && !failFace;
+        mark(faceOK ? "selfie result: processed" : "selfie result: rejected, session failed");
+        if (!faceOK) {
+            return elapsedMs();
+        }
+        Thread.sleep(SERIALIZED_HANDOFF_MS);
+        mark("ID capture started");
+        Thread.sleep(captureMs);
+        mark("ID capture done, ID upload started");
+        boolean idOK = post(proxy, "/photo-id-match", "idScan", ID_SCAN_BYTES);
+        mark(idOK ? "match result" : "ID upload failed");
+        return elapsedMs();
+    }
+
+    private long runOptimistic(NetworkConditionProxy proxy, long captureMs, boolean failFace) throws Exception {
+        startNanos = System.nanoTime();
+        mark("selfie upload started, ID capture started");
+        CompletableFuture<Boolean> face = CompletableFuture.supplyAsync(() -> {
+            boolean faceOK = post(proxy, "/liveness-3d", "faceScan", FACE_SCAN_BYTES) && !failFace;
+            mark(faceOK ? "selfie result: processed" : "selfie result: rejected, session failed");
+            return faceOK;
+        });
+        CompletableFuture<Void> capture = CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(captureMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // A rejected selfie fails the session right away, even in the middle of the capture.
+        CompletableFuture<Object> rejection = face.thenCompose(
+                faceOK -> faceOK ? capture.thenApply(ignored -> null) : CompletableFuture.completedFuture(null));
+        CompletableFuture.anyOf(capture, rejection).get();
+        if (face.isDone() && !face.get()) {
+            return elapsedMs();
+        }
+        mark("ID capture done");
+        if (!face.get()) {
+            return elapsedMs();
+        }
+        mark("ID upload started");
+        boolean idOK = post(proxy, "/photo-id-match", "idScan", ID_SCAN_BYTES);
+        mark(idOK ? "match result" : "ID upload failed");
+        return elapsedMs();
+    }
+
+    private synchronized void mark(String event) {
+        events.add(String.format(Locale.US, "%6d ms  %s", elapsedMs(), event));
+    }
+
+    private long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private boolean post(NetworkConditionProxy proxy, String path, String scanField, int scanBytes) {
+        byte[] body = body(scanField, scanBytes);
+        try {
+            URL url = new URL("http", "127.0.0.1", proxy.getPort(), path);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setRequestMethod("POST");
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                int statusCode = connection.getResponseCode();
+                try (InputStream in = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                    if (in != null) {
+                        in.readAllBytes();
+                    }
+                }
+                return statusCode == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Random base64 text so the proxy carries scan-sized, incompressible bodies, in the request
+    // shape the stand-in checks.
+    private synchronized byte[] body(String scanField, int scanBytes) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder builder = new StringBuilder(scanBytes + 64).append("{\"").append(scanField).append("\":\"");
+        for (int i = 0; i < scanBytes; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.append("\",\"auditTrailImage\":\"\"}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.flutter_facetec_sample_app.perf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+// Local collector for the app's TelemetryUploader: point the "telemetryCollectorURL" initialize
+// argument at http://<host>:<port>/telemetry and every batch is decoded, each record printed and
+// the running per-flow/phase totals dumped after the batch. Decodes the TelemetryJournal record
+// layout; the offsets below must follow it.
+//
+// Usage: TelemetryCollector [--port 8089] [--quiet]
+public final class TelemetryCollector {
+    private static final int BATCH_MAGIC = 0x46545442;
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 64;
+    private static final String[] TYPES = {"empty", "session", "phase", "cancel"};
+    private static final String[] FLOWS = {"none", "liveness", "photoIDMatch"};
+    private static final String[] PHASES = {"none", "sdkInitialize", "sessionToken", "faceUpload", "idUpload"};
+    private static final String[] CANCEL_REASONS = {"none", "sdkStatus", "uploadError", "serverRejected",
+            "requestedByDart", "internalError", "requestedByHost", "timedOut"};
+    private static final String[] DEVICE_CLASSES = {"low", "mid", "high"};
+
+    private static final class Totals {
+        long records;
+        long durationMs;
+        long maxDurationMs;
+        long bytesSent;
+    }
+
+    private final Map<String, Totals> totals = new TreeMap<>();
+    private final boolean quiet;
+    private long batches = 0;
+
+    private TelemetryCollector(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8089;
+        boolean quiet = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        TelemetryCollector collector = new TelemetryCollector(quiet);
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", collector::handle);
+        server.start();
+        System.out.println("Collecting telemetry on http://0.0.0.0:" + server.getAddress().getPort() + "/telemetry");
+    }
+
+    private synchronized void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        int status;
+        try (InputStream in = encoding != null && encoding.equalsIgnoreCase("gzip")
+                ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            status = readBatch(new DataInputStream(in));
+        } catch (IOException e) {
+            System.err.println("Malformed batch: " + e.getMessage());
+            status = 400;
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private int readBatch(DataInputStream in) throws IOException {
+        if (in.readInt() != BATCH_MAGIC) {
+            throw new IOException("bad magic");
+        }
+        short version = in.readShort();
+        short recordBytes = in.readShort();
+        if (version != VERSION || recordBytes != RECORD_BYTES) {
+            System.err.println("Unsupported batch version " + version + " / record size " + recordBytes);
+            return 415;
+        }
+        int count = in.readInt();
+        byte[] record = new byte[RECORD_BYTES];
+        for (int i = 0; i < count; i++) {
+            in.readFully(record);
+            accept(ByteBuffer.wrap(record));
+        }
+        batches++;
+        System.out.printf(Locale.US, "batch %d: %d records%n", batches, count);
+        for (Map.Entry<String, Totals> entry : totals.entrySet()) {
+            Totals t = entry.getValue();
+            System.out.printf(Locale.US, "  %-34s n=%-5d mean=%6d ms  max=%6d ms  sent=%d B%n", entry.getKey(),
+                    t.records, t.durationMs / t.records, t.maxDurationMs, t.bytesSent);
+        }
+        return 204;
+    }
+
+    private void accept(ByteBuffer record) {
+        long wallClockMs = record.getLong(0);
+        long bytesSent = record.getLong(8);
+        int sessionHash = record.getInt(24);
+        int durationMs = record.getInt(28);
+        int retries = record.getInt(32);
+        int httpStatus = record.getInt(36);
+        short phase = record.getShort(40);
+        short cancelReason = record.getShort(42);
+        byte flow = record.get(44);
+        byte deviceClass = record.get(45);
+        byte sdkStatus = record.get(46);
+        byte type = record.get(63);
+
+        String key = name(TYPES, type) + "/" + name(FLOWS, flow)
+                + (type == 2 ? "/" + name(PHASES, phase) : type == 3 ? "/" + name(CANCEL_REASONS, cancelReason) : "");
+        Totals t = totals.computeIfAbsent(key, k -> new Totals());
+        t.records++;
+        t.durationMs += durationMs;
+        t.maxDurationMs = Math.max(t.maxDurationMs, durationMs);
+        t.bytesSent += bytesSent;
+        if (!quiet) {
+            System.out.printf(Locale.US, "%tFT%<tT %-34s session=%08x device=%s sdkStatus=%d duration=%d ms "
+                            + "sent=%d B retries=%d http=%d%n",
+                    wallClockMs, key, sessionHash, name(DEVICE_CLASSES, deviceClass), sdkStatus, durationMs,
+                    bytesSent, retries, httpStatus);
+        }
+    }
+
+    private static String name(String[] names, int value) {
+        return value >= 0 && value < names.length ? names[value] : Integer.toString(value);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.flutter_facetec_sample_app.standin;
+
+import java.util.Locale;
+
+// One request served by StandInServer. requestBytes is the body as received, decodedBytes after
+// Content-Encoding; readMs is the time to drain the body, processingMs the injected delay and
+// totalMs everything from the first handler call to the response being written.
+public final class RequestRecord {
+    public final long receivedAtMs;
+    public final String method;
+    public final String endpoint;
+    // 0 when the connection was dropped without a response.
+    public final int statusCode;
+    // null unless the response was an injected failure.
+    public final StandInServer.Failure failure;
+    public final long requestBytes;
+    public final long decodedBytes;
+    public final long responseBytes;
+    public final long readMs;
+    public final long processingMs;
+    public final long totalMs;
+
+    RequestRecord(long receivedAtMs, String method, String endpoint, int statusCode, StandInServer.Failure failure,
+                  long requestBytes, long decodedBytes, long responseBytes, long readMs, long processingMs, long totalMs) {
+        this.receivedAtMs = receivedAtMs;
+        this.method = method;
+        this.endpoint = endpoint;
+        this.statusCode = statusCode;
+        this.failure = failure;
+        this.requestBytes = requestBytes;
+        this.decodedBytes = decodedBytes;
+        this.responseBytes = responseBytes;
+        this.readMs = readMs;
+        this.processingMs = processingMs;
+        this.totalMs = totalMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%tT %-4s %-15s %3d%s  in %8d B (%8d decoded)  out %6d B  read %5d ms  "
+                        + "processing %5d ms  total %5d ms",
+                receivedAtMs, method, endpoint, statusCode, failure != null ? " " + failure.argument : "",
+                requestBytes, decodedBytes, responseBytes, readMs, processingMs, totalMs);
+    }
+}
@@ -0,0 +1,503 @@
+package com.example.flutter_facetec_sample_app.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+// Stand-in for the FaceTec server endpoints the app calls, so flows and benchmarks can run
+// offline against a server whose behavior is under the test's control:
+//   GET  /session-token    {"success":true,"sessionToken":...}
+//   POST /liveness-3d      requires faceScan and auditTrailImage
+//   POST /photo-id-match   requires idScan
+//   HEAD any path          answers the EndpointRouter probe, after the probe delay if one is set
+//   GET  /stats            per-endpoint counts, sizes and timings as JSON
+// Paths match by suffix, so a baseURL with the real server's /api/v3.1/biometrics prefix works
+// unchanged. Scan results have the shape the processors key off, {"success", "wasProcessed",
+// "error", "scanResultBlob"}, with a random base64 blob of the configured size. The FaceTec SDK
+// cannot decode such a blob, so on a device a session ends at proceedToNextStep; everything
+// before it -- token fetch, upload, compression, response handling -- runs as against the real
+// server. Bodies sent with Content-Encoding gzip or deflate are decoded and the decoded length
+// is echoed in X-Decoded-Bytes.
+//
+// Processing delay, error injection and blob size apply to the scan endpoints, the probe delay to
+// HEAD requests; all of them can be changed while the server runs. Every request is recorded; see RequestRecord.
+//
+// Usage: StandInServer [--host 0.0.0.0] [--port 8090] [--delay-ms 0] [--jitter-ms 0]
+//        [--error-rate 0.0] [--failure http-500|not-processed|error-body|drop] [--blob-bytes 2048]
+//        [--probe-delay-ms 0] [--seed 1] [--quiet]
+public final class StandInServer implements Closeable {
+    public static final String DECODED_BYTES_HEADER = "X-Decoded-Bytes";
+    public static final String SESSION_TOKEN = "session-token";
+    public static final String LIVENESS_3D = "liveness-3d";
+    public static final String PHOTO_ID_MATCH = "photo-id-match";
+    public static final int DEFAULT_BLOB_BYTES = 2048;
+    private static final int MAX_RECORDS = 100_000;
+
+    public enum Failure {
+        // HTTP 500 with an error body.
+        HTTP_500("http-500"),
+        // HTTP 200, wasProcessed false.
+        NOT_PROCESSED("not-processed"),
+        // HTTP 200, error true.
+        ERROR_BODY("error-body"),
+        // The body is read, then the connection is closed without a response.
+        DROP("drop");
+
+        public final String argument;
+
+        Failure(String argument) {
+            this.argument = argument;
+        }
+
+        public static Failure byArgument(String argument) {
+            for (Failure failure : values()) {
+                if (failure.argument.equals(argument)) {
+                    return failure;
+                }
+            }
+            throw new IllegalArgumentException("Unknown failure: " + argument);
+        }
+    }
+
+    public interface Listener {
+        void onRequest(RequestRecord record);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Random random;
+    private final List<RequestRecord> records = new ArrayList<>();
+    private volatile long processingDelayMs = 0;
+    private volatile long processingJitterMs = 0;
+    private volatile long probeDelayMs = 0;
+    private volatile double errorRate = 0;
+    private volatile Failure failure = Failure.HTTP_500;
+    private volatile int blobBytes = DEFAULT_BLOB_BYTES;
+    private volatile boolean validatesRequests = true;
+    private volatile boolean acceptsCompressedBodies = true;
+    private volatile Listener listener;
+
+    // On an ephemeral loopback port, for use inside a test or benchmark.
+    public StandInServer() throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+    }
+
+    public StandInServer(InetSocketAddress address, long seed) throws IOException {
+        random = new Random(seed);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "StandInServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            try {
+                handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "0.0.0.0";
+        int port = 8090;
+        long seed = 1;
+        boolean quiet = false;
+        long delayMs = 0;
+        long jitterMs = 0;
+        long probeDelayMs = 0;
+        double errorRate = 0;
+        Failure failure = Failure.HTTP_500;
+        int blobBytes = DEFAULT_BLOB_BYTES;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--delay-ms":
+                    delayMs = Long.parseLong(args[++i]);
+                    break;
+                case "--jitter-ms":
+                    jitterMs = Long.parseLong(args[++i]);
+                    break;
+                case "--probe-delay-ms":
+                    probeDelayMs = Long.parseLong(args[++i]);
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--failure":
+                    failure = Failure.byArgument(args[++i]);
+                    break;
+                case "--blob-bytes":
+                    blobBytes = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        StandInServer standIn = new StandInServer(new InetSocketAddress(host, port), seed);
+        standIn.setProcessingDelay(delayMs, jitterMs);
+        standIn.setProbeDelay(probeDelayMs);
+        standIn.setErrorInjection(errorRate, failure);
+        standIn.setBlobBytes(blobBytes);
+        if (!quiet) {
+            standIn.setListener(System.out::println);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(standIn.statsJSON())));
+        System.out.println("FaceTec stand-in serving on " + standIn.baseURL()
+                + " (emulator: http://10.0.2.2:" + standIn.getPort() + ")");
+    }
+
+    public String baseURL() {
+        InetSocketAddress address = server.getAddress();
+        String host = address.getAddress().isAnyLocalAddress() ? "127.0.0.1" : address.getAddress().getHostAddress();
+        return "http://" + host + ":" + address.getPort();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Time the scan endpoints take after the body is read: delayMs plus up to jitterMs.
+    public void setProcessingDelay(long delayMs, long jitterMs) {
+        processingDelayMs = delayMs;
+        processingJitterMs = jitterMs;
+    }
+
+    // Time a HEAD probe takes to be answered, standing in for a more distant region.
+    public void setProbeDelay(long delayMs) {
+        probeDelayMs = delayMs;
+    }
+
+    // Fraction of session-token and scan requests answered with failure instead of a result.
+    public void setErrorInjection(double rate, Failure failure) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + rate);
+        }
+        this.errorRate = rate;
+        this.failure = failure;
+    }
+
+    // Length of the base64 scanResultBlob, and so roughly of the response body.
+    public void setBlobBytes(int blobBytes) {
+        this.blobBytes = blobBytes;
+    }
+
+    // When off, scan requests are answered whatever fields their body has.
+    public void setValidatesRequests(boolean validatesRequests) {
+        this.validatesRequests = validatesRequests;
+    }
+
+    // When off, compressed request bodies are answered with 415, like a server without support.
+    public void setAcceptsCompressedBodies(boolean acceptsCompressedBodies) {
+        this.acceptsCompressedBodies = acceptsCompressedBodies;
+    }
+
+    // Called on a server thread after each response.
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public List<RequestRecord> records() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    public void clearRecords() {
+        synchronized (records) {
+            records.clear();
+        }
+    }
+
+    // Per endpoint: requests, injected failures, request and response sizes, and read and total
+    // time percentiles.
+    public String statsJSON() {
+        Map<String, List<RequestRecord>> byEndpoint = new TreeMap<>();
+        for (RequestRecord record : records()) {
+            byEndpoint.computeIfAbsent(record.endpoint, k -> new ArrayList<>()).add(record);
+        }
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, List<RequestRecord>> entry : byEndpoint.entrySet()) {
+            List<RequestRecord> endpointRecords = entry.getValue();
+            long failures = 0;
+            long requestBytes = 0;
+            long maxRequestBytes = 0;
+            long responseBytes = 0;
+            List<Long> readMs = new ArrayList<>();
+            List<Long> totalMs = new ArrayList<>();
+            for (RequestRecord record : endpointRecords) {
+                if (record.failure != null) {
+                    failures++;
+                }
+                requestBytes += record.requestBytes;
+                maxRequestBytes = Math.max(maxRequestBytes, record.requestBytes);
+                responseBytes += record.responseBytes;
+                readMs.add(record.readMs);
+                totalMs.add(record.totalMs);
+            }
+            Collections.sort(readMs);
+            Collections.sort(totalMs);
+            int count = endpointRecords.size();
+            json.append(json.length() > 1 ? "," : "").append(String.format(Locale.US,
+                    "\"%s\":{\"requests\":%d,\"failures\":%d,\"meanRequestBytes\":%d,\"maxRequestBytes\":%d,"
+                            + "\"meanResponseBytes\":%d,\"p50ReadMs\":%d,\"p95ReadMs\":%d,\"p50TotalMs\":%d,"
+                            + "\"p95TotalMs\":%d,\"maxTotalMs\":%d}",
+                    entry.getKey(), count, failures, requestBytes / count, maxRequestBytes, responseBytes / count,
+                    percentile(readMs, 0.50), percentile(readMs, 0.95), percentile(totalMs, 0.50),
+                    percentile(totalMs, 0.95), totalMs.get(count - 1)));
+        }
+        return json.append("}").toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long startNanos = System.nanoTime();
+        long receivedAtMs = System.currentTimeMillis();
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String endpoint = path.endsWith("/" + SESSION_TOKEN) ? SESSION_TOKEN
+                : path.endsWith("/" + LIVENESS_3D) ? LIVENESS_3D
+                : path.endsWith("/" + PHOTO_ID_MATCH) ? PHOTO_ID_MATCH
+                : path.endsWith("/stats") ? "stats" : path;
+
+        if ("HEAD".equals(method)) {
+            if (probeDelayMs > 0) {
+                try {
+                    Thread.sleep(probeDelayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.close();
+                    return;
+                }
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            record(new RequestRecord(receivedAtMs, method, "probe", 200, null, 0, 0, 0, 0, 0, elapsedMs(startNanos)));
+            return;
+        }
+        if ("GET".equals(method) && "stats".equals(endpoint)) {
+            respond(exchange, 200, statsJSON());
+            return;
+        }
+
+        boolean scan = LIVENESS_3D.equals(endpoint) || PHOTO_ID_MATCH.equals(endpoint);
+        boolean expectedMethod = scan ? "POST".equals(method) : SESSION_TOKEN.equals(endpoint) && "GET".equals(method);
+        if (!expectedMethod) {
+            exchange.getRequestBody().close();
+            long responseBytes = respond(exchange, 404, errorBody("No stand-in for " + method + " " + path));
+            record(new RequestRecord(receivedAtMs, method, endpoint, 404, null, 0, 0, responseBytes, 0, 0,
+                    elapsedMs(startNanos)));
+            return;
+        }
+
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean compressed = encoding != null && !encoding.equalsIgnoreCase("identity");
+        if (compressed && (!acceptsCompressedBodies
+                || !(encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("deflate")))) {
+            exchange.getRequestBody().close();
+            exchange.sendResponseHeaders(415, -1);
+            exchange.close();
+            record(new RequestRecord(receivedAtMs, method, endpoint, 415, null, 0, 0, 0, 0, 0, elapsedMs(startNanos)));
+            return;
+        }
+        CountingInputStream wire = new CountingInputStream(exchange.getRequestBody());
+        byte[] body;
+        try (InputStream in = !compressed ? wire
+                : encoding.equalsIgnoreCase("gzip") ? new GZIPInputStream(wire) : new InflaterInputStream(wire)) {
+            body = in.readAllBytes();
+        } catch (IOException e) {
+            long responseBytes = respond(exchange, 400, errorBody("Unreadable body: " + e.getMessage()));
+            record(new RequestRecord(receivedAtMs, method, endpoint, 400, null, wire.count, 0, responseBytes,
+                    elapsedMs(startNanos), 0, elapsedMs(startNanos)));
+            return;
+        }
+        long readMs = elapsedMs(startNanos);
+        exchange.getResponseHeaders().add(DECODED_BYTES_HEADER, Integer.toString(body.length));
+
+        String missingField = scan && validatesRequests ? missingField(endpoint, body) : null;
+        if (missingField != null) {
+            long responseBytes = respond(exchange, 400, errorBody("Missing " + missingField));
+            record(new RequestRecord(receivedAtMs, method, endpoint, 400, null, wire.count, body.length, responseBytes,
+                    readMs, 0, elapsedMs(startNanos)));
+            return;
+        }
+
+        long processingMs = 0;
+        if (scan) {
+            processingMs = processingDelayMs + (processingJitterMs > 0 ? nextLong(processingJitterMs + 1) : 0);
+            if (processingMs > 0) {
+                try {
+                    Thread.sleep(processingMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.close();
+                    return;
+                }
+            }
+        }
+
+        Failure injected = errorRate > 0 && nextDouble() < errorRate ? failure : null;
+        int statusCode = 200;
+        String response;
+        if (injected == Failure.DROP) {
+            exchange.close();
+            record(new RequestRecord(receivedAtMs, method, endpoint, 0, injected, wire.count, body.length, 0,
+                    readMs, processingMs, elapsedMs(startNanos)));
+            return;
+        } else if (injected == Failure.HTTP_500) {
+            statusCode = 500;
+            response = errorBody("Injected HTTP 500");
+        } else if (injected == Failure.ERROR_BODY) {
+            response = errorBody("Injected error");
+        } else if (injected == Failure.NOT_PROCESSED) {
+            response = "{\"success\":false,\"wasProcessed\":false,\"error\":false}";
+        } else if (SESSION_TOKEN.equals(endpoint)) {
+            response = "{\"success\":true,\"sessionToken\":\"standin-" + UUID.randomUUID() + "\"}";
+        } else {
+            response = "{\"success\":true,\"wasProcessed\":true,\"error\":false,"
+                    + (PHOTO_ID_MATCH.equals(endpoint) ? "\"matchLevel\":6," : "")
+                    + "\"scanResultBlob\":\"" + scanResultBlob() + "\"}";
+        }
+        long responseBytes = respond(exchange, statusCode, response);
+        record(new RequestRecord(receivedAtMs, method, endpoint, statusCode, injected, wire.count, body.length,
+                responseBytes, readMs, processingMs, elapsedMs(startNanos)));
+    }
+
+    // The fields the processors always send; a body without them is a client bug worth failing.
+    private static String missingField(String endpoint, byte[] body) {
+        String json = new String(body, StandardCharsets.UTF_8);
+        String[] required = LIVENESS_3D.equals(endpoint)
+                ? new String[] {"faceScan", "auditTrailImage"} : new String[] {"idScan"};
+        for (String field : required) {
+            if (!json.contains("\"" + field + "\"")) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private String scanResultBlob() {
+        int length = Math.max(0, blobBytes);
+        byte[] raw = new byte[(length * 3 + 3) / 4];
+        synchronized (random) {
+            random.nextBytes(raw);
+        }
+        String blob = Base64.getEncoder().encodeToString(raw);
+        return blob.substring(0, Math.min(length, blob.length()));
+    }
+
+    private static String errorBody(String message) {
+        return "{\"success\":false,\"error\":true,\"errorMessage\":\"" + message.replace("\"", "'") + "\"}";
+    }
+
+    private static long respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        return bytes.length;
+    }
+
+    private void record(RequestRecord record) {
+        synchronized (records) {
+            if (records.size() == MAX_RECORDS) {
+                records.remove(0);
+            }
+            records.add(record);
+        }
+        Listener current = listener;
+        if (current != null) {
+            current.onRequest(record);
+        }
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private long nextLong(long bound) {
+        synchronized (random) {
+            return (long) (random.nextDouble() * bound);
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static long percentile(List<Long> sorted, double fraction) {
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.round(fraction * (sorted.size() - 1))));
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -8,7 +8,48 @@ class FaceTecConfig {
   // In Production, you likely will handle network requests elsewhere and without the use of this variable.
   // See https://dev.facetec.com/security-best-practices?link=facetec-server-rest-endpoint-security for more information.
   // NOTE: This field is auto-populated by the FaceTec SDK Configuration Wizard.
-  static const String baseURL = "https://api.facetec.com/api/v3.1/biometrics";
+  // For offline and performance runs, point it at the facetec-standin server with
+  // --dart-define=FACETEC_BASE_URL=http://10.0.2.2:8090 (emulator; use the host's address on a
+  // device). Debug and profile builds allow the plain http this needs.
+  static const String baseURL = String.fromEnvironment("FACETEC_BASE_URL",
+      defaultValue: "https://api.facetec.com/api/v3.1/biometrics");
+
+  // Number of session tokens the native layer prefetches after initialize so sessions can start
+  // without waiting on a /session-token round trip. null lets the native device profile decide.
+  static const int? sessionTokenPoolSize = null;
+
+  // Forces the native device profile ("low", "mid" or "high") instead of classifying the device.
+  // The profile sizes worker threads, the token pool, upload buffers, compression and timeouts.
+  static const String? deviceClass = null;
+
+  // Regional processing servers the native layer routes sessions across, picking the one with the
+  // best observed latency and error rate. Leave empty to always use baseURL. Session tokens are
+  // still fetched from baseURL, so every listed server must accept tokens issued by it.
+  static const List<String> endpoints = [];
+
+  // Further tenants of a white-label build, registered once after initialize and made active with
+  // the "switchTenant" method ({"tenantId": ...}) between sessions, without initializing again
+  // when they share this deviceKeyIdentifier and encryption key. Each entry takes "tenantId", the
+  // initialize keys and options above, and optionally
+  // "branding": {"brandingImage": <drawable name>, "backgroundColor": "#RRGGBB"}. Registering the
+  // active tenant again with changed options, or initializing again with them while the default
+  // tenant is active, fails with SESSION_IN_PROGRESS during a session.
+  static const List<Map<String, Object>> tenants = [];
+
+  // When true the native layer uploads Liveness Check scans itself instead of LivenessCheck.dart,
+  // compressing request bodies of at least minBytes with the given encoding ("none" disables).
+  // null leaves compression to the native device profile; to force it pass e.g.
+  // {"encoding": "gzip", "level": 1, "minBytes": 16384}, where a missing level is still the profile's.
+  static const bool nativeUploads = false;
+
+  // When true Photo ID Match starts the ID capture as soon as the selfie is handed off instead of
+  // after the selfie upload and match; a selfie rejected later still fails the whole session.
+  static const bool optimisticPhotoIDMatch = false;
+  static const Map<String, Object>? uploadCompression = null;
+
+  // Where the native layer posts its session telemetry (phase timings, bytes sent, cancel reasons).
+  // Records are journaled on the device either way; null keeps them there.
+  static const String? telemetryCollectorURL = null;
 
   // The FaceScan Encryption Key you define for your application.
   // Please see https://dev.facetec.com/facemap-encryption-keys for more information.
@@ -1,9 +1,7 @@
-import 'dart:convert';
 
 import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
 import 'facetec_config.dart';
-import 'package:http/http.dart' as http;
 
 void main() {
   WidgetsFlutterBinding.ensureInitialized();                              
@@ -108,12 +106,10 @@ class _MyHomePageState extends State<MyHomePage> {
             ElevatedButton(
               onPressed: () async {
                 try {
-                  final String? sessionToken = await getSessionToken();
-                  if (sessionToken != null) {
-                    await platform.invokeMethod('startLivenessCheck', {
-                      'sessionToken': sessionToken,
-                    });
-                  }
+                  // The native SessionTokenPool supplies the token when none is passed.
+                  await platform.invokeMethod('startLivenessCheck');
+                } on PlatformException catch (e) {
+                  await _showSessionStartError(e);
                 } catch (e) {
                   print('Error: $e');
                 }
@@ -124,13 +120,11 @@ class _MyHomePageState extends State<MyHomePage> {
             ElevatedButton(
               onPressed: () async {
                 try {
-                  final String? sessionToken = await getSessionToken();
-                  if (sessionToken != null) {
-                    await platform.invokeMethod('startPhotoIDMatch', {
-                      'sessionToken': sessionToken,
-                      'sessionType': 'photo-id-match',
-                    });
-                  }
+                  await platform.invokeMethod('startPhotoIDMatch', {
+                    'sessionType': 'photo-id-match',
+                  });
+                } on PlatformException catch (e) {
+                  await _showSessionStartError(e);
                 } catch (e) {
                   print('Error: $e');
                 }
@@ -146,10 +140,22 @@ class _MyHomePageState extends State<MyHomePage> {
   @override
   void initState() {
     super.initState();
+    platform.setMethodCallHandler(_handleNativeCall);
     WidgetsBinding.instance
         .addPostFrameCallback((_) => _initializeFaceTecSDK());
   }
 
+  Future<void> _handleNativeCall(MethodCall call) async {
+    switch (call.method) {
+      case 'onMemoryModeChanged':
+        // Native degrades uploads on its own; the mode and its counters are reported for metrics.
+        print("FaceTec memory mode: ${call.arguments}");
+        break;
+      default:
+        break;
+    }
+  }
+
   Future<void> _initializeFaceTecSDK() async {
     try {
       if (FaceTecConfig.deviceKeyIdentifier.isEmpty) {
@@ -159,8 +165,19 @@ class _MyHomePageState extends State<MyHomePage> {
 
       await platform.invokeMethod("initialize", {
         "deviceKeyIdentifier": FaceTecConfig.deviceKeyIdentifier,
-        "publicFaceScanEncryptionKey": FaceTecConfig.publicFaceScanEncryptionKey
+        "publicFaceScanEncryptionKey": FaceTecConfig.publicFaceScanEncryptionKey,
+        "baseURL": FaceTecConfig.baseURL,
+        "endpoints": FaceTecConfig.endpoints,
+        "sessionTokenPoolSize": FaceTecConfig.sessionTokenPoolSize,
+        "deviceClass": FaceTecConfig.deviceClass,
+        "nativeUploads": FaceTecConfig.nativeUploads,
+        "optimisticPhotoIDMatch": FaceTecConfig.optimisticPhotoIDMatch,
+        "uploadCompression": FaceTecConfig.uploadCompression,
+        "telemetryCollectorURL": FaceTecConfig.telemetryCollectorURL
       });
+      for (final tenant in FaceTecConfig.tenants) {
+        await platform.invokeMethod("registerTenant", tenant);
+      }
       setState(() {
         _showLoading = false;
         _isLivenessEnabled = true;
@@ -170,40 +187,13 @@ class _MyHomePageState extends State<MyHomePage> {
     }
   }
 
-  Future<String> _getAPIUserAgentString() async {
-    final String result = await platform.invokeMethod("createAPIUserAgentString");
-    return result;
-  }
-
-  Future<String?> getSessionToken() async {
-    final userAgent = await _getAPIUserAgentString();
-    final xUserAgent = await _getAPIUserAgentString();
-
-    final endpoint = Uri.parse('${FaceTecConfig.baseURL}/session-token');
-    final request = http.Request('GET', endpoint)
-      ..headers['X-Device-Key'] = FaceTecConfig.deviceKeyIdentifier
-      ..headers["User-Agent"] = userAgent
-      ..headers["X-User-Agent"] = xUserAgent;
-
-    final response = await http.Client().send(request);
-    final responseData = await response.stream.toBytes();
-
-    if (responseData.isEmpty) {
-      throw Exception("Exception raised while attempting HTTPS call.");
-    }
-    try {
-      final responseJSONObj = jsonDecode(utf8.decode(responseData)) as Map<String, dynamic>;
-
-      if (responseJSONObj['sessionToken'] is String) {
-        return responseJSONObj['sessionToken'];
-      }
-      else {
-        throw Exception("Exception raised while attempting HTTPS call.");
-      }
-    } 
-    catch (e) {
-      throw Exception("JSON parsing error: $e");
+  // The native layer rejects a session before the camera opens when the server circuit is open
+  // (CIRCUIT_OPEN) or the session quota is exhausted (RATE_LIMITED).
+  Future<void> _showSessionStartError(PlatformException e) async {
+    if (e.code == 'CIRCUIT_OPEN' || e.code == 'RATE_LIMITED') {
+      return await _showErrorDialog("Service Unavailable", e.message ?? e.code);
     }
+    print('Error: ${e.code}: ${e.message}');
   }
 
   Future<void> _showErrorDialog(String errorTitle, String errorMessage) async {
@@ -10,8 +10,13 @@ class LivenessCheckProcessor {
   bool success = false;
   bool isRequestInProgress = false;
   http.Request? latestNetworkRequest;
+  // Closed by native cancelUpload to abort the request in flight.
+  http.Client? _activeClient;
 
   static const MethodChannel _channel = MethodChannel('com.facetec.sdk/livenesscheck');
+  // Sent with a cancel when the upload itself failed (network error or an unusable server
+  // response), so native counts it against the endpoint; other cancels are not endpoint failures.
+  static const Map<String, String> _uploadError = {"reason": "uploadError"};
 
   LivenessCheckProcessor() {
     _channel.setMethodCallHandler(_handleMethodCall);
@@ -28,10 +33,16 @@ class LivenessCheckProcessor {
           call.arguments['auditTrailCompressedBase64'],
           call.arguments['faceScanBase64'],
           call.arguments['sessionId'],
-          call.arguments['ftUserAgentString']
+          call.arguments['ftUserAgentString'],
+          call.arguments['baseURL'] ?? FaceTecConfig.baseURL
           );
         break;
       }
+      case 'cancelUpload': {
+        _activeClient?.close();
+        _activeClient = null;
+        break;
+      }
       default:
         break;
     }
@@ -42,11 +53,12 @@ class LivenessCheckProcessor {
   //
   processSession(
     String status,
-    String lowQualityAuditTrailCompressedBase64,
+    String? lowQualityAuditTrailCompressedBase64,
     String auditTrailCompressedBase64,
     String faceScanBase64,
     String sessionId,
-    String ftUserAgentString) async {
+    String ftUserAgentString,
+    String baseURL) async {
       //
       // Part 3:  Handles early exit scenarios where there is no FaceScan to handle -- i.e. User Cancellation, Timeouts, etc.
       //
@@ -64,13 +76,15 @@ class LivenessCheckProcessor {
       final parameters = {
         "faceScan" : faceScanBase64,
         "auditTrailImage" : auditTrailCompressedBase64,
-        "lowQualityAuditTrailImage" : lowQualityAuditTrailCompressedBase64,
+        // Under memory pressure native only sends the low-quality trail, as auditTrailCompressedBase64.
+        "lowQualityAuditTrailImage" : lowQualityAuditTrailCompressedBase64 ?? auditTrailCompressedBase64,
       };
 
       //
       // Part 5:  Make the Networking Call to Your Servers.  Below is just example code, you are free to customize based on how your own API works.
       //
-      final uri = Uri.parse('${FaceTecConfig.baseURL}/liveness-3d');
+      // baseURL is the regional server the native EndpointRouter pinned this session to.
+      final uri = Uri.parse('$baseURL/liveness-3d');
       final request = http.Request('POST', uri)
         ..headers['Content-Type'] = 'application/json'
         ..headers['X-Device-Key'] = FaceTecConfig.deviceKeyIdentifier
@@ -83,7 +97,21 @@ class LivenessCheckProcessor {
       //
       // Part 6: Actually send the request
       //
-      final response = await http.Client().send(request);
+      final client = http.Client();
+      _activeClient = client;
+      final http.StreamedResponse response;
+      try {
+        response = await client.send(request);
+      } on http.ClientException catch (e) {
+        isRequestInProgress = false;
+        if (!identical(_activeClient, client)) {
+          // Native cancelled the session and closed the client; it has already cleaned up.
+          return;
+        }
+        print("Error while uploading FaceScan: $e");
+        await _channel.invokeMethod("cancelFaceScan", _uploadError);
+        return;
+      }
 
       // Part 7: Handle the response
       response.stream.transform(utf8.decoder).listen((value) async {
@@ -94,7 +122,7 @@ class LivenessCheckProcessor {
           // You define your own API contracts with yourself and may choose to do something different here based on the error. 
           // Solid server-side code should ensure you don't get to this case.
           print("Error while processing FaceScan: ${responseJSON['errorMessage']}");
-          await _channel.invokeMethod("cancelFaceScan", {});
+          await _channel.invokeMethod("cancelFaceScan", _uploadError);
           return;
         }
 
@@ -108,10 +136,17 @@ class LivenessCheckProcessor {
         else { 
           // CASE:  UNEXPECTED response from API.  Our Sample Code keys off a wasProcessed boolean on the root of the JSON object --> 
           // You define your own API contracts with yourself and may choose to do something different here based on the error.
-          await _channel.invokeMethod("cancelFaceScan", {});
+          await _channel.invokeMethod("cancelFaceScan", _uploadError);
         }
+      }, onError: (Object e) {
+        // The response was cut off, most likely by cancelUpload closing the client.
+        print("FaceScan response aborted: $e");
       }).onDone(() {
         isRequestInProgress = false;
+        if (identical(_activeClient, client)) {
+          _activeClient = null;
+        }
+        client.close();
       });
 
       // Part 8: For better UX, update the User if the upload is take a while.
@@ -8,12 +8,18 @@ class PhotoIDMatchProcessor {
   bool success = false;
   bool isRequestInProgress = false;
   http.Request? latestNetworkRequest;
+  // Closed by native cancelUpload to abort the request in flight.
+  http.Client? _activeClient;
+  bool _uploadCancelled = false;
   bool isDocumentScanning = false;
   bool isProcessingPhotoID = false;
   bool isSelfieCompleted = false;
 
   static const MethodChannel _channel = MethodChannel('com.facetec.sdk/photo_id_match');
   static const MethodChannel _mainChannel = MethodChannel('com.facetec.sdk');
+  // Sent with a cancel when the upload itself failed (network error or an unusable server
+  // response), so native counts it against the endpoint; other cancels are not endpoint failures.
+  static const Map<String, String> _uploadError = {"reason": "uploadError"};
 
   PhotoIDMatchProcessor() {
     _channel.setMethodCallHandler(_handleMethodCall);
@@ -34,11 +40,15 @@ class PhotoIDMatchProcessor {
           call.arguments['sessionStatus'],
           call.arguments['sessionSuccess'],
           call.arguments['auditTrailImage'],
-          call.arguments['lowQualityAuditTrailImage']
+          call.arguments['lowQualityAuditTrailImage'],
+          call.arguments['baseURL'] ?? FaceTecConfig.baseURL,
+          call.arguments['ftUserAgentString'],
+          call.arguments['optimistic'] ?? false
         );
         break;
       }
       case 'processIDScan': {
+        // With "nativeUploads" on, native posts /photo-id-match itself and never sends this.
         print("Processing ID scan with arguments: ${call.arguments}");
         if (!isSelfieCompleted) {
           print("Selfie process not completed yet, waiting...");
@@ -51,10 +61,19 @@ class PhotoIDMatchProcessor {
           call.arguments['sessionId'],
           call.arguments['sessionStatus'],
           call.arguments['sessionSuccess'],
-          call.arguments['endpoint'] ?? '/idscan-only'
+          call.arguments['endpoint'] ?? '/idscan-only',
+          call.arguments['baseURL'] ?? FaceTecConfig.baseURL,
+          call.arguments['ftUserAgentString']
         );
         break;
       }
+      case 'cancelUpload': {
+        print("Native cancelled the session, aborting upload");
+        _uploadCancelled = true;
+        _activeClient?.close();
+        _activeClient = null;
+        break;
+      }
       default:
         print("Unhandled method call: ${call.method}");
         break;
@@ -67,7 +86,9 @@ class PhotoIDMatchProcessor {
     String sessionId,
     String sessionStatus,
     bool sessionSuccess,
-    String endpoint
+    String endpoint,
+    String baseURL,
+    String? ftUserAgentString
   ) async {
     print("=== START processIDScan ===");
     print("Status: $status");
@@ -79,24 +100,25 @@ class PhotoIDMatchProcessor {
     
     if (!isSelfieCompleted) {
       print("Selfie process not completed successfully, canceling ID scan");
-      await _channel.invokeMethod("cancelPhotoIDMatch", {});
-      await _channel.invokeMethod("releaseCamera", {});
+      await _cancelAndReleaseCamera();
       return;
     }
     
     if (status != 'sessionCompletedSuccessfully') {
       print("ID scan session was not completed successfully, canceling process");
-      await _channel.invokeMethod("cancelPhotoIDMatch", {});
-      await _channel.invokeMethod("releaseCamera", {});
+      await _cancelAndReleaseCamera();
       return;
     }
 
+    // The native side precomputes the user agent for this session; the channel call is only a
+    // fallback for older native builds.
+    final userAgent = ftUserAgentString ?? await _getAPIUserAgentString();
     final parameters = {
       "idScan": idScanBase64,
       "sessionId": sessionId,
       "sessionStatus": sessionStatus,
       "sessionSuccess": sessionSuccess,
-      "ftUserAgentString": await _getAPIUserAgentString(),
+      "ftUserAgentString": userAgent,
       "documentType": "ID_DOCUMENT",
       "countryCode": "ANY"
     };
@@ -107,13 +129,14 @@ class PhotoIDMatchProcessor {
     print("Session Status length: ${sessionStatus.length}");
     print("User Agent String length: ${parameters['ftUserAgentString'].toString().length}");
     
-    final uri = Uri.parse('${FaceTecConfig.baseURL}$endpoint');
+    // baseURL is the server the native EndpointRouter pinned this session to, so the ID scan
+    // reaches the same server as the selfie.
+    final uri = Uri.parse('$baseURL$endpoint');
     print("=== Request Details ===");
     print("Full URL: ${uri.toString()}");
-    print("Base URL: ${FaceTecConfig.baseURL}");
+    print("Base URL: $baseURL");
     print("Endpoint path: $endpoint");
 
-    final userAgent = await _getAPIUserAgentString();
     print("=== Headers ===");
     print("User-Agent: $userAgent");
     print("X-Device-Key: ${FaceTecConfig.deviceKeyIdentifier}");
@@ -131,7 +154,7 @@ class PhotoIDMatchProcessor {
 
     try {
       print("=== Making HTTP Request ===");
-      final response = await http.Client().send(request);
+      final response = await _send(request);
       print("Response status code: ${response.statusCode}");
       print("Response headers: ${response.headers}");
       
@@ -143,8 +166,7 @@ class PhotoIDMatchProcessor {
       
       if (responseBody.isEmpty) {
         print("Empty response received, canceling scan");
-        await _channel.invokeMethod("cancelPhotoIDMatch", {});
-        await _channel.invokeMethod("releaseCamera", {});
+        await _cancelAndReleaseCamera(uploadError: true);
         success = false;
         return;
       }
@@ -165,10 +187,7 @@ class PhotoIDMatchProcessor {
             "error": "ENDPOINT_ERROR",
             "message": errorMessage
           });
-          await _channel.invokeMethod("onPhotoIDMatchResultBlobReceived", {
-            "photoIDMatchResultBlob": errorJson
-          });
-          await _channel.invokeMethod("releaseCamera", {});
+          await _deliverResultAndReleaseCamera(errorJson);
           success = false;
         return;
       }
@@ -192,8 +211,7 @@ class PhotoIDMatchProcessor {
         success = true;
           } catch (e) {
             print("Error sending scan result to native SDK: $e");
-            await _channel.invokeMethod("cancelPhotoIDMatch", {});
-            await _channel.invokeMethod("releaseCamera", {});
+            await _cancelAndReleaseCamera();
             success = false;
           }
       } else {
@@ -208,10 +226,7 @@ class PhotoIDMatchProcessor {
             "message": errorMessage
           });
           
-          await _channel.invokeMethod("onPhotoIDMatchResultBlobReceived", {
-            "photoIDMatchResultBlob": errorJson
-          });
-          await _channel.invokeMethod("releaseCamera", {});
+          await _deliverResultAndReleaseCamera(errorJson);
           success = false;
         }
       } catch (jsonError) {
@@ -225,13 +240,14 @@ class PhotoIDMatchProcessor {
           "message": jsonError.toString()
         });
         
-        await _channel.invokeMethod("onPhotoIDMatchResultBlobReceived", {
-          "photoIDMatchResultBlob": errorJson
-        });
-        await _channel.invokeMethod("releaseCamera", {});
+        await _deliverResultAndReleaseCamera(errorJson);
         success = false;
       }
     } catch (e, stackTrace) {
+      if (_uploadCancelled) {
+        // Native already cancelled the session; reporting back could cancel a newer one.
+        return;
+      }
       print("=== Network Error ===");
       print("Error: $e");
       print("Stack trace: $stackTrace");
@@ -242,10 +258,7 @@ class PhotoIDMatchProcessor {
         "message": e.toString()
       });
       
-      await _channel.invokeMethod("onPhotoIDMatchResultBlobReceived", {
-        "photoIDMatchResultBlob": errorJson
-      });
-      await _channel.invokeMethod("releaseCamera", {});
+      await _deliverResultAndReleaseCamera(errorJson);
       success = false;
     } finally {
       isRequestInProgress = false;
@@ -273,7 +286,10 @@ class PhotoIDMatchProcessor {
     String sessionStatus,
     bool sessionSuccess,
     String? auditTrailImage,
-    String? lowQualityAuditTrailImage
+    String? lowQualityAuditTrailImage,
+    String baseURL,
+    String? ftUserAgentString,
+    bool optimistic
   ) async {
     print("Starting processSession with status: $status");
     print("Arguments received:");
@@ -300,6 +316,7 @@ class PhotoIDMatchProcessor {
       return;
     }
 
+    final userAgent = ftUserAgentString ?? await _getAPIUserAgentString();
     final parameters = {
       "faceScan": faceScanBase64,
       "sessionId": sessionId,
@@ -308,15 +325,14 @@ class PhotoIDMatchProcessor {
       "sessionSuccess": sessionSuccess ?? false,
       "auditTrailImage": auditTrailImage,
       "lowQualityAuditTrailImage": lowQualityAuditTrailImage ?? auditTrailImage,
-      "ftUserAgentString": await _getAPIUserAgentString()
+      "ftUserAgentString": userAgent
     };
 
     print("Preparing request with parameters: ${parameters.keys.join(', ')}");
     
-    final uri = Uri.parse('${FaceTecConfig.baseURL}/liveness-3d');
+    final uri = Uri.parse('$baseURL/liveness-3d');
     print("Making request to: ${uri.toString()}");
 
-    final userAgent = await _getAPIUserAgentString();
     print("Using User-Agent: $userAgent");
 
     final request = http.Request('POST', uri)
@@ -330,7 +346,7 @@ class PhotoIDMatchProcessor {
     print("Request prepared, sending...");
 
     try {
-      final response = await http.Client().send(request);
+      final response = await _send(request);
       print("Received response with status code: ${response.statusCode}");
       
       final responseData = await response.stream.toBytes();
@@ -341,7 +357,7 @@ class PhotoIDMatchProcessor {
 
       if (responseJSON['error'] == true) {
         print("Error while processing Photo ID Match: ${responseJSON['errorMessage']}");
-        await _channel.invokeMethod("cancelPhotoIDMatch", {});
+        await _channel.invokeMethod("cancelPhotoIDMatch", _uploadError);
         isSelfieCompleted = false; // Asegurar que isSelfieCompleted sea false
         return;
       }
@@ -349,11 +365,15 @@ class PhotoIDMatchProcessor {
       if (responseJSON['scanResultBlob'] != null && responseJSON['wasProcessed'] == true) {
         final scanResultBlob = responseJSON['scanResultBlob'];
         print("Received scanResultBlob, proceeding to next step");
+        // Marked before delivering: in optimistic mode native answers with processIDScan right away.
+        isSelfieCompleted = true;
         await _channel.invokeMethod("onPhotoIDMatchResultBlobReceived", {"photoIDMatchResultBlob": scanResultBlob});
         success = true;
-        
-        // Marcar la selfie como completada solo si todo fue exitoso
-        isSelfieCompleted = true;
+
+        if (optimistic) {
+          // Native already started the ID capture when it handed off the selfie.
+          return;
+        }
         
         // Esperar un momento antes de iniciar el escaneo de documento
         await Future.delayed(const Duration(seconds: 2));
@@ -363,14 +383,17 @@ class PhotoIDMatchProcessor {
         await startDocumentScan();
       } else {
         print("No scanResultBlob or wasProcessed is false, canceling process");
-        await _channel.invokeMethod("cancelPhotoIDMatch", {});
+        await _channel.invokeMethod("cancelPhotoIDMatch", _uploadError);
         isSelfieCompleted = false; // Asegurar que isSelfieCompleted sea false
         return;
       }
     } catch (e, stackTrace) {
+      if (_uploadCancelled) {
+        return;
+      }
       print("Error during Photo ID Match processing: $e");
       print("Stack trace: $stackTrace");
-      await _channel.invokeMethod("cancelPhotoIDMatch", {});
+      await _channel.invokeMethod("cancelPhotoIDMatch", _uploadError);
       isSelfieCompleted = false; // Asegurar que isSelfieCompleted sea false
       return;
     } finally {
@@ -436,6 +459,59 @@ class PhotoIDMatchProcessor {
     }
   }
 
+  // Sends on a client native can close through cancelUpload, aborting the socket mid-request.
+  Future<http.StreamedResponse> _send(http.Request request) async {
+    final client = http.Client();
+    _activeClient = client;
+    _uploadCancelled = false;
+    try {
+      final response = await client.send(request);
+      // Buffer the body here so the client can be closed once the request is done.
+      final body = await response.stream.toBytes();
+      return http.StreamedResponse(Stream.value(body), response.statusCode,
+          contentLength: body.length, request: response.request, headers: response.headers,
+          isRedirect: response.isRedirect, persistentConnection: response.persistentConnection,
+          reasonPhrase: response.reasonPhrase);
+    } finally {
+      if (identical(_activeClient, client)) {
+        _activeClient = null;
+      }
+      client.close();
+    }
+  }
+
+  // Runs the operations in one platform channel round trip; see MethodCallBatch on the native side.
+  // Native runs every operation even when an earlier one fails and reports each outcome in its
+  // reply, so failures are logged here rather than thrown: the callers are already on their
+  // cancel or error paths, and a throw would only send them through those again.
+  Future<void> _invokeBatch(List<Map<String, dynamic>> operations) async {
+    final replies = await _channel.invokeListMethod<dynamic>("batch", {"operations": operations});
+    if (replies == null || replies.length != operations.length) {
+      print("Batch returned ${replies?.length ?? 0} replies for ${operations.length} operations");
+      return;
+    }
+    for (final reply in replies) {
+      final operation = Map<String, dynamic>.from(reply as Map);
+      if (operation['success'] != true) {
+        print("Batched ${operation['method']} failed: ${operation['errorCode']} ${operation['errorMessage']}");
+      }
+    }
+  }
+
+  Future<void> _cancelAndReleaseCamera({bool uploadError = false}) async {
+    await _invokeBatch([
+      {"method": "cancelPhotoIDMatch", if (uploadError) "arguments": _uploadError},
+      {"method": "releaseCamera"}
+    ]);
+  }
+
+  Future<void> _deliverResultAndReleaseCamera(String photoIDMatchResultBlob) async {
+    await _invokeBatch([
+      {"method": "onPhotoIDMatchResultBlobReceived", "arguments": {"photoIDMatchResultBlob": photoIDMatchResultBlob}},
+      {"method": "releaseCamera"}
+    ]);
+  }
+
   Future<String> _getAPIUserAgentString() async {
     const platform = MethodChannel('com.facetec.sdk');
     final String result = await platform.invokeMethod("createAPIUserAgentString");